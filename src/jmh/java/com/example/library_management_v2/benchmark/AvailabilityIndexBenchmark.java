@@ -0,0 +1,97 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.service.AvailabilityIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tillgänglighetsindexet (AvailabilityIndex) jämfört med en HashMap<Long, Integer>, utan databas.
+ *
+ * Minnet per bok skrivs ut vid start: indexets egen siffra (arrayens storlek) och hur mycket heapen
+ * växte när indexet respektive HashMap:en byggdes (efter System.gc(), så bara ungefärligt).
+ * Kör med -prof gc för att se att uppslagen inte allokerar något.
+ *
+ *   mvn -Pbenchmarks test-compile exec:exec -Djmh.args="AvailabilityIndexBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AvailabilityIndexBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int books;
+
+    private AvailabilityIndex index;
+    private Map<Long, Integer> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        index = new AvailabilityIndex();
+        index.startBuilding();
+        for (long id = 1; id <= books; id++) {
+            index.load(id, (int) (id % 3), 2);
+        }
+        index.markReady();
+        long indexHeap = usedHeap() - before;
+
+        before = usedHeap();
+        map = new HashMap<>();
+        for (long id = 1; id <= books; id++) {
+            map.put(id, (int) (id % 3));
+        }
+        long mapHeap = usedHeap() - before;
+
+        System.out.printf("%n%,d böcker: index %s (heap %.1f byte/bok), HashMap<Long, Integer> heap %.1f byte/bok%n",
+                books, index.snapshot(), (double) indexHeap / books, (double) mapHeap / books);
+    }
+
+    @Benchmark
+    public int indexLookup() {
+        return index.onShelf(randomId());
+    }
+
+    @Benchmark
+    public Integer hashMapLookup() {
+        return map.get(randomId());
+    }
+
+    // En utlåning och en återlämning (det som görs efter commit)
+    @Benchmark
+    public int indexAdjust() {
+        long id = randomId();
+        index.adjust(id, 1);
+        index.adjust(id, -1);
+        return index.onShelf(id);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, books + 1L);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
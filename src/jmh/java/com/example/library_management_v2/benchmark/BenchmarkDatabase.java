@@ -0,0 +1,182 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.LibraryManagementV2Application;
+import com.example.library_management_v2.service.BookService;
+import com.example.library_management_v2.service.CatalogCache;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Startar applikationen (utan webbserver) mot en ny databas och fyller den med testdata.
+ * "sqlite" använder en temporär SQLite-fil med samma pooler, pragmas och Flyway-migreringar som i drift,
+ * "h2" använder test-profilens H2-databas i minnet (tabellerna skapas av Hibernate).
+ *
+ * Testdatan skapas alltid i tomma tabeller med ID:n 1..n (H2-tabellerna har ingen IDENTITY,
+ * entiteterna får sina ID:n från Hibernate):
+ *   författare 1..books/20, böcker 1..books (5 exemplar var), användare 1..USERS
+ *   användare 1 har LOANS_PER_USER lån (hälften återlämnade)
+ */
+class BenchmarkDatabase implements AutoCloseable {
+
+    static final int USERS = 100;
+    static final int LOANS_PER_USER = 20;
+
+    // Ord som titlarna byggs av, så att sökningarna får både vanliga och ovanliga ord
+    static final String[] WORDS = {
+            "skogen", "havet", "flickan", "pojken", "mördare", "natten", "sommar", "vinter", "ängel", "björn",
+            "älven", "hjärta", "sjön", "staden", "kungen", "drottning", "hemlighet", "spegel", "vägen", "ön"
+    };
+
+    static final String[] LAST_NAMES = {
+            "Lindgren", "Läckberg", "Mankell", "Larsson", "Nesser", "Marklund", "Guillou", "Lagerlöf"
+    };
+
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+
+    BenchmarkDatabase(String database, int books) throws IOException {
+        this(database, books, Map.of());
+    }
+
+    // overrides ersätter eller kompletterar standardinställningarna nedan, t.ex. library.sqlite.synchronous
+    BenchmarkDatabase(String database, int books, Map<String, String> overrides) throws IOException {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.generate_statistics", "false");
+        properties.put("spring.devtools.restart.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(overrides);
+
+        List<String> args = new ArrayList<>();
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(LibraryManagementV2Application.class)
+                .web(WebApplicationType.NONE);
+
+        if ("sqlite".equals(database)) {
+            file = Files.createTempFile("library-benchmark-", ".db");
+            args.add("--spring.datasource.url=jdbc:sqlite:" + file);
+        } else if ("h2".equals(database)) {
+            file = null;
+            builder.profiles("test");
+            args.add("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        } else {
+            throw new IllegalArgumentException("Okänd databas: " + database + " (sqlite eller h2)");
+        }
+
+        context = builder.run(args.toArray(String[]::new));
+        seed(books);
+
+        // Testdatan skrevs direkt med JDBC, bygg om sökindexet och töm cacharna
+        bean(BookService.class).buildSearchIndex();
+        bean(CatalogCache.class).clearAll();
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private void seed(int books) {
+        JdbcTemplate jdbcTemplate = bean(JdbcTemplate.class);
+        TransactionTemplate transaction = new TransactionTemplate(bean(PlatformTransactionManager.class));
+        Random random = new Random(42);
+        int authors = Math.max(1, books / 20);
+
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO authors (author_id, first_name, last_name, birth_year, nationality) VALUES (?, ?, ?, ?, ?)",
+                    IntStream.rangeClosed(1, authors).boxed().toList(),
+                    1000,
+                    (statement, i) -> {
+                        statement.setLong(1, i);
+                        statement.setString(2, "Förnamn" + i);
+                        statement.setString(3, LAST_NAMES[i % LAST_NAMES.length] + (i % 50 == 0 ? "" : i));
+                        statement.setInt(4, 1900 + i % 100);
+                        statement.setString(5, "Swedish");
+                    });
+
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO books (book_id, title, publication_year, available_copies, total_copies, author_id) " +
+                            "VALUES (?, ?, ?, ?, ?, ?)",
+                    IntStream.rangeClosed(1, books).boxed().toList(),
+                    1000,
+                    (statement, i) -> {
+                        int wordCount = 2 + random.nextInt(3);
+                        StringBuilder title = new StringBuilder();
+                        for (int w = 0; w < wordCount; w++) {
+                            title.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+                        }
+                        statement.setLong(1, i);
+                        statement.setString(2, title.toString());
+                        statement.setInt(3, 1950 + random.nextInt(75));
+                        statement.setInt(4, 5);
+                        statement.setInt(5, 5);
+                        statement.setLong(6, 1 + random.nextInt(authors));
+                    });
+
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO users (user_id, first_name, last_name, email, password, registration_date) " +
+                            "VALUES (?, ?, ?, ?, ?, ?)",
+                    IntStream.rangeClosed(1, USERS).boxed().toList(),
+                    1000,
+                    (statement, i) -> {
+                        statement.setLong(1, i);
+                        statement.setString(2, "Låntagare");
+                        statement.setString(3, "Nummer" + i);
+                        statement.setString(4, "lantagare" + i + "@benchmark.se");
+                        statement.setString(5, "password123");
+                        statement.setDate(6, Date.valueOf(LocalDate.now().minusYears(1)));
+                    });
+
+            // java.sql.Date binds på samma sätt som Hibernate binder LocalDate
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO loans (loan_id, user_id, book_id, borrowed_date, due_date, returned_date) " +
+                            "VALUES (?, ?, ?, ?, ?, ?)",
+                    IntStream.rangeClosed(1, LOANS_PER_USER).boxed().toList(),
+                    1000,
+                    (statement, i) -> {
+                        LocalDate borrowed = LocalDate.now().minusDays(i);
+                        statement.setLong(1, i);
+                        statement.setLong(2, 1);
+                        statement.setLong(3, 1 + (i - 1) % books);
+                        statement.setDate(4, Date.valueOf(borrowed));
+                        statement.setDate(5, Date.valueOf(borrowed.plusDays(14)));
+                        if (i % 2 == 0) {
+                            statement.setDate(6, Date.valueOf(borrowed.plusDays(7)));
+                        } else {
+                            statement.setNull(6, Types.DATE);
+                        }
+                    });
+
+            // Testdatan har egna ID:n, nästa block börjar efter MAX(id) när tabellerna får nya rader i id_blocks
+            jdbcTemplate.update("DELETE FROM id_blocks");
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.service.BookSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LIKE-sökningen i databasen jämförd med sökindexet (BookSearchIndex) vid olika katalogstorlekar.
+ * Katalogen skapas direkt med JDBC i en tillfällig SQLite-fil, utan Spring.
+ * Antalet träffar per sökning skrivs ut vid start, så att båda varianterna kan jämföras.
+ *
+ *   mvn -Pbenchmarks test-compile exec:exec -Djmh.args="BookSearchBenchmark -p books=10000,100000"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BookSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "skogen", "havet", "flickan", "pojken", "mördare", "natten", "sommar", "vinter", "ängel", "björn",
+            "älven", "hjärta", "sjön", "staden", "kungen", "drottning", "hemlighet", "spegel", "vägen", "ön",
+            "eld", "is", "drömmar", "skuggor", "minnen", "systrar", "bröder", "resan", "huset", "trädgården"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Lindgren", "Läckberg", "Mankell", "Larsson", "Nesser", "Marklund", "Guillou", "Lagerlöf",
+            "Strindberg", "Söderberg", "Jansson", "Backman", "Ajvide", "Edwardson", "Alvtegen", "Åkesson"
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    // Titel och författare åtskilda med |, tom del betyder att den inte söks på
+    @Param({"hjärta|", "mörd|", "|lackberg", "sommar|lindgren"})
+    public String query;
+
+    private Path file;
+    private Connection connection;
+    private BookSearchIndex index;
+    private String title;
+    private String author;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] parts = query.split("\\|", -1);
+        title = parts[0].isEmpty() ? null : parts[0];
+        author = parts[1].isEmpty() ? null : parts[1];
+
+        file = Files.createTempFile("search-benchmark-", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+        seed(connection, books);
+
+        index = new BookSearchIndex();
+        buildIndex(connection, index);
+
+        System.out.printf("%n%,d böcker, sökning %s: %d träffar med LIKE, %d med indexet%n",
+                books, query, like(), index());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int like() throws SQLException {
+        return searchWithLike(connection, title, author);
+    }
+
+    @Benchmark
+    public int index() throws SQLException {
+        return searchWithIndex(connection, index, title, author);
+    }
+
+    // Samma SQL som BookRepository.searchWithDetails genererar (LIKE med lower(), full genomsökning)
+    private static int searchWithLike(Connection connection, String title, String author) throws SQLException {
+        String sql = "SELECT b.book_id, b.title, b.publication_year, b.available_copies, b.total_copies, " +
+                "a.first_name, a.last_name FROM books b LEFT JOIN authors a ON a.author_id = b.author_id " +
+                "WHERE (? IS NOT NULL AND lower(b.title) LIKE ?) OR (? IS NOT NULL AND lower(a.last_name) LIKE ?) " +
+                "ORDER BY b.book_id";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            String titlePattern = title != null ? "%" + title.toLowerCase() + "%" : null;
+            String authorPattern = author != null ? "%" + author.toLowerCase() + "%" : null;
+            statement.setString(1, titlePattern);
+            statement.setString(2, titlePattern);
+            statement.setString(3, authorPattern);
+            statement.setString(4, authorPattern);
+            return countRows(statement);
+        }
+    }
+
+    // Rankning i indexet och sedan uppslag av de aktuella raderna på primärnyckel
+    private static int searchWithIndex(Connection connection, BookSearchIndex index,
+                                       String title, String author) throws SQLException {
+        List<Long> ids = index.search(title, author, null, 1000);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT b.book_id, b.title, b.publication_year, b.available_copies, " +
+                "b.total_copies, a.first_name, a.last_name FROM books b LEFT JOIN authors a " +
+                "ON a.author_id = b.author_id WHERE b.book_id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(")");
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(i + 1, ids.get(i));
+            }
+            return countRows(statement);
+        }
+    }
+
+    private static int countRows(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static void buildIndex(Connection connection, BookSearchIndex index) throws SQLException {
+        String sql = "SELECT b.book_id, b.title, a.first_name, a.last_name " +
+                "FROM books b LEFT JOIN authors a ON a.author_id = b.author_id";
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                index.put(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3), resultSet.getString(4));
+            }
+        }
+        index.markReady();
+    }
+
+    // Skapar samma tabeller som i MySimpleLibrary.db och fyller dem med slumpade böcker
+    private static void seed(Connection connection, int size) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE authors (author_id INTEGER PRIMARY KEY, first_name TEXT, " +
+                    "last_name TEXT, birth_year INTEGER, nationality TEXT)");
+            statement.execute("CREATE TABLE books (book_id INTEGER PRIMARY KEY, title TEXT, publication_year INTEGER, " +
+                    "available_copies INTEGER, total_copies INTEGER, author_id INTEGER)");
+        }
+
+        Random random = new Random(42);
+        int authorCount = Math.max(1, size / 20);
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement authors = connection.prepareStatement(
+                "INSERT INTO authors (author_id, first_name, last_name, birth_year) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= authorCount; i++) {
+                authors.setInt(1, i);
+                authors.setString(2, "Förnamn" + i);
+                authors.setString(3, LAST_NAMES[random.nextInt(LAST_NAMES.length)] + (i % 50 == 0 ? "" : i));
+                authors.setInt(4, 1900 + random.nextInt(100));
+                authors.addBatch();
+            }
+            authors.executeBatch();
+        }
+
+        try (PreparedStatement books = connection.prepareStatement(
+                "INSERT INTO books (book_id, title, publication_year, available_copies, total_copies, author_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)")) {
+            List<String> words = new ArrayList<>();
+            for (int i = 1; i <= size; i++) {
+                words.clear();
+                int wordCount = 2 + random.nextInt(3);
+                for (int w = 0; w < wordCount; w++) {
+                    words.add(WORDS[random.nextInt(WORDS.length)]);
+                }
+
+                books.setInt(1, i);
+                books.setString(2, String.join(" ", words));
+                books.setInt(3, 1950 + random.nextInt(75));
+                books.setInt(4, 1);
+                books.setInt(5, 2);
+                books.setInt(6, 1 + random.nextInt(authorCount));
+                books.addBatch();
+
+                if (i % 10_000 == 0) {
+                    books.executeBatch();
+                }
+            }
+            books.executeBatch();
+        }
+
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+}
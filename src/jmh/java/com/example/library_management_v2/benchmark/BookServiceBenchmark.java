@@ -0,0 +1,89 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.service.BookService;
+import com.example.library_management_v2.service.CatalogCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Läsvägarna i BookService: listning av hela katalogen och sökning.
+ * Throughput ger anrop/s, SampleTime ger latens med percentiler (p50, p90, p99 ...).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+
+    @Param({"h2", "sqlite"})
+    public String database;
+
+    @Param({"1000", "10000"})
+    public int books;
+
+    private BenchmarkDatabase db;
+    private BookService bookService;
+    private CatalogCache catalogCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new BenchmarkDatabase(database, books);
+        bookService = db.bean(BookService.class);
+        catalogCache = db.bean(CatalogCache.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    // Hela katalogen från cachen (det vanliga fallet i drift)
+    @Benchmark
+    public List<BookWithDetailsDTO> getAllBooksCached() {
+        return bookService.getAllBooks();
+    }
+
+    // Hela katalogen från databasen, cachen töms före varje anrop
+    @Benchmark
+    public List<BookWithDetailsDTO> getAllBooksUncached() {
+        catalogCache.clearAll();
+        return bookService.getAllBooks();
+    }
+
+    // Sökning på ett vanligt titelord, utan cache (indexet + uppslag på primärnyckel)
+    @Benchmark
+    public List<BookWithDetailsDTO> searchBooksByTitle() {
+        catalogCache.clearAll();
+        return bookService.searchBooks("hjärta", null, null);
+    }
+
+    // Fritext med prefix och diakritiska tecken, utan cache
+    @Benchmark
+    public List<BookWithDetailsDTO> searchBooksFreeText() {
+        catalogCache.clearAll();
+        return bookService.searchBooks(null, null, "sommar lackb");
+    }
+
+    // Sökning med LIKE direkt i databasen, som jämförelse
+    @Benchmark
+    public List<BookWithDetailsDTO> searchBooksWithLike() {
+        return bookService.searchBooksWithLike("hjärta", null, null);
+    }
+}
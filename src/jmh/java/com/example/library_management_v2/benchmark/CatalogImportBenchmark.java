@@ -0,0 +1,89 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.ImportJobDTO;
+import com.example.library_management_v2.service.CatalogImportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Katalogimport (CatalogImportService): resultatet är importerade poster per sekund.
+ * Varje anrop importerar ROWS nya böcker som ett nytt jobb, en författare per 50 böcker
+ * (hälften finns redan från föregående anrop).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CatalogImportBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"h2", "sqlite"})
+    public String database;
+
+    @Param({"csv", "jsonl"})
+    public String format;
+
+    private BenchmarkDatabase db;
+    private CatalogImportService catalogImportService;
+    private byte[] data;
+    private int run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new BenchmarkDatabase(database, 1000);
+        catalogImportService = db.bean(CatalogImportService.class);
+
+        StringBuilder text = new StringBuilder();
+        if ("csv".equals(format)) {
+            text.append("title,publicationYear,totalCopies,authorFirstName,authorLastName,authorBirthYear\n");
+        }
+        for (int i = 0; i < ROWS; i++) {
+            String title = BenchmarkDatabase.WORDS[i % BenchmarkDatabase.WORDS.length] + " och "
+                    + BenchmarkDatabase.WORDS[i / 7 % BenchmarkDatabase.WORDS.length] + ", del " + i;
+            String lastName = BenchmarkDatabase.LAST_NAMES[i % BenchmarkDatabase.LAST_NAMES.length] + "-import";
+            int author = i / 50 % (ROWS / 100);
+            if ("csv".equals(format)) {
+                text.append('"').append(title).append("\",").append(1950 + i % 75).append(",3,Förnamn")
+                        .append(author).append(',').append(lastName).append(',').append(1900 + author % 100)
+                        .append('\n');
+            } else {
+                text.append("{\"title\":\"").append(title).append("\",\"publicationYear\":").append(1950 + i % 75)
+                        .append(",\"totalCopies\":3,\"authorFirstName\":\"Förnamn").append(author)
+                        .append("\",\"authorLastName\":\"").append(lastName)
+                        .append("\",\"authorBirthYear\":").append(1900 + author % 100).append("}\n");
+            }
+        }
+        data = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportJobDTO importCatalog() {
+        return catalogImportService.importBooks(new ByteArrayInputStream(data), format,
+                "benchmark-" + run++, "benchmark");
+    }
+}
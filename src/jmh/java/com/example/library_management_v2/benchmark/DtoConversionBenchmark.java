@@ -0,0 +1,117 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.AuthorDTO;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.service.AuthorService;
+import com.example.library_management_v2.service.BookService;
+import com.example.library_management_v2.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Konverteringen från entitet till DTO i tjänsterna, utan databas.
+ * Metoderna är privata och anropas via MethodHandles (static final, så JIT:en kan inlina anropet).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoConversionBenchmark {
+
+    private static final MethodHandle LOAN_TO_DTO =
+            privateMethod(LoanService.class, "convertToDTO", LoanDTO.class, Loan.class);
+    private static final MethodHandle BOOK_TO_DTO =
+            privateMethod(BookService.class, "convertToBookDTO", BookDTO.class, Book.class);
+    private static final MethodHandle BOOK_TO_DETAILS_DTO =
+            privateMethod(BookService.class, "convertToBookWithDetailsDTO", BookWithDetailsDTO.class, Book.class);
+    private static final MethodHandle AUTHOR_TO_DTO =
+            privateMethod(AuthorService.class, "convertToDTO", AuthorDTO.class, Author.class);
+
+    // Konverteringarna använder inga beroenden, så tjänsterna kan skapas utan Spring
+    private final LoanService loanService = new LoanService();
+    private final BookService bookService = new BookService();
+    private final AuthorService authorService = new AuthorService();
+
+    private Author author;
+    private Book book;
+    private Loan loan;
+
+    @Setup
+    public void setUp() {
+        author = new Author();
+        author.setId(1L);
+        author.setFirstName("Astrid");
+        author.setLastName("Lindgren");
+        author.setBirthYear(1907);
+        author.setNationality("Swedish");
+
+        book = new Book();
+        book.setId(1L);
+        book.setTitle("Bröderna Lejonhjärta");
+        book.setPublicationYear(1973);
+        book.setAvailableCopies(2);
+        book.setTotalCopies(3);
+        book.setAuthor(author);
+
+        User user = new User();
+        user.setId(1L);
+
+        loan = new Loan();
+        loan.setId(1L);
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setBorrowedDate(LocalDate.now().minusDays(20));
+        loan.setDueDate(LocalDate.now().minusDays(6));
+    }
+
+    @Benchmark
+    public LoanDTO loanToDto() throws Throwable {
+        return (LoanDTO) LOAN_TO_DTO.invokeExact(loanService, loan);
+    }
+
+    @Benchmark
+    public BookDTO bookToDto() throws Throwable {
+        return (BookDTO) BOOK_TO_DTO.invokeExact(bookService, book);
+    }
+
+    @Benchmark
+    public BookWithDetailsDTO bookToDetailsDto() throws Throwable {
+        return (BookWithDetailsDTO) BOOK_TO_DETAILS_DTO.invokeExact(bookService, book);
+    }
+
+    @Benchmark
+    public AuthorDTO authorToDto() throws Throwable {
+        return (AuthorDTO) AUTHOR_TO_DTO.invokeExact(authorService, author);
+    }
+
+    private static MethodHandle privateMethod(Class<?> owner, String name, Class<?> returnType, Class<?> argumentType) {
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup())
+                    .findVirtual(owner, name, MethodType.methodType(returnType, argumentType));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Hittar inte " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+}
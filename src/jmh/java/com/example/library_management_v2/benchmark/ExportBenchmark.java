@@ -0,0 +1,62 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.service.ExportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export av katalogen (ExportService) till en ström som kastar bort allt.
+ * Kör med -prof gc: allokeringen per bok (gc.alloc.rate.norm / books) ska vara densamma
+ * oavsett hur många böcker som exporteras, inget samlas i minnet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    @Param({"h2", "sqlite"})
+    public String database;
+
+    @Param({"1000", "100000"})
+    public int books;
+
+    @Param({"csv", "ndjson"})
+    public String format;
+
+    private BenchmarkDatabase db;
+    private ExportService exportService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new BenchmarkDatabase(database, books);
+        exportService = db.bean(ExportService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    public long exportBooks() throws IOException {
+        return exportService.exportBooks(format, OutputStream.nullOutputStream());
+    }
+}
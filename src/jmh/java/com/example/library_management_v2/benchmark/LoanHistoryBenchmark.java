@@ -0,0 +1,131 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.service.LoanArchiveService;
+import com.example.library_management_v2.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * getUserLoans för en användare med lång historik, med alla lån i SQLite (archive=false) eller
+ * med de gamla återlämnade lånen flyttade till lånearkivets segmentfiler (archive=true).
+ *
+ * Användare 2 har historyLoans återlämnade lån från de senaste tre åren och användare 3..USERS har
+ * OTHER_LOANS var, så tabellen loans är stor även för de andra användarna. Användare 1 har bara
+ * BenchmarkDatabase.LOANS_PER_USER nya lån, som ligger kvar i SQLite i båda lägena.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LoanHistoryBenchmark {
+
+    private static final int OTHER_LOANS = 200;
+
+    @Param({"10000", "50000"})
+    public int historyLoans;
+
+    @Param({"false", "true"})
+    public boolean archive;
+
+    private BenchmarkDatabase db;
+    private Path archiveDirectory;
+    private LoanService loanService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        archiveDirectory = Files.createTempDirectory("library-benchmark-archive-");
+        db = new BenchmarkDatabase("sqlite", 1000, Map.of(
+                "library.loans.archive.enabled", String.valueOf(archive),
+                "library.loans.archive.directory", archiveDirectory.toString(),
+                "library.loans.archive.min-age", "90d",
+                "library.loans.archive.compact-cron", "-",
+                "library.loans.event-log.enabled", "false"));
+        loanService = db.bean(LoanService.class);
+
+        seedHistory();
+        if (archive) {
+            db.bean(LoanArchiveService.class).compact();
+        }
+    }
+
+    // Återlämnade lån med ID:n efter BenchmarkDatabase:s lån, utlånade för 120 dagar till tre år sedan
+    private void seedHistory() {
+        List<long[]> loans = new ArrayList<>();
+        long loanId = BenchmarkDatabase.LOANS_PER_USER;
+        for (int i = 0; i < historyLoans; i++) {
+            loans.add(new long[] {++loanId, 2, i});
+        }
+        for (int user = 3; user <= BenchmarkDatabase.USERS; user++) {
+            for (int i = 0; i < OTHER_LOANS; i++) {
+                loans.add(new long[] {++loanId, user, i});
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        TransactionTemplate transaction = new TransactionTemplate(db.bean(PlatformTransactionManager.class));
+        transaction.executeWithoutResult(status -> db.bean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO loans (loan_id, user_id, book_id, borrowed_date, due_date, returned_date) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)",
+                loans,
+                1000,
+                (statement, loan) -> {
+                    LocalDate borrowed = today.minusDays(120 + loan[2] % 1000);
+                    statement.setLong(1, loan[0]);
+                    statement.setLong(2, loan[1]);
+                    statement.setLong(3, 1 + (loan[0] * 7) % 1000);
+                    statement.setDate(4, Date.valueOf(borrowed));
+                    statement.setDate(5, Date.valueOf(borrowed.plusDays(14)));
+                    statement.setDate(6, Date.valueOf(borrowed.plusDays(10)));
+                }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+        try (Stream<Path> files = Files.walk(archiveDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Användare 2: historyLoans återlämnade lån
+    @Benchmark
+    public List<LoanDTO> getUserLoansWithHistory() {
+        return loanService.getUserLoans(2L);
+    }
+
+    // Användare 1: bara nya lån, historiken hos de andra användarna ska inte märkas
+    @Benchmark
+    public List<LoanDTO> getUserLoansRecent() {
+        return loanService.getUserLoans(1L);
+    }
+}
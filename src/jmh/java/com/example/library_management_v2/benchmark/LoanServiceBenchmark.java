@@ -0,0 +1,73 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skrivvägarna i LoanService (låna, förlänga, lämna tillbaka) och listning av en användares lån.
+ * Varje benchmark körs i en egen JVM med en egen databas, så lånen från loanCycle påverkar inte getUserLoans.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LoanServiceBenchmark {
+
+    @Param({"h2", "sqlite"})
+    public String database;
+
+    @Param({"1000", "10000"})
+    public int books;
+
+    private BenchmarkDatabase db;
+    private LoanService loanService;
+    private long nextBook;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new BenchmarkDatabase(database, books);
+        loanService = db.bean(LoanService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    // Ett helt lån: låna, förläng och lämna tillbaka (antalet exemplar är oförändrat efteråt)
+    @Benchmark
+    public LoanDTO loanCycle() {
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(2L + nextBook % (BenchmarkDatabase.USERS - 1));
+        createLoanDTO.setBookId(1 + nextBook++ % books);
+
+        LoanDTO loan = loanService.createLoan(createLoanDTO);
+        loanService.extendLoan(loan.getId());
+        return loanService.returnBook(loan.getId());
+    }
+
+    // Användare 1 har BenchmarkDatabase.LOANS_PER_USER lån
+    @Benchmark
+    public List<LoanDTO> getUserLoans() {
+        return loanService.getUserLoans(1L);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.AuthorDTO;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.CreateAuthorDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.CreateUserDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.UserDTO;
+import com.example.library_management_v2.service.AuthorService;
+import com.example.library_management_v2.service.BookService;
+import com.example.library_management_v2.service.LoanService;
+import com.example.library_management_v2.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skapande och utlåning mot SQLite, med och utan Hibernates andranivåcache och frågecache.
+ * Efter varje mätiteration skrivs SQL-satser per anrop och träffgraden i andranivåcachen ut.
+ *
+ *   createBook:         författaren läses med findById, från cachen när den är på
+ *   createAuthor/User:  ny nyckel varje gång, dubblettkontrollen går alltid till databasen
+ *                       (insert gör frågecachen för tabellen ogiltig), visar kostnaden för att fylla cachen
+ *   checkoutAndReturn:  boken läses aldrig från cachen (varje utlåning tömmer bokregionen) och
+ *                       låntagaren inte heller (User cachas inte), visar kostnaden för tömningarna
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SecondLevelCacheBenchmark {
+
+    @Param({"true", "false"})
+    public String cache;
+
+    @Param({"1000"})
+    public int books;
+
+    private BenchmarkDatabase db;
+    private AuthorService authorService;
+    private BookService bookService;
+    private UserService userService;
+    private LoanService loanService;
+    private Statistics statistics;
+    private long authors;
+    private long nextKey;
+    private long operations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new BenchmarkDatabase("sqlite", books, Map.of(
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache", cache,
+                "spring.jpa.properties.hibernate.cache.use_query_cache", cache,
+                "spring.jpa.properties.hibernate.generate_statistics", "true"));
+        authorService = db.bean(AuthorService.class);
+        bookService = db.bean(BookService.class);
+        userService = db.bean(UserService.class);
+        loanService = db.bean(LoanService.class);
+        statistics = db.bean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        authors = Math.max(1, books / 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        operations = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatistics() {
+        if (operations > 0) {
+            long hits = statistics.getSecondLevelCacheHitCount();
+            long misses = statistics.getSecondLevelCacheMissCount();
+            System.out.printf("%n  SQL-satser/anrop: %.2f, andranivåcache träffar/missar: %d/%d (%.0f %%), " +
+                            "frågecache träffar/missar: %d/%d%n",
+                    (double) statistics.getPrepareStatementCount() / operations,
+                    hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses),
+                    statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount());
+        }
+    }
+
+    // Ny bok hos en av de befintliga författarna
+    @Benchmark
+    public BookDTO createBook() {
+        operations++;
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setTitle("Ny bok " + nextKey);
+        bookDTO.setPublicationYear(2025);
+        bookDTO.setAvailableCopies(1);
+        bookDTO.setTotalCopies(1);
+        bookDTO.setAuthorId(1 + nextKey++ % authors);
+        return bookService.createBook(bookDTO);
+    }
+
+    @Benchmark
+    public AuthorDTO createAuthor() {
+        operations++;
+        CreateAuthorDTO createAuthorDTO = new CreateAuthorDTO();
+        createAuthorDTO.setFirstName("Ny");
+        createAuthorDTO.setLastName("Författare" + nextKey++);
+        createAuthorDTO.setBirthYear(1980);
+        return authorService.createAuthor(createAuthorDTO);
+    }
+
+    @Benchmark
+    public UserDTO createUser() {
+        operations++;
+        CreateUserDTO createUserDTO = new CreateUserDTO();
+        createUserDTO.setFirstName("Ny");
+        createUserDTO.setLastName("Låntagare");
+        createUserDTO.setEmail("ny" + nextKey++ + "@benchmark.se");
+        createUserDTO.setPassword("password123");
+        return userService.createUser(createUserDTO);
+    }
+
+    // Låna och lämna tillbaka en bok (antalet exemplar är oförändrat efteråt)
+    @Benchmark
+    public LoanDTO checkoutAndReturn() {
+        operations++;
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(2L + nextKey % (BenchmarkDatabase.USERS - 1));
+        createLoanDTO.setBookId(1 + nextKey++ % books);
+
+        LoanDTO loan = loanService.createLoan(createLoanDTO);
+        return loanService.returnBook(loan.getId());
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.LibraryManagementV2Application;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lasttest som jämför plattformstrådar (Tomcats vanliga trådpool) med virtuella trådar.
+ * Applikationen startas två gånger mot en kopia av MySimpleLibrary.db, en gång per läge,
+ * och lika många samtidiga klienter anropar endpoints som går hela vägen till SQLite.
+ * Inget JMH-test utan ett vanligt program som ligger bland benchmarks, körs t.ex. med
+ *   mvn -Pbenchmarks test-compile exec:exec
+ *       -Djmh.main=com.example.library_management_v2.benchmark.VirtualThreadLoadDriver -Djmh.args="400 20"
+ * Argument: antal samtidiga klienter (standard 400) och sekunder per läge (standard 20).
+ * Kör gärna med -Djdk.tracePinnedThreads=short för att se om virtuella trådar låser sina bärartrådar.
+ */
+public class VirtualThreadLoadDriver {
+
+    // Endpoints som inte cachas, så att varje anrop blockerar på JDBC
+    private static final String[] PATHS = {
+            "/books/page?size=50",
+            "/1/loans",
+            "/books/search?q=lind"
+    };
+
+    private static final int WARMUP_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // DevTools skulle annars starta om main-tråden med applikationens argument
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        List<Result> results = new ArrayList<>();
+        for (boolean virtual : new boolean[] {false, true}) {
+            results.add(run(virtual, clients, seconds));
+        }
+
+        System.out.printf("%n%-10s %8s %12s %10s %10s %10s %8s%n",
+                "threads", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (Result result : results) {
+            System.out.printf("%-10s %8d %12.1f %10.2f %10.2f %10.2f %8d%n",
+                    result.virtual() ? "virtual" : "platform", clients, result.throughput(),
+                    result.percentile(50), result.percentile(99), result.percentile(100), result.errors());
+        }
+    }
+
+    private static Result run(boolean virtual, int clients, int seconds) throws Exception {
+        Path file = Files.createTempFile("load-test-", ".db");
+        Files.copy(Path.of("MySimpleLibrary.db"), file, StandardCopyOption.REPLACE_EXISTING);
+        Path eventLog = Path.of(file + ".events");
+
+        ConfigurableApplicationContext context = SpringApplication.run(LibraryManagementV2Application.class,
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:sqlite:" + file,
+                "--library.loans.event-log.file=" + eventLog,
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN");
+
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            // Uppvärmning (JIT, anslutningspooler och sökindex), resultatet kastas
+            load(client, baseUrl, clients, WARMUP_SECONDS);
+            return new Result(virtual, seconds, load(client, baseUrl, clients, seconds));
+        } finally {
+            context.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(eventLog);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+    }
+
+    // Varje klient skickar anrop i en slinga tills tiden är slut; latensen mäts per anrop
+    private static Samples load(HttpClient client, String baseUrl, int clients, int seconds) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> futures = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int offset = c;
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    for (int i = offset; System.nanoTime() < deadline; i++) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + PATHS[i % PATHS.length]))
+                                .timeout(Duration.ofSeconds(30))
+                                .build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+
+        List<long[]> perClient = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            perClient.add(future.get());
+        }
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Samples(all, errors.get());
+    }
+
+    private record Samples(long[] sortedNanos, long errors) {}
+
+    private record Result(boolean virtual, int seconds, Samples samples) {
+
+        double throughput() {
+            return (double) samples.sortedNanos().length / seconds;
+        }
+
+        double percentile(int percentile) {
+            long[] sorted = samples.sortedNanos();
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        long errors() {
+            return samples.errors();
+        }
+    }
+}
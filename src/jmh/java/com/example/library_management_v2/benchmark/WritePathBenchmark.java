@@ -0,0 +1,137 @@
+package com.example.library_management_v2.benchmark;
+
+import com.example.library_management_v2.dto.BatchLoanResultDTO;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
+import com.example.library_management_v2.service.BookService;
+import com.example.library_management_v2.service.LoanService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skrivningar per sekund mot SQLite, med synchronous=NORMAL (drift) och FULL (en fsync per commit).
+ * Efter varje mätiteration skrivs antalet transaktioner och SQL-satser per anrop ut, det är
+ * transaktionerna som kostar en fsync med FULL. JDBC-batcharna i repositories räknas inte som satser.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class WritePathBenchmark {
+
+    private static final int BATCH = 10;
+
+    @Param({"NORMAL", "FULL"})
+    public String synchronous;
+
+    @Param({"1000"})
+    public int books;
+
+    private BenchmarkDatabase db;
+    private BookService bookService;
+    private LoanService loanService;
+    private Statistics statistics;
+    private long nextBook;
+    private long operations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new BenchmarkDatabase("sqlite", books, Map.of(
+                "library.sqlite.synchronous", synchronous,
+                "spring.jpa.properties.hibernate.generate_statistics", "true"));
+        bookService = db.bean(BookService.class);
+        loanService = db.bean(LoanService.class);
+        statistics = db.bean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        operations = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatistics() {
+        if (operations > 0) {
+            System.out.printf("%n  transaktioner/anrop: %.2f, SQL-satser/anrop: %.2f%n",
+                    (double) statistics.getTransactionCount() / operations,
+                    (double) statistics.getPrepareStatementCount() / operations);
+        }
+    }
+
+    // Ny bok hos en befintlig författare
+    @Benchmark
+    public BookDTO createBook() {
+        operations++;
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setTitle("Ny bok " + operations);
+        bookDTO.setPublicationYear(2025);
+        bookDTO.setAvailableCopies(1);
+        bookDTO.setTotalCopies(1);
+        bookDTO.setAuthorId(1L);
+        return bookService.createBook(bookDTO);
+    }
+
+    // Låna och lämna tillbaka en bok (antalet exemplar är oförändrat efteråt)
+    @Benchmark
+    public LoanDTO checkoutAndReturn() {
+        operations++;
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(2L + nextBook % (BenchmarkDatabase.USERS - 1));
+        createLoanDTO.setBookId(1 + nextBook++ % books);
+
+        LoanDTO loan = loanService.createLoan(createLoanDTO);
+        return loanService.returnBook(loan.getId());
+    }
+
+    // Låna och lämna tillbaka BATCH böcker i två anrop
+    @Benchmark
+    public BatchLoanResultDTO batchCheckoutAndReturn() {
+        operations++;
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(2L + operations % (BenchmarkDatabase.USERS - 1));
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            bookIds.add(1 + nextBook++ % books);
+        }
+        createBatchLoanDTO.setBookIds(bookIds);
+
+        BatchLoanResultDTO created = loanService.createLoans(createBatchLoanDTO);
+
+        ReturnBatchLoanDTO returnBatchLoanDTO = new ReturnBatchLoanDTO();
+        returnBatchLoanDTO.setLoanIds(created.getItems().stream()
+                .filter(item -> item.getLoan() != null)
+                .map(item -> item.getLoan().getId())
+                .toList());
+        return loanService.returnBooks(returnBatchLoanDTO);
+    }
+}
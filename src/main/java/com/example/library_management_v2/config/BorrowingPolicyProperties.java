@@ -0,0 +1,52 @@
+package com.example.library_management_v2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Låneregler (library.loans.policy.*), kontrolleras av BorrowingPolicyService vid varje utlåning.
+ * Alla regler är avstängda som standard och slås på per installation, t.ex.:
+ *
+ *   max-active-loans=10               högst så många aktiva lån per användare (0 = ingen gräns)
+ *   block-when-overdue=true           inga nya lån så länge användaren har ett försenat lån
+ *   category-limits.deckare=3         högst så många aktiva lån i en kategori (bokens category)
+ */
+@Component
+@ConfigurationProperties(prefix = "library.loans.policy")
+public class BorrowingPolicyProperties {
+
+    private int maxActiveLoans = 0;
+
+    private boolean blockWhenOverdue = false;
+
+    // Kategori (gemener) -> max antal aktiva lån, kategorier som inte finns här har ingen gräns
+    private Map<String, Integer> categoryLimits = new HashMap<>();
+
+    // Getters och setters
+    public int getMaxActiveLoans() {
+        return maxActiveLoans;
+    }
+
+    public void setMaxActiveLoans(int maxActiveLoans) {
+        this.maxActiveLoans = maxActiveLoans;
+    }
+
+    public boolean isBlockWhenOverdue() {
+        return blockWhenOverdue;
+    }
+
+    public void setBlockWhenOverdue(boolean blockWhenOverdue) {
+        this.blockWhenOverdue = blockWhenOverdue;
+    }
+
+    public Map<String, Integer> getCategoryLimits() {
+        return categoryLimits;
+    }
+
+    public void setCategoryLimits(Map<String, Integer> categoryLimits) {
+        this.categoryLimits = categoryLimits;
+    }
+}
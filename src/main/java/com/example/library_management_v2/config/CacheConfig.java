@@ -0,0 +1,40 @@
+package com.example.library_management_v2.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+
+/**
+ * Aktiverar @Cacheable för katalogen (böcker, boksökning och författare).
+ * Själva cacharna är Caffeine-cachar som konfigureras med spring.cache.* i application.properties.
+ *
+ * Hibernates andranivåcache (@Cache på Author, Book och User) är separat: JCache med Caffeine,
+ * regionerna konfigureras i hibernate-cache.conf.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    private static final String SECOND_LEVEL_CACHE_CONFIG = "classpath:hibernate-cache.conf";
+
+    // Hibernate hittar bara hibernate.javax.cache.uri som en fil (inte inuti den paketerade jar-filen),
+    // därför skapas CacheManager här. Hibernate stänger den när EntityManagerFactory stängs
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManager() {
+        return properties -> {
+            if (Boolean.parseBoolean(String.valueOf(
+                    properties.getOrDefault("hibernate.cache.use_second_level_cache", "false")))) {
+                CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                        .getCacheManager(URI.create(SECOND_LEVEL_CACHE_CONFIG), CacheConfig.class.getClassLoader());
+                properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            }
+        };
+    }
+}
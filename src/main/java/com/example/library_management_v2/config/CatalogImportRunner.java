@@ -0,0 +1,69 @@
+package com.example.library_management_v2.config;
+
+import com.example.library_management_v2.dto.ImportJobDTO;
+import com.example.library_management_v2.service.CatalogImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Katalogimport från kommandoraden, applikationen avslutas när importen är klar:
+ *   java -jar library.jar --spring.main.web-application-type=none --library.import.file=katalog.csv
+ * Formatet tas från filändelsen om library.import.format inte anges. Jobbets ID är filnamnet och
+ * filstorleken (eller library.import.job-id), så efter ett avbrott fortsätter samma kommando där
+ * importen slutade, och en redan importerad fil importeras inte två gånger.
+ * Körs bara när servern är stoppad: servern håller databasens lås (DatabaseFileLock) och kommandot
+ * avbryts då redan vid start. Serverns sökindex och katalogcachar skulle annars inte se de nya böckerna.
+ * Medan servern körs importeras katalogen med POST /books/import.
+ */
+@Component
+@ConditionalOnProperty("library.import.file")
+public class CatalogImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogImportRunner.class);
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${library.import.file}")
+    private Path file;
+
+    @Value("${library.import.format:}")
+    private String format;
+
+    @Value("${library.import.job-id:}")
+    private String jobId;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int exitCode = 0;
+        try {
+            ImportJobDTO job = catalogImportService.importBooks(Files.newInputStream(file),
+                    format.isBlank() ? file.getFileName().toString() : format,
+                    jobId.isBlank() ? file.getFileName() + "-" + Files.size(file) : jobId,
+                    file.toString());
+            log.info("Import {} klar: {} poster, {} böcker, {} nya författare, {} avvisade ({} poster/s)",
+                    job.getJobId(), job.getRecordsProcessed(), job.getBooksCreated(), job.getAuthorsCreated(),
+                    job.getRecordsRejected(), Math.round(job.getRecordsPerSecond()));
+        } catch (RuntimeException e) {
+            log.error("Importen av {} avbröts, kör samma kommando igen för att fortsätta", file, e);
+            exitCode = 1;
+        }
+
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
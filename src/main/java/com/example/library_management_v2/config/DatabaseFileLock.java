@@ -0,0 +1,110 @@
+package com.example.library_management_v2.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lås på SQLite-filen så att bara en process i taget kör applikationen mot databasen.
+ *
+ * Servern håller låset så länge den kör. Kommandoradskörningarna (CatalogImportRunner och
+ * LoanEventReplayRunner) startar samma applikation och kan därför inte starta medan servern körs:
+ * de skriver förbi serverns index och cachar i minnet (sökindexet, tillgänglighetsindexet och
+ * katalogcacharna), som annars skulle visa inaktuella värden tills servern startas om.
+ *
+ * Låset är ett lås från operativsystemet på filen [databasfil].lock och släpps när processen avslutas,
+ * även om den kraschar. Filen ligger kvar och behöver inte tas bort.
+ */
+public class DatabaseFileLock implements AutoCloseable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private DatabaseFileLock(Path file, FileChannel channel, FileLock lock) {
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Tar låset för databasen i en JDBC-URL (jdbc:sqlite:MySimpleLibrary.db)
+     * En databas i minnet har ingen fil och behöver inget lås
+     * Kasta IllegalStateException om en annan process redan har låset
+     */
+    public static DatabaseFileLock acquire(String jdbcUrl) {
+        Path database = databaseFile(jdbcUrl);
+        if (database == null) {
+            return new DatabaseFileLock(null, null, null);
+        }
+
+        Path file = Path.of(database + ".lock");
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return new DatabaseFileLock(file, channel, lock);
+            }
+        } catch (OverlappingFileLockException e) {
+            // Låset finns redan i den här JVM:en
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Kunde inte låsa " + file, e);
+        }
+
+        closeQuietly(channel);
+        throw new IllegalStateException("Databasen " + database + " används redan av en annan process (körs servern?). " +
+                "Stoppa servern innan import eller uppspelning körs från kommandoraden, " +
+                "eller importera via POST /books/import medan servern körs");
+    }
+
+    // Filen i en SQLite-URL, eller null för en databas i minnet (och för andra databaser)
+    static Path databaseFile(String jdbcUrl) {
+        if (jdbcUrl == null || !jdbcUrl.startsWith("jdbc:sqlite:")) {
+            return null;
+        }
+        String path = jdbcUrl.substring("jdbc:sqlite:".length());
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            if (path.substring(query).contains("mode=memory")) {
+                return null;
+            }
+            path = path.substring(0, query);
+        }
+        if (path.startsWith("file:")) {
+            path = path.substring("file:".length());
+        }
+        if (path.isEmpty() || path.equals(":memory:")) {
+            return null;
+        }
+        return Path.of(path).toAbsolutePath().normalize();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (lock != null) {
+            lock.release();
+            channel.close();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Låset togs aldrig, inget mer att göra
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.library_management_v2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Lånearkivet (library.loans.archive.*), gamla återlämnade lån flyttas från SQLite till segmentfiler (LoanArchive).
+ *
+ *   enabled=false                 läs och skriv arkivet (false = alla lån ligger kvar i SQLite)
+ *   directory=loan-archive        katalogen med segmentfilerna
+ *   min-age=365d                  lån som återlämnades för längre sedan än så flyttas till arkivet
+ *   segment-max-loans=1000000     max antal lån per segmentfil (och per flytt)
+ * När flytten körs styrs av library.loans.archive.compact-cron.
+ */
+@Component
+@ConfigurationProperties(prefix = "library.loans.archive")
+public class LoanArchiveProperties {
+
+    private boolean enabled = false;
+
+    private Path directory = Path.of("loan-archive");
+
+    private Duration minAge = Duration.ofDays(365);
+
+    private int segmentMaxLoans = 1_000_000;
+
+    // Getters och setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public Duration getMinAge() {
+        return minAge;
+    }
+
+    public void setMinAge(Duration minAge) {
+        this.minAge = minAge;
+    }
+
+    public int getSegmentMaxLoans() {
+        return segmentMaxLoans;
+    }
+
+    public void setSegmentMaxLoans(int segmentMaxLoans) {
+        this.segmentMaxLoans = segmentMaxLoans;
+    }
+}
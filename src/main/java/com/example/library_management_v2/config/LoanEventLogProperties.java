@@ -0,0 +1,110 @@
+package com.example.library_management_v2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Händelseloggen för lån (library.loans.event-log.*), skrivs av LoanEventLog.
+ *
+ *   enabled=true              skriv händelser till filen (false = inga händelser alls)
+ *   file=loan-events.log      filen som händelserna läggs till i, en JSON-rad per händelse
+ *   capacity=8192             max antal händelser som väntar på att skrivas
+ *   batch-size=512            max antal händelser per skrivning (och fsync)
+ *   flush-interval=100ms      så länge väntar skrivtråden på fler händelser innan den skriver
+ *   overflow=drop             full kö: drop = händelsen kastas direkt, block = vänta högst block-timeout
+ *   block-timeout=50ms        med overflow=block
+ *   fsync=true                tvinga ut varje skrivning till disken
+ */
+@Component
+@ConfigurationProperties(prefix = "library.loans.event-log")
+public class LoanEventLogProperties {
+
+    public enum Overflow {
+        DROP,
+        BLOCK
+    }
+
+    private boolean enabled = true;
+
+    private Path file = Path.of("loan-events.log");
+
+    private int capacity = 8192;
+
+    private int batchSize = 512;
+
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    private Overflow overflow = Overflow.DROP;
+
+    private Duration blockTimeout = Duration.ofMillis(50);
+
+    private boolean fsync = true;
+
+    // Getters och setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void setFile(Path file) {
+        this.file = file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+
+    public Duration getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public void setBlockTimeout(Duration blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+}
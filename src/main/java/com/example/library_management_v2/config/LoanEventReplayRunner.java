@@ -0,0 +1,86 @@
+package com.example.library_management_v2.config;
+
+import com.example.library_management_v2.service.LoanEventReplay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Spelar upp händelseloggen för lån från kommandoraden, applikationen avslutas när den är klar:
+ *   java -jar library.jar --spring.main.web-application-type=none --library.loans.event-log.replay=verify
+ *   java -jar library.jar --spring.main.web-application-type=none --library.loans.event-log.replay=rebuild
+ * verify jämför tabellen loans med loggen och avslutar med kod 1 om något avviker, rebuild återställer
+ * lånen från loggen (se LoanEventReplay). Filen är library.loans.event-log.file om
+ * library.loans.event-log.replay-file inte anges. Kör verify först och ta en kopia av databasen före rebuild.
+ * rebuild vägrar att köra om loggen saknar händelser (GAP-rader eller oläsbara rader), om inte
+ * --library.loans.event-log.replay-force=true anges.
+ *
+ * Servern måste vara stoppad, annars startar inte körningen (DatabaseFileLock). rebuild skriver lånen och
+ * exemplaren direkt med SQL, förbi serverns tillgänglighetsindex och katalogcachar, som byggs om från
+ * databasen när servern startar igen. Lån som saknas i tabellen läggs in med sina ID:n från loggen,
+ * och räknaren i id_blocks räknas upp förbi dem så att nya lån inte får samma ID:n.
+ */
+@Component
+@ConditionalOnProperty("library.loans.event-log.replay")
+public class LoanEventReplayRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanEventReplayRunner.class);
+
+    @Autowired
+    private LoanEventReplay loanEventReplay;
+
+    @Autowired
+    private LoanEventLogProperties properties;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${library.loans.event-log.replay}")
+    private String mode;
+
+    @Value("${library.loans.event-log.replay-file:}")
+    private String replayFile;
+
+    @Value("${library.loans.event-log.replay-force:false}")
+    private boolean force;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path file = replayFile.isBlank() ? properties.getFile() : Path.of(replayFile);
+        int exitCode = 0;
+        try {
+            LoanEventReplay.Result result = switch (mode) {
+                case "verify" -> loanEventReplay.verify(file);
+                case "rebuild" -> loanEventReplay.rebuild(file, force);
+                default -> throw new IllegalArgumentException(
+                        "library.loans.event-log.replay ska vara verify eller rebuild, inte " + mode);
+            };
+            LoanEventReplay.Log eventLog = result.log();
+            log.info("Händelseloggen {} ({}): {} händelser, {} lån, {} stämmer, {} avviker, {} saknas, " +
+                            "{} återställda", file, mode, eventLog.events(), eventLog.loans().size(),
+                    result.matching(), result.different(), result.missing(), result.restored());
+            if (eventLog.dropped() > 0 || eventLog.unreadable() > 0) {
+                log.warn("Loggen är inte komplett: {} kastade händelser och {} rader som inte kunde läsas",
+                        eventLog.dropped(), eventLog.unreadable());
+            }
+            if (mode.equals("verify") && result.different() + result.missing() > 0) {
+                exitCode = 1;
+            }
+        } catch (Exception e) {
+            log.error("Uppspelningen av händelseloggen {} avbröts", file, e);
+            exitCode = 1;
+        }
+
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
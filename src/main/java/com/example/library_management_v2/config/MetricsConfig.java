@@ -0,0 +1,85 @@
+package com.example.library_management_v2.config;
+
+import com.example.library_management_v2.service.AvailabilityIndex;
+import com.example.library_management_v2.service.LoanArchive;
+import com.example.library_management_v2.service.LoanEventLog;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Mätvärden som exporteras i Prometheus-format på /actuator/prometheus.
+ *
+ * Spring Boot mäter själv HTTP-anropen (http.server.requests), varje repository-metod
+ * (spring.data.repository.invocations), Caffeine-cacharna (cache.*), Hibernates statistik
+ * (hibernate.statements m.fl., kräver hibernate.generate_statistics) och JVM:en. Här läggs till:
+ * - library.service: en timer per metod i serviceklasserna som är annoterade med @Timed
+ * - library.availability.*: tillgänglighetsindexets storlek och lån som det nekat
+ * - library.loans.events.*: händelseloggens kö och skrivna och kastade händelser
+ * - library.loans.archive.*: lånearkivets segmentfiler och lån
+ * Anslutningspoolerna rapporterar via SQLitePoolStats och utlåningarna via LoanMetrics.
+ * Histogramgränserna för SLO-larm sätts med management.metrics.distribution.* i application.properties.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Behövs för att @Timed på serviceklasserna ska mätas
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder availabilityIndexMetrics(AvailabilityIndex availabilityIndex) {
+        return registry -> {
+            Gauge.builder("library.availability.books", availabilityIndex, AvailabilityIndex::size)
+                    .description("Böcker i tillgänglighetsindexet")
+                    .register(registry);
+            Gauge.builder("library.availability.memory", availabilityIndex, AvailabilityIndex::memoryBytes)
+                    .description("Minne som tillgänglighetsindexet använder")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("library.loans.rejected", availabilityIndex, AvailabilityIndex::rejectedLoans)
+                    .description("Lån som nekades för att alla exemplar var utlånade")
+                    .tags("reason", "not_available", "source", "availability_index")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loanEventLogMetrics(LoanEventLog loanEventLog) {
+        return registry -> {
+            Gauge.builder("library.loans.events.queue", loanEventLog, LoanEventLog::queueSize)
+                    .description("Händelser som väntar på att skrivas till händelseloggen")
+                    .register(registry);
+            FunctionCounter.builder("library.loans.events", loanEventLog, LoanEventLog::written)
+                    .description("Händelser som skrivits till händelseloggen")
+                    .tags("outcome", "written")
+                    .register(registry);
+            FunctionCounter.builder("library.loans.events", loanEventLog, LoanEventLog::dropped)
+                    .description("Händelser som kastades för att händelseloggen inte hann med")
+                    .tags("outcome", "dropped")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loanArchiveMetrics(LoanArchive loanArchive) {
+        return registry -> {
+            Gauge.builder("library.loans.archive.segments", loanArchive, LoanArchive::segments)
+                    .description("Segmentfiler i lånearkivet")
+                    .register(registry);
+            Gauge.builder("library.loans.archive.loans", loanArchive, LoanArchive::loans)
+                    .description("Lån som har flyttats till lånearkivet")
+                    .register(registry);
+            Gauge.builder("library.loans.archive.size", loanArchive, LoanArchive::bytes)
+                    .description("Segmentfilernas storlek")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+}
@@ -1,14 +1,22 @@
 package com.example.library_management_v2.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
 import javax.sql.DataSource;
 import java.util.Objects;
+import java.util.concurrent.Semaphore;
 
 @Configuration
 @Profile("!test") // Detta betyder "aktivera bara när 'test' profilen INTE är aktiv"
@@ -17,13 +25,116 @@ public class SQLiteConfig {
     @Autowired
     private Environment env;
 
+    // Poolernas mätvärden, även till Micrometer (/actuator/prometheus) om det finns en MeterRegistry
     @Bean
-    public DataSource dataSource() {
-        final DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(Objects.requireNonNull(env.getProperty("spring.datasource.driver-class-name")));
-        dataSource.setUrl(env.getProperty("spring.datasource.url"));
-        dataSource.setUsername(env.getProperty("spring.datasource.username"));
-        dataSource.setPassword(env.getProperty("spring.datasource.password"));
-        return dataSource;
+    public SQLitePoolStats sqlitePoolStats(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new SQLitePoolStats(meterRegistry.getIfAvailable());
     }
-}
\ No newline at end of file
+
+    /**
+     * Bara en process i taget använder databasfilen (se DatabaseFileLock).
+     * Låset tas innan poolerna öppnar några anslutningar och Flyway migrerar, och släpps efter att de stängts.
+     */
+    @Bean(destroyMethod = "close")
+    public DatabaseFileLock databaseFileLock() {
+        return DatabaseFileLock.acquire(env.getProperty("spring.datasource.url"));
+    }
+
+    /**
+     * SQLite tillåter bara en skrivare åt gången, därför har skrivpoolen exakt en anslutning.
+     * Alla transaktioner som inte är read-only (save, delete, uppdateringar) går hit.
+     */
+    @Bean(destroyMethod = "close")
+    @DependsOn("databaseFileLock")
+    public HikariDataSource sqliteWriterDataSource(SQLitePoolStats sqlitePoolStats) {
+        HikariConfig config = baseConfig("sqlite-writer", sqlitePoolStats);
+        config.setMaximumPoolSize(1);
+        config.setMinimumIdle(1);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Läspoolen används för read-only transaktioner (t.ex. findAll och findBy...).
+     * Med WAL kan läsare köra parallellt med skrivaren utan att blockeras.
+     */
+    @Bean(destroyMethod = "close")
+    @DependsOn("databaseFileLock")
+    public HikariDataSource sqliteReaderDataSource(SQLitePoolStats sqlitePoolStats) {
+        HikariConfig config = baseConfig("sqlite-reader", sqlitePoolStats);
+        config.setMaximumPoolSize(env.getProperty("library.sqlite.pool.max-readers", Integer.class, 8));
+        config.setMinimumIdle(env.getProperty("library.sqlite.pool.min-idle-readers", Integer.class, 2));
+        // Skydd mot att en läsanslutning råkar användas för att skriva
+        config.setConnectionInitSql("PRAGMA query_only = true");
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Den DataSource som JPA använder. Anslutningen hämtas först när första SQL-satsen körs,
+     * och då vet vi om transaktionen är read-only och kan välja läs- eller skrivpoolen.
+     * Med virtuella trådar (spring.threads.virtual.enabled) begränsar semaforer hur många trådar som
+     * samtidigt kan sitta fast i SQLite-drivrutinen. Skrivanslutningen har en egen plats, så att läsningar
+     * (t.ex. en lång export som håller sin anslutning medan klienten laddar ner) aldrig hindrar skrivningar.
+     * Läspoolen får max-concurrent-connections platser plus en per samtidig export (library.export.max-concurrent),
+     * så att exporterna inte heller tränger undan vanliga läsningar.
+     * Ytterst ligger en proxy som mäter varje SQL-sats och loggar de långsamma (SlowQueryListener).
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource sqliteWriterDataSource,
+                                 HikariDataSource sqliteReaderDataSource,
+                                 SlowQueryProperties slowQueryProperties) {
+        DataSource writer = sqliteWriterDataSource;
+        DataSource reader = sqliteReaderDataSource;
+
+        if (env.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            int exports = env.getProperty("library.export.max-concurrent", Integer.class, 2);
+            long timeout = sqliteWriterDataSource.getConnectionTimeout();
+            writer = new ConnectionLimitDataSource(sqliteWriterDataSource, new Semaphore(1, true), timeout);
+            reader = new ConnectionLimitDataSource(sqliteReaderDataSource,
+                    new Semaphore(maxConcurrentConnections() + Math.max(1, exports), true), timeout);
+        }
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writer);
+        dataSource.setReadOnlyDataSource(reader);
+
+        if (!slowQueryProperties.isEnabled()) {
+            return dataSource;
+        }
+        return ProxyDataSourceBuilder.create(dataSource)
+                .name("sqlite")
+                .listener(new SlowQueryListener(slowQueryProperties))
+                .build();
+    }
+
+    // Läsplatser utöver exporterna. Standard: en färre än antalet bärartrådar, så att minst en alltid är
+    // ledig för annat arbete (skrivaren sitter sällan fast i SQLite, en process i taget och WAL)
+    private int maxConcurrentConnections() {
+        int configured = env.getProperty("library.sqlite.virtual-threads.max-concurrent-connections", Integer.class, 0);
+        if (configured > 0) {
+            return configured;
+        }
+        int carriers = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                Runtime.getRuntime().availableProcessors());
+        return Math.max(1, carriers - 1);
+    }
+
+    // Gemensamma inställningar för båda poolerna, inklusive pragmas som sätts när anslutningen öppnas
+    private HikariConfig baseConfig(String poolName, SQLitePoolStats sqlitePoolStats) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setDriverClassName(Objects.requireNonNull(env.getProperty("spring.datasource.driver-class-name")));
+        config.setJdbcUrl(env.getProperty("spring.datasource.url"));
+        config.setUsername(env.getProperty("spring.datasource.username"));
+        config.setPassword(env.getProperty("spring.datasource.password"));
+        config.setConnectionTimeout(env.getProperty("library.sqlite.pool.connection-timeout", Long.class, 30000L));
+        config.setMetricsTrackerFactory(sqlitePoolStats);
+
+        // sqlite-jdbc läser dessa egenskaper och kör motsvarande PRAGMA direkt efter att anslutningen öppnats
+        config.addDataSourceProperty("journal_mode", env.getProperty("library.sqlite.journal-mode", "WAL"));
+        config.addDataSourceProperty("synchronous", env.getProperty("library.sqlite.synchronous", "NORMAL"));
+        config.addDataSourceProperty("busy_timeout", env.getProperty("library.sqlite.busy-timeout", "5000"));
+        config.addDataSourceProperty("cache_size", env.getProperty("library.sqlite.cache-size", "-20000"));
+        config.addDataSourceProperty("mmap_size", env.getProperty("library.sqlite.mmap-size", "268435456"));
+        return config;
+    }
+}
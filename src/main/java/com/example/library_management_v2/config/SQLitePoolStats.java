@@ -0,0 +1,123 @@
+package com.example.library_management_v2.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+
+// Samlar statistik för våra SQLite-pooler (väntetid, användningstid och mättnad)
+// HikariCP anropar trackern varje gång en anslutning lånas ut eller lämnas tillbaka
+// Med en MeterRegistry skickas samma mätvärden också vidare till Micrometer (hikaricp.connections.*),
+// eftersom Spring Boot inte kopplar in sin egen tracker när poolen redan har en
+public class SQLitePoolStats implements MetricsTrackerFactory {
+
+    private final Map<String, PoolTracker> trackers = new ConcurrentHashMap<>();
+    private final MetricsTrackerFactory micrometer;
+
+    public SQLitePoolStats(MeterRegistry meterRegistry) {
+        this.micrometer = meterRegistry != null ? new MicrometerMetricsTrackerFactory(meterRegistry) : null;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        IMetricsTracker delegate = micrometer != null ? micrometer.create(poolName, poolStats) : null;
+        PoolTracker tracker = new PoolTracker(poolStats, delegate);
+        trackers.put(poolName, tracker);
+        return tracker;
+    }
+
+    /**
+     * Ögonblicksbild av alla pooler
+     * Returnera en map per poolnamn med räknare och aktuella värden
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        trackers.forEach((poolName, tracker) -> result.put(poolName, tracker.snapshot()));
+        return result;
+    }
+
+    // En tracker per pool, trådsäker eftersom många trådar lånar anslutningar samtidigt
+    private static class PoolTracker implements IMetricsTracker {
+
+        private final PoolStats poolStats;
+        private final IMetricsTracker delegate;
+        private final LongAdder acquired = new LongAdder();
+        private final LongAdder acquireNanos = new LongAdder();
+        private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+        private final LongAdder usageMillis = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        PoolTracker(PoolStats poolStats, IMetricsTracker delegate) {
+            this.poolStats = poolStats;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            if (delegate != null) {
+                delegate.recordConnectionCreatedMillis(connectionCreatedMillis);
+            }
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquired.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+            if (delegate != null) {
+                delegate.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+            }
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageMillis.add(elapsedBorrowedMillis);
+            if (delegate != null) {
+                delegate.recordConnectionUsageMillis(elapsedBorrowedMillis);
+            }
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+            if (delegate != null) {
+                delegate.recordConnectionTimeout();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long count = acquired.sum();
+            int active = poolStats.getActiveConnections();
+            int max = poolStats.getMaxConnections();
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("active", active);
+            stats.put("idle", poolStats.getIdleConnections());
+            stats.put("total", poolStats.getTotalConnections());
+            stats.put("max", max);
+            stats.put("pending_threads", poolStats.getPendingThreads());
+            // Mättnad = andel av poolen som är utlånad just nu
+            stats.put("saturation", max > 0 ? (double) active / max : 0.0);
+            stats.put("acquired", count);
+            stats.put("avg_wait_ms", count > 0 ? acquireNanos.sum() / 1_000_000.0 / count : 0.0);
+            stats.put("max_wait_ms", maxAcquireNanos.get() / 1_000_000.0);
+            stats.put("avg_usage_ms", count > 0 ? (double) usageMillis.sum() / count : 0.0);
+            stats.put("timeouts", timeouts.sum());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.library_management_v2.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Aktiverar @Scheduled, t.ex. den nattliga sökningen efter försenade lån (OverdueLoanService).
+ * Med spring.threads.virtual.enabled=true körs jobben på virtuella trådar.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,54 @@
+package com.example.library_management_v2.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Träffar och missar i Hibernates andranivåcache (regionerna i hibernate-cache.conf) och frågecachen,
+ * från Hibernates statistik (hibernate.generate_statistics). Samma värden exporteras av Micrometer
+ * som hibernate.second.level.cache.requests och hibernate.cache.query.requests.
+ */
+@Component
+public class SecondLevelCacheStats {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public Map<String, Object> snapshot() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String name : new TreeSet<>(List.of(statistics.getSecondLevelCacheRegionNames()))) {
+            // Både entitetsregionerna och frågecachens regioner, null för tidsstämplarna
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null) {
+                regions.put(name, values(region.getHitCount(), region.getMissCount(), region.getPutCount()));
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("regions", regions);
+        result.put("query_cache", values(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount()));
+        return result;
+    }
+
+    private static Map<String, Object> values(long hits, long misses, long puts) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("hits", hits);
+        values.put("misses", misses);
+        values.put("puts", puts);
+        values.put("hit_rate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return values;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.library_management_v2.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loggar SQL-satser som tog minst library.sql.slow-query.threshold, och ett stickprov
+ * (sample-rate) av de snabbare, med parametrar, tid och servicemetoden som körde satsen.
+ * Ersätter spring.jpa.show-sql, som skrev ut varje sats på förfrågans tråd.
+ *
+ * Anropas efter varje sats av proxyn runt DataSource (SQLiteConfig), även JDBC-batcharna från
+ * JdbcTemplate. Snabba satser som inte väljs ut kostar bara en jämförelse. Loggern skriver via
+ * en asynkron appender med begränsad kö (logback-spring.xml), så en förfrågan väntar aldrig på loggen.
+ * Värdet för users.password skrivs aldrig ut.
+ */
+public class SlowQueryListener implements QueryExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryListener.class);
+
+    static final String REDACTED = "***";
+
+    // Högst så många rader av en batch och tecken av ett textvärde skrivs ut
+    private static final int MAX_BATCH_ROWS = 5;
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private static final String APPLICATION_PACKAGE = "com.example.library_management_v2.";
+
+    private static final Pattern INSERT_COLUMNS =
+            Pattern.compile("insert\\s+into\\s+\\S+\\s*\\(([^)]*)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PASSWORD_PARAMETER =
+            Pattern.compile("\\bpassword\\s*=\\s*\\?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PASSWORD_COMPARISON =
+            Pattern.compile("\\bpassword\\s*(=|<>|!=|<|>|like\\b|in\\b)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final SlowQueryProperties properties;
+
+    public SlowQueryListener(SlowQueryProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsed = execInfo.getElapsedTime();
+        boolean slow = elapsed >= properties.getThreshold().toMillis();
+        if (slow) {
+            if (log.isWarnEnabled()) {
+                log.warn(message("slow", execInfo, queryInfoList, caller()));
+            }
+        } else if (sampled() && log.isInfoEnabled()) {
+            log.info(message("sampled", execInfo, queryInfoList, caller()));
+        }
+    }
+
+    private boolean sampled() {
+        double sampleRate = properties.getSampleRate();
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    // En rad per sats: [slow 312 ms] LoanService.createLoan: select ... | [1=5, 2=2024-01-01]
+    static String message(String kind, ExecutionInfo execInfo, List<QueryInfo> queryInfoList, String caller) {
+        StringBuilder message = new StringBuilder()
+                .append('[').append(kind).append(' ').append(execInfo.getElapsedTime()).append(" ms");
+        if (execInfo.isBatch()) {
+            message.append(", batch ").append(execInfo.getBatchSize());
+        }
+        if (!execInfo.isSuccess()) {
+            message.append(", failed");
+        }
+        message.append("] ").append(caller).append(':');
+
+        for (QueryInfo queryInfo : queryInfoList) {
+            String sql = WHITESPACE.matcher(queryInfo.getQuery()).replaceAll(" ").trim();
+            message.append(' ').append(sql);
+
+            Set<Integer> redacted = passwordParameters(sql);
+            List<List<ParameterSetOperation>> rows = queryInfo.getParametersList();
+            for (int i = 0; i < rows.size() && i < MAX_BATCH_ROWS; i++) {
+                message.append(i == 0 ? " | " : ", ").append(parameters(rows.get(i), redacted));
+            }
+            if (rows.size() > MAX_BATCH_ROWS) {
+                message.append(" ... (").append(rows.size() - MAX_BATCH_ROWS).append(" rader till)");
+            }
+        }
+        return message.toString();
+    }
+
+    /**
+     * Parameterpositioner (från 1) som hör till kolumnen password, eller null om satsen jämför
+     * password på ett sätt vars position inte går att avgöra (då döljs alla parametrar).
+     * Att password bara läses (select u1_0.password, ...) döljer ingenting.
+     */
+    static Set<Integer> passwordParameters(String sql) {
+        if (!sql.toLowerCase(Locale.ROOT).contains("password")) {
+            return Set.of();
+        }
+        Set<Integer> positions = new HashSet<>();
+
+        // insert into users (email,first_name,last_name,password,...) values (?,?,?,?,...)
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        if (insert.find()) {
+            String[] columns = insert.group(1).split(",");
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].trim().equalsIgnoreCase("password")) {
+                    positions.add(i + 1);
+                }
+            }
+        }
+
+        // update users set password=? ... eller where password=?
+        Matcher assignment = PASSWORD_PARAMETER.matcher(sql);
+        while (assignment.find()) {
+            positions.add((int) sql.substring(0, assignment.end()).chars().filter(c -> c == '?').count());
+        }
+        if (positions.isEmpty() && PASSWORD_COMPARISON.matcher(sql).find()) {
+            return null;
+        }
+        return positions;
+    }
+
+    private static String parameters(List<ParameterSetOperation> operations, Set<Integer> redacted) {
+        List<ParameterSetOperation> sorted = new ArrayList<>(operations);
+        sorted.sort(Comparator.comparing(operation -> operation.getArgs()[0] instanceof Integer index ? index : 0));
+
+        List<String> values = new ArrayList<>();
+        for (ParameterSetOperation operation : sorted) {
+            Object[] args = operation.getArgs();
+            Object key = args[0];
+            boolean hidden = redacted == null || (key instanceof Integer index && redacted.contains(index));
+            Object value = ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2
+                    ? null : args[1];
+            values.add(key + "=" + (hidden ? REDACTED : format(value)));
+        }
+        return values.toString();
+    }
+
+    private static String format(Object value) {
+        if (value instanceof byte[] bytes) {
+            return "<" + bytes.length + " byte>";
+        }
+        String text = String.valueOf(value);
+        return text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) + "..." : text;
+    }
+
+    // Närmaste servicemetod, t.ex. LoanService.createLoan, annars närmaste metod i applikationen
+    // (inserts som Hibernate skriver vid commit körs efter servicemetoden, då blir det controllern)
+    // Stacken gås bara igenom för satser som faktiskt loggas
+    private static String caller() {
+        List<StackWalker.StackFrame> frames = StackWalker.getInstance().walk(stream -> stream
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE))
+                .filter(frame -> !frame.getClassName().startsWith(APPLICATION_PACKAGE + "config.")
+                        && !frame.getClassName().contains("$$"))
+                .toList());
+        Optional<StackWalker.StackFrame> caller = frames.stream()
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE + "service."))
+                .findFirst()
+                .or(() -> frames.stream().findFirst());
+        return caller.map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                + "." + frame.getMethodName()).orElse("-");
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.library_management_v2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Logg över långsamma SQL-satser (library.sql.slow-query.*), skrivs av SlowQueryListener.
+ *
+ *   enabled=true          logga via en proxy runt DataSource (false = ingen proxy alls)
+ *   threshold=200ms       satser som tar minst så lång tid loggas alltid
+ *   sample-rate=0.0       andel av de snabbare satserna som loggas ändå (0.01 = var hundrade)
+ */
+@Component
+@ConfigurationProperties(prefix = "library.sql.slow-query")
+public class SlowQueryProperties {
+
+    private boolean enabled = true;
+
+    private Duration threshold = Duration.ofMillis(200);
+
+    private double sampleRate = 0.0;
+
+    // Getters och setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+}
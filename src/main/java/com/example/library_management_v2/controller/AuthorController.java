@@ -2,6 +2,7 @@ package com.example.library_management_v2.controller;
 
 import com.example.library_management_v2.dto.AuthorDTO;
 import com.example.library_management_v2.dto.CreateAuthorDTO;
+import com.example.library_management_v2.dto.CursorPageDTO;
 import com.example.library_management_v2.exception.AuthorNotFoundException;
 import com.example.library_management_v2.service.AuthorService;
 import jakarta.validation.Valid;
@@ -28,6 +29,14 @@ public class AuthorController {
         return authorService.getAllAuthors();
     }
 
+    // Hämta författare sida för sida (cursor från föregående sida, frivillig sidstorlek)
+    @GetMapping("/page")
+    public CursorPageDTO<AuthorDTO> getAuthorsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return authorService.getAuthorsPage(cursor, size);
+    }
+
     // Hitta författare via efternamn
     @GetMapping("/name/{lastName}")
     public ResponseEntity<List<AuthorDTO>> getAuthorsByLastName(@PathVariable String lastName) {
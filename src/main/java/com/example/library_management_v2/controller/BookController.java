@@ -2,11 +2,27 @@ package com.example.library_management_v2.controller;
 
 import com.example.library_management_v2.dto.BookDTO;
 import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.dto.CreateHoldDTO;
+import com.example.library_management_v2.dto.CursorPageDTO;
+import com.example.library_management_v2.dto.HoldDTO;
+import com.example.library_management_v2.dto.ImportJobDTO;
 import com.example.library_management_v2.service.BookService;
+import com.example.library_management_v2.service.CatalogImportService;
+import com.example.library_management_v2.service.ExportService;
+import com.example.library_management_v2.service.HoldService;
+import jakarta.validation.Valid;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -16,6 +32,18 @@ public class BookController {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Hämtar alla böcker
      * Returnera en lista med alla böcker som BookWithDetailsDTO
@@ -25,17 +53,67 @@ public class BookController {
         return bookService.getAllBooks();
     }
 
+    /**
+     * Hämtar böcker sida för sida
+     * cursor Token från föregående sida (frivillig, utelämnas för första sidan)
+     * size Antal böcker per sida (frivillig)
+     * Vi får en sida med böcker och nextCursor för att hämta nästa sida
+     */
+    @GetMapping("/page")
+    public CursorPageDTO<BookWithDetailsDTO> getBooksPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return bookService.getBooksPage(cursor, size);
+    }
+
+    /**
+     * Strömmar alla böcker som NDJSON (en JSON-rad per bok)
+     * Raderna skrivs till svaret direkt när de läses från databasen
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBooks() {
+        StreamingResponseBody body = outputStream -> {
+            bookService.streamBooks(book -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(book));
+                    outputStream.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Exporterar hela katalogen för rapporter, strömmad direkt från databasen
+     * format "csv" (standard) eller "ndjson"
+     * gzip true för att komprimera svaret (frivillig)
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(required = false) String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return ExportResponses.stream("books", format, gzip, exportService::exportBooks);
+    }
+
     /**
      * Söker böcker baserat på titel eller författare
      * title Titeln att söka efter (frivillig)
-     * author Författarens efternamn att söka efter (frivillig)
-     * Vi får en lista med matchande böcker
+     * author Författarens efternamn att söka efter (frivillig), förnamnet matchas inte
+     * q Fritext som söks i titeln och i författarens för- och efternamn (frivillig)
+     * Vi får en lista med matchande böcker, de mest relevanta först
      */
     @GetMapping("/search")
     public List<BookWithDetailsDTO> searchBooks(
             @RequestParam(required = false) String title,
-            @RequestParam(required = false) String author) {
-        return bookService.searchBooks(title, author);
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String q) {
+        return bookService.searchBooks(title, author, q);
     }
 
     /**
@@ -48,4 +126,65 @@ public class BookController {
     public BookDTO createBook(@RequestBody BookDTO bookDTO) {
         return bookService.createBook(bookDTO);
     }
-}
\ No newline at end of file
+
+    /**
+     * Importerar böcker och författare från CSV eller JSONL i request body
+     * Filen läses medan den tas emot, så den kan vara hur stor som helst
+     * format "csv" eller "jsonl" (frivillig, annars från Content-Type)
+     * jobId Jobbets ID (frivillig), ange det för att kunna följa importen med GET /books/import/{jobId}
+     *       och för att fortsätta efter ett avbrott genom att skicka samma fil med samma jobId
+     * Vi får jobbets status när hela filen är importerad
+     */
+    @PostMapping("/import")
+    public ImportJobDTO importBooks(
+            InputStream body,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String jobId,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType) {
+        return catalogImportService.importBooks(body, format != null ? format : contentType, jobId, "http");
+    }
+
+    /**
+     * Hämtar status för en import, även medan den pågår
+     * jobId Jobbets ID
+     */
+    @GetMapping("/import/{jobId}")
+    public ImportJobDTO getImportJob(@PathVariable String jobId) {
+        return catalogImportService.getImportJob(jobId);
+    }
+
+    /**
+     * Ställer en användare i kön till en bok som inte har några lediga exemplar
+     * När ett exemplar lämnas tillbaka reserveras det åt den första i kön, som sedan lånar det som vanligt
+     * id Bokens ID
+     * createHoldDTO Användarens ID
+     * Vi får köplatsen med platsen i kön
+     */
+    @PostMapping("/{id}/holds")
+    @ResponseStatus(HttpStatus.CREATED)
+    public HoldDTO placeHold(@PathVariable Long id, @Valid @RequestBody CreateHoldDTO createHoldDTO) {
+        return holdService.placeHold(id, createHoldDTO);
+    }
+
+    /**
+     * Hämtar en köplats med aktuell plats i kön (status READY = ett exemplar är reserverat)
+     * id Bokens ID
+     * holdId Köplatsens ID
+     */
+    @GetMapping("/{id}/holds/{holdId}")
+    public HoldDTO getHold(@PathVariable Long id, @PathVariable Long holdId) {
+        return holdService.getHold(id, holdId);
+    }
+
+    /**
+     * Tar bort en användare ur kön till en bok
+     * Har användaren redan ett reserverat exemplar går det till nästa i kön, eller tillbaka till hyllan
+     * id Bokens ID
+     * holdId Köplatsens ID
+     * Vi får köplatsen med status CANCELLED
+     */
+    @DeleteMapping("/{id}/holds/{holdId}")
+    public HoldDTO cancelHold(@PathVariable Long id, @PathVariable Long holdId) {
+        return holdService.cancelHold(id, holdId);
+    }
+}
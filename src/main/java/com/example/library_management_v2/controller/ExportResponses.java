@@ -0,0 +1,51 @@
+package com.example.library_management_v2.controller;
+
+import com.example.library_management_v2.service.ExportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Gemensamt för exportendpoints: format, filnamn och gzip
+final class ExportResponses {
+
+    // Skriver exporten till en ström, t.ex. exportService.exportBooks
+    interface Export {
+        void writeTo(String format, OutputStream output) throws IOException;
+    }
+
+    private ExportResponses() {}
+
+    /**
+     * Bygger ett svar som strömmas medan raderna läses från databasen
+     * Formatet kontrolleras innan svaret börjar skickas, så att ett fel ger 400 och inte en halv fil
+     * gzip Komprimera svaret (Content-Encoding: gzip, t.ex. curl --compressed)
+     */
+    static ResponseEntity<StreamingResponseBody> stream(String name, String format, boolean gzip, Export export) {
+        String exportFormat = ExportService.normalizeFormat(format);
+
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(outputStream, 64 * 1024);
+                export.writeTo(exportFormat, compressed);
+                compressed.finish();
+            } else {
+                export.writeTo(exportFormat, outputStream);
+            }
+            outputStream.flush();
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(ExportService.contentType(exportFormat))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(name + "." + exportFormat).build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+}
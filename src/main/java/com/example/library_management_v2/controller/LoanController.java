@@ -1,18 +1,34 @@
 package com.example.library_management_v2.controller;
 
 //  Vi skapar en controller för att hantera lån-relaterade endpoints:
+import com.example.library_management_v2.dto.BatchLoanResultDTO;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
 import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.CursorPageDTO;
+import com.example.library_management_v2.dto.LoanArchiveResultDTO;
 import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.OverdueLoanDTO;
+import com.example.library_management_v2.dto.OverdueSweepResultDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
 import com.example.library_management_v2.exception.UserNotFoundException;
+import com.example.library_management_v2.service.AvailabilityIndex;
+import com.example.library_management_v2.service.ExportService;
+import com.example.library_management_v2.service.LoanArchiveService;
 import com.example.library_management_v2.service.LoanService;
+import com.example.library_management_v2.service.OverdueLoanService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 
 
@@ -25,6 +41,18 @@ public class LoanController {
     @Autowired
     private LoanService loanService;
 
+    @Autowired
+    private OverdueLoanService overdueLoanService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private LoanArchiveService loanArchiveService;
+
 
     // Hämta alla lån för en specifik användare
     @GetMapping("/{userId}/loans")
@@ -44,9 +72,93 @@ public class LoanController {
     @PostMapping("/loans")
     @ResponseStatus(HttpStatus.CREATED)
     public LoanDTO createLoan(@Valid @RequestBody CreateLoanDTO createLoanDTO) {
+        // Är alla exemplar utlånade nekas lånet direkt från tillgänglighetsindexet, utan databastransaktion
+        availabilityIndex.checkAvailable(createLoanDTO.getBookId());
         return loanService.createLoan(createLoanDTO);
     }
 
+    // Låna flera böcker på en gång, resultatet redovisas per bok
+    @PostMapping("/loans/batch")
+    public BatchLoanResultDTO createLoans(@Valid @RequestBody CreateBatchLoanDTO createBatchLoanDTO) {
+        List<Long> bookIds = createBatchLoanDTO.getBookIds();
+        loanService.checkBatchSize(bookIds.size());
+
+        // Böcker där alla exemplar är utlånade nekas direkt från tillgänglighetsindexet, och bara resten
+        // lånas ut i databastransaktionen. Finns inget kvar öppnas ingen transaktion alls
+        Set<Long> unavailable = availabilityIndex.unavailable(bookIds);
+        if (unavailable.isEmpty()) {
+            return loanService.createLoans(createBatchLoanDTO);
+        }
+
+        List<Long> remaining = bookIds.stream().filter(bookId -> !unavailable.contains(bookId)).toList();
+        Iterator<BatchLoanResultDTO.Item> loaned = Collections.emptyIterator();
+        if (!remaining.isEmpty()) {
+            CreateBatchLoanDTO remainingLoans = new CreateBatchLoanDTO();
+            remainingLoans.setUserId(createBatchLoanDTO.getUserId());
+            remainingLoans.setBookIds(remaining);
+            loaned = loanService.createLoans(remainingLoans).getItems().iterator();
+        }
+
+        // Tjänsten svarar med ett resultat per bok-ID i samma ordning, så resultaten fogas ihop i förfrågans ordning
+        List<BatchLoanResultDTO.Item> items = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            items.add(unavailable.contains(bookId)
+                    ? BatchLoanResultDTO.Item.failure(bookId, AvailabilityIndex.notAvailableMessage(bookId))
+                    : loaned.next());
+        }
+        return new BatchLoanResultDTO(items);
+    }
+
+    // Lämna tillbaka flera lån på en gång, resultatet redovisas per lån
+    @PutMapping("/loans/return/batch")
+    public BatchLoanResultDTO returnBooks(@Valid @RequestBody ReturnBatchLoanDTO returnBatchLoanDTO) {
+        return loanService.returnBooks(returnBatchLoanDTO);
+    }
+
+    /**
+     * Hämtar försenade lån, de som förföll först kommer först
+     * minDaysOverdue Minst så många dagar försenat (frivillig, standard 1)
+     * maxDaysOverdue Högst så många dagar försenat (frivillig)
+     * cursor Token från föregående sida (frivillig)
+     * size Antal lån per sida (frivillig)
+     */
+    @GetMapping("/loans/overdue")
+    public CursorPageDTO<OverdueLoanDTO> getOverdueLoans(
+            @RequestParam(required = false) Integer minDaysOverdue,
+            @RequestParam(required = false) Integer maxDaysOverdue,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return overdueLoanService.getOverdueLoans(minDaysOverdue, maxDaysOverdue, cursor, size);
+    }
+
+    /**
+     * Exporterar alla lån för rapporter, strömmade direkt från databasen
+     * Arkiverade lån (POST /loans/archive) ingår inte
+     * userId Bara en användares lån (frivillig)
+     * format "csv" (standard) eller "ndjson"
+     * gzip true för att komprimera svaret (frivillig)
+     */
+    @GetMapping("/loans/export")
+    public ResponseEntity<StreamingResponseBody> exportLoans(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return ExportResponses.stream("loans", format, gzip,
+                (exportFormat, output) -> exportService.exportLoans(userId, exportFormat, output));
+    }
+
+    // Kör sökningen efter nya försenade lån direkt, i stället för att vänta på det schemalagda jobbet
+    @PostMapping("/loans/overdue/sweep")
+    public OverdueSweepResultDTO sweepOverdueLoans() {
+        return overdueLoanService.sweep();
+    }
+
+    // Flyttar gamla återlämnade lån till lånearkivet direkt, i stället för att vänta på det schemalagda jobbet
+    @PostMapping("/loans/archive")
+    public LoanArchiveResultDTO archiveLoans() {
+        return loanArchiveService.compact();
+    }
+
     // Att lämna tillbaka en book
     @PutMapping("/loans/{id}/return")
     public ResponseEntity<LoanDTO> returnBook(@PathVariable("id") Long loanId) {
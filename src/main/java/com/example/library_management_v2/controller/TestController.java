@@ -1,6 +1,12 @@
 package com.example.library_management_v2.controller;
 
+import com.example.library_management_v2.config.SQLitePoolStats;
+import com.example.library_management_v2.config.SecondLevelCacheStats;
 import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.service.AvailabilityIndex;
+import com.example.library_management_v2.service.CatalogCache;
+import com.example.library_management_v2.service.LoanArchive;
+import com.example.library_management_v2.service.LoanEventLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,6 +20,25 @@ public class TestController {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SecondLevelCacheStats secondLevelCacheStats;
+
+    @Autowired
+    private LoanEventLog loanEventLog;
+
+    @Autowired
+    private LoanArchive loanArchive;
+
+    // Finns bara när SQLite-konfigurationen är aktiv (inte i test-profilen)
+    @Autowired(required = false)
+    private SQLitePoolStats sqlitePoolStats;
+
     @GetMapping("/test")
     public String test() {
         return "Spring Boot is running!";
@@ -26,4 +51,44 @@ public class TestController {
         result.put("book_count", bookRepository.count());
         return result;
     }
+
+    // Statistik för anslutningspoolerna: väntetid, mättnad och timeouts
+    @GetMapping("/test/pool")
+    public Map<String, Object> testPool() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("pools", sqlitePoolStats != null ? sqlitePoolStats.snapshot() : Map.of());
+        return result;
+    }
+
+    // Statistik för katalogcacharna: storlek, träffar, missar och utträngda poster
+    @GetMapping("/test/cache")
+    public Map<String, Object> testCache() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("caches", catalogCache.snapshot());
+        return result;
+    }
+
+    // Hibernates andranivåcache och frågecache: träffar, missar och träffgrad per region
+    @GetMapping("/test/second-level-cache")
+    public Map<String, Object> testSecondLevelCache() {
+        return secondLevelCacheStats.snapshot();
+    }
+
+    // Händelseloggen för lån: köns storlek och antal skrivna och kastade händelser
+    @GetMapping("/test/loan-events")
+    public Map<String, Object> testLoanEvents() {
+        return loanEventLog.snapshot();
+    }
+
+    // Lånearkivet: antal segmentfiler, arkiverade lån och filernas storlek
+    @GetMapping("/test/loan-archive")
+    public Map<String, Object> testLoanArchive() {
+        return loanArchive.snapshot();
+    }
+
+    // Tillgänglighetsindexet: antal böcker, minne per bok och lån som nekades utan databasen
+    @GetMapping("/test/availability")
+    public Map<String, Object> testAvailability() {
+        return availabilityIndex.snapshot();
+    }
 }
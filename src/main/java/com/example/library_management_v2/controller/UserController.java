@@ -2,8 +2,10 @@
 package com.example.library_management_v2.controller;
 
 import com.example.library_management_v2.dto.CreateUserDTO;
+import com.example.library_management_v2.dto.LoanSummaryDTO;
 import com.example.library_management_v2.dto.UserDTO;
 import com.example.library_management_v2.exception.UserNotFoundException;
+import com.example.library_management_v2.service.UserLoanSummaryService;
 import com.example.library_management_v2.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +20,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+
     /**
      * Hämta användare via email
      * email E-postadressen att söka efter
@@ -34,6 +39,16 @@ public class UserController {
         }
     }
 
+    /**
+     * Hämta sammanställningen av en användares lån (aktiva, försenade, förlängda och totalt)
+     * id Användarens ID
+     * Returnera sammanställningen som LoanSummaryDTO
+     */
+    @GetMapping("/{id}/loan-summary")
+    public LoanSummaryDTO getLoanSummary(@PathVariable Long id) {
+        return userLoanSummaryService.getLoanSummary(id);
+    }
+
     // Skapa en ny användare
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -0,0 +1,105 @@
+package com.example.library_management_v2.dto;
+
+// Resultatet av en batch-utlåning eller batch-återlämning, med ett resultat per rad i förfrågan
+
+import java.util.List;
+
+public class BatchLoanResultDTO {
+
+    private List<Item> items;
+    private int succeeded;
+    private int failed;
+
+    // Tom konstruktor
+    public BatchLoanResultDTO() {}
+
+    public BatchLoanResultDTO(List<Item> items) {
+        this.items = items;
+        this.succeeded = (int) items.stream().filter(Item::isSuccess).count();
+        this.failed = items.size() - succeeded;
+    }
+
+    // Getters och setters
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    // Resultatet för en enskild bok (vid utlåning) eller ett enskilt lån (vid återlämning)
+    public static class Item {
+
+        private Long id;
+        private boolean success;
+        private LoanDTO loan;
+        private String error;
+
+        public Item() {}
+
+        public static Item success(Long id, LoanDTO loan) {
+            Item item = new Item();
+            item.id = id;
+            item.success = true;
+            item.loan = loan;
+            return item;
+        }
+
+        public static Item failure(Long id, String error) {
+            Item item = new Item();
+            item.id = id;
+            item.success = false;
+            item.error = error;
+            return item;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public void setSuccess(boolean success) {
+            this.success = success;
+        }
+
+        public LoanDTO getLoan() {
+            return loan;
+        }
+
+        public void setLoan(LoanDTO loan) {
+            this.loan = loan;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class BookDTO {
     private Integer availableCopies;
     private Integer totalCopies;
     private Long authorId;
+    private String category;
 
     // Konstruktor
     public BookDTO() {}
@@ -61,4 +62,12 @@ public class BookDTO {
     public void setAuthorId(Long authorId) {
         this.authorId = authorId;
     }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
 }
\ No newline at end of file
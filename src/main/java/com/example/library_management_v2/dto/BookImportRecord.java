@@ -0,0 +1,84 @@
+package com.example.library_management_v2.dto;
+
+// En post i en katalogimport: en rad i CSV-filen (kolumnnamnen i rubrikraden) eller ett JSON-objekt per rad
+// Författaren anges med namn och födelseår och slås upp eller skapas vid importen
+
+public class BookImportRecord {
+
+    private String title;
+    private Integer publicationYear;
+    private Integer availableCopies;
+    private Integer totalCopies;
+    private String authorFirstName;
+    private String authorLastName;
+    private Integer authorBirthYear;
+    private String authorNationality;
+
+    // Tom konstruktor
+    public BookImportRecord() {}
+
+    // Getters och setters
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Integer getPublicationYear() {
+        return publicationYear;
+    }
+
+    public void setPublicationYear(Integer publicationYear) {
+        this.publicationYear = publicationYear;
+    }
+
+    public Integer getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public void setAvailableCopies(Integer availableCopies) {
+        this.availableCopies = availableCopies;
+    }
+
+    public Integer getTotalCopies() {
+        return totalCopies;
+    }
+
+    public void setTotalCopies(Integer totalCopies) {
+        this.totalCopies = totalCopies;
+    }
+
+    public String getAuthorFirstName() {
+        return authorFirstName;
+    }
+
+    public void setAuthorFirstName(String authorFirstName) {
+        this.authorFirstName = authorFirstName;
+    }
+
+    public String getAuthorLastName() {
+        return authorLastName;
+    }
+
+    public void setAuthorLastName(String authorLastName) {
+        this.authorLastName = authorLastName;
+    }
+
+    public Integer getAuthorBirthYear() {
+        return authorBirthYear;
+    }
+
+    public void setAuthorBirthYear(Integer authorBirthYear) {
+        this.authorBirthYear = authorBirthYear;
+    }
+
+    public String getAuthorNationality() {
+        return authorNationality;
+    }
+
+    public void setAuthorNationality(String authorNationality) {
+        this.authorNationality = authorNationality;
+    }
+}
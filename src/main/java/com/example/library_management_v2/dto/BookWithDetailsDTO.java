@@ -15,6 +15,18 @@ public class BookWithDetailsDTO {
     // Konstruktor
     public BookWithDetailsDTO() {}
 
+    // Konstruktor som används av JPQL-projektionen i BookRepository (bok + författare i en SQL-sats)
+    public BookWithDetailsDTO(Long id, String title, Integer publicationYear, Integer availableCopies,
+                              Integer totalCopies, String authorFirstName, String authorLastName) {
+        this.id = id;
+        this.title = title;
+        this.publicationYear = publicationYear;
+        this.availableCopies = availableCopies;
+        this.totalCopies = totalCopies;
+        this.authorFirstName = authorFirstName;
+        this.authorLastName = authorLastName;
+    }
+
     // Getters och setters
     public Long getId() {
         return id;
@@ -0,0 +1,23 @@
+package com.example.library_management_v2.dto;
+
+// En DTO för att ta emot indata när en användare ställer sig i kön till en bok (POST /books/{id}/holds)
+
+import jakarta.validation.constraints.NotNull;
+
+public class CreateHoldDTO {
+
+    @NotNull(message = "Användar-ID måste anges")
+    private Long userId;
+
+    // Tom konstruktor
+    public CreateHoldDTO() {}
+
+    // Getters och setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.library_management_v2.dto;
+
+// En sida med resultat vid cursor-baserad paginering
+// nextCursor är en ogenomskinlig token som skickas med för att hämta nästa sida (null = sista sidan)
+
+import java.util.List;
+
+public class CursorPageDTO<T> {
+
+    private List<T> items;
+    private int size;
+    private String nextCursor;
+
+    // Tom konstruktor
+    public CursorPageDTO() {}
+
+    public CursorPageDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.size = items.size();
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters och setters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
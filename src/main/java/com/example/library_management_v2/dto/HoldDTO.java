@@ -0,0 +1,77 @@
+package com.example.library_management_v2.dto;
+
+// En köplats till en bok
+// position är platsen i kön (1 = först) och sätts bara medan användaren står i kön (status WAITING)
+
+import java.time.LocalDateTime;
+
+public class HoldDTO {
+
+    private Long id;
+    private Long bookId;
+    private Long userId;
+    private String status;
+    private Long position;
+    private LocalDateTime createdAt;
+    private LocalDateTime readyAt;
+
+    // Tom konstruktor
+    public HoldDTO() {}
+
+    // Getters och setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getPosition() {
+        return position;
+    }
+
+    public void setPosition(Long position) {
+        this.position = position;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getReadyAt() {
+        return readyAt;
+    }
+
+    public void setReadyAt(LocalDateTime readyAt) {
+        this.readyAt = readyAt;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.library_management_v2.dto;
+
+// Status för en katalogimport, för att följa en pågående import eller se hur en avslutad gick
+// Samma jobId i en ny import fortsätter efter recordsProcessed poster
+
+import java.time.LocalDateTime;
+
+public class ImportJobDTO {
+
+    private String jobId;
+    private String source;
+    private String format;
+    private String status;
+    private long recordsProcessed;
+    private long recordsRejected;
+    private long booksCreated;
+    private long authorsCreated;
+    private String lastError;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    // Poster per sekund i den senaste körningen
+    private double recordsPerSecond;
+
+    // Tom konstruktor
+    public ImportJobDTO() {}
+
+    // Getters och setters
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public long getRecordsProcessed() {
+        return recordsProcessed;
+    }
+
+    public void setRecordsProcessed(long recordsProcessed) {
+        this.recordsProcessed = recordsProcessed;
+    }
+
+    public long getRecordsRejected() {
+        return recordsRejected;
+    }
+
+    public void setRecordsRejected(long recordsRejected) {
+        this.recordsRejected = recordsRejected;
+    }
+
+    public long getBooksCreated() {
+        return booksCreated;
+    }
+
+    public void setBooksCreated(long booksCreated) {
+        this.booksCreated = booksCreated;
+    }
+
+    public long getAuthorsCreated() {
+        return authorsCreated;
+    }
+
+    public void setAuthorsCreated(long authorsCreated) {
+        this.authorsCreated = authorsCreated;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+}
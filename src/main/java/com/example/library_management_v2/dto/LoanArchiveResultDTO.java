@@ -0,0 +1,47 @@
+package com.example.library_management_v2.dto;
+
+// Resultatet av en flytt av gamla lån till lånearkivet
+// Lån som återlämnades före returnedBefore har flyttats, till så många nya segmentfiler
+
+import java.time.LocalDate;
+
+public class LoanArchiveResultDTO {
+
+    private LocalDate returnedBefore;
+    private int archived;
+    private int segments;
+
+    // Tom konstruktor
+    public LoanArchiveResultDTO() {}
+
+    public LoanArchiveResultDTO(LocalDate returnedBefore, int archived, int segments) {
+        this.returnedBefore = returnedBefore;
+        this.archived = archived;
+        this.segments = segments;
+    }
+
+    // Getters och setters
+    public LocalDate getReturnedBefore() {
+        return returnedBefore;
+    }
+
+    public void setReturnedBefore(LocalDate returnedBefore) {
+        this.returnedBefore = returnedBefore;
+    }
+
+    public int getArchived() {
+        return archived;
+    }
+
+    public void setArchived(int archived) {
+        this.archived = archived;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+}
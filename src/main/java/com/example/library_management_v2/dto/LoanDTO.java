@@ -25,6 +25,26 @@ public class LoanDTO {
     public LoanDTO() {
     }
 
+    // Konstruktor som används av JPQL-projektionen i LoanRepository (lån, bok och författare i en SQL-sats)
+    // overdue räknas ut i SQL, active och extended följer direkt av datumen
+    public LoanDTO(Long id, Long userId, Long bookId, String bookTitle, String authorFirstName,
+                   String authorLastName, LocalDate borrowedDate, LocalDate dueDate, LocalDate returnedDate,
+                   Boolean overdue) {
+        this.id = id;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.bookTitle = bookTitle;
+        // Boken kan sakna författare (LEFT JOIN), då är båda namnen null
+        this.authorName = authorLastName != null ? authorFirstName + " " + authorLastName : null;
+        this.borrowedDate = borrowedDate;
+        this.dueDate = dueDate;
+        this.returnedDate = returnedDate;
+        this.active = returnedDate == null;
+        this.overdue = Boolean.TRUE.equals(overdue);
+        // Samma regel som Loan.isExtended
+        this.extended = borrowedDate != null && dueDate != null && dueDate.isAfter(borrowedDate.plusDays(14));
+    }
+
 
     public Long getId() {
         return id;
@@ -0,0 +1,65 @@
+package com.example.library_management_v2.dto;
+
+// Sammanställning av en användares lån för GET /users/{id}/loan-summary
+// ("du har N aktiva lån, varav M försenade")
+
+public class LoanSummaryDTO {
+
+    private Long userId;
+    private int activeLoans;
+    private int overdueLoans;
+    private int extendedLoans;
+    private int totalLoans;
+
+    // Tom konstruktor
+    public LoanSummaryDTO() {}
+
+    public LoanSummaryDTO(Long userId, int activeLoans, int overdueLoans, int extendedLoans, int totalLoans) {
+        this.userId = userId;
+        this.activeLoans = activeLoans;
+        this.overdueLoans = overdueLoans;
+        this.extendedLoans = extendedLoans;
+        this.totalLoans = totalLoans;
+    }
+
+    // Getters och setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public int getActiveLoans() {
+        return activeLoans;
+    }
+
+    public void setActiveLoans(int activeLoans) {
+        this.activeLoans = activeLoans;
+    }
+
+    public int getOverdueLoans() {
+        return overdueLoans;
+    }
+
+    public void setOverdueLoans(int overdueLoans) {
+        this.overdueLoans = overdueLoans;
+    }
+
+    public int getExtendedLoans() {
+        return extendedLoans;
+    }
+
+    public void setExtendedLoans(int extendedLoans) {
+        this.extendedLoans = extendedLoans;
+    }
+
+    public int getTotalLoans() {
+        return totalLoans;
+    }
+
+    public void setTotalLoans(int totalLoans) {
+        this.totalLoans = totalLoans;
+    }
+}
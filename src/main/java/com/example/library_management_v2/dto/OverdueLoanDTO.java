@@ -0,0 +1,103 @@
+package com.example.library_management_v2.dto;
+
+// Ett försenat lån, med låntagarens kontaktuppgifter så att biblioteket kan skicka påminnelser
+
+import java.time.LocalDate;
+
+public class OverdueLoanDTO {
+
+    private Long id;
+    private Long userId;
+    private String userName;
+    private String userEmail;
+    private Long bookId;
+    private String bookTitle;
+    private String authorName;
+    private LocalDate borrowedDate;
+    private LocalDate dueDate;
+    private long daysOverdue;
+
+    // Tom konstruktor
+    public OverdueLoanDTO() {}
+
+    // Getters och setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public void setAuthorName(String authorName) {
+        this.authorName = authorName;
+    }
+
+    public LocalDate getBorrowedDate() {
+        return borrowedDate;
+    }
+
+    public void setBorrowedDate(LocalDate borrowedDate) {
+        this.borrowedDate = borrowedDate;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(LocalDate dueDate) {
+        this.dueDate = dueDate;
+    }
+
+    public long getDaysOverdue() {
+        return daysOverdue;
+    }
+
+    public void setDaysOverdue(long daysOverdue) {
+        this.daysOverdue = daysOverdue;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.library_management_v2.dto;
+
+// Resultatet av en körning av sökningen efter nya försenade lån
+// Lån med förfallodatum från och med dueFrom till och med dueTo har behandlats
+
+import java.time.LocalDate;
+
+public class OverdueSweepResultDTO {
+
+    private LocalDate dueFrom;
+    private LocalDate dueTo;
+    private int processed;
+
+    // Tom konstruktor
+    public OverdueSweepResultDTO() {}
+
+    public OverdueSweepResultDTO(LocalDate dueFrom, LocalDate dueTo, int processed) {
+        this.dueFrom = dueFrom;
+        this.dueTo = dueTo;
+        this.processed = processed;
+    }
+
+    // Getters och setters
+    public LocalDate getDueFrom() {
+        return dueFrom;
+    }
+
+    public void setDueFrom(LocalDate dueFrom) {
+        this.dueFrom = dueFrom;
+    }
+
+    public LocalDate getDueTo() {
+        return dueTo;
+    }
+
+    public void setDueTo(LocalDate dueTo) {
+        this.dueTo = dueTo;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+}
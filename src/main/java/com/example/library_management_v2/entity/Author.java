@@ -2,13 +2,19 @@ package com.example.library_management_v2.entity;
 
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "authors")
+// Andranivåcache (hibernate-cache.conf): BookService.createBook slår upp författaren för varje ny bok
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "author")
 public class Author {
 
+    // ID i block i stället för IDENTITY så att inserts kan batchas (se Loan)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(table = "authors", column = "author_id")
     @Column(name = "author_id")
     private Long id;
 
@@ -0,0 +1,137 @@
+package com.example.library_management_v2.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Delar ut ID:n i block från tabellen id_blocks (se @BlockId).
+ *
+ * Ett nytt block hämtas genom att next_id räknas upp med blockstorleken på den anslutning som transaktionen
+ * redan har, alltså SQLites enda skrivanslutning. En poolad TableGenerator hämtar i stället blocket i en egen
+ * transaktion på en andra anslutning, vilket aldrig går med en enda skrivanslutning.
+ * Uppräkningen committas därför tillsammans med raderna som får ID:n ur blocket: fram till commit används
+ * blocket bara av den egna transaktionen, rullas den tillbaka kastas blocket, och efter commit delas resten
+ * av blocket av kommande transaktioner.
+ *
+ * Räknaren ligger i databasen, så ID:n krockar inte med andra processer som skriver via applikationen
+ * (t.ex. CatalogImportRunner), och ett ID delas aldrig ut igen efter att raden tagits bort eller flyttats
+ * till lånearkivet. Den som skriver rader med egna ID:n direkt med SQL räknar upp next_id förbi dem
+ * (se LoanRepositoryCustomImpl.restoreLoans).
+ */
+public class BlockIdGenerator implements IdentifierGenerator {
+
+    private final String table;
+    private final String column;
+    private final int blockSize;
+
+    // Committat block som alla transaktioner delar: next till och med limit - 1
+    private long next;
+    private long limit;
+
+    // Block som hämtats i en transaktion som inte är klar än, per session: {next, limit}
+    private final Map<SharedSessionContractImplementor, long[]> pending = new IdentityHashMap<>();
+
+    public BlockIdGenerator(BlockId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.table = config.table();
+        this.column = config.column();
+        this.blockSize = config.blockSize();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        synchronized (this) {
+            long[] own = pending.get(session);
+            if (own != null && own[0] < own[1]) {
+                return own[0]++;
+            }
+            if (next < limit) {
+                return next++;
+            }
+        }
+
+        // Utanför låset: i en databas med flera skrivare kan uppräkningen vänta på en annan transaktion,
+        // som då ska kunna fortsätta ta ID:n ur sitt eget block
+        long end = allocate(session);
+
+        synchronized (this) {
+            long[] block = {end - blockSize, end};
+            if (session.isTransactionInProgress() && session instanceof EventSource eventSource) {
+                if (pending.put(session, block) == null) {
+                    eventSource.getActionQueue().registerProcess(this::completed);
+                }
+            } else {
+                // Utan transaktion är uppräkningen redan committad
+                next = block[0];
+                limit = block[1];
+            }
+            return block[0]++;
+        }
+    }
+
+    // Efter commit tar kommande transaktioner resten av blocket, efter rollback finns det inte längre
+    private synchronized void completed(boolean success, SharedSessionContractImplementor session) {
+        long[] block = pending.remove(session);
+        if (success && block != null && block[0] < block[1] && next >= limit) {
+            next = block[0];
+            limit = block[1];
+        }
+    }
+
+    // Räknar upp next_id med ett block och returnerar det nya värdet (blocket slutar före det)
+    private long allocate(SharedSessionContractImplementor session) {
+        Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        try {
+            if (!bump(connection)) {
+                SQLException createFailed = createRow(connection);
+                if (!bump(connection)) {
+                    throw createFailed != null ? createFailed : new SQLException("Ingen rad i id_blocks för " + table);
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT next_id FROM id_blocks WHERE name = ?")) {
+                statement.setString(1, table);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper()
+                    .convert(e, "Kunde inte hämta ett ID-block för " + table);
+        }
+    }
+
+    private boolean bump(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE id_blocks SET next_id = next_id + ? WHERE name = ?")) {
+            statement.setInt(1, blockSize);
+            statement.setString(2, table);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    // Första blocket börjar efter de rader som redan finns (migreringen V10 har gjort detta i SQLite)
+    // Hinner en annan transaktion skapa raden först returneras felet, och anroparen räknar upp den i stället
+    private SQLException createRow(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO id_blocks (name, next_id) SELECT CAST(? AS VARCHAR(50)), COALESCE(MAX(" + column + "), 0) + 1 " +
+                        "FROM " + table)) {
+            statement.setString(1, table);
+            statement.executeUpdate();
+            return null;
+        } catch (SQLException e) {
+            return e;
+        }
+    }
+}
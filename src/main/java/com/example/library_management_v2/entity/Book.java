@@ -1,13 +1,29 @@
 package com.example.library_management_v2.entity;
 
+import com.example.library_management_v2.service.AvailabilityIndexListener;
+import com.example.library_management_v2.service.BookSearchIndexListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "books") // Viktigt att tabellnamnet matchar exakt med databasen
+// Håller sökindexet och tillgänglighetsindexet uppdaterade
+@EntityListeners({BookSearchIndexListener.class, AvailabilityIndexListener.class})
+// Katalog: boken med sin författare (BookRepository väljer grafen per metod)
+@NamedEntityGraph(name = Book.GRAPH_WITH_AUTHOR, attributeNodes = @NamedAttributeNode("author"))
+// Andranivåcache (hibernate-cache.conf). Varje ändring av available_copies tömmer regionen i samma
+// transaktion (uppdateringarna i BookRepository och BookRepositoryCustomImpl), och utlåning läser
+// aldrig antalet från cachen utan gör en villkorad UPDATE
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
 public class Book {
 
+    public static final String GRAPH_WITH_AUTHOR = "Book.withAuthor";
+
+    // ID i block i stället för IDENTITY så att inserts kan batchas (se Loan)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(table = "books", column = "book_id")
     @Column(name = "book_id", nullable = false)
     private Long id;
 
@@ -23,7 +39,12 @@ public class Book {
     @Column(name = "total_copies")
     private Integer totalCopies;
 
-    @ManyToOne
+    // Kategori, t.ex. "deckare" (gemener, se BookService.createBook), används av kategorigränserna för lån
+    @Column(name = "category")
+    private String category;
+
+    // LAZY: författaren hämtas bara när en entity graph eller JOIN FETCH ber om den
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id")
     private Author author;
 
@@ -73,6 +94,14 @@ public class Book {
         this.totalCopies = totalCopies;
     }
 
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
     public Author getAuthor() {
         return author;
     }
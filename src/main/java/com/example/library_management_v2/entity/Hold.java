@@ -0,0 +1,120 @@
+package com.example.library_management_v2.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// En användares plats i kön till en bok som inte har några lediga exemplar (HoldService)
+// Kön är först-in-först-ut i ID-ordning: ID:n delas ut i stigande ordning av den enda skrivanslutningen
+@Entity
+@Table(name = "holds")
+public class Hold {
+
+    public enum Status {
+        // Står i kön
+        WAITING,
+        // Ett återlämnat exemplar är reserverat åt användaren, som kan låna det med ett vanligt lån
+        READY,
+        // Användaren har lånat det reserverade exemplaret
+        FULFILLED,
+        // Användaren lånade inte det reserverade exemplaret i tid (library.holds.ready-days)
+        EXPIRED,
+        // Användaren lämnade kön (DELETE /books/{id}/holds/{holdId})
+        CANCELLED
+    }
+
+    // Samma ID-generator som Loan, se kommentaren där
+    @Id
+    @BlockId(table = "holds", column = "hold_id")
+    @Column(name = "hold_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id", nullable = false)
+    private Book book;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // När ett exemplar reserverades åt användaren
+    @Column(name = "ready_at")
+    private LocalDateTime readyAt;
+
+    // När användaren lånade det reserverade exemplaret
+    @Column(name = "fulfilled_at")
+    private LocalDateTime fulfilledAt;
+
+    // Tom konstruktor som krävs av JPA
+    public Hold() {}
+
+    public Hold(Book book, User user) {
+        this.book = book;
+        this.user = user;
+        this.status = Status.WAITING;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters och setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getReadyAt() {
+        return readyAt;
+    }
+
+    public void setReadyAt(LocalDateTime readyAt) {
+        this.readyAt = readyAt;
+    }
+
+    public LocalDateTime getFulfilledAt() {
+        return fulfilledAt;
+    }
+
+    public void setFulfilledAt(LocalDateTime fulfilledAt) {
+        this.fulfilledAt = fulfilledAt;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.library_management_v2.entity;
+
+import jakarta.persistence.*;
+
+// Nästa lediga ID per tabell, delas ut i block av BlockIdGenerator
+// Mappad som entitet så att tabellen även skapas i testdatabasen (ddl-auto)
+@Entity
+@Table(name = "id_blocks")
+public class IdBlock {
+
+    @Id
+    @Column(name = "name", length = 50)
+    private String name;
+
+    @Column(name = "next_id", nullable = false)
+    private Long nextId;
+
+    // Tom konstruktor
+    public IdBlock() {}
+
+    // Getters och setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getNextId() {
+        return nextId;
+    }
+
+    public void setNextId(Long nextId) {
+        this.nextId = nextId;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.library_management_v2.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// En katalogimport och hur långt den har kommit, så att en avbruten import kan fortsätta
+@Entity
+@Table(name = "import_jobs")
+public class ImportJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    @Id
+    @Column(name = "job_id")
+    private String jobId;
+
+    // Filnamn eller "http"
+    @Column(name = "source")
+    private String source;
+
+    // "csv" eller "jsonl"
+    @Column(name = "format", nullable = false)
+    private String format;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status;
+
+    // Lästa och committade poster, inklusive avvisade; nästa körning hoppar över så många
+    @Column(name = "records_processed", nullable = false)
+    private long recordsProcessed;
+
+    @Column(name = "records_rejected", nullable = false)
+    private long recordsRejected;
+
+    @Column(name = "books_created", nullable = false)
+    private long booksCreated;
+
+    @Column(name = "authors_created", nullable = false)
+    private long authorsCreated;
+
+    // recordsProcessed när den senaste körningen startade (för att räkna poster per sekund)
+    @Column(name = "resumed_from", nullable = false)
+    private long resumedFrom;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    // När den senaste körningen startade
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Tom konstruktor som krävs av JPA
+    public ImportJob() {}
+
+    public ImportJob(String jobId, String source, String format) {
+        this.jobId = jobId;
+        this.source = source;
+        this.format = format;
+        this.status = Status.RUNNING;
+        this.startedAt = LocalDateTime.now();
+        this.updatedAt = this.startedAt;
+    }
+
+    // Getters och setters
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getRecordsProcessed() {
+        return recordsProcessed;
+    }
+
+    public void setRecordsProcessed(long recordsProcessed) {
+        this.recordsProcessed = recordsProcessed;
+    }
+
+    public long getRecordsRejected() {
+        return recordsRejected;
+    }
+
+    public void setRecordsRejected(long recordsRejected) {
+        this.recordsRejected = recordsRejected;
+    }
+
+    public long getBooksCreated() {
+        return booksCreated;
+    }
+
+    public void setBooksCreated(long booksCreated) {
+        this.booksCreated = booksCreated;
+    }
+
+    public long getAuthorsCreated() {
+        return authorsCreated;
+    }
+
+    public void setAuthorsCreated(long authorsCreated) {
+        this.authorsCreated = authorsCreated;
+    }
+
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    public void setResumedFrom(long resumedFrom) {
+        this.resumedFrom = resumedFrom;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
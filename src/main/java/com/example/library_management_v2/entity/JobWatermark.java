@@ -0,0 +1,57 @@
+package com.example.library_management_v2.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Hur långt ett schemalagt jobb har kommit, så att nästa körning kan fortsätta därifrån
+@Entity
+@Table(name = "job_watermarks")
+public class JobWatermark {
+
+    // Jobbets namn, t.ex. "overdue-sweep"
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    // Senaste datumet som jobbet har behandlat
+    @Column(name = "watermark", nullable = false)
+    private LocalDate watermark;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Tom konstruktor som krävs av JPA
+    public JobWatermark() {}
+
+    public JobWatermark(String jobName, LocalDate watermark) {
+        this.jobName = jobName;
+        this.watermark = watermark;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters och setters
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public LocalDate getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(LocalDate watermark) {
+        this.watermark = watermark;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -6,18 +6,35 @@ import java.time.LocalDate;
 // Vi skapar en loan-entitet som liknar vår databas
 @Entity
 @Table(name = "loans")
+// Listning: låntagaren, boken och författaren (t.ex. listan över försenade lån)
+@NamedEntityGraph(name = Loan.GRAPH_DETAILS,
+        attributeNodes = {@NamedAttributeNode("user"), @NamedAttributeNode(value = "book", subgraph = "book")},
+        subgraphs = @NamedSubgraph(name = "book", attributeNodes = @NamedAttributeNode("author")))
+// Ändringar (återlämning, förlängning): boken och författaren för svaret, låntagaren behövs bara som ID
+@NamedEntityGraph(name = Loan.GRAPH_MUTATION,
+        attributeNodes = @NamedAttributeNode(value = "book", subgraph = "book"),
+        subgraphs = @NamedSubgraph(name = "book", attributeNodes = @NamedAttributeNode("author")))
 public class Loan {
 
+    public static final String GRAPH_DETAILS = "Loan.details";
+    public static final String GRAPH_MUTATION = "Loan.mutation";
+
+    // ID:n delas ut i block från id_blocks (BlockIdGenerator), så Hibernate känner ID:t innan INSERT
+    // och kan batcha flera inserts i samma flush. IDENTITY kräver en INSERT per rad.
+    // Blocket hämtas på transaktionens egen anslutning och räknaren ligger i databasen, så andra processer
+    // (import och replay) och lån som flyttats till arkivet ger inga dubbla ID:n.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(table = "loans", column = "loan_id")
     @Column(name = "loan_id")
     private Long id;
 
-    @ManyToOne
+    // LAZY: låntagare och bok hämtas bara när en entity graph eller JOIN FETCH ber om dem
+    // (getUser().getId() läser ID:t från proxyn utan någon SQL-sats)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id")
     private Book book;
 
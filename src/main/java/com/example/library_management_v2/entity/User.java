@@ -7,10 +7,12 @@ import java.time.LocalDate;
 
 @Entity
 @Table(name = "users")
+// Ligger inte i andranivåcachen, där skulle lösenordet följa med (se hibernate-cache.conf)
 public class User {
 
+    // ID i block i stället för IDENTITY så att inserts kan batchas (se Loan)
     @Id
-    @GeneratedValue (strategy = GenerationType.IDENTITY)
+    @BlockId(table = "users", column = "user_id")
     @Column (name = "user_id")
     private Long id;
 
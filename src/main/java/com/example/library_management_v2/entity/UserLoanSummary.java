@@ -0,0 +1,107 @@
+package com.example.library_management_v2.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Sammanställning av en användares lån, uppdateras av LoanService i samma transaktion som lånen
+// (UserLoanSummaryService), så att sammanställningen kan läsas som en enda rad
+@Entity
+@Table(name = "user_loan_summaries")
+public class UserLoanSummary {
+
+    // Samma ID som användaren
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Lån som inte är återlämnade
+    @Column(name = "active_loans", nullable = false)
+    private int activeLoans;
+
+    // Aktiva lån med förfallodatum före overdueAsOf
+    @Column(name = "overdue_loans", nullable = false)
+    private int overdueLoans;
+
+    // Aktiva lån som redan har förlängts (kan inte förlängas igen)
+    @Column(name = "extended_loans", nullable = false)
+    private int extendedLoans;
+
+    // Alla lån användaren någonsin har haft
+    @Column(name = "total_loans", nullable = false)
+    private int totalLoans;
+
+    // Dagen som overdueLoans gäller för, flyttas fram av den nattliga omräkningen
+    // Lån som förfaller efter den dagen blir inte räknade som försenade förrän nästa omräkning
+    @Column(name = "overdue_as_of", nullable = false)
+    private LocalDate overdueAsOf;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Tom konstruktor som krävs av JPA
+    public UserLoanSummary() {}
+
+    public UserLoanSummary(Long userId, LocalDate overdueAsOf) {
+        this.userId = userId;
+        this.overdueAsOf = overdueAsOf;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters och setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public int getActiveLoans() {
+        return activeLoans;
+    }
+
+    public void setActiveLoans(int activeLoans) {
+        this.activeLoans = activeLoans;
+    }
+
+    public int getOverdueLoans() {
+        return overdueLoans;
+    }
+
+    public void setOverdueLoans(int overdueLoans) {
+        this.overdueLoans = overdueLoans;
+    }
+
+    public int getExtendedLoans() {
+        return extendedLoans;
+    }
+
+    public void setExtendedLoans(int extendedLoans) {
+        this.extendedLoans = extendedLoans;
+    }
+
+    public int getTotalLoans() {
+        return totalLoans;
+    }
+
+    public void setTotalLoans(int totalLoans) {
+        this.totalLoans = totalLoans;
+    }
+
+    public LocalDate getOverdueAsOf() {
+        return overdueAsOf;
+    }
+
+    public void setOverdueAsOf(LocalDate overdueAsOf) {
+        this.overdueAsOf = overdueAsOf;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.library_management_v2.exception;
+
+// Kastas när ett lån skulle bryta mot lånereglerna (max antal lån, försenade lån eller en kategorigräns)
+public class BorrowingLimitException extends RuntimeException {
+
+    public BorrowingLimitException(String message) {
+        super(message);
+    }
+}
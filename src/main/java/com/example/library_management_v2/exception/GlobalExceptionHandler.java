@@ -146,6 +146,16 @@ public class GlobalExceptionHandler {
     }
 
 
+    // Statuskod 400 Bad Request
+    @ExceptionHandler(BorrowingLimitException.class)
+    public ResponseEntity<Object> handleBorrowingLimitException(BorrowingLimitException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+
+        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+    }
+
+
     // Statuskod 400 Not Found
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<Object> handleEntityNotFoundException(EntityNotFoundException ex) {
@@ -1,7 +1,11 @@
 package com.example.library_management_v2.repository;
 
 import com.example.library_management_v2.entity.Author;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,6 +22,9 @@ public interface AuthorRepository extends JpaRepository<Author, Long> {
     List<Author> findByLastNameContainingIgnoreCase(String lastName);
 
     // Hitta författare baserat på förnamn, efternamn och födelseår
+    // Frågecache: AuthorService.createAuthor kontrollerar dubbletter med samma nyckel. Resultatet
+    // blir ogiltigt när tabellen authors ändras, författarna själva läses från andranivåcachen
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Author> findByFirstNameAndLastNameAndBirthYear
     (
             String firstName,
@@ -25,6 +32,9 @@ public interface AuthorRepository extends JpaRepository<Author, Long> {
             Integer birthYear
     );
 
+    // Keyset-paginering: hämtar nästa sida efter ett visst author_id
+    List<Author> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
 
 
 }
\ No newline at end of file
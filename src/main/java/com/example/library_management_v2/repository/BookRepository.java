@@ -1,17 +1,107 @@
 package com.example.library_management_v2.repository;
 
+import com.example.library_management_v2.dto.BookWithDetailsDTO;
 import com.example.library_management_v2.entity.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
     // Söker böcker där titeln innehåller en viss sträng (case-insensitive)
     List<Book> findByTitleContainingIgnoreCase(String title);
 
     // Söker böcker av en specifik författare (används i sökning)
     List<Book> findByAuthorLastNameContainingIgnoreCase(String authorLastName);
+
+    // Hämtar alla böcker med författarnamn direkt som DTO i en enda SQL-sats (ingen N+1)
+    @Query("SELECT new com.example.library_management_v2.dto.BookWithDetailsDTO(" +
+            "b.id, b.title, b.publicationYear, b.availableCopies, b.totalCopies, a.firstName, a.lastName) " +
+            "FROM Book b LEFT JOIN b.author a " +
+            "ORDER BY b.id")
+    List<BookWithDetailsDTO> findAllWithDetails();
+
+    // Söker på titel ELLER författarens efternamn i en och samma SQL-sats
+    // Mönstren ska vara i gemener och innehålla % (null betyder att villkoret inte används)
+    @Query("SELECT new com.example.library_management_v2.dto.BookWithDetailsDTO(" +
+            "b.id, b.title, b.publicationYear, b.availableCopies, b.totalCopies, a.firstName, a.lastName) " +
+            "FROM Book b LEFT JOIN b.author a " +
+            "WHERE (:titlePattern IS NOT NULL AND LOWER(b.title) LIKE :titlePattern) " +
+            "OR (:authorPattern IS NOT NULL AND LOWER(a.lastName) LIKE :authorPattern) " +
+            "ORDER BY b.id")
+    List<BookWithDetailsDTO> searchWithDetails(@Param("titlePattern") String titlePattern,
+                                               @Param("authorPattern") String authorPattern);
+
+    // Hämtar specifika böcker med författarnamn, används för att slå upp sökträffar från sökindexet
+    @Query("SELECT new com.example.library_management_v2.dto.BookWithDetailsDTO(" +
+            "b.id, b.title, b.publicationYear, b.availableCopies, b.totalCopies, a.firstName, a.lastName) " +
+            "FROM Book b LEFT JOIN b.author a " +
+            "WHERE b.id IN :ids")
+    List<BookWithDetailsDTO> findWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Strömmar alla böcker med författarnamn som DTO, används när sökindexet byggs upp
+    @Query("SELECT new com.example.library_management_v2.dto.BookWithDetailsDTO(" +
+            "b.id, b.title, b.publicationYear, b.availableCopies, b.totalCopies, a.firstName, a.lastName) " +
+            "FROM Book b LEFT JOIN b.author a")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<BookWithDetailsDTO> streamAllWithDetails();
+
+    // Hämtar en bok med författare i en SQL-sats (används vid utlåning, svaret innehåller författarnamnet)
+    @EntityGraph(Book.GRAPH_WITH_AUTHOR)
+    Optional<Book> findWithAuthorById(Long id);
+
+    // Hämtar flera böcker med författare i en SQL-sats (används vid batch-utlåning)
+    @EntityGraph(Book.GRAPH_WITH_AUTHOR)
+    List<Book> findAllWithAuthorByIdIn(Collection<Long> ids);
+
+    // Keyset-paginering: hämtar nästa sida efter ett visst book_id (använder primärnyckeln, ingen OFFSET)
+    @Query("SELECT new com.example.library_management_v2.dto.BookWithDetailsDTO(" +
+            "b.id, b.title, b.publicationYear, b.availableCopies, b.totalCopies, a.firstName, a.lastName) " +
+            "FROM Book b LEFT JOIN b.author a " +
+            "WHERE b.id > :afterId " +
+            "ORDER BY b.id")
+    List<BookWithDetailsDTO> findPageWithDetails(@Param("afterId") Long afterId, Limit limit);
+
+    // Strömmar alla böcker rad för rad från databasen (måste anropas inom en transaktion och stängas)
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    @EntityGraph(Book.GRAPH_WITH_AUTHOR)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Book> streamAllWithAuthor();
+
+    // Reserverar ett exemplar atomiskt i databasen: räknar bara ner om det finns exemplar kvar
+    // Returnerar antal uppdaterade rader (0 = boken finns inte eller har inga lediga exemplar)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies - 1 " +
+            "WHERE b.id = :bookId AND b.availableCopies > 0")
+    int reserveCopy(@Param("bookId") Long bookId);
+
+    // Lämnar tillbaka ett exemplar atomiskt (ingen läs-ändra-skriv i Java som kan tappa uppdateringar)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies + 1 WHERE b.id = :bookId")
+    int releaseCopy(@Param("bookId") Long bookId);
+
+    // Låser bokens rad om boken inte har några lediga exemplar (uppdateringen ändrar inget värde)
+    // Återlämningar låser samma rad när exemplaret lämnas tillbaka, så en ny köplats och en återlämning
+    // av samma bok kan inte gå förbi varandra (HoldService)
+    // Returnerar 0 om boken inte finns eller har lediga exemplar
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies " +
+            "WHERE b.id = :bookId AND b.availableCopies <= 0")
+    int lockIfUnavailable(@Param("bookId") Long bookId);
 }
@@ -0,0 +1,30 @@
+package com.example.library_management_v2.repository;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.List;
+
+// Egna metoder för BookRepository som kräver JDBC (implementeras i BookRepositoryCustomImpl)
+public interface BookRepositoryCustom {
+
+    // Reserverar ett exemplar per bok-ID i en enda JDBC-batch
+    // Returnerar antal uppdaterade rader per ID i samma ordning (0 = inga lediga exemplar)
+    int[] reserveCopies(List<Long> bookIds);
+
+    // Lämnar tillbaka ett exemplar per bok-ID i en enda JDBC-batch (samma ID kan förekomma flera gånger)
+    int[] releaseCopies(List<Long> bookIds);
+
+    // Räknar om lediga exemplar per bok-ID från de aktiva lånen och kön i en enda JDBC-batch
+    // (totalt antal minus aktiva lån minus exemplar reserverade åt kön), efter att lån har återställts
+    int[] recountCopies(List<Long> bookIds);
+
+    // Läser alla böcker med författare i ID-ordning med en framåtriktad cursor, en rad i taget till handler
+    // Kolumner: book_id, title, publication_year, available_copies, total_copies, author_id,
+    // author_first_name, author_last_name
+    void exportAll(int fetchSize, RowCallbackHandler handler);
+
+    // Läser antal exemplar som inte är utlånade (lediga plus reserverade åt kön) och totalt antal
+    // för alla böcker i ID-ordning med en framåtriktad cursor, en rad i taget till handler
+    // Kolumner: book_id, on_shelf, total_copies
+    void availabilityAll(int fetchSize, RowCallbackHandler handler);
+}
@@ -0,0 +1,114 @@
+package com.example.library_management_v2.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.action.internal.BulkOperationCleanupAction;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Set;
+
+// JDBC-batchade uppdateringar av tillgängliga exemplar och export med cursor
+// JdbcTemplate använder samma anslutning och transaktion som JPA
+// Batcharna går förbi Hibernate, så de tömmer själva bokregionen i andranivåcachen (se evictBooks)
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int[] reserveCopies(List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new int[0];
+        }
+        // Skriv ut väntande JPA-ändringar först så att JDBC-satserna ser dem
+        entityManager.flush();
+        evictBooks();
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE books SET available_copies = available_copies - 1 WHERE book_id = ? AND available_copies > 0",
+                bookIds,
+                bookIds.size(),
+                (statement, bookId) -> statement.setLong(1, bookId))[0];
+        // Som clearAutomatically: entiteter i persistence context har nu inaktuella värden
+        entityManager.clear();
+        return counts;
+    }
+
+    @Override
+    public int[] releaseCopies(List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new int[0];
+        }
+        entityManager.flush();
+        evictBooks();
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE books SET available_copies = available_copies + 1 WHERE book_id = ?",
+                bookIds,
+                bookIds.size(),
+                (statement, bookId) -> statement.setLong(1, bookId))[0];
+        entityManager.clear();
+        return counts;
+    }
+
+    @Override
+    public int[] recountCopies(List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new int[0];
+        }
+        entityManager.flush();
+        evictBooks();
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE books SET available_copies = total_copies " +
+                        "- (SELECT COUNT(*) FROM loans l WHERE l.book_id = books.book_id AND l.returned_date IS NULL) " +
+                        "- (SELECT COUNT(*) FROM holds h WHERE h.book_id = books.book_id AND h.status = 'READY') " +
+                        "WHERE book_id = ?",
+                bookIds,
+                bookIds.size(),
+                (statement, bookId) -> statement.setLong(1, bookId))[0];
+        entityManager.clear();
+        return counts;
+    }
+
+    // Samma som Hibernate gör för en JPQL-UPDATE på Book: regionen töms nu och igen när transaktionen
+    // är klar, och frågecachen för tabellen books blir ogiltig. En läsning som startade före commit kan
+    // fortfarande lägga tillbaka ett gammalt antal, därför den korta livslängden i hibernate-cache.conf
+    private void evictBooks() {
+        BulkOperationCleanupAction.schedule(entityManager.unwrap(SharedSessionContractImplementor.class),
+                Set.of("books"));
+    }
+
+    @Override
+    public void exportAll(int fetchSize, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT b.book_id, b.title, b.publication_year, b.available_copies, b.total_copies, " +
+                            "a.author_id, a.first_name AS author_first_name, a.last_name AS author_last_name " +
+                            "FROM books b LEFT JOIN authors a ON a.author_id = b.author_id ORDER BY b.book_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler);
+    }
+
+    @Override
+    public void availabilityAll(int fetchSize, RowCallbackHandler handler) {
+        // Underfrågan går via idx_holds_queue (book_id, status, hold_id)
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT b.book_id, b.available_copies + (SELECT COUNT(*) FROM holds h " +
+                            "WHERE h.book_id = b.book_id AND h.status = 'READY') AS on_shelf, b.total_copies " +
+                            "FROM books b ORDER BY b.book_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.Hold;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Alla köfrågor går via idx_holds_queue (book_id, status, hold_id) eller idx_holds_user_book (user_id, book_id),
+// utom sökningen efter reserverade exemplar som inte har hämtats som går via idx_holds_ready (status, ready_at)
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long>, HoldRepositoryCustom {
+
+    // Finns användaren redan i kön, eller har ett reserverat exemplar, för boken
+    boolean existsByUserIdAndBookIdAndStatusIn(Long userId, Long bookId, Collection<Hold.Status> statuses);
+
+    // Antal som står före en köplats i bokens kö (räknas i indexet, tabellen läses inte)
+    @Query("SELECT COUNT(h) FROM Hold h " +
+            "WHERE h.book.id = :bookId AND h.status = :waiting AND h.id < :holdId")
+    long countWaitingBefore(@Param("bookId") Long bookId, @Param("holdId") Long holdId,
+                            @Param("waiting") Hold.Status waiting);
+
+    // Reserverar ett exemplar åt den första i bokens kö (lägsta ID med status WAITING)
+    // Returnerar 0 om ingen står i kön
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = :ready, h.readyAt = :now " +
+            "WHERE h.id = (SELECT MIN(w.id) FROM Hold w WHERE w.book.id = :bookId AND w.status = :waiting)")
+    int assignNext(@Param("bookId") Long bookId, @Param("now") LocalDateTime now,
+                   @Param("waiting") Hold.Status waiting, @Param("ready") Hold.Status ready);
+
+    // Markerar användarens reserverade exemplar av boken som utlånat
+    // Returnerar 0 om användaren inte har något reserverat exemplar av boken
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = :fulfilled, h.fulfilledAt = :now " +
+            "WHERE h.user.id = :userId AND h.book.id = :bookId AND h.status = :ready")
+    int fulfil(@Param("userId") Long userId, @Param("bookId") Long bookId, @Param("now") LocalDateTime now,
+               @Param("ready") Hold.Status ready, @Param("fulfilled") Hold.Status fulfilled);
+
+    // Reserverade exemplar som reserverades före readyBefore, äldst först
+    @Query("SELECT h FROM Hold h WHERE h.status = :ready AND h.readyAt < :readyBefore ORDER BY h.readyAt")
+    List<Hold> findReadyBefore(@Param("ready") Hold.Status ready, @Param("readyBefore") LocalDateTime readyBefore,
+                               Limit limit);
+
+    // Byter status på en köplats, villkorat så att två samtidiga ändringar inte båda lyckas
+    // Returnerar 0 om köplatsen inte längre har statusen from
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Hold h SET h.status = :to WHERE h.id = :holdId AND h.status = :from")
+    int changeStatus(@Param("holdId") Long holdId, @Param("from") Hold.Status from, @Param("to") Hold.Status to);
+}
@@ -0,0 +1,16 @@
+package com.example.library_management_v2.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Egna metoder för HoldRepository som kräver JDBC (implementeras i HoldRepositoryCustomImpl)
+public interface HoldRepositoryCustom {
+
+    // Som assignNext för varje bok-ID, i en enda JDBC-batch (samma ID kan förekomma flera gånger)
+    // Returnerar antal uppdaterade rader per ID i samma ordning (0 = ingen i kön)
+    int[] assignNextBatch(List<Long> bookIds, LocalDateTime now);
+
+    // Som fulfil för varje bok-ID, i en enda JDBC-batch
+    // Returnerar antal uppdaterade rader per ID i samma ordning (0 = inget reserverat exemplar)
+    int[] fulfilBatch(Long userId, List<Long> bookIds, LocalDateTime now);
+}
@@ -0,0 +1,55 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.Hold;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// JDBC-batchade uppdateringar av köerna
+public class HoldRepositoryCustomImpl implements HoldRepositoryCustom {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int[] assignNextBatch(List<Long> bookIds, LocalDateTime now) {
+        if (bookIds.isEmpty()) {
+            return new int[0];
+        }
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.batchUpdate(
+                "UPDATE holds SET status = ?, ready_at = ? " +
+                        "WHERE hold_id = (SELECT MIN(hold_id) FROM holds WHERE book_id = ? AND status = ?)",
+                bookIds,
+                bookIds.size(),
+                (statement, bookId) -> {
+                    statement.setString(1, Hold.Status.READY.name());
+                    statement.setTimestamp(2, timestamp);
+                    statement.setLong(3, bookId);
+                    statement.setString(4, Hold.Status.WAITING.name());
+                })[0];
+    }
+
+    @Override
+    public int[] fulfilBatch(Long userId, List<Long> bookIds, LocalDateTime now) {
+        if (bookIds.isEmpty()) {
+            return new int[0];
+        }
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.batchUpdate(
+                "UPDATE holds SET status = ?, fulfilled_at = ? " +
+                        "WHERE user_id = ? AND book_id = ? AND status = ?",
+                bookIds,
+                bookIds.size(),
+                (statement, bookId) -> {
+                    statement.setString(1, Hold.Status.FULFILLED.name());
+                    statement.setTimestamp(2, timestamp);
+                    statement.setLong(3, userId);
+                    statement.setLong(4, bookId);
+                    statement.setString(5, Hold.Status.READY.name());
+                })[0];
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, String> {
+}
@@ -1,19 +1,95 @@
 package com.example.library_management_v2.repository;
 
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.LoanStateDTO;
 import com.example.library_management_v2.entity.Loan;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
 
     // Hämta alla lån för en specifik användare
     List<Loan> findByUserId(Long userId);
 
+    // Hämtar en användares lån som LoanDTO i en SQL-sats (lån, bok och författare)
+    // overdue räknas ut i SQL, dagens datum skickas som parameter så att det binds på samma sätt som due_date
+    @Query("SELECT new com.example.library_management_v2.dto.LoanDTO(" +
+            "l.id, l.user.id, b.id, b.title, a.firstName, a.lastName, l.borrowedDate, l.dueDate, l.returnedDate, " +
+            "CASE WHEN l.returnedDate IS NULL AND l.dueDate < :today THEN true ELSE false END) " +
+            "FROM Loan l JOIN l.book b LEFT JOIN b.author a " +
+            "WHERE l.user.id = :userId " +
+            "ORDER BY l.id")
+    List<LoanDTO> findDtosByUserId(@Param("userId") Long userId, @Param("today") LocalDate today);
+
+    // Lånens värden, för jämförelsen med händelseloggen (LoanEventReplay)
+    @Query("SELECT new com.example.library_management_v2.dto.LoanStateDTO(" +
+            "l.id, l.user.id, l.book.id, l.borrowedDate, l.dueDate, l.returnedDate) " +
+            "FROM Loan l WHERE l.id IN :ids")
+    List<LoanStateDTO> findStatesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Lån som återlämnades före ett datum, sorterade på användare och lån-ID, för lånearkivet (LoanArchiveService)
+    @Query("SELECT new com.example.library_management_v2.dto.LoanStateDTO(" +
+            "l.id, l.user.id, l.book.id, l.borrowedDate, l.dueDate, l.returnedDate) " +
+            "FROM Loan l WHERE l.returnedDate < :returnedBefore " +
+            "ORDER BY l.user.id, l.id")
+    List<LoanStateDTO> findArchivable(@Param("returnedBefore") LocalDate returnedBefore, Limit limit);
+
     // Hämta aktiva lån för en specifik användare
     List<Loan> findByUserIdAndReturnedDateIsNull (Long userId);
 
+    // Antal lån en användare någonsin har haft
+    long countByUserId(Long userId);
+
+    // Hur många av lånen som finns (lån i ett lånearkivsegment som håller på att flyttas)
+    long countByIdIn(Collection<Long> ids);
+
+    // Antal aktiva lån för en användare med förfallodatum före ett visst datum (försenade lån)
+    long countByUserIdAndReturnedDateIsNullAndDueDateBefore(Long userId, LocalDate date);
+
+    // Antal aktiva lån för en användare i en kategori (kategorigränserna vid utlåning)
+    // Användarens aktiva lån via idx_loans_active_user_id, böckerna via primärnyckeln
+    @Query("SELECT COUNT(l) FROM Loan l JOIN l.book b " +
+            "WHERE l.user.id = :userId AND l.returnedDate IS NULL AND b.category = :category")
+    long countActiveByUserIdAndCategory(@Param("userId") Long userId, @Param("category") String category);
+
+    // Markerar ett lån som återlämnat, men bara om det inte redan är återlämnat
+    // Returnerar 0 om lånet redan har återlämnats (t.ex. av en annan samtidig förfrågan)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Loan l SET l.returnedDate = :returnedDate WHERE l.id = :loanId AND l.returnedDate IS NULL")
+    int markReturned(@Param("loanId") Long loanId, @Param("returnedDate") LocalDate returnedDate);
+
+    // Hämtar ett lån med bok och författare i en SQL-sats (används vid återlämning och förlängning)
+    @EntityGraph(Loan.GRAPH_MUTATION)
+    Optional<Loan> findWithBookById(Long id);
+
+    // Hämtar flera lån med bok och författare i en SQL-sats (används vid batch-återlämning)
+    @EntityGraph(Loan.GRAPH_MUTATION)
+    List<Loan> findAllWithBookByIdIn(Collection<Long> ids);
+
+    // Hämtar en sida med aktiva lån vars förfallodatum ligger mellan dueFrom och dueTo (båda inklusive)
+    // Keyset-paginering på (förfallodatum, lån-ID): raderna efter (afterDueDate, afterId) returneras
+    // Använder det partiella indexet idx_loans_active_due_date, som redan är sorterat i den ordningen
+    // Låntagare, bok och författare hämtas i samma SQL-sats (Loan.details)
+    @Query("SELECT l FROM Loan l " +
+            "WHERE l.returnedDate IS NULL AND l.dueDate >= :dueFrom AND l.dueDate <= :dueTo " +
+            "AND (l.dueDate > :afterDueDate OR (l.dueDate = :afterDueDate AND l.id > :afterId)) " +
+            "ORDER BY l.dueDate, l.id")
+    @EntityGraph(Loan.GRAPH_DETAILS)
+    List<Loan> findActivePageByDueDate(@Param("dueFrom") LocalDate dueFrom,
+                                       @Param("dueTo") LocalDate dueTo,
+                                       @Param("afterDueDate") LocalDate afterDueDate,
+                                       @Param("afterId") Long afterId,
+                                       Limit limit);
 
 }
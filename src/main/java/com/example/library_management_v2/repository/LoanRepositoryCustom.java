@@ -0,0 +1,30 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.dto.LoanStateDTO;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Egna metoder för LoanRepository som kräver JDBC (implementeras i LoanRepositoryCustomImpl)
+public interface LoanRepositoryCustom {
+
+    // Markerar flera lån som återlämnade i en enda JDBC-batch, bara de som inte redan är återlämnade
+    // Returnerar antal uppdaterade rader per lån-ID i samma ordning (0 = redan återlämnat)
+    int[] markReturnedBatch(List<Long> loanIds, LocalDate returnedDate);
+
+    // Återställer lånen till värdena från händelseloggen i JDBC-batchar: befintliga lån uppdateras
+    // (okända värden lämnas orörda, ett återlämningsdatum tas aldrig bort och förfallodatumet flyttas
+    // aldrig tidigare), saknade lån skapas om alla värden är kända
+    // Returnerar 1 per återställt lån i samma ordning (0 = lånet saknas och kan inte skapas)
+    int[] restoreLoans(List<LoanStateDTO> loans);
+
+    // Tar bort återlämnade lån som har flyttats till lånearkivet i en enda JDBC-batch
+    // Returnerar antal borttagna rader per lån-ID i samma ordning (0 = saknas eller inte återlämnat)
+    int[] deleteReturnedLoans(List<Long> loanIds);
+
+    // Läser alla lån (eller en användares lån om userId inte är null) i ID-ordning med en framåtriktad cursor,
+    // en rad i taget till handler
+    // Kolumner: loan_id, user_id, book_id, book_title, borrowed_date, due_date, returned_date
+    void exportAll(Long userId, int fetchSize, RowCallbackHandler handler);
+}
@@ -0,0 +1,152 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.dto.LoanStateDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.time.LocalDate;
+import java.util.List;
+
+// JDBC-batchade uppdateringar av lån och export med cursor
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int[] markReturnedBatch(List<Long> loanIds, LocalDate returnedDate) {
+        if (loanIds.isEmpty()) {
+            return new int[0];
+        }
+        entityManager.flush();
+        // java.sql.Date binds på samma sätt som Hibernate binder LocalDate
+        Date date = Date.valueOf(returnedDate);
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE loans SET returned_date = ? WHERE loan_id = ? AND returned_date IS NULL",
+                loanIds,
+                loanIds.size(),
+                (statement, loanId) -> {
+                    statement.setDate(1, date);
+                    statement.setLong(2, loanId);
+                })[0];
+        // Som clearAutomatically: entiteter i persistence context har nu inaktuella värden
+        entityManager.clear();
+        return counts;
+    }
+
+    @Override
+    public int[] restoreLoans(List<LoanStateDTO> loans) {
+        if (loans.isEmpty()) {
+            return new int[0];
+        }
+        entityManager.flush();
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE loans SET user_id = COALESCE(?, user_id), book_id = COALESCE(?, book_id), " +
+                        "borrowed_date = COALESCE(?, borrowed_date), " +
+                        "due_date = CASE WHEN due_date IS NULL OR due_date < ? THEN ? ELSE due_date END, " +
+                        "returned_date = COALESCE(?, returned_date) WHERE loan_id = ?",
+                loans,
+                loans.size(),
+                (statement, loan) -> {
+                    setLong(statement, 1, loan.getUserId());
+                    setLong(statement, 2, loan.getBookId());
+                    setDate(statement, 3, loan.getBorrowedDate());
+                    setDate(statement, 4, loan.getDueDate());
+                    setDate(statement, 5, loan.getDueDate());
+                    setDate(statement, 6, loan.getReturnedDate());
+                    statement.setLong(7, loan.getLoanId());
+                })[0];
+
+        List<LoanStateDTO> missing = new ArrayList<>();
+        for (int i = 0; i < loans.size(); i++) {
+            if (counts[i] == 0 && loans.get(i).isComplete()) {
+                missing.add(loans.get(i));
+                counts[i] = 1;
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO loans (loan_id, user_id, book_id, borrowed_date, due_date, returned_date) " +
+                            "VALUES (?, ?, ?, ?, ?, ?)",
+                    missing,
+                    missing.size(),
+                    (statement, loan) -> {
+                        statement.setLong(1, loan.getLoanId());
+                        statement.setLong(2, loan.getUserId());
+                        statement.setLong(3, loan.getBookId());
+                        setDate(statement, 4, loan.getBorrowedDate());
+                        setDate(statement, 5, loan.getDueDate());
+                        setDate(statement, 6, loan.getReturnedDate());
+                    });
+
+            // Lånen fick sina ID:n i en tidigare körning, men databasen kan vara äldre än loggen:
+            // räkna upp id_blocks förbi dem så att BlockIdGenerator inte delar ut samma ID igen
+            long maxId = missing.stream().mapToLong(LoanStateDTO::getLoanId).max().orElseThrow();
+            jdbcTemplate.update("UPDATE id_blocks SET next_id = ? WHERE name = 'loans' AND next_id <= ?",
+                    maxId + 1, maxId);
+        }
+        entityManager.clear();
+        return counts;
+    }
+
+    private static void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value != null) {
+            statement.setLong(index, value);
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private static void setDate(PreparedStatement statement, int index, LocalDate value) throws SQLException {
+        if (value != null) {
+            statement.setDate(index, Date.valueOf(value));
+        } else {
+            statement.setNull(index, Types.DATE);
+        }
+    }
+
+    @Override
+    public int[] deleteReturnedLoans(List<Long> loanIds) {
+        if (loanIds.isEmpty()) {
+            return new int[0];
+        }
+        entityManager.flush();
+        int[] counts = jdbcTemplate.batchUpdate(
+                "DELETE FROM loans WHERE loan_id = ? AND returned_date IS NOT NULL",
+                loanIds,
+                loanIds.size(),
+                (statement, loanId) -> statement.setLong(1, loanId))[0];
+        entityManager.clear();
+        return counts;
+    }
+
+    @Override
+    public void exportAll(Long userId, int fetchSize, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT l.loan_id, l.user_id, l.book_id, b.title AS book_title, " +
+                            "l.borrowed_date, l.due_date, l.returned_date " +
+                            "FROM loans l JOIN books b ON b.book_id = l.book_id " +
+                            (userId != null ? "WHERE l.user_id = ? " : "") +
+                            "ORDER BY l.loan_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            if (userId != null) {
+                statement.setLong(1, userId);
+            }
+            return statement;
+        }, handler);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.UserLoanSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Uppdateringarna räknar upp och ner direkt i databasen (UPDATE ... SET x = x + 1), så två samtidiga
+// transaktioner kan aldrig skriva över varandras ändringar. De returnerar 0 om användaren saknar rad.
+@Repository
+public interface UserLoanSummaryRepository extends JpaRepository<UserLoanSummary, Long>, UserLoanSummaryRepositoryCustom {
+
+    // Nya lån: fler aktiva och fler totalt (nya lån är aldrig försenade eller förlängda)
+    // Villkorat på lånereglerna: raden uppdateras bara om användaren får högst maxActiveLoans aktiva lån
+    // och inte har något aktivt lån med förfallodatum före overdueBefore (via idx_loans_active_user_id)
+    // Returnerar 0 även när reglerna inte tillåter lånen
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserLoanSummary s SET s.activeLoans = s.activeLoans + :count, " +
+            "s.totalLoans = s.totalLoans + :count, s.updatedAt = :now " +
+            "WHERE s.userId = :userId AND s.activeLoans + :count <= :maxActiveLoans " +
+            "AND NOT EXISTS (SELECT l.id FROM Loan l " +
+            "WHERE l.user.id = s.userId AND l.returnedDate IS NULL AND l.dueDate < :overdueBefore)")
+    int addLoansWithinLimits(@Param("userId") Long userId, @Param("count") int count,
+                             @Param("maxActiveLoans") int maxActiveLoans,
+                             @Param("overdueBefore") LocalDate overdueBefore, @Param("now") LocalDateTime now);
+
+    // Ett återlämnat lån: ett aktivt mindre, och ett försenat mindre om lånet var räknat som försenat
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserLoanSummary s SET s.activeLoans = s.activeLoans - 1, " +
+            "s.extendedLoans = s.extendedLoans - :extended, " +
+            "s.overdueLoans = s.overdueLoans - CASE WHEN :dueDate < s.overdueAsOf THEN 1 ELSE 0 END, " +
+            "s.updatedAt = :now " +
+            "WHERE s.userId = :userId")
+    int removeLoan(@Param("userId") Long userId, @Param("dueDate") LocalDate dueDate,
+                   @Param("extended") int extended, @Param("now") LocalDateTime now);
+
+    // Ett förlängt lån: ett förlängt till, och inte längre försenat om det nya förfallodatumet inte har passerats
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserLoanSummary s SET s.extendedLoans = s.extendedLoans + 1, " +
+            "s.overdueLoans = s.overdueLoans " +
+            "- CASE WHEN :previousDueDate < s.overdueAsOf THEN 1 ELSE 0 END " +
+            "+ CASE WHEN :dueDate < s.overdueAsOf THEN 1 ELSE 0 END, " +
+            "s.updatedAt = :now " +
+            "WHERE s.userId = :userId")
+    int extendLoan(@Param("userId") Long userId, @Param("previousDueDate") LocalDate previousDueDate,
+                   @Param("dueDate") LocalDate dueDate, @Param("now") LocalDateTime now);
+
+    // Räknar om aktiva och försenade lån för alla användare från lånen (nattligt)
+    // Båda underfrågorna går via det partiella indexet idx_loans_active_user_id
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE UserLoanSummary s SET " +
+            "s.activeLoans = (SELECT COUNT(l) FROM Loan l " +
+            "WHERE l.user.id = s.userId AND l.returnedDate IS NULL), " +
+            "s.overdueLoans = (SELECT COUNT(l) FROM Loan l " +
+            "WHERE l.user.id = s.userId AND l.returnedDate IS NULL AND l.dueDate < :today), " +
+            "s.overdueAsOf = :today, s.updatedAt = :now")
+    int recalculateActiveAndOverdue(@Param("today") LocalDate today, @Param("now") LocalDateTime now);
+}
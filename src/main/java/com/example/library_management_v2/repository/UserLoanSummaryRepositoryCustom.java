@@ -0,0 +1,13 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.Loan;
+
+import java.util.List;
+
+// Egna metoder för UserLoanSummaryRepository som kräver JDBC (implementeras i UserLoanSummaryRepositoryCustomImpl)
+public interface UserLoanSummaryRepositoryCustom {
+
+    // Samma som removeLoan för flera återlämnade lån, i en enda JDBC-batch
+    // Returnerar antal uppdaterade rader per lån i samma ordning (0 = användaren saknar rad)
+    int[] removeLoansBatch(List<Loan> loans);
+}
@@ -0,0 +1,40 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.Loan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// JDBC-batchade uppdateringar av lånesammanställningarna
+public class UserLoanSummaryRepositoryCustomImpl implements UserLoanSummaryRepositoryCustom {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int[] removeLoansBatch(List<Loan> loans) {
+        if (loans.isEmpty()) {
+            return new int[0];
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        // java.sql.Date binds på samma sätt som Hibernate binder LocalDate
+        return jdbcTemplate.batchUpdate(
+                "UPDATE user_loan_summaries SET active_loans = active_loans - 1, " +
+                        "extended_loans = extended_loans - ?, " +
+                        "overdue_loans = overdue_loans - CASE WHEN ? < overdue_as_of THEN 1 ELSE 0 END, " +
+                        "updated_at = ? " +
+                        "WHERE user_id = ?",
+                loans,
+                loans.size(),
+                (statement, loan) -> {
+                    statement.setInt(1, loan.isExtended() ? 1 : 0);
+                    statement.setDate(2, Date.valueOf(loan.getDueDate()));
+                    statement.setTimestamp(3, now);
+                    statement.setLong(4, loan.getUser().getId());
+                })[0];
+    }
+}
@@ -3,39 +3,80 @@ package com.example.library_management_v2.service;
 
 import com.example.library_management_v2.dto.AuthorDTO;
 import com.example.library_management_v2.dto.CreateAuthorDTO;
+import com.example.library_management_v2.dto.CursorPageDTO;
 import com.example.library_management_v2.entity.Author;
 import com.example.library_management_v2.exception.AuthorNotFoundException;
 import com.example.library_management_v2.exception.DuplicateAuthorException;
 import com.example.library_management_v2.repository.AuthorRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("library.service")
 public class AuthorService {
 
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${library.pagination.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${library.pagination.max-size:500}")
+    private int maxPageSize;
+
     /**
      * Hämtar alla författare i systemet
+     * Resultatet cachas tills en ny författare skapas (se CatalogCache)
      * @return Lista med alla författare som AuthorDTO
      */
-
+    @Cacheable(cacheNames = CatalogCache.AUTHORS, key = "@catalogCache.authorVersion()")
     public List<AuthorDTO> getAllAuthors() {
         // Hämta alla författare från databasen
         List<Author> authors = authorRepository.findAll();
 
-        // Konvertera och returnera författarna som DTOs
+        // Konvertera och returnera författarna som DTOs (listan delas via cachen och får inte ändras)
         return authors.stream()
                 .map(this::convertToDTO)
-                .collect(Collectors.toList());
+                .toList();
     }
 
 
+    /**
+     * Hämtar en sida med författare (keyset-paginering på author_id)
+     * @param cursor Token från föregående sida (null för första sidan)
+     * @param size Önskad sidstorlek (null ger standardstorleken)
+     * @return En sida med författare och en cursor till nästa sida
+     */
+    public CursorPageDTO<AuthorDTO> getAuthorsPage(String cursor, Integer size) {
+        long afterId = PageCursor.decode("authors", cursor);
+        int pageSize = PageCursor.pageSize(size, defaultPageSize, maxPageSize);
+
+        // Hämta en rad extra för att veta om det finns en nästa sida
+        List<Author> authors = authorRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1));
+
+        String nextCursor = null;
+        if (authors.size() > pageSize) {
+            authors = authors.subList(0, pageSize);
+            nextCursor = PageCursor.encode("authors", authors.get(pageSize - 1).getId());
+        }
 
+        List<AuthorDTO> items = authors.stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+        return new CursorPageDTO<>(items, nextCursor);
+    }
 
     // Hitta författare baserat på efternamn
     public List<AuthorDTO> getAuthorsByLastName(String lastName) {
@@ -64,7 +105,8 @@ public class AuthorService {
                 .collect(Collectors.toList());
     }
 
-    // Skapa en ny författare
+    // Skapa en ny författare, kontrollen av dubbletter och insert i samma transaktion
+    @Transactional
     public AuthorDTO createAuthor(CreateAuthorDTO createAuthorDTO) {
         // Validera indata (ytterligare validering utöver annotations)
         if (createAuthorDTO.getBirthYear() != null && createAuthorDTO.getBirthYear() > java.time.Year.now().getValue()) {
@@ -91,6 +133,9 @@ public class AuthorService {
         // Spara författaren i databasen
         Author savedAuthor = authorRepository.save(author);
 
+        // Författarlistan i cachen är nu inaktuell
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.AUTHORS));
+
         // Konvertera och returnera den sparade författaren som DTO
         return convertToDTO(savedAuthor);
     }
@@ -0,0 +1,296 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.exception.BookNotAvailableException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Antal exemplar per bok som inte är utlånade (lediga plus reserverade åt kön, HoldService)
+ * och totalt antal exemplar, i minnet. Ett reserverat exemplar räknas tills det lånas, och är
+ * reserverat högst library.holds.ready-days dagar innan det går vidare i kön eller blir ledigt.
+ *
+ * Boken slås upp direkt med sitt ID som position i en long-array (bok-ID:n delas ut i följd, i block
+ * från id_blocks), och båda antalen packas i samma long. Ingen boxning och inga objekt per bok:
+ * 8 byte per bok plus ledigt utrymme när arrayen växer.
+ *
+ * Indexet byggs vid start (BookService.buildAvailabilityIndex) och uppdateras efter varje commit
+ * som lånar ut eller lämnar tillbaka exemplar (LoanService) eller sparar böcker (AvailabilityIndexListener).
+ * Det används bara för att neka lån som inte kan lyckas (alla exemplar är utlånade) innan någon
+ * databastransaktion öppnas; alla andra lån går som vanligt till databasen, som har sista ordet.
+ * En bok som inte finns i indexet räknas som okänd, aldrig som utlånad.
+ */
+@Component
+public class AvailabilityIndex {
+
+    // Svar från onShelf när boken inte finns i indexet
+    public static final int UNKNOWN = -1;
+
+    // Högre ID:n indexeras inte (128 MB för arrayen i värsta fall)
+    static final long MAX_BOOK_ID = 1 << 24;
+
+    // Tom position, och en bok som ändrades medan indexet byggdes (okänd tills boken sparas igen)
+    private static final long EMPTY = 0;
+    private static final long STALE = 1;
+    // Satt för alla böcker i indexet; exemplar utan lån i bit 0-30, totalt antal i bit 31-61
+    private static final long PRESENT = 1L << 62;
+    private static final long COUNT_MASK = (1L << 31) - 1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private volatile AtomicLongArray entries = new AtomicLongArray(INITIAL_CAPACITY);
+    private int size;
+    private volatile boolean building;
+    private volatile boolean ready;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Antal exemplar av boken som inte är utlånade, eller UNKNOWN
+     * Exemplaren kan vara reserverade åt någon i kön, 0 betyder däremot alltid att alla exemplar är utlånade
+     */
+    public int onShelf(long bookId) {
+        long entry = entry(bookId);
+        return (entry & PRESENT) != 0 ? (int) (entry & COUNT_MASK) : UNKNOWN;
+    }
+
+    /**
+     * Totalt antal exemplar av boken, eller UNKNOWN
+     */
+    public int total(long bookId) {
+        long entry = entry(bookId);
+        return (entry & PRESENT) != 0 ? (int) ((entry >>> 31) & COUNT_MASK) : UNKNOWN;
+    }
+
+    /**
+     * Snabb kontroll innan ett lån: Boolean.FALSE om alla exemplar är utlånade,
+     * Boolean.TRUE om något exemplar finns på hyllan (det kan vara reserverat åt kön) och null om okänt
+     */
+    public Boolean isAvailable(long bookId) {
+        int onShelf = onShelf(bookId);
+        return onShelf == UNKNOWN ? null : onShelf > 0;
+    }
+
+    /**
+     * Kastar BookNotAvailableException om indexet vet att alla exemplar av boken är utlånade
+     */
+    public void checkAvailable(Long bookId) {
+        if (bookId != null && Boolean.FALSE.equals(isAvailable(bookId))) {
+            rejected.increment();
+            throw new BookNotAvailableException(notAvailableMessage(bookId));
+        }
+    }
+
+    /**
+     * Samma kontroll för flera böcker på en gång (POST /loans/batch)
+     * Returnera de bok-ID:n som indexet vet är helt utlånade, varje bok räknas en gång som nekat lån
+     */
+    public Set<Long> unavailable(Collection<Long> bookIds) {
+        Set<Long> unavailable = new HashSet<>();
+        for (Long bookId : bookIds) {
+            if (bookId != null && Boolean.FALSE.equals(isAvailable(bookId)) && unavailable.add(bookId)) {
+                rejected.increment();
+            }
+        }
+        return unavailable;
+    }
+
+    // Felet för en bok som indexet nekar
+    public static String notAvailableMessage(Long bookId) {
+        return "Boken med ID: " + bookId + " är inte tillgänglig för närvarande (alla exemplar är utlånade)";
+    }
+
+    /**
+     * Lägger till eller ersätter en bok
+     */
+    public synchronized void put(long bookId, int onShelf, int total) {
+        if (bookId <= 0 || bookId >= MAX_BOOK_ID || onShelf < 0 || total < 0) {
+            return;
+        }
+        AtomicLongArray array = ensureCapacity((int) bookId);
+        if ((array.get((int) bookId) & PRESENT) == 0) {
+            size++;
+        }
+        array.set((int) bookId, encode(onShelf, total));
+    }
+
+    /**
+     * Ändrar antalet exemplar som inte är utlånade (-1 vid utlåning, +1 vid återlämning)
+     * Böcker som inte finns i indexet ignoreras. Blir antalet orimligt tas boken bort,
+     * då stämmer indexet inte med databasen.
+     */
+    public synchronized void adjust(long bookId, int delta) {
+        if (bookId <= 0 || bookId >= MAX_BOOK_ID) {
+            return;
+        }
+        AtomicLongArray array = entries;
+        if (bookId >= array.length()) {
+            if (building) {
+                // Bygget har inte kommit till boken än och skulle annars läsa in ett gammalt värde
+                ensureCapacity((int) bookId).set((int) bookId, STALE);
+            }
+            return;
+        }
+        long entry = array.get((int) bookId);
+        if ((entry & PRESENT) == 0) {
+            if (building && entry == EMPTY) {
+                array.set((int) bookId, STALE);
+            }
+            return;
+        }
+        int onShelf = (int) (entry & COUNT_MASK) + delta;
+        int total = (int) ((entry >>> 31) & COUNT_MASK);
+        if (onShelf < 0 || onShelf > total) {
+            remove(bookId);
+            return;
+        }
+        array.set((int) bookId, encode(onShelf, total));
+    }
+
+    /**
+     * Tar bort en bok (blir okänd)
+     */
+    public synchronized void remove(long bookId) {
+        AtomicLongArray array = entries;
+        if (bookId <= 0 || bookId >= array.length()) {
+            return;
+        }
+        if ((array.get((int) bookId) & PRESENT) != 0) {
+            size--;
+        }
+        array.set((int) bookId, building ? STALE : EMPTY);
+    }
+
+    /**
+     * Som adjust för flera exemplar, efter commit (direkt om ingen transaktion pågår)
+     * Vid rollback ändras ingenting. Samma bok kan förekomma flera gånger.
+     */
+    public void adjustAfterCommit(Collection<Long> bookIds, int delta) {
+        if (!bookIds.isEmpty()) {
+            afterCommit(() -> bookIds.forEach(bookId -> adjust(bookId, delta)));
+        }
+    }
+
+    /**
+     * Som put efter commit (direkt om ingen transaktion pågår)
+     */
+    public void putAfterCommit(long bookId, int onShelf, int total) {
+        afterCommit(() -> put(bookId, onShelf, total));
+    }
+
+    /**
+     * Som remove efter commit (direkt om ingen transaktion pågår)
+     */
+    public void removeAfterCommit(long bookId) {
+        afterCommit(() -> remove(bookId));
+    }
+
+    /**
+     * Inför en ny uppbyggnad: tömmer indexet, och ändringar under bygget markerar böckerna som okända
+     */
+    public synchronized void startBuilding() {
+        entries = new AtomicLongArray(INITIAL_CAPACITY);
+        size = 0;
+        ready = false;
+        building = true;
+    }
+
+    /**
+     * En bok från databasen under bygget. Böcker som redan har sparats eller ändrats sedan bygget
+     * startade skrivs inte över, uppbyggnadens värde kan vara äldre.
+     */
+    public synchronized void load(long bookId, int onShelf, int total) {
+        if (bookId <= 0 || bookId >= MAX_BOOK_ID || onShelf < 0 || total < 0) {
+            return;
+        }
+        AtomicLongArray array = ensureCapacity((int) bookId);
+        if (array.get((int) bookId) == EMPTY) {
+            size++;
+            array.set((int) bookId, encode(onShelf, total));
+        }
+    }
+
+    // Markera att indexet är fullständigt uppbyggt
+    public synchronized void markReady() {
+        building = false;
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Antal lån som checkAvailable har nekat sedan start
+    public long rejectedLoans() {
+        return rejected.sum();
+    }
+
+    // Minnet som arrayen använder: 8 byte per position och arrayens huvud
+    public long memoryBytes() {
+        return 16L + 8L * entries.length();
+    }
+
+    /**
+     * Statistik: antal böcker, arrayens storlek, minne totalt och per bok och antal nekade lån
+     */
+    public Map<String, Object> snapshot() {
+        int books = size();
+        long bytes = memoryBytes();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        result.put("books", books);
+        result.put("capacity", entries.length());
+        result.put("memoryBytes", bytes);
+        result.put("bytesPerBook", books > 0 ? Math.round(100.0 * bytes / books) / 100.0 : 0);
+        result.put("rejectedLoans", rejectedLoans());
+        return result;
+    }
+
+    private long entry(long bookId) {
+        AtomicLongArray array = entries;
+        return bookId > 0 && bookId < array.length() ? array.get((int) bookId) : EMPTY;
+    }
+
+    private static long encode(int onShelf, int total) {
+        return PRESENT | ((long) total << 31) | onShelf;
+    }
+
+    // Växer med 50 % åt gången (anropas med låset)
+    private AtomicLongArray ensureCapacity(int bookId) {
+        AtomicLongArray array = entries;
+        if (bookId < array.length()) {
+            return array;
+        }
+        int capacity = (int) Math.min(MAX_BOOK_ID, Math.max(bookId + 1L, array.length() * 3L / 2));
+        AtomicLongArray grown = new AtomicLongArray(capacity);
+        for (int i = 0; i < array.length(); i++) {
+            grown.set(i, array.get(i));
+        }
+        entries = grown;
+        return grown;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.entity.Book;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// JPA-lyssnare som håller tillgänglighetsindexet i synk när böcker sparas, ändras eller tas bort
+// Ändringarna görs först efter commit, så en bok som rullas tillbaka hamnar aldrig i indexet
+@Component
+public class AvailabilityIndexListener {
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    // En ny bok har inga lån och ingen kö, alla lediga exemplar står på hyllan
+    @PostPersist
+    public void onPersist(Book book) {
+        availabilityIndex.putAfterCommit(book.getId(), book.getAvailableCopies(), book.getTotalCopies());
+    }
+
+    // Antalet lediga exemplar i entiteten räknar inte med exemplar som är reserverade åt kön,
+    // så boken blir okänd i stället (lånen går till databasen)
+    @PostUpdate
+    @PostRemove
+    public void onChange(Book book) {
+        availabilityIndex.removeAfterCommit(book.getId());
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.library_management_v2.service;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverterat sökindex för böcker, hålls i minnet.
+ * Varje ord i titel och författarnamn pekar på de böcker där ordet förekommer.
+ * Orden sparas i en sorterad ordlista så att prefixsökning ("lind" -> "lindgren") går snabbt,
+ * och diakritiska tecken viks bort så att "Läckberg" hittas med "lackberg".
+ * Indexet innehåller bara ID:n; själva bokraderna hämtas från databasen efter rankningen.
+ */
+@Component
+public class BookSearchIndex {
+
+    // Fält som ett ord kan förekomma i (bitmask)
+    // Författarsökningen matchar bara efternamnet, som LIKE-sökningen i databasen; förnamnet hittas via fritext
+    static final byte TITLE = 1;
+    static final byte AUTHOR = 2;
+    static final byte AUTHOR_FIRST_NAME = 4;
+    static final byte ANY = TITLE | AUTHOR | AUTHOR_FIRST_NAME;
+
+    // Korta ord prefixmatchas inte, annars skulle t.ex. "a" expandera till nästan hela ordlistan
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    // Max antal sökord per fråga (ett bitfält per kandidat håller reda på vilka som matchat)
+    private static final int MAX_CLAUSES = 64;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> dictionary = new TreeMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private volatile boolean ready;
+
+    /**
+     * Lägger till eller ersätter en bok i indexet
+     */
+    public void put(long bookId, String title, String authorFirstName, String authorLastName) {
+        // Sorterat så att två versioner av samma bok kan jämföras ord för ord
+        TreeMap<String, Byte> fieldsByTerm = new TreeMap<>();
+        tokenize(title).forEach(term -> fieldsByTerm.merge(term, TITLE, (a, b) -> (byte) (a | b)));
+        tokenize(authorFirstName).forEach(term -> fieldsByTerm.merge(term, AUTHOR_FIRST_NAME, (a, b) -> (byte) (a | b)));
+        tokenize(authorLastName).forEach(term -> fieldsByTerm.merge(term, AUTHOR, (a, b) -> (byte) (a | b)));
+        String[] terms = fieldsByTerm.keySet().toArray(new String[0]);
+        byte[] fields = new byte[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            fields[i] = fieldsByTerm.get(terms[i]);
+        }
+
+        // Vid utlåning uppdateras bara antalet exemplar, då ger titel och författare samma ord
+        // och indexet behöver inte röras
+        lock.readLock().lock();
+        try {
+            Document existing = documents.get(bookId);
+            if (existing != null && Arrays.equals(existing.terms(), terms) && Arrays.equals(existing.fields(), fields)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(bookId);
+
+            for (int i = 0; i < terms.length; i++) {
+                Postings postings = dictionary.computeIfAbsent(terms[i], key -> new Postings());
+                postings.add(bookId, fields[i]);
+                // Återanvänd ordlistans String-instans så att samma ord inte lagras flera gånger
+                terms[i] = dictionary.ceilingKey(terms[i]);
+            }
+            documents.put(bookId, new Document(terms, fields));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tar bort en bok ur indexet
+     */
+    public void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tömmer indexet, t.ex. inför en ny uppbyggnad
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            dictionary.clear();
+            documents.clear();
+            ready = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Markera att indexet är fullständigt uppbyggt och kan användas för sökning
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Söker i indexet och returnerar bok-ID:n sorterade efter relevans
+     * title Ord som ska matcha i titeln (kan vara null)
+     * author Ord som ska matcha i författarens efternamn (kan vara null)
+     * query Fritext som matchar i titeln och hela författarnamnet (kan vara null)
+     * En bok matchar om alla ord i minst en av de angivna delarna matchar (titel ELLER författare ELLER fritext)
+     */
+    public List<Long> search(String title, String author, String query, int limit) {
+        List<Clause> clauses = new ArrayList<>();
+        List<Long> groupMasks = new ArrayList<>();
+        addGroup(clauses, groupMasks, tokenize(title), TITLE);
+        addGroup(clauses, groupMasks, tokenize(author), AUTHOR);
+        addGroup(clauses, groupMasks, tokenize(query), ANY);
+
+        if (clauses.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Candidate> candidates = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+
+            for (int c = 0; c < clauses.size(); c++) {
+                Clause clause = clauses.get(c);
+
+                for (Map.Entry<String, Postings> entry : matchingTerms(clause.term()).entrySet()) {
+                    String term = entry.getKey();
+                    Postings postings = entry.getValue();
+
+                    // Ovanliga ord väger tyngre (idf), exakta träffar väger tyngre än prefixträffar
+                    double idf = Math.log(1.0 + (double) documentCount / postings.size);
+                    double closeness = term.equals(clause.term()) ? 1.0 : (double) clause.term().length() / term.length();
+
+                    for (int p = 0; p < postings.size; p++) {
+                        byte matchedFields = (byte) (postings.fields[p] & clause.fields());
+                        if (matchedFields == 0) {
+                            continue;
+                        }
+
+                        double fieldWeight = (matchedFields & TITLE) != 0 ? 2.0 : 1.0;
+                        Candidate candidate = candidates.computeIfAbsent(postings.ids[p], id -> new Candidate(clauses.size()));
+                        candidate.matched |= 1L << c;
+                        candidate.scores[c] = Math.max(candidate.scores[c], idf * closeness * fieldWeight);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (Map.Entry<Long, Candidate> entry : candidates.entrySet()) {
+            if (isComplete(entry.getValue().matched, groupMasks)) {
+                hits.add(new Hit(entry.getKey(), entry.getValue().score()));
+            }
+        }
+
+        // Högst poäng först, vid lika poäng lägst ID först
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparingLong(Hit::bookId));
+
+        List<Long> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(hits.get(i).bookId());
+        }
+        return result;
+    }
+
+    /**
+     * Normaliserar text för indexering och sökning: gemener och utan diakritiska tecken (å/ä/ö -> a/a/o)
+     */
+    static String fold(String text) {
+        String lower = text.toLowerCase(Locale.ROOT)
+                .replace("æ", "ae")
+                .replace("ø", "o")
+                .replace("ß", "ss");
+        return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    // Delar upp text i normaliserade ord (utan dubbletter, i ordning)
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+
+        Set<String> unique = new LinkedHashSet<>(Arrays.asList(NON_WORD.split(fold(text))));
+        for (String term : unique) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    // Ord i ordlistan som matchar sökordet: exakt, eller alla med sökordet som prefix
+    private NavigableMap<String, Postings> matchingTerms(String term) {
+        if (term.length() < MIN_PREFIX_LENGTH) {
+            Postings exact = dictionary.get(term);
+            return exact == null ? Collections.emptyNavigableMap() : new TreeMap<>(Map.of(term, exact));
+        }
+        return dictionary.subMap(term, true, term + Character.MAX_VALUE, false);
+    }
+
+    private void addGroup(List<Clause> clauses, List<Long> groupMasks, List<String> terms, byte fields) {
+        long mask = 0;
+        for (String term : terms) {
+            if (clauses.size() == MAX_CLAUSES) {
+                break;
+            }
+            mask |= 1L << clauses.size();
+            clauses.add(new Clause(term, fields));
+        }
+        if (mask != 0) {
+            groupMasks.add(mask);
+        }
+    }
+
+    private boolean isComplete(long matched, List<Long> groupMasks) {
+        for (long mask : groupMasks) {
+            if ((matched & mask) == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeInternal(long bookId) {
+        Document document = documents.remove(bookId);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms()) {
+            Postings postings = dictionary.get(term);
+            if (postings != null && postings.remove(bookId) && postings.size == 0) {
+                dictionary.remove(term);
+            }
+        }
+    }
+
+    // De ord en bok är indexerad med (sorterade) och vilka fält varje ord förekommer i
+    private record Document(String[] terms, byte[] fields) {}
+
+    // Ett sökord och vilka fält det får matcha i
+    private record Clause(String term, byte fields) {}
+
+    // En bok som matchat och dess sammanlagda poäng
+    private record Hit(long bookId, double score) {}
+
+    // En bok som matchat minst ett sökord
+    private static class Candidate {
+        long matched;
+        final double[] scores;
+
+        Candidate(int clauseCount) {
+            this.scores = new double[clauseCount];
+        }
+
+        double score() {
+            double sum = 0;
+            for (double s : scores) {
+                sum += s;
+            }
+            return sum;
+        }
+    }
+
+    // Sorterad lista med bok-ID:n för ett ord, plus i vilka fält ordet förekommer
+    private static class Postings {
+        long[] ids = new long[2];
+        byte[] fields = new byte[2];
+        int size;
+
+        void add(long id, byte field) {
+            // Nya böcker får oftast högre ID, då räcker det att lägga till sist
+            int index = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0 && index < size) {
+                fields[index] |= field;
+                return;
+            }
+            int insertAt = index >= 0 ? index : -index - 1;
+
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            System.arraycopy(fields, insertAt, fields, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            fields[insertAt] = field;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(fields, index + 1, fields, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
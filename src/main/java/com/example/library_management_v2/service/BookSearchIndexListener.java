@@ -0,0 +1,35 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// JPA-lyssnare som håller sökindexet i synk när böcker sparas, ändras eller tas bort
+// Rader som senare rullas tillbaka kan ligga kvar i indexet, men de filtreras bort
+// eftersom sökresultaten alltid hämtas från databasen
+@Component
+public class BookSearchIndexListener {
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Book book) {
+        Author author = book.getAuthor();
+        bookSearchIndex.put(
+                book.getId(),
+                book.getTitle(),
+                author != null ? author.getFirstName() : null,
+                author != null ? author.getLastName() : null);
+    }
+
+    @PostRemove
+    public void onRemove(Book book) {
+        bookSearchIndex.remove(book.getId());
+    }
+}
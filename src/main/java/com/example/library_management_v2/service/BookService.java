@@ -2,18 +2,36 @@ package com.example.library_management_v2.service;
 
 import com.example.library_management_v2.dto.BookDTO;
 import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.dto.CursorPageDTO;
 import com.example.library_management_v2.entity.Author;
 import com.example.library_management_v2.entity.Book;
 import com.example.library_management_v2.repository.AuthorRepository;
 import com.example.library_management_v2.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("library.service")
 public class BookService {
 
     @Autowired
@@ -22,15 +40,114 @@ public class BookService {
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.search.max-results:1000}")
+    private int maxSearchResults;
+
+    @Value("${library.pagination.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${library.pagination.max-size:500}")
+    private int maxPageSize;
+
+    // Hur många entiteter som får ligga i persistence context innan den töms vid strömning
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
+    // Rader per hämtning när tillgänglighetsindexet byggs
+    private static final int AVAILABILITY_FETCH_SIZE = 1000;
+
     /**
      * Hämtar alla böcker i systemet
+     * Resultatet cachas tills katalogen ändras (se CatalogCache)
      * @return Lista med alla böcker som BookWithDetailsDTO
      */
+    @Cacheable(cacheNames = CatalogCache.BOOKS, key = "@catalogCache.bookVersion()")
     public List<BookWithDetailsDTO> getAllBooks() {
-        List<Book> books = bookRepository.findAll();
-        return books.stream()
-                .map(this::convertToBookWithDetailsDTO)
-                .collect(Collectors.toList());
+        // Projektionen bygger DTO:erna direkt i SQL, så författarna laddas inte en och en
+        // Listan delas mellan anrop via cachen och får därför inte kunna ändras
+        return List.copyOf(bookRepository.findAllWithDetails());
+    }
+
+    /**
+     * Hämtar en sida med böcker (keyset-paginering på book_id)
+     * @param cursor Token från föregående sida (null för första sidan)
+     * @param size Önskad sidstorlek (null ger standardstorleken)
+     * @return En sida med böcker och en cursor till nästa sida
+     */
+    public CursorPageDTO<BookWithDetailsDTO> getBooksPage(String cursor, Integer size) {
+        long afterId = PageCursor.decode("books", cursor);
+        int pageSize = PageCursor.pageSize(size, defaultPageSize, maxPageSize);
+
+        // Hämta en rad extra för att veta om det finns en nästa sida
+        List<BookWithDetailsDTO> books = bookRepository.findPageWithDetails(afterId, Limit.of(pageSize + 1));
+
+        String nextCursor = null;
+        if (books.size() > pageSize) {
+            books = books.subList(0, pageSize);
+            nextCursor = PageCursor.encode("books", books.get(pageSize - 1).getId());
+        }
+
+        return new CursorPageDTO<>(books, nextCursor);
+    }
+
+    /**
+     * Strömmar alla böcker en i taget till en mottagare, utan att bygga upp en lista i minnet
+     * @param consumer Tar emot varje bok som BookWithDetailsDTO (t.ex. skriver den till svaret)
+     */
+    @Transactional(readOnly = true)
+    public void streamBooks(Consumer<BookWithDetailsDTO> consumer) {
+        try (Stream<Book> books = bookRepository.streamAllWithAuthor()) {
+            Iterator<Book> iterator = books.iterator();
+            int count = 0;
+
+            while (iterator.hasNext()) {
+                consumer.accept(convertToBookWithDetailsDTO(iterator.next()));
+
+                // Töm persistence context med jämna mellanrum så att minnet inte växer med antalet rader
+                if (++count % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bygger upp sökindexet från databasen när applikationen har startat
+     * Fram till dess används den långsammare LIKE-sökningen
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildSearchIndex() {
+        bookSearchIndex.clear();
+        try (Stream<BookWithDetailsDTO> books = bookRepository.streamAllWithDetails()) {
+            books.forEach(book -> bookSearchIndex.put(
+                    book.getId(), book.getTitle(), book.getAuthorFirstName(), book.getAuthorLastName()));
+        }
+        bookSearchIndex.markReady();
+    }
+
+    /**
+     * Bygger upp tillgänglighetsindexet från databasen när applikationen har startat
+     * Fram till dess går alla lån till databasen
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildAvailabilityIndex() {
+        availabilityIndex.startBuilding();
+        bookRepository.availabilityAll(AVAILABILITY_FETCH_SIZE, resultSet -> availabilityIndex.load(
+                resultSet.getLong("book_id"), resultSet.getInt("on_shelf"), resultSet.getInt("total_copies")));
+        availabilityIndex.markReady();
     }
 
     /**
@@ -40,28 +157,70 @@ public class BookService {
      * @return Lista med matchande böcker
      */
     public List<BookWithDetailsDTO> searchBooks(String title, String authorLastName) {
-        List<Book> results = new ArrayList<>();
+        return searchBooks(title, authorLastName, null);
+    }
+
+    /**
+     * Söker böcker i sökindexet, rankade efter relevans
+     * Sökningen klarar prefix ("lind" hittar "Lindgren") och ignorerar å/ä/ö ("lackberg" hittar "Läckberg")
+     * @param title Ord som ska finnas i titeln (kan vara null)
+     * @param authorLastName Ord som ska finnas i författarens efternamn (kan vara null)
+     * @param query Fritext som söks i titeln och i författarens för- och efternamn (kan vara null)
+     * Resultatet cachas per sökning när indexet är klart, tills katalogen ändras (se CatalogCache)
+     * @return Lista med matchande böcker, mest relevanta först
+     */
+    @Cacheable(cacheNames = CatalogCache.BOOK_SEARCH,
+            key = "{@catalogCache.bookVersion(), #title, #authorLastName, #query}",
+            condition = "@bookSearchIndex.isReady()")
+    public List<BookWithDetailsDTO> searchBooks(String title, String authorLastName, String query) {
+        boolean hasTitle = title != null && !title.isEmpty();
+        boolean hasAuthor = authorLastName != null && !authorLastName.isEmpty();
+        boolean hasQuery = query != null && !query.isEmpty();
 
-        // Om titel är angiven, sök på den
-        if (title != null && !title.isEmpty()) {
-            results.addAll(bookRepository.findByTitleContainingIgnoreCase(title));
+        // Om ingen sökning angavs, returnera alla böcker
+        if (!hasTitle && !hasAuthor && !hasQuery) {
+            return List.copyOf(bookRepository.findAllWithDetails());
         }
 
-        // Om författarens efternamn är angivet, sök på det
-        if (authorLastName != null && !authorLastName.isEmpty()) {
-            results.addAll(bookRepository.findByAuthorLastNameContainingIgnoreCase(authorLastName));
+        // Indexet byggs vid uppstart, innan dess söker vi direkt i databasen
+        if (!bookSearchIndex.isReady()) {
+            return searchBooksWithLike(title, authorLastName, query);
         }
 
-        // Om ingen sökning angavs, returnera alla böcker
-        if ((title == null || title.isEmpty()) && (authorLastName == null || authorLastName.isEmpty())) {
-            results = bookRepository.findAll();
+        List<Long> rankedIds = bookSearchIndex.search(title, authorLastName, query, maxSearchResults);
+        if (rankedIds.isEmpty()) {
+            return List.of();
         }
 
-        // Konvertera resultaten till DTOs
-        return results.stream()
-                .distinct() // Ta bort eventuella dubbletter
-                .map(this::convertToBookWithDetailsDTO)
-                .collect(Collectors.toList());
+        // Hämta de aktuella raderna (t.ex. tillgängliga exemplar) från databasen i en SQL-sats
+        Map<Long, BookWithDetailsDTO> booksById = bookRepository.findWithDetailsByIdIn(rankedIds).stream()
+                .collect(Collectors.toMap(BookWithDetailsDTO::getId, Function.identity()));
+
+        // Behåll rankningen från indexet, ID:n som inte längre finns i databasen hoppas över
+        return rankedIds.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Söker böcker med LIKE direkt i databasen (utan index, kräver en full genomsökning av tabellen)
+     * Används innan sökindexet är klart, och som jämförelse i benchmarken
+     */
+    public List<BookWithDetailsDTO> searchBooksWithLike(String title, String authorLastName, String query) {
+        boolean hasTitle = title != null && !title.isEmpty();
+        boolean hasAuthor = authorLastName != null && !authorLastName.isEmpty();
+        boolean hasQuery = query != null && !query.isEmpty();
+
+        // Fritext söks på samma sätt som både titel och författare
+        return bookRepository.searchWithDetails(
+                hasTitle ? toLikePattern(title) : hasQuery ? toLikePattern(query) : null,
+                hasAuthor ? toLikePattern(authorLastName) : hasQuery ? toLikePattern(query) : null);
+    }
+
+    // Gör om söktexten till ett LIKE-mönster i gemener, t.ex. "Lind" -> "%lind%"
+    private String toLikePattern(String text) {
+        return "%" + text.toLowerCase() + "%";
     }
 
     /**
@@ -69,6 +228,7 @@ public class BookService {
      * @param bookDTO Data för den nya boken
      * @return Den skapade boken som BookDTO
      */
+    @Transactional
     public BookDTO createBook(BookDTO bookDTO) {
         // Konvertera DTO till entity
         Book book = new Book();
@@ -77,6 +237,11 @@ public class BookService {
         book.setAvailableCopies(bookDTO.getAvailableCopies());
         book.setTotalCopies(bookDTO.getTotalCopies());
 
+        // Kategorin sparas med gemener så att kategorigränserna för lån kan jämföra den direkt
+        if (bookDTO.getCategory() != null && !bookDTO.getCategory().isBlank()) {
+            book.setCategory(bookDTO.getCategory().trim().toLowerCase(Locale.ROOT));
+        }
+
         // Hämta författaren om ett ID är angivet
         if (bookDTO.getAuthorId() != null) {
             Author author = authorRepository.findById(bookDTO.getAuthorId())
@@ -87,6 +252,9 @@ public class BookService {
         // Spara boken i databasen
         Book savedBook = bookRepository.save(book);
 
+        // Boklistorna i cachen är nu inaktuella
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+
         // Konvertera och returnera den sparade boken som DTO
         return convertToBookDTO(savedBook);
     }
@@ -103,6 +271,7 @@ public class BookService {
         dto.setPublicationYear(book.getPublicationYear());
         dto.setAvailableCopies(book.getAvailableCopies());
         dto.setTotalCopies(book.getTotalCopies());
+        dto.setCategory(book.getCategory());
 
         if (book.getAuthor() != null) {
             dto.setAuthorId(book.getAuthor().getId());
@@ -0,0 +1,108 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.BorrowingPolicyProperties;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.UserLoanSummary;
+import com.example.library_management_v2.exception.BorrowingLimitException;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lånereglerna (BorrowingPolicyProperties): max antal aktiva lån, inga lån med försenade lån
+ * och max antal aktiva lån per kategori.
+ *
+ * Kontrollen görs i utlåningens transaktion utan att läsa användarens lån. Max antal och försenade lån
+ * kontrolleras i samma villkorade UPDATE som räknar upp lånesammanställningen (UserLoanSummaryService),
+ * kategorigränserna med en indexerad COUNT per kategori. UPDATE:n låser användarens rad, så en samtidig
+ * utlåning till samma användare (t.ex. från en annan terminal) väntar tills transaktionen är klar
+ * och ser då de nya lånen.
+ */
+@Service
+public class BorrowingPolicyService {
+
+    @Autowired
+    private BorrowingPolicyProperties policy;
+
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanMetrics loanMetrics;
+
+    /**
+     * Kontrollerar lånereglerna för nya lån och räknar upp användarens lånesammanställning
+     * Anropas innan lånen sparas; om reglerna bryts rullas hela utlåningen tillbaka
+     * @param userId Låntagaren
+     * @param books Böckerna som lånas (exemplaren är redan reserverade)
+     * Kasta BorrowingLimitException om lånen skulle bryta mot någon regel
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void checkOut(Long userId, Collection<Book> books) {
+        LocalDate today = LocalDate.now();
+        int maxActiveLoans = policy.getMaxActiveLoans() > 0 ? policy.getMaxActiveLoans() : Integer.MAX_VALUE;
+        // Inget lån förföll före 1970, så EPOCH släpper igenom användare med försenade lån
+        LocalDate overdueBefore = policy.isBlockWhenOverdue() ? today : LocalDate.EPOCH;
+
+        if (!userLoanSummaryService.tryAddLoans(userId, books.size(), maxActiveLoans, overdueBefore)) {
+            loanMetrics.rejected(LoanMetrics.BORROWING_LIMIT, books.size());
+            throw limitExceeded(userId, books.size(), today);
+        }
+
+        // Antal nya lån per kategori, bara kategorier som har en gräns
+        Map<String, Integer> requested = new TreeMap<>();
+        for (Book book : books) {
+            if (book.getCategory() != null && categoryLimit(book.getCategory()) != null) {
+                requested.merge(book.getCategory(), 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : requested.entrySet()) {
+            int limit = categoryLimit(entry.getKey());
+            long active = loanRepository.countActiveByUserIdAndCategory(userId, entry.getKey());
+            if (active + entry.getValue() > limit) {
+                loanMetrics.rejected(LoanMetrics.BORROWING_LIMIT, books.size());
+                throw new BorrowingLimitException("Användaren har redan " + active + " lån i kategorin \"" +
+                        entry.getKey() + "\" och får ha högst " + limit + " samtidigt");
+            }
+        }
+    }
+
+    // Varför tryAddLoans nekade lånen, för felmeddelandet
+    private BorrowingLimitException limitExceeded(Long userId, int count, LocalDate today) {
+        if (policy.isBlockWhenOverdue()) {
+            long overdue = loanRepository.countByUserIdAndReturnedDateIsNullAndDueDateBefore(userId, today);
+            if (overdue > 0) {
+                return new BorrowingLimitException("Användaren har " + overdue +
+                        " försenade lån som måste lämnas tillbaka innan nya lån");
+            }
+        }
+        int active = userLoanSummaryRepository.findById(userId).map(UserLoanSummary::getActiveLoans).orElse(0);
+        return new BorrowingLimitException("Användaren har redan " + active + " aktiva lån och får ha högst " +
+                policy.getMaxActiveLoans() + (count > 1 ? " (förfrågan gäller " + count + " lån)" : ""));
+    }
+
+    // Kategorierna sparas med gemener, nycklarna i inställningarna jämförs utan skiftläge
+    private Integer categoryLimit(String category) {
+        for (Map.Entry<String, Integer> entry : policy.getCategoryLimits().entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(category)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.library_management_v2.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Håller ordning på katalogcacharna och tömmer dem när katalogen ändras.
+ *
+ * Varje cachenyckel innehåller en versionssiffra (se nycklarna i BookService och AuthorService).
+ * En läsning som startade före en commit kan annars lägga tillbaka gamla värden i cachen
+ * precis efter att den tömts. När versionen räknas upp läses de gamla nycklarna aldrig mer,
+ * så antalet tillgängliga exemplar blir aldrig inaktuellt efter ett lån eller en återlämning.
+ */
+@Component
+public class CatalogCache {
+
+    public static final String BOOKS = "books";
+    public static final String BOOK_SEARCH = "bookSearch";
+    public static final String AUTHORS = "authors";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final AtomicLong bookVersion = new AtomicLong();
+    private final AtomicLong authorVersion = new AtomicLong();
+
+    public long bookVersion() {
+        return bookVersion.get();
+    }
+
+    public long authorVersion() {
+        return authorVersion.get();
+    }
+
+    /**
+     * Körs efter commit, eller direkt om ändringen gjordes utan transaktion.
+     * Vid rollback körs den inte alls, då har ju inget ändrats.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.scope()) {
+            case BOOKS -> {
+                bookVersion.incrementAndGet();
+                clear(BOOKS);
+                clear(BOOK_SEARCH);
+            }
+            case AUTHORS -> {
+                authorVersion.incrementAndGet();
+                clear(AUTHORS);
+            }
+        }
+    }
+
+    /**
+     * Tömmer alla katalogcachar, t.ex. efter att data ändrats direkt i databasen
+     */
+    public void clearAll() {
+        bookVersion.incrementAndGet();
+        authorVersion.incrementAndGet();
+        List.of(BOOKS, BOOK_SEARCH, AUTHORS).forEach(this::clear);
+    }
+
+    /**
+     * Statistik per cache: storlek, träffar, missar, träffgrad och utträngda poster
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : List.of(BOOKS, BOOK_SEARCH, AUTHORS)) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache cache) {
+                CacheStats stats = cache.getNativeCache().stats();
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("size", cache.getNativeCache().estimatedSize());
+                values.put("hits", stats.hitCount());
+                values.put("misses", stats.missCount());
+                values.put("hit_rate", stats.hitRate());
+                values.put("evictions", stats.evictionCount());
+                result.put(name, values);
+            }
+        }
+        return result;
+    }
+
+    private void clear(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.library_management_v2.service;
+
+/**
+ * Publiceras när rader i katalogen ändras (nya böcker, nya författare eller ändrat antal exemplar).
+ * CatalogCache tömmer de berörda cacharna först när transaktionen har committats.
+ */
+public record CatalogChangedEvent(Scope scope) {
+
+    public enum Scope {
+        // Bokrader, inklusive tillgängliga exemplar (påverkar /books och /books/search)
+        BOOKS,
+        // Författarrader (påverkar /authors)
+        AUTHORS
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.dto.BookImportRecord;
+import com.example.library_management_v2.dto.ImportJobDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.ImportJob;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.ImportJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Importerar böcker och författare från CSV eller JSONL (ett JSON-objekt per rad), se BookImportRecord.
+ *
+ * Filen läses en post i taget och böckerna sparas i omgångar om library.import.chunk-size poster,
+ * en transaktion per omgång (JDBC-batchade inserts). Jobbets rad i import_jobs uppdateras i samma
+ * transaktion, så efter ett avbrott fortsätter en ny import med samma jobId från första posten som
+ * inte committades. Poster med fel avvisas och räknas, resten av filen importeras ändå.
+ *
+ * Författare slås upp på förnamn, efternamn och födelseår (samma nyckel som
+ * AuthorRepository.findByFirstNameAndLastNameAndBirthYear) i en karta som laddas en gång per import,
+ * nya författare skapas första gången de förekommer.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogImportService.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Poster per transaktion
+    @Value("${library.import.chunk-size:1000}")
+    private int chunkSize;
+
+    // Samma jobb får inte importeras två gånger samtidigt
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Importerar alla poster i input
+     * @param input Filens innehåll (UTF-8), stängs när importen är klar
+     * @param format "csv" eller "jsonl"
+     * @param jobId Ett tidigare jobb att fortsätta (null startar ett nytt jobb)
+     * @param source Filnamn eller liknande, bara för information
+     * @return Jobbets status när hela filen är läst
+     * Kasta IllegalArgumentException om formatet är okänt och IllegalStateException om jobbet redan körs
+     */
+    public ImportJobDTO importBooks(InputStream input, String format, String jobId, String source) {
+        return importBooks(input, format, jobId, source, chunkSize);
+    }
+
+    ImportJobDTO importBooks(InputStream input, String format, String jobId, String source, int chunkSize) {
+        String importFormat = normalizeFormat(format);
+        String id = jobId != null && !jobId.isBlank() ? jobId : UUID.randomUUID().toString();
+        if (!runningJobs.add(id)) {
+            throw new IllegalStateException("Importen " + id + " körs redan");
+        }
+
+        boolean started = false;
+        try (RecordSource records = openSource(input, importFormat)) {
+            ImportJob job = startJob(id, source, importFormat);
+            started = true;
+            Map<String, Author> authors = loadAuthors();
+
+            // Poster som redan är committade av en tidigare körning
+            for (long skipped = 0; skipped < job.getRecordsProcessed(); skipped++) {
+                try {
+                    if (records.next() == null) {
+                        break;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Avvisades redan förra gången
+                }
+            }
+
+            List<BookImportRecord> chunk = new ArrayList<>(chunkSize);
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                chunk.clear();
+                int consumed = 0;
+                int rejected = 0;
+                String lastError = null;
+
+                while (consumed < chunkSize) {
+                    long recordNumber = job.getRecordsProcessed() + consumed + 1;
+                    try {
+                        BookImportRecord record = records.next();
+                        if (record == null) {
+                            endOfInput = true;
+                            break;
+                        }
+                        validate(record);
+                        chunk.add(record);
+                    } catch (IllegalArgumentException e) {
+                        rejected++;
+                        lastError = "Post " + recordNumber + ": " + e.getMessage();
+                        log.warn("Import {}: {}", id, lastError);
+                    }
+                    consumed++;
+                }
+
+                if (consumed > 0) {
+                    job = saveChunk(job, chunk, consumed, rejected, lastError, authors);
+                    log.info("Import {}: {} poster ({} böcker, {} avvisade)",
+                            id, job.getRecordsProcessed(), job.getBooksCreated(), job.getRecordsRejected());
+                }
+            }
+
+            job = finishJob(id, ImportJob.Status.COMPLETED, null);
+            return convertToDTO(job);
+        } catch (IOException | RuntimeException e) {
+            if (started) {
+                finishJob(id, ImportJob.Status.FAILED, e.getMessage());
+            }
+            if (e instanceof IOException ioException) {
+                throw new UncheckedIOException("Importen " + id + " avbröts: " + e.getMessage(), ioException);
+            }
+            throw (RuntimeException) e;
+        } finally {
+            runningJobs.remove(id);
+        }
+    }
+
+    /**
+     * Hämtar status för en import
+     * @param jobId Jobbets ID
+     * @return Jobbets status
+     * Kasta EntityNotFoundException om jobbet inte finns
+     */
+    public ImportJobDTO getImportJob(String jobId) {
+        return importJobRepository.findById(jobId)
+                .map(this::convertToDTO)
+                .orElseThrow(() -> new EntityNotFoundException("Importen hittades inte med ID: " + jobId));
+    }
+
+    /**
+     * Tolkar ett format, ett filnamn eller en Content-Type
+     * @return "csv" eller "jsonl"
+     * Kasta IllegalArgumentException om formatet är okänt
+     */
+    public static String normalizeFormat(String format) {
+        String value = format != null ? format.toLowerCase(Locale.ROOT) : "";
+        if (value.contains("csv")) {
+            return "csv";
+        }
+        // jsonl, ndjson, application/x-ndjson ...
+        if (value.contains("json")) {
+            return "jsonl";
+        }
+        throw new IllegalArgumentException("Okänt importformat: " + format + " (csv eller jsonl)");
+    }
+
+    // Ett nytt jobb, eller ett tidigare jobb som fortsätter där det slutade
+    private ImportJob startJob(String jobId, String source, String format) {
+        ImportJob job = importJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            job = new ImportJob(jobId, source, format);
+        } else {
+            if (!job.getFormat().equals(format)) {
+                throw new IllegalArgumentException("Importen " + jobId + " har formatet " + job.getFormat());
+            }
+            job.setStatus(ImportJob.Status.RUNNING);
+            job.setLastError(null);
+            job.setStartedAt(LocalDateTime.now());
+            job.setUpdatedAt(job.getStartedAt());
+        }
+        job.setResumedFrom(job.getRecordsProcessed());
+        return importJobRepository.save(job);
+    }
+
+    private ImportJob finishJob(String jobId, ImportJob.Status status, String error) {
+        ImportJob job = importJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return null;
+        }
+        job.setStatus(status);
+        if (error != null) {
+            job.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        return importJobRepository.save(job);
+    }
+
+    // Alla befintliga författare, en gång per import
+    private Map<String, Author> loadAuthors() {
+        Map<String, Author> authors = new HashMap<>();
+        for (Author author : authorRepository.findAll()) {
+            authors.putIfAbsent(authorKey(author.getFirstName(), author.getLastName(), author.getBirthYear()), author);
+        }
+        return authors;
+    }
+
+    // En omgång: nya författare, böckerna och jobbets framsteg i samma transaktion
+    private ImportJob saveChunk(ImportJob job, List<BookImportRecord> chunk, int consumed, int rejected,
+                                String lastError, Map<String, Author> authors) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        return transaction.execute(status -> {
+            int newAuthors = 0;
+            for (BookImportRecord record : chunk) {
+                Author author = null;
+                if (record.getAuthorLastName() != null) {
+                    String key = authorKey(record.getAuthorFirstName(), record.getAuthorLastName(),
+                            record.getAuthorBirthYear());
+                    author = authors.get(key);
+                    if (author == null) {
+                        author = new Author();
+                        author.setFirstName(record.getAuthorFirstName());
+                        author.setLastName(record.getAuthorLastName());
+                        author.setBirthYear(record.getAuthorBirthYear());
+                        author.setNationality(record.getAuthorNationality());
+                        authorRepository.save(author);
+                        authors.put(key, author);
+                        newAuthors++;
+                    }
+                }
+
+                Book book = new Book();
+                book.setTitle(record.getTitle());
+                book.setPublicationYear(record.getPublicationYear());
+                book.setTotalCopies(record.getTotalCopies() != null ? record.getTotalCopies() : 1);
+                book.setAvailableCopies(record.getAvailableCopies() != null
+                        ? record.getAvailableCopies() : book.getTotalCopies());
+                book.setAuthor(author);
+                bookRepository.save(book);
+            }
+
+            job.setRecordsProcessed(job.getRecordsProcessed() + consumed);
+            job.setRecordsRejected(job.getRecordsRejected() + rejected);
+            job.setBooksCreated(job.getBooksCreated() + chunk.size());
+            job.setAuthorsCreated(job.getAuthorsCreated() + newAuthors);
+            if (lastError != null) {
+                job.setLastError(lastError);
+            }
+            job.setUpdatedAt(LocalDateTime.now());
+
+            // Cacharna töms efter commit, sökindexet uppdateras redan av BookSearchIndexListener
+            if (!chunk.isEmpty()) {
+                eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+            }
+            if (newAuthors > 0) {
+                eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.AUTHORS));
+            }
+            return importJobRepository.save(job);
+        });
+    }
+
+    // Samma kontroller som databasens NOT NULL och kolumnlängder
+    private void validate(BookImportRecord record) {
+        if (record.getTitle() == null || record.getTitle().isBlank()) {
+            throw new IllegalArgumentException("Titel saknas");
+        }
+        if (record.getTitle().length() > 200) {
+            throw new IllegalArgumentException("Titeln är längre än 200 tecken");
+        }
+        if ((record.getTotalCopies() != null && record.getTotalCopies() < 0)
+                || (record.getAvailableCopies() != null && record.getAvailableCopies() < 0)) {
+            throw new IllegalArgumentException("Antal exemplar kan inte vara negativt");
+        }
+        int total = record.getTotalCopies() != null ? record.getTotalCopies() : 1;
+        if (record.getAvailableCopies() != null && record.getAvailableCopies() > total) {
+            throw new IllegalArgumentException("Fler tillgängliga exemplar än totalt");
+        }
+        if ((record.getAuthorFirstName() == null) != (record.getAuthorLastName() == null)) {
+            throw new IllegalArgumentException("Författaren måste ha både förnamn och efternamn");
+        }
+        if (record.getAuthorLastName() != null
+                && (record.getAuthorFirstName().length() > 100 || record.getAuthorLastName().length() > 100)) {
+            throw new IllegalArgumentException("Författarens namn är längre än 100 tecken");
+        }
+    }
+
+    private String authorKey(String firstName, String lastName, Integer birthYear) {
+        return firstName + '\u0000' + lastName + '\u0000' + birthYear;
+    }
+
+    // Läser en post i taget: next() ger null vid slutet och kastar IllegalArgumentException för en trasig post
+    private interface RecordSource extends Closeable {
+        BookImportRecord next() throws IOException;
+    }
+
+    private RecordSource openSource(InputStream input, String format) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return "csv".equals(format) ? csvSource(reader) : jsonLinesSource(reader);
+    }
+
+    // Första posten är rubrikraden med kolumnnamnen (samma namn som i BookImportRecord)
+    private RecordSource csvSource(BufferedReader reader) {
+        CsvReader csv = new CsvReader(reader);
+        return new RecordSource() {
+            private List<String> header;
+
+            @Override
+            public BookImportRecord next() throws IOException {
+                if (header == null) {
+                    header = csv.readRecord();
+                    if (header == null) {
+                        return null;
+                    }
+                    // Byte order mark från t.ex. Excel
+                    header.set(0, header.get(0).replace("\uFEFF", ""));
+                    header.replaceAll(String::trim);
+                }
+
+                List<String> fields;
+                do {
+                    fields = csv.readRecord();
+                    if (fields == null) {
+                        return null;
+                    }
+                } while (fields.size() == 1 && fields.get(0).isBlank()); // Tomma rader
+
+                Map<String, String> values = new LinkedHashMap<>();
+                for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                    String value = fields.get(i).trim();
+                    values.put(header.get(i), value.isEmpty() ? null : value);
+                }
+                return objectMapper.convertValue(values, BookImportRecord.class);
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private RecordSource jsonLinesSource(BufferedReader reader) {
+        return new RecordSource() {
+            @Override
+            public BookImportRecord next() throws IOException {
+                String line;
+                do {
+                    line = reader.readLine();
+                    if (line == null) {
+                        return null;
+                    }
+                } while (line.isBlank());
+
+                try {
+                    return objectMapper.readValue(line, BookImportRecord.class);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Ogiltig JSON: " + e.getOriginalMessage());
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private ImportJobDTO convertToDTO(ImportJob job) {
+        ImportJobDTO dto = new ImportJobDTO();
+        dto.setJobId(job.getJobId());
+        dto.setSource(job.getSource());
+        dto.setFormat(job.getFormat());
+        dto.setStatus(job.getStatus().name());
+        dto.setRecordsProcessed(job.getRecordsProcessed());
+        dto.setRecordsRejected(job.getRecordsRejected());
+        dto.setBooksCreated(job.getBooksCreated());
+        dto.setAuthorsCreated(job.getAuthorsCreated());
+        dto.setLastError(job.getLastError());
+        dto.setStartedAt(job.getStartedAt());
+        dto.setUpdatedAt(job.getUpdatedAt());
+
+        long millis = Duration.between(job.getStartedAt(), job.getUpdatedAt()).toMillis();
+        if (millis > 0) {
+            dto.setRecordsPerSecond((job.getRecordsProcessed() - job.getResumedFrom()) * 1000.0 / millis);
+        }
+        return dto;
+    }
+}
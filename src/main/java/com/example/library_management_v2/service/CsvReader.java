@@ -0,0 +1,68 @@
+package com.example.library_management_v2.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Läser CSV (RFC 4180) en post i taget utan att läsa in hela filen.
+ * Fält inom citattecken får innehålla kommatecken, radbrytningar och "" (ett citattecken).
+ */
+class CsvReader {
+
+    private final Reader reader;
+
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Läser nästa post
+     * @return Postens fält, eller null när filen är slut
+     * Kasta IllegalArgumentException om ett citattecken aldrig avslutas (resten av filen är då läst)
+     */
+    List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IllegalArgumentException("Ett fält inom citattecken avslutas aldrig");
+                }
+                if (c == '"') {
+                    c = reader.read();
+                    if (c == '"') {
+                        field.append('"');
+                        c = reader.read();
+                    } else {
+                        // Fältet är slut, tecknet efter citattecknet behandlas utanför citattecken
+                        quoted = false;
+                    }
+                    continue;
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+}
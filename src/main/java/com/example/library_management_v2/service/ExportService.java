@@ -0,0 +1,201 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export av katalogen och lånen som CSV eller NDJSON för rapporter.
+ *
+ * Raderna läses med en framåtriktad JDBC-cursor (library.export.fetch-size rader i taget) och skrivs
+ * direkt till strömmen, utan entiteter, DTO:er eller listor. Minnet är därför detsamma oavsett hur
+ * många rader som exporteras. Exporten läses i en enda lästransaktion från läspoolen, så den ser
+ * databasen som den var när exporten startade och hindrar inte skrivningar (WAL).
+ *
+ * Läsanslutningen hålls tills klienten har laddat ner hela exporten. Därför får högst
+ * library.export.max-concurrent exporter köra samtidigt, övriga väntar på en plats innan de läser något.
+ * Med virtuella trådar har exporterna egna platser i läspoolens semafor och skrivanslutningen en egen
+ * (se SQLiteConfig), så en långsam nedladdning tar aldrig platsen från en skrivning.
+ */
+@Service
+public class ExportService {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    private static final String[] BOOK_COLUMNS = {
+            "id", "title", "publicationYear", "availableCopies", "totalCopies",
+            "authorId", "authorFirstName", "authorLastName"
+    };
+
+    private static final String[] LOAN_COLUMNS = {
+            "id", "userId", "bookId", "bookTitle", "borrowedDate", "dueDate", "returnedDate"
+    };
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Antal rader som JDBC-drivrutinen hämtar åt gången
+    @Value("${library.export.fetch-size:1000}")
+    private int fetchSize;
+
+    // Hur länge en export väntar på en plats när max-concurrent exporter redan pågår
+    @Value("${library.export.wait-timeout:30000}")
+    private long waitTimeout;
+
+    private Semaphore exports;
+
+    @Value("${library.export.max-concurrent:2}")
+    void setMaxConcurrent(int maxConcurrent) {
+        this.exports = new Semaphore(Math.max(1, maxConcurrent), true);
+    }
+
+    /**
+     * Tolkar exportformatet
+     * @param format "csv" eller "ndjson" ("jsonl" går också), null ger "csv"
+     * @return CSV eller NDJSON
+     * Kasta IllegalArgumentException om formatet är okänt
+     */
+    public static String normalizeFormat(String format) {
+        String value = format != null ? format.toLowerCase(Locale.ROOT) : CSV;
+        return switch (value) {
+            case CSV -> CSV;
+            case NDJSON, "jsonl" -> NDJSON;
+            default -> throw new IllegalArgumentException("Okänt exportformat: " + format + " (csv eller ndjson)");
+        };
+    }
+
+    // Content-Type för ett format från normalizeFormat
+    public static MediaType contentType(String format) {
+        return CSV.equals(format) ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+    }
+
+    /**
+     * Skriver alla böcker med författare, i ID-ordning
+     * @param format CSV eller NDJSON (se normalizeFormat)
+     * @param output Strömmen som raderna skrivs till (stängs inte)
+     * @return Antal exporterade böcker
+     */
+    @Transactional(readOnly = true)
+    public long exportBooks(String format, OutputStream output) throws IOException {
+        // Läsanslutningen hämtas först vid första SQL-satsen, alltså efter att exporten fått en plats
+        acquire();
+        try {
+            return writeBooks(format, output);
+        } finally {
+            exports.release();
+        }
+    }
+
+    private long writeBooks(String format, OutputStream output) throws IOException {
+        ExportWriter writer = ExportWriter.create(format, output, BOOK_COLUMNS, objectMapper.getFactory());
+        Object[] row = new Object[BOOK_COLUMNS.length];
+
+        bookRepository.exportAll(fetchSize, resultSet -> {
+            row[0] = resultSet.getLong("book_id");
+            row[1] = resultSet.getString("title");
+            row[2] = number(resultSet, "publication_year");
+            row[3] = number(resultSet, "available_copies");
+            row[4] = number(resultSet, "total_copies");
+            row[5] = number(resultSet, "author_id");
+            row[6] = resultSet.getString("author_first_name");
+            row[7] = resultSet.getString("author_last_name");
+            write(writer, row);
+        });
+
+        writer.flush();
+        return writer.rows();
+    }
+
+    /**
+     * Skriver alla lån, eller en användares lån, i ID-ordning
+     * Bara lånen i SQLite: gamla återlämnade lån som flyttats till lånearkivet (LoanArchiveService) kommer inte med
+     * @param userId Bara den här användarens lån (null ger alla lån)
+     * @param format CSV eller NDJSON (se normalizeFormat)
+     * @param output Strömmen som raderna skrivs till (stängs inte)
+     * @return Antal exporterade lån
+     */
+    @Transactional(readOnly = true)
+    public long exportLoans(Long userId, String format, OutputStream output) throws IOException {
+        acquire();
+        try {
+            return writeLoans(userId, format, output);
+        } finally {
+            exports.release();
+        }
+    }
+
+    private long writeLoans(Long userId, String format, OutputStream output) throws IOException {
+        ExportWriter writer = ExportWriter.create(format, output, LOAN_COLUMNS, objectMapper.getFactory());
+        Object[] row = new Object[LOAN_COLUMNS.length];
+
+        loanRepository.exportAll(userId, fetchSize, resultSet -> {
+            row[0] = resultSet.getLong("loan_id");
+            row[1] = resultSet.getLong("user_id");
+            row[2] = resultSet.getLong("book_id");
+            row[3] = resultSet.getString("book_title");
+            row[4] = date(resultSet, "borrowed_date");
+            row[5] = date(resultSet, "due_date");
+            row[6] = date(resultSet, "returned_date");
+            write(writer, row);
+        });
+
+        writer.flush();
+        return writer.rows();
+    }
+
+    // Väntar på en exportplats, kasta IllegalStateException om ingen blir ledig inom wait-timeout
+    private void acquire() {
+        try {
+            if (!exports.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("För många exporter pågår samtidigt, försök igen senare");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Avbröts i väntan på att få exportera", e);
+        }
+    }
+
+    private void write(ExportWriter writer, Object[] row) {
+        try {
+            writer.write(row);
+        } catch (IOException e) {
+            // T.ex. att klienten har kopplat ner, avbryter läsningen
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Long number(ResultSet resultSet, String column) throws SQLException {
+        long value = resultSet.getLong(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    // Datumen lagras som java.sql.Date, samma som Hibernate binder LocalDate
+    private Object date(ResultSet resultSet, String column) throws SQLException {
+        Date value = resultSet.getDate(column);
+        return value != null ? value.toLocalDate() : null;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.library_management_v2.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Skriver en rad i taget som CSV (med rubrikrad) eller NDJSON (ett JSON-objekt per rad) direkt till en ström.
+ * Värdena kan vara null, String, Long eller LocalDate (skrivs som 2025-01-31).
+ */
+abstract class ExportWriter {
+
+    protected final String[] columns;
+    private long rows;
+
+    protected ExportWriter(String[] columns) {
+        this.columns = columns;
+    }
+
+    static ExportWriter create(String format, OutputStream output, String[] columns, JsonFactory jsonFactory)
+            throws IOException {
+        return ExportService.CSV.equals(format)
+                ? new Csv(output, columns)
+                : new JsonLines(jsonFactory.createGenerator(output), columns);
+    }
+
+    // values har ett värde per kolumn i samma ordning som columns
+    void write(Object[] values) throws IOException {
+        writeRow(values);
+        rows++;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    protected abstract void writeRow(Object[] values) throws IOException;
+
+    // Tömmer buffertarna till strömmen men stänger den inte
+    abstract void flush() throws IOException;
+
+    private static class Csv extends ExportWriter {
+
+        private final Writer writer;
+
+        Csv(OutputStream output, String[] columns) throws IOException {
+            super(columns);
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+            writeRow(columns);
+        }
+
+        @Override
+        protected void writeRow(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeField(values[i].toString());
+                }
+            }
+            writer.write('\n');
+        }
+
+        // Citattecken bara när fältet kräver det (RFC 4180)
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static class JsonLines extends ExportWriter {
+
+        private final JsonGenerator generator;
+
+        JsonLines(JsonGenerator generator, String[] columns) {
+            super(columns);
+            // Inget mellanslag mellan objekten, varje rad avslutas med radbrytning i stället
+            this.generator = generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        protected void writeRow(Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                generator.writeFieldName(columns[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long number) {
+                    generator.writeNumber(number);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
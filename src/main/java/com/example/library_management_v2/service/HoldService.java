@@ -0,0 +1,291 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.dto.CreateHoldDTO;
+import com.example.library_management_v2.dto.HoldDTO;
+import com.example.library_management_v2.entity.Hold;
+import com.example.library_management_v2.exception.BookNotFoundException;
+import com.example.library_management_v2.exception.UserNotFoundException;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.HoldRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Köer till böcker som inte har några lediga exemplar.
+ *
+ * En användare ställer sig i kön i stället för att försöka låna boken om och om igen. När ett exemplar
+ * lämnas tillbaka (LoanService) reserveras det direkt åt den första i kön, i samma transaktion som
+ * återlämningen, och användaren lånar det sedan med ett vanligt lån. Ingen annan kan låna det
+ * reserverade exemplaret eftersom det aldrig blir ledigt.
+ *
+ * Båda sidorna låser bokens rad först: en ny köplats bara om boken inte har några lediga exemplar,
+ * en återlämning när exemplaret lämnas tillbaka. Ett exemplar kan därför inte bli ledigt medan någon
+ * står i kön.
+ *
+ * Ett reserverat exemplar som inte lånas inom library.holds.ready-days dagar (expireReadyHolds), eller
+ * vars köplats tas bort (cancelHold), går vidare till nästa i kön på samma sätt som en återlämning,
+ * eller tillbaka till hyllan om ingen står i kön. Ett exemplar blir alltså aldrig kvar reserverat.
+ *
+ * Varje köoperation är ett uppslag i indexet idx_holds_queue (book_id, status, hold_id):
+ * ny plats sist i kön, första i kön och antal före en plats.
+ */
+@Service
+public class HoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(HoldService.class);
+
+    // Reserverade exemplar som läses per SQL-sats när gamla reservationer släpps
+    private static final int EXPIRE_BATCH_SIZE = 500;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Så många dagar har användaren på sig att låna ett reserverat exemplar
+    @Value("${library.holds.ready-days:7}")
+    private int readyDays;
+
+    // Den schemalagda körningen och ett direkt anrop får inte köra samtidigt
+    private final ReentrantLock expireLock = new ReentrantLock();
+
+    /**
+     * Ställer en användare i kön till en bok
+     * @param bookId Boken
+     * @param createHoldDTO Användarens ID
+     * @return Köplatsen med platsen i kön
+     * Kasta UserNotFoundException om användaren inte hittas
+     * Kasta BookNotFoundException om boken inte hittas
+     * Kasta IllegalStateException om boken har lediga exemplar eller användaren redan står i kön
+     */
+    @Transactional
+    public HoldDTO placeHold(Long bookId, CreateHoldDTO createHoldDTO) {
+        Long userId = createHoldDTO.getUserId();
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("Användare med ID: " + userId + " hittades inte");
+        }
+
+        // Låser bokens rad, men bara om det inte finns några lediga exemplar att låna direkt
+        if (bookRepository.lockIfUnavailable(bookId) == 0) {
+            String title = bookRepository.findById(bookId)
+                    .orElseThrow(() -> new BookNotFoundException("Bok med ID: " + bookId + " hittades inte"))
+                    .getTitle();
+            throw new IllegalStateException("Boken \"" + title + "\" har lediga exemplar och kan lånas direkt");
+        }
+
+        if (holdRepository.existsByUserIdAndBookIdAndStatusIn(userId, bookId,
+                List.of(Hold.Status.WAITING, Hold.Status.READY))) {
+            throw new IllegalStateException("Användaren står redan i kön till boken");
+        }
+
+        Hold hold = holdRepository.save(new Hold(bookRepository.getReferenceById(bookId),
+                userRepository.getReferenceById(userId)));
+        return convertToDTO(hold, bookId, userId);
+    }
+
+    /**
+     * Hämtar en köplats med platsen i kön
+     * @param bookId Boken
+     * @param holdId Köplatsen
+     * Kasta EntityNotFoundException om köplatsen inte finns för boken
+     */
+    @Transactional(readOnly = true)
+    public HoldDTO getHold(Long bookId, Long holdId) {
+        Hold hold = holdRepository.findById(holdId)
+                .filter(h -> h.getBook().getId().equals(bookId))
+                .orElseThrow(() -> new EntityNotFoundException("Köplats med ID: " + holdId + " hittades inte"));
+        return convertToDTO(hold, bookId, hold.getUser().getId());
+    }
+
+    /**
+     * Tar bort en användare ur kön. Har användaren redan ett reserverat exemplar går det till nästa i kön
+     * @param bookId Boken
+     * @param holdId Köplatsen
+     * @return Köplatsen med status CANCELLED
+     * Kasta EntityNotFoundException om köplatsen inte finns för boken
+     * Kasta IllegalStateException om köplatsen redan är avslutad (lånad, utgången eller borttagen)
+     */
+    @Transactional
+    public HoldDTO cancelHold(Long bookId, Long holdId) {
+        Hold hold = holdRepository.findById(holdId)
+                .filter(h -> h.getBook().getId().equals(bookId))
+                .orElseThrow(() -> new EntityNotFoundException("Köplats med ID: " + holdId + " hittades inte"));
+        Long userId = hold.getUser().getId();
+        Hold.Status status = hold.getStatus();
+
+        if ((status != Hold.Status.WAITING && status != Hold.Status.READY)
+                || holdRepository.changeStatus(holdId, status, Hold.Status.CANCELLED) == 0) {
+            throw new IllegalStateException("Köplatsen är redan avslutad (status: " + status + ")");
+        }
+        if (status == Hold.Status.READY) {
+            releaseReservedCopy(bookId);
+        }
+
+        hold.setStatus(Hold.Status.CANCELLED);
+        return convertToDTO(hold, bookId, userId);
+    }
+
+    // Körs en gång i timmen (library.holds.expire-cron, "-" stänger av den)
+    @Scheduled(cron = "${library.holds.expire-cron:0 30 * * * *}")
+    public void scheduledExpire() {
+        expireReadyHolds();
+    }
+
+    /**
+     * Släpper reserverade exemplar som inte har lånats inom library.holds.ready-days dagar:
+     * köplatsen får status EXPIRED och exemplaret går till nästa i kön eller tillbaka till hyllan
+     * @return Antal köplatser som gick ut
+     * Kasta IllegalStateException om en annan körning redan pågår
+     */
+    public int expireReadyHolds() {
+        return expireReadyHolds(LocalDateTime.now());
+    }
+
+    int expireReadyHolds(LocalDateTime now) {
+        if (!expireLock.tryLock()) {
+            throw new IllegalStateException("Utgångna reservationer släpps redan");
+        }
+
+        try {
+            LocalDateTime readyBefore = now.minusDays(readyDays);
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+            // En kort transaktion per köplats, så att skrivanslutningen inte hålls av hela körningen.
+            // Varje utgången köplats byter status, så nästa sida börjar alltid från början
+            int expired = 0;
+            List<Hold> holds;
+            do {
+                holds = holdRepository.findReadyBefore(Hold.Status.READY, readyBefore, Limit.of(EXPIRE_BATCH_SIZE));
+                for (Hold hold : holds) {
+                    Long bookId = hold.getBook().getId();
+                    Boolean released = transaction.execute(status -> {
+                        // Användaren hann låna exemplaret efter att sidan lästes
+                        if (holdRepository.changeStatus(hold.getId(), Hold.Status.READY, Hold.Status.EXPIRED) == 0) {
+                            return false;
+                        }
+                        releaseReservedCopy(bookId);
+                        return true;
+                    });
+                    if (Boolean.TRUE.equals(released)) {
+                        expired++;
+                    }
+                }
+            } while (holds.size() == EXPIRE_BATCH_SIZE);
+
+            if (expired > 0) {
+                log.info("{} reserverade exemplar hämtades inte före {} och släpptes", expired, readyBefore);
+            }
+            return expired;
+        } finally {
+            expireLock.unlock();
+        }
+    }
+
+    // Ett reserverat exemplar släpps på samma sätt som en återlämning (bokens rad låses först):
+    // till nästa i kön om någon står där, annars blir det ledigt. Tillgänglighetsindexet räknar redan
+    // exemplaret som på hyllan, så det ändras inte
+    private void releaseReservedCopy(Long bookId) {
+        bookRepository.releaseCopy(bookId);
+        copyReturned(bookId);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+    }
+
+    /**
+     * Ett exemplar av boken har lämnats tillbaka (och bokens rad är låst av återlämningen)
+     * Står någon i kön reserveras exemplaret åt den första i kön
+     * @return true om exemplaret reserverades och inte längre är ledigt
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean copyReturned(Long bookId) {
+        if (holdRepository.assignNext(bookId, LocalDateTime.now(), Hold.Status.WAITING, Hold.Status.READY) == 0) {
+            return false;
+        }
+        bookRepository.reserveCopy(bookId);
+        return true;
+    }
+
+    /**
+     * Som copyReturned för flera exemplar, i två JDBC-batchar (samma bok kan förekomma flera gånger)
+     * @return Böckerna vars exemplar reserverades åt någon i kön
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> copiesReturned(List<Long> bookIds) {
+        int[] assigned = holdRepository.assignNextBatch(bookIds, LocalDateTime.now());
+        List<Long> assignedBookIds = new ArrayList<>();
+        for (int i = 0; i < bookIds.size(); i++) {
+            if (assigned[i] > 0) {
+                assignedBookIds.add(bookIds.get(i));
+            }
+        }
+        bookRepository.reserveCopies(assignedBookIds);
+        return assignedBookIds;
+    }
+
+    /**
+     * Lånar ut ett exemplar som är reserverat åt användaren, om det finns något
+     * @return true om användaren hade ett reserverat exemplar av boken (som nu är utlånat)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claimReservedCopy(Long userId, Long bookId) {
+        return holdRepository.fulfil(userId, bookId, LocalDateTime.now(),
+                Hold.Status.READY, Hold.Status.FULFILLED) > 0;
+    }
+
+    /**
+     * Som claimReservedCopy för flera böcker, i en JDBC-batch
+     * @return Ett värde per bok-ID i samma ordning, true om ett reserverat exemplar lånades ut
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean[] claimReservedCopies(Long userId, List<Long> bookIds) {
+        int[] fulfilled = holdRepository.fulfilBatch(userId, bookIds, LocalDateTime.now());
+        boolean[] claimed = new boolean[bookIds.size()];
+        for (int i = 0; i < claimed.length; i++) {
+            claimed[i] = fulfilled[i] > 0;
+        }
+        return claimed;
+    }
+
+    // IDs skickas med separat så att LAZY-proxyerna inte behöver laddas
+    private HoldDTO convertToDTO(Hold hold, Long bookId, Long userId) {
+        HoldDTO dto = new HoldDTO();
+        dto.setId(hold.getId());
+        dto.setBookId(bookId);
+        dto.setUserId(userId);
+        dto.setStatus(hold.getStatus().name());
+        dto.setCreatedAt(hold.getCreatedAt());
+        dto.setReadyAt(hold.getReadyAt());
+
+        // Platsen i kön räknas bara för dem som står i kön
+        if (hold.getStatus() == Hold.Status.WAITING) {
+            dto.setPosition(holdRepository.countWaitingBefore(bookId, hold.getId(), Hold.Status.WAITING) + 1);
+        }
+        return dto;
+    }
+}
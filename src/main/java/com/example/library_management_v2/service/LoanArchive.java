@@ -0,0 +1,277 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.LoanArchiveProperties;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.LoanStateDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Lånearkivet: gamla återlämnade lån i segmentfiler (LoanSegment) i library.loans.archive.directory.
+ *
+ * Segmenten mappas i minnet vid start och ändras aldrig, nya segment läggs till av LoanArchiveService.
+ * Ett nytt segment skrivs först som loans-N.seg.tmp och kan läses direkt, lånen tas sedan bort ur SQLite
+ * och filen byter namn till loans-N.seg. En komplett .tmp-fil vid start betyder att processen stoppades
+ * mitt i en flytt: den läses som de andra segmenten och LoanArchiveService gör klart flytten
+ * (recoverPending). Ett lån finns alltså alltid i SQLite, i arkivet eller en kort stund på båda ställena,
+ * aldrig på inget av dem. SQLite gäller då före arkivet och ett nyare segment före ett äldre.
+ */
+@Component
+public class LoanArchive implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanArchive.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("loans-(\\d+)\\" + LoanSegment.SUFFIX + "(\\.tmp)?");
+    private static final String PENDING_SUFFIX = ".tmp";
+
+    // Startas före webbservern (fas Integer.MAX_VALUE - 2048), så att historiken finns från första förfrågan
+    private static final int PHASE = Integer.MAX_VALUE - 4096;
+
+    private final LoanArchiveProperties properties;
+
+    // Äldsta segmentet först, ersätts i sin helhet när ett segment läggs till
+    private volatile List<LoanSegment> segments = List.of();
+    private volatile boolean running;
+    private long nextNumber = 1;
+
+    public LoanArchive(LoanArchiveProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        Path directory = properties.getDirectory();
+        List<LoanSegment> loaded = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches())
+                        .sorted((a, b) -> Long.compare(number(a), number(b)))
+                        .toList();
+            }
+            for (Path file : files) {
+                nextNumber = Math.max(nextNumber, number(file) + 1);
+                if (!isPending(file)) {
+                    // Ett publicerat segment som inte kan läsas är förlorad historik, inte något att hoppa över
+                    loaded.add(LoanSegment.open(file));
+                    continue;
+                }
+                try {
+                    loaded.add(LoanSegment.open(file));
+                } catch (IOException e) {
+                    // Skrivningen avbröts innan lånen togs bort ur SQLite
+                    log.warn("Ofullständigt segment {} tas bort: {}", file, e.getMessage());
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Lånearkivet " + directory + " kunde inte öppnas", e);
+        }
+        segments = List.copyOf(loaded);
+        running = true;
+        log.info("Lånearkivet {}: {} segment med {} lån", directory.toAbsolutePath(), loaded.size(), loans());
+    }
+
+    @Override
+    public synchronized void stop() {
+        // Mappningarna släpps av skräpsamlaren
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private static long number(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private static boolean isPending(Path file) {
+        return file.getFileName().toString().endsWith(PENDING_SUFFIX);
+    }
+
+    /**
+     * Skriver lånen (återlämnade, sorterade på användare och lån-ID) till ett nytt segment som ännu inte är
+     * publicerat. Segmentet kan läses direkt, innan lånen tas bort ur SQLite
+     */
+    synchronized Path writePending(List<LoanStateDTO> loans) {
+        Path file = properties.getDirectory()
+                .resolve(String.format("loans-%06d%s%s", nextNumber++, LoanSegment.SUFFIX, PENDING_SUFFIX));
+        try {
+            LoanSegment.write(file, loans);
+            List<LoanSegment> updated = new ArrayList<>(segments);
+            updated.add(LoanSegment.open(file));
+            segments = List.copyOf(updated);
+            return file;
+        } catch (IOException e) {
+            discard(file);
+            throw new UncheckedIOException("Segmentet " + file + " kunde inte skrivas", e);
+        }
+    }
+
+    /**
+     * Publicerar ett segment från writePending (eller en .tmp-fil från starten) när lånen har tagits bort
+     * ur SQLite: filen byter namn och ersätter det opublicerade segmentet
+     */
+    synchronized void publish(Path pending) {
+        Path file = pending.resolveSibling(pending.getFileName().toString()
+                .substring(0, pending.getFileName().toString().length() - PENDING_SUFFIX.length()));
+        try {
+            Files.move(pending, file, StandardCopyOption.ATOMIC_MOVE);
+            LoanSegment.forceDirectory(file.toAbsolutePath().getParent());
+            LoanSegment segment = LoanSegment.open(file);
+
+            List<LoanSegment> updated = new ArrayList<>(segments);
+            updated.removeIf(existing -> existing.file().equals(pending));
+            updated.add(segment);
+            updated.sort((a, b) -> Long.compare(number(a.file()), number(b.file())));
+            segments = List.copyOf(updated);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Segmentet " + pending + " kunde inte publiceras", e);
+        }
+    }
+
+    // Tar bort ett segment från writePending som inte ska publiceras (lånen finns kvar i SQLite)
+    synchronized void discard(Path pending) {
+        List<LoanSegment> updated = new ArrayList<>(segments);
+        if (updated.removeIf(existing -> existing.file().equals(pending))) {
+            segments = List.copyOf(updated);
+        }
+        try {
+            Files.deleteIfExists(pending);
+        } catch (IOException e) {
+            log.warn("Segmentet {} kunde inte tas bort", pending, e);
+        }
+    }
+
+    // Segment som ännu inte har publicerats: en pågående flytt eller .tmp-filer från starten
+    List<LoanSegment> pending() {
+        return segments.stream().filter(segment -> isPending(segment.file())).toList();
+    }
+
+    /**
+     * Användarens arkiverade lån, utan boktitel och författare. Nyaste segmentet först,
+     * inom ett segment i lån-ID-ordning
+     */
+    public List<LoanDTO> findUserLoans(long userId) {
+        List<LoanSegment> current = segments;
+        List<LoanDTO> result = new ArrayList<>();
+        for (int s = current.size() - 1; s >= 0; s--) {
+            LoanSegment segment = current.get(s);
+            int user = segment.findUser(userId);
+            if (user < 0) {
+                continue;
+            }
+            for (int row = segment.start(user), end = segment.end(user); row < end; row++) {
+                // Arkiverade lån är alltid återlämnade, alltså aldrig aktiva eller försenade
+                result.add(new LoanDTO(segment.loanId(row), userId, segment.bookId(row), null, null, null,
+                        segment.borrowedDate(row), segment.dueDate(row), segment.returnedDate(row), false));
+            }
+        }
+        return result;
+    }
+
+    // Antal lån för användaren i publicerade segment, de finns inte längre i SQLite
+    public int countUserLoans(long userId) {
+        int count = 0;
+        for (LoanSegment segment : segments) {
+            int user = segment.findUser(userId);
+            if (user >= 0 && !isPending(segment.file())) {
+                count += segment.end(user) - segment.start(user);
+            }
+        }
+        return count;
+    }
+
+    // Lån-ID:n för användaren i opublicerade segment, de kan fortfarande finnas i SQLite
+    public List<Long> findPendingUserLoanIds(long userId) {
+        List<Long> loanIds = new ArrayList<>();
+        for (LoanSegment segment : segments) {
+            int user = segment.findUser(userId);
+            if (user >= 0 && isPending(segment.file())) {
+                for (int row = segment.start(user), end = segment.end(user); row < end; row++) {
+                    loanIds.add(segment.loanId(row));
+                }
+            }
+        }
+        return loanIds;
+    }
+
+    /**
+     * Ett arkiverat låns värden, null om lånet inte finns i arkivet (nyaste segmentet gäller)
+     */
+    public LoanStateDTO findState(long userId, long loanId) {
+        List<LoanSegment> current = segments;
+        for (int s = current.size() - 1; s >= 0; s--) {
+            LoanSegment segment = current.get(s);
+            int user = segment.findUser(userId);
+            if (user < 0) {
+                continue;
+            }
+            for (int row = segment.start(user), end = segment.end(user); row < end; row++) {
+                if (segment.loanId(row) == loanId) {
+                    return new LoanStateDTO(loanId, userId, segment.bookId(row), segment.borrowedDate(row),
+                            segment.dueDate(row), segment.returnedDate(row));
+                }
+            }
+        }
+        return null;
+    }
+
+    public int segments() {
+        return segments.size();
+    }
+
+    public long loans() {
+        return segments.stream().mapToLong(LoanSegment::rows).sum();
+    }
+
+    public long bytes() {
+        return segments.stream().mapToLong(LoanSegment::bytes).sum();
+    }
+
+    /**
+     * Katalogen, antal segment och lån och filernas storlek
+     */
+    public Map<String, Object> snapshot() {
+        List<LoanSegment> current = segments;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("directory", properties.getDirectory().toAbsolutePath().toString());
+        result.put("segments", current.size());
+        result.put("pending", current.stream().filter(segment -> isPending(segment.file())).count());
+        result.put("loans", current.stream().mapToLong(LoanSegment::rows).sum());
+        result.put("bytes", current.stream().mapToLong(LoanSegment::bytes).sum());
+        return result;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.LoanArchiveProperties;
+import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.dto.LoanArchiveResultDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.LoanStateDTO;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flyttar gamla återlämnade lån från SQLite till lånearkivet (LoanArchive) och lägger tillbaka
+ * historiken i getUserLoans.
+ *
+ * Flytten läser lånen i en lästransaktion, skriver dem till ett nytt segment (och tvingar ut det
+ * till disken) och tar sedan bort dem ur SQLite i en kort skrivtransaktion. Skrivanslutningen är
+ * alltså bara upptagen av själva borttagningen. Segmentet kan läsas innan lånen tas bort, så
+ * historiken försvinner aldrig under flytten. Avbryts processen efter att segmentet skrevs men
+ * innan det publicerades, gör recoverPending klart flytten vid nästa start.
+ */
+@Service
+public class LoanArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanArchiveService.class);
+
+    // Böcker per SQL-sats när titlarna till historiken hämtas
+    private static final int BOOK_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private LoanArchive loanArchive;
+
+    @Autowired
+    private LoanArchiveProperties properties;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Den schemalagda körningen, POST /loans/archive och återställningen vid start får inte köra samtidigt
+    private final ReentrantLock compactLock = new ReentrantLock();
+
+    /**
+     * Lägger till användarens arkiverade lån till lånen från SQLite, med boktitel och författare
+     * (en SQL-sats per BOOK_CHUNK_SIZE böcker). Ett lån som finns på båda ställena tas från SQLite
+     * @return Alla lån i lån-ID-ordning, samma som findDtosByUserId
+     */
+    public List<LoanDTO> withHistory(Long userId, List<LoanDTO> loans) {
+        if (!loanArchive.isEnabled()) {
+            return loans;
+        }
+        List<LoanDTO> archived = loanArchive.findUserLoans(userId);
+        if (archived.isEmpty()) {
+            return loans;
+        }
+
+        Set<Long> seen = new HashSet<>();
+        List<LoanDTO> result = new ArrayList<>(loans.size() + archived.size());
+        for (LoanDTO loan : loans) {
+            seen.add(loan.getId());
+            result.add(loan);
+        }
+        List<LoanDTO> history = new ArrayList<>(archived.size());
+        for (LoanDTO loan : archived) {
+            if (seen.add(loan.getId())) {
+                history.add(loan);
+            }
+        }
+        addBookDetails(history);
+        result.addAll(history);
+        result.sort(Comparator.comparing(LoanDTO::getId));
+        return result;
+    }
+
+    // Boktitel och författare till arkiverade lån, en borttagen bok ger lån utan titel
+    private void addBookDetails(List<LoanDTO> loans) {
+        List<Long> bookIds = new ArrayList<>(new LinkedHashSet<>(loans.stream().map(LoanDTO::getBookId).toList()));
+        Map<Long, BookWithDetailsDTO> books = new HashMap<>();
+        for (int from = 0; from < bookIds.size(); from += BOOK_CHUNK_SIZE) {
+            for (BookWithDetailsDTO book : bookRepository.findWithDetailsByIdIn(
+                    bookIds.subList(from, Math.min(from + BOOK_CHUNK_SIZE, bookIds.size())))) {
+                books.put(book.getId(), book);
+            }
+        }
+        for (LoanDTO loan : loans) {
+            BookWithDetailsDTO book = books.get(loan.getBookId());
+            if (book != null) {
+                loan.setBookTitle(book.getTitle());
+                // Samma regel som i LoanDTO:s JPQL-konstruktor
+                loan.setAuthorName(book.getAuthorLastName() != null
+                        ? book.getAuthorFirstName() + " " + book.getAuthorLastName() : null);
+            }
+        }
+    }
+
+    // Körs varje natt om den är påslagen (library.loans.archive.compact-cron, "-" stänger av den)
+    @Scheduled(cron = "${library.loans.archive.compact-cron:-}")
+    public void scheduledCompact() {
+        if (loanArchive.isEnabled()) {
+            compact();
+        }
+    }
+
+    /**
+     * Flyttar lån som återlämnades för mer än library.loans.archive.min-age sedan till arkivet,
+     * högst segment-max-loans lån per segment
+     * @return Hur många lån som flyttades och till hur många segment
+     * Kasta IllegalStateException om arkivet är avstängt eller en annan flytt redan pågår
+     */
+    public LoanArchiveResultDTO compact() {
+        return compact(LocalDate.now());
+    }
+
+    LoanArchiveResultDTO compact(LocalDate today) {
+        if (!loanArchive.isEnabled()) {
+            throw new IllegalStateException("Lånearkivet är avstängt (library.loans.archive.enabled)");
+        }
+        if (!compactLock.tryLock()) {
+            throw new IllegalStateException("Flytten till lånearkivet körs redan");
+        }
+
+        try {
+            LocalDate returnedBefore = today.minusDays(properties.getMinAge().toDays());
+            int maxLoans = Math.min(properties.getSegmentMaxLoans(), LoanSegment.MAX_ROWS);
+            TransactionTemplate readTransaction = new TransactionTemplate(transactionManager);
+            readTransaction.setReadOnly(true);
+
+            int archived = 0;
+            int segments = 0;
+            List<LoanStateDTO> loans;
+            do {
+                loans = readTransaction.execute(status ->
+                        loanRepository.findArchivable(returnedBefore, Limit.of(maxLoans)));
+                if (loans.isEmpty()) {
+                    break;
+                }
+
+                Path pending = loanArchive.writePending(loans);
+                try {
+                    archived += delete(loans.stream().map(LoanStateDTO::getLoanId).toList());
+                } catch (RuntimeException e) {
+                    // Lånen finns kvar i SQLite, segmentet tas bort ur arkivet igen
+                    loanArchive.discard(pending);
+                    throw e;
+                }
+                loanArchive.publish(pending);
+                segments++;
+            } while (loans.size() == maxLoans);
+
+            log.info("Lånearkivet: {} lån återlämnade före {} flyttade till {} nya segment",
+                    archived, returnedBefore, segments);
+            return new LoanArchiveResultDTO(returnedBefore, archived, segments);
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    /**
+     * Gör klart flyttar som avbröts: lånen i segment som skrevs men aldrig publicerades tas bort
+     * ur SQLite (om de finns kvar) och segmenten publiceras. Fram till dess visas lånen från SQLite
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPending() {
+        if (!loanArchive.isEnabled()) {
+            return;
+        }
+        compactLock.lock();
+        try {
+            for (LoanSegment segment : loanArchive.pending()) {
+                List<Long> loanIds = new ArrayList<>(segment.rows());
+                for (int row = 0; row < segment.rows(); row++) {
+                    loanIds.add(segment.loanId(row));
+                }
+                int deleted = delete(loanIds);
+                loanArchive.publish(segment.file());
+                log.warn("Lånearkivet: avbruten flytt till {} slutförd, {} lån togs bort ur SQLite",
+                        segment.file(), deleted);
+            }
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    // Tar bort de arkiverade lånen ur SQLite i en transaktion
+    private int delete(List<Long> loanIds) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Integer deleted = transaction.execute(status -> {
+            int count = 0;
+            for (int rows : loanRepository.deleteReturnedLoans(loanIds)) {
+                count += rows;
+            }
+            return count;
+        });
+        return deleted != null ? deleted : 0;
+    }
+}
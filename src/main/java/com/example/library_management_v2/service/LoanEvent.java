@@ -0,0 +1,45 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.entity.Loan;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * En händelse i lånets livscykel, skrivs till händelseloggen (LoanEventLog) efter commit.
+ * Varje händelse bär lånets värden efter händelsen, så LoanEventReplay kan bygga upp lånet
+ * från loggen även om tidigare händelser saknas (värden som är null är okända, inte tomma).
+ */
+public record LoanEvent(Type type, Instant at, Long loanId, Long userId, Long bookId,
+                        LocalDate borrowedDate, LocalDate dueDate, LocalDate returnedDate) {
+
+    public enum Type {
+        CHECKED_OUT,
+        RETURNED,
+        EXTENDED,
+        // Sökningen efter försenade lån hittade lånet (OverdueLoanService), ändrar inget i lånet
+        OVERDUE
+    }
+
+    public static LoanEvent checkedOut(Loan loan) {
+        return of(Type.CHECKED_OUT, loan, null);
+    }
+
+    public static LoanEvent returned(Loan loan, LocalDate returnedDate) {
+        return of(Type.RETURNED, loan, returnedDate);
+    }
+
+    public static LoanEvent extended(Loan loan) {
+        return of(Type.EXTENDED, loan, null);
+    }
+
+    public static LoanEvent overdue(LoanOverdueEvent event) {
+        return new LoanEvent(Type.OVERDUE, Instant.now(), event.loanId(), event.userId(), event.bookId(),
+                null, event.dueDate(), null);
+    }
+
+    private static LoanEvent of(Type type, Loan loan, LocalDate returnedDate) {
+        return new LoanEvent(type, Instant.now(), loan.getId(), loan.getUser().getId(), loan.getBook().getId(),
+                loan.getBorrowedDate(), loan.getDueDate(), returnedDate);
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.LoanEventLogProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Händelselogg för lånen: varje utlåning, återlämning, förlängning och nytt försenat lån läggs till
+ * sist i en fil (library.loans.event-log.file), en JSON-rad per händelse. Filen skrivs aldrig om.
+ *
+ * LoanService lägger händelserna i en begränsad kö efter commit och väntar aldrig på disken: en egen
+ * tråd hämtar upp till batch-size händelser åt gången, skriver dem i ett anrop och gör en fsync.
+ * Är kön full kastas händelsen (overflow=drop), eller så väntar anropet högst block-timeout
+ * (overflow=block). Kastade händelser räknas och skrivs som en GAP-rad, så LoanEventReplay vet
+ * att loggen inte är komplett.
+ *
+ * Vid avstängning (efter webbservern) skrivs allt som finns kvar i kön innan filen stängs.
+ * Stoppas processen hårt förloras högst det som låg i kön, en halvskriven sista rad hoppas
+ * över av LoanEventReplay och avslutas med en radbrytning vid nästa start.
+ */
+@Component
+public class LoanEventLog implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanEventLog.class);
+
+    static final String GAP = "GAP";
+
+    // Stoppas efter webbservern (som stoppas i fas Integer.MAX_VALUE - 2048), så att
+    // förfrågningar som pågår vid avstängningen hinner lägga sina händelser i kön
+    private static final int PHASE = Integer.MAX_VALUE - 4096;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final long WARN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int TAIL_BYTES = 64 * 1024;
+
+    private final LoanEventLogProperties properties;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private ArrayBlockingQueue<LoanEvent> queue;
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running;
+
+    private long seq;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    // Kastade sedan förra skrivningen, skrivs som en GAP-rad
+    private final AtomicLong droppedSinceWrite = new AtomicLong();
+    private final AtomicLong lastWarn = new AtomicLong(System.nanoTime() - WARN_INTERVAL_NANOS);
+
+    public LoanEventLog(LoanEventLogProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Lägger händelserna i kön när transaktionen har gått igenom (direkt om ingen transaktion pågår)
+     */
+    public void appendAfterCommit(List<LoanEvent> events) {
+        if (!properties.isEnabled() || events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    events.forEach(LoanEventLog.this::append);
+                }
+            });
+        } else {
+            events.forEach(this::append);
+        }
+    }
+
+    // Sökningen efter försenade lån publicerar ett LoanOverdueEvent per nytt försenat lån
+    @EventListener
+    public void onLoanOverdue(LoanOverdueEvent event) {
+        appendAfterCommit(List.of(LoanEvent.overdue(event)));
+    }
+
+    void append(LoanEvent event) {
+        boolean queued = false;
+        if (running) {
+            try {
+                queued = properties.getOverflow() == LoanEventLogProperties.Overflow.BLOCK
+                        ? queue.offer(event, properties.getBlockTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                        : queue.offer(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) {
+            dropped.increment();
+            droppedSinceWrite.incrementAndGet();
+            long now = System.nanoTime();
+            long last = lastWarn.get();
+            if (now - last >= WARN_INTERVAL_NANOS && lastWarn.compareAndSet(last, now)) {
+                log.warn("Händelseloggen för lån hinner inte med, {} händelser har kastats hittills", dropped.sum());
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        Path file = properties.getFile();
+        try {
+            seq = prepare(file);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalStateException("Händelseloggen " + file + " kunde inte öppnas", e);
+        }
+        queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        running = true;
+        writer = Thread.ofPlatform().name("loan-event-writer").daemon(true).start(this::run);
+        log.info("Händelseloggen för lån skrivs till {}", file.toAbsolutePath());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        // Nya händelser kastas, skrivtråden skriver det som finns kvar i kön och avslutas
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (!writer.isAlive()) {
+                write(List.of());
+            }
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            log.error("Händelseloggen för lån kunde inte stängas", e);
+        }
+        if (!queue.isEmpty()) {
+            log.error("{} händelser kunde inte skrivas till händelseloggen vid avstängningen", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void run() {
+        List<LoanEvent> batch = new ArrayList<>(properties.getBatchSize());
+        long flushNanos = properties.getFlushInterval().toNanos();
+        while (running || !queue.isEmpty()) {
+            try {
+                LoanEvent first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+                if (first == null && droppedSinceWrite.get() == 0) {
+                    continue;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, properties.getBatchSize() - 1);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // Avbryts bara om processen stängs, resten av kön skrivs av stop()
+                return;
+            } catch (IOException | RuntimeException e) {
+                // Batchen förloras men loggningen fortsätter, räknas som kastade händelser
+                dropped.add(batch.size());
+                droppedSinceWrite.addAndGet(batch.size());
+                log.error("{} händelser kunde inte skrivas till händelseloggen", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    // En skrivning och en fsync för hela batchen, med en GAP-rad först om händelser har kastats
+    private void write(List<LoanEvent> batch) throws IOException {
+        long gap = droppedSinceWrite.getAndSet(0);
+        if (batch.isEmpty() && gap == 0) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * (batch.size() + 1));
+        try (JsonGenerator generator = jsonFactory.createGenerator(bytes)) {
+            generator.setRootValueSeparator(null);
+            if (gap > 0) {
+                generator.writeStartObject();
+                generator.writeNumberField("seq", ++seq);
+                generator.writeStringField("at", Instant.now().toString());
+                generator.writeStringField("type", GAP);
+                generator.writeNumberField("dropped", gap);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            for (LoanEvent event : batch) {
+                generator.writeStartObject();
+                generator.writeNumberField("seq", ++seq);
+                generator.writeStringField("at", event.at().toString());
+                generator.writeStringField("type", event.type().name());
+                writeId(generator, "loanId", event.loanId());
+                writeId(generator, "userId", event.userId());
+                writeId(generator, "bookId", event.bookId());
+                writeDate(generator, "borrowedDate", event.borrowedDate());
+                writeDate(generator, "dueDate", event.dueDate());
+                writeDate(generator, "returnedDate", event.returnedDate());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (properties.isFsync()) {
+            channel.force(false);
+        }
+        written.add(batch.size());
+    }
+
+    private static void writeId(JsonGenerator generator, String name, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    private static void writeDate(JsonGenerator generator, String name, LocalDate value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value.toString());
+        }
+    }
+
+    // Senaste seq i en befintlig fil. En halvskriven sista rad (hård avstängning) avslutas
+    // med en radbrytning så att nästa händelse hamnar på en egen rad
+    static long prepare(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long length = raf.length();
+            int tail = (int) Math.min(length, TAIL_BYTES);
+            byte[] bytes = new byte[tail];
+            raf.seek(length - tail);
+            raf.readFully(bytes);
+            if (bytes[tail - 1] != '\n') {
+                raf.seek(length);
+                raf.write('\n');
+            }
+
+            String[] lines = new String(bytes, StandardCharsets.UTF_8).split("\n");
+            ObjectMapper objectMapper = new ObjectMapper();
+            for (int i = lines.length - 1; i >= 0; i--) {
+                try {
+                    long lastSeq = objectMapper.readTree(lines[i]).path("seq").asLong(0);
+                    if (lastSeq > 0) {
+                        return lastSeq;
+                    }
+                } catch (IOException e) {
+                    // Halvskriven rad, prova raden före
+                }
+            }
+            return 0;
+        }
+    }
+
+    public int queueSize() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Filen, köns storlek och antal skrivna och kastade händelser
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("file", properties.getFile().toAbsolutePath().toString());
+        result.put("overflow", properties.getOverflow().name().toLowerCase(Locale.ROOT));
+        result.put("queue_size", queueSize());
+        result.put("queue_capacity", properties.getCapacity());
+        result.put("written", written());
+        result.put("dropped", dropped());
+        return result;
+    }
+}
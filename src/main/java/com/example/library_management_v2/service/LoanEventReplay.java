@@ -0,0 +1,280 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.dto.LoanStateDTO;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bygger upp lånen från händelseloggen (LoanEventLog) och jämför dem med tabellen loans (verify)
+ * eller återställer tabellen från loggen (rebuild). Körs från kommandoraden via LoanEventReplayRunner.
+ *
+ * Händelserna läses i filens ordning och varje händelse skriver över de värden den bär. Lån vars
+ * utlåning skedde innan loggen startade får bara de värden som senare händelser bär, de jämförs
+ * och återställs bara för de värdena. Lån som inte finns i loggen alls rörs aldrig.
+ *
+ * En återställning flyttar aldrig ett lån bakåt: ett återlämnat lån blir inte aktivt igen och
+ * förfallodatumet flyttas inte tidigare (se forward). Saknas händelser i loggen (GAP-rader eller rader
+ * som inte kunde läsas) vägrar rebuild att köra om den inte tvingas.
+ */
+@Service
+public class LoanEventReplay {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanEventReplay.class);
+
+    // Lån per SQL-sats och transaktion
+    private static final int CHUNK_SIZE = 500;
+    // Högst så många avvikelser skrivs ut i loggen
+    private static final int MAX_REPORTED = 20;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+
+    @Autowired
+    private LoanArchive loanArchive;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Lånen som de ser ut enligt loggen, plus antal händelser, kastade händelser (GAP-rader)
+     * och rader som inte kunde läsas (t.ex. en halvskriven sista rad efter en hård avstängning)
+     */
+    public record Log(Map<Long, LoanStateDTO> loans, long events, long dropped, long unreadable, long lastSeq) {
+    }
+
+    /**
+     * Resultatet av verify eller rebuild: lån i loggen, hur många som stämmer med tabellen,
+     * hur många som avviker eller saknas, och hur många som återställdes (bara rebuild)
+     */
+    public record Result(Log log, int matching, int different, int missing, int restored) {
+    }
+
+    /**
+     * Läser loggen och bygger upp lånen, utan att röra databasen
+     */
+    public static Log read(Path file) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<Long, LoanStateDTO> loans = new TreeMap<>();
+        long events = 0;
+        long dropped = 0;
+        long unreadable = 0;
+        long lastSeq = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node;
+                LoanEvent.Type type;
+                try {
+                    node = objectMapper.readTree(line);
+                    String typeName = node.path("type").asText();
+                    if (LoanEventLog.GAP.equals(typeName)) {
+                        dropped += node.path("dropped").asLong();
+                        lastSeq = node.path("seq").asLong(lastSeq);
+                        continue;
+                    }
+                    type = LoanEvent.Type.valueOf(typeName);
+                    if (!node.hasNonNull("loanId")) {
+                        throw new IllegalArgumentException("loanId saknas");
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    unreadable++;
+                    continue;
+                }
+
+                LoanStateDTO loan = loans.computeIfAbsent(node.get("loanId").asLong(), id -> {
+                    LoanStateDTO state = new LoanStateDTO();
+                    state.setLoanId(id);
+                    return state;
+                });
+                apply(loan, type, node);
+                events++;
+                lastSeq = node.path("seq").asLong(lastSeq);
+            }
+        }
+        return new Log(loans, events, dropped, unreadable, lastSeq);
+    }
+
+    // Händelsens värden skriver över lånets, en utlåning börjar om från början
+    static void apply(LoanStateDTO loan, LoanEvent.Type type, JsonNode node) {
+        if (type == LoanEvent.Type.CHECKED_OUT) {
+            loan.setUserId(null);
+            loan.setBookId(null);
+            loan.setBorrowedDate(null);
+            loan.setDueDate(null);
+            loan.setReturnedDate(null);
+        }
+        if (node.hasNonNull("userId")) {
+            loan.setUserId(node.get("userId").asLong());
+        }
+        if (node.hasNonNull("bookId")) {
+            loan.setBookId(node.get("bookId").asLong());
+        }
+        if (node.hasNonNull("borrowedDate")) {
+            loan.setBorrowedDate(LocalDate.parse(node.get("borrowedDate").asText()));
+        }
+        if (node.hasNonNull("dueDate")) {
+            loan.setDueDate(LocalDate.parse(node.get("dueDate").asText()));
+        }
+        if (node.hasNonNull("returnedDate")) {
+            loan.setReturnedDate(LocalDate.parse(node.get("returnedDate").asText()));
+        }
+    }
+
+    /**
+     * Jämför lånen i loggen med tabellen loans, ändrar ingenting
+     */
+    public Result verify(Path file) throws IOException {
+        return replay(read(file), null);
+    }
+
+    /**
+     * Återställer lån som avviker från loggen eller saknas, räknar om lediga exemplar för de böcker
+     * som berörs och sedan hela lånesammanställningen för de användare som berörs. Varje omgång om CHUNK_SIZE lån är en egen transaktion,
+     * avbryts körningen kan samma kommando köras igen
+     * @param force Återställ även om loggen saknar händelser
+     * Kasta IllegalStateException om loggen har kastade händelser eller oläsbara rader och force är false,
+     * tabellen loans har då inte ändrats
+     */
+    public Result rebuild(Path file, boolean force) throws IOException {
+        Log eventLog = read(file);
+        if (!force && (eventLog.dropped() > 0 || eventLog.unreadable() > 0)) {
+            throw new IllegalStateException("Händelseloggen " + file + " är inte komplett (" + eventLog.dropped() +
+                    " kastade händelser, " + eventLog.unreadable() + " rader som inte kunde läsas), tabellen loans " +
+                    "har inte ändrats. Kör med library.loans.event-log.replay-force=true för att återställa ändå");
+        }
+        Set<Long> userIds = new LinkedHashSet<>();
+        Result result = replay(eventLog, userIds);
+
+        // Ett återställt lån kan ändra alla antal i sammanställningen, inte bara aktiva och försenade
+        // som den nattliga omräkningen räknar om
+        List<Long> users = new ArrayList<>(userIds);
+        for (int from = 0; from < users.size(); from += CHUNK_SIZE) {
+            userLoanSummaryService.recalculate(users.subList(from, Math.min(from + CHUNK_SIZE, users.size())));
+        }
+        return result;
+    }
+
+    private Result replay(Log eventLog, Set<Long> restoredUserIds) {
+        boolean restore = restoredUserIds != null;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<LoanStateDTO> loans = new ArrayList<>(eventLog.loans().values());
+        int[] counts = new int[4];
+
+        for (int from = 0; from < loans.size(); from += CHUNK_SIZE) {
+            List<LoanStateDTO> chunk = loans.subList(from, Math.min(from + CHUNK_SIZE, loans.size()));
+            transaction.executeWithoutResult(status -> {
+                Map<Long, LoanStateDTO> current = new HashMap<>();
+                for (LoanStateDTO state : loanRepository.findStatesByIdIn(
+                        chunk.stream().map(LoanStateDTO::getLoanId).toList())) {
+                    current.put(state.getLoanId(), state);
+                }
+
+                List<LoanStateDTO> changed = new ArrayList<>();
+                Set<Long> bookIds = new LinkedHashSet<>();
+                for (LoanStateDTO expected : chunk) {
+                    LoanStateDTO actual = current.get(expected.getLoanId());
+                    // Lån som har flyttats till lånearkivet (ett avvikande lån återställs i SQLite,
+                    // som gäller före arkivet)
+                    if (actual == null && expected.getUserId() != null) {
+                        actual = loanArchive.findState(expected.getUserId(), expected.getLoanId());
+                    }
+                    if (actual != null && expected.matches(actual)) {
+                        counts[0]++;
+                        continue;
+                    }
+                    if (actual != null) {
+                        counts[1]++;
+                        bookIds.add(actual.getBookId());
+                    } else {
+                        counts[2]++;
+                    }
+                    if (counts[1] + counts[2] <= MAX_REPORTED) {
+                        log.warn("Avviker från händelseloggen: {}, i databasen: {}", expected,
+                                actual != null ? actual : "saknas");
+                    }
+                    // Databasen ligger före loggen (t.ex. en återlämning vars händelse kastades),
+                    // inget att återställa
+                    LoanStateDTO target = forward(expected, actual);
+                    if (actual != null && target.matches(actual)) {
+                        continue;
+                    }
+                    changed.add(target);
+                    if (expected.getBookId() != null) {
+                        bookIds.add(expected.getBookId());
+                    }
+                    if (restore) {
+                        addUserIds(restoredUserIds, target, actual);
+                    }
+                }
+
+                if (restore && !changed.isEmpty()) {
+                    for (int restored : loanRepository.restoreLoans(changed)) {
+                        counts[3] += restored;
+                    }
+                    bookRepository.recountCopies(new ArrayList<>(bookIds));
+                }
+            });
+        }
+        return new Result(eventLog, counts[0], counts[1], counts[2], counts[3]);
+    }
+
+    // Låntagaren före och efter återställningen (ett lån kan ha flyttats till en annan användare)
+    private static void addUserIds(Set<Long> userIds, LoanStateDTO target, LoanStateDTO actual) {
+        if (target.getUserId() != null) {
+            userIds.add(target.getUserId());
+        }
+        if (actual != null && actual.getUserId() != null) {
+            userIds.add(actual.getUserId());
+        }
+    }
+
+    // Loggens värden, men aldrig bakåt jämfört med databasen: ett återlämningsdatum tas inte bort och
+    // förfallodatumet flyttas inte tidigare. Samma regel gäller i LoanRepository.restoreLoans
+    static LoanStateDTO forward(LoanStateDTO expected, LoanStateDTO actual) {
+        if (actual == null) {
+            return expected;
+        }
+        LoanStateDTO target = new LoanStateDTO(expected.getLoanId(), expected.getUserId(), expected.getBookId(),
+                expected.getBorrowedDate(), expected.getDueDate(), expected.getReturnedDate());
+        if (target.getReturnedDate() == null) {
+            target.setReturnedDate(actual.getReturnedDate());
+        }
+        if (actual.getDueDate() != null
+                && (target.getDueDate() == null || target.getDueDate().isBefore(actual.getDueDate()))) {
+            target.setDueDate(actual.getDueDate());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.library_management_v2.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Räknare för utlåningen i Micrometer (/actuator/prometheus):
+ * - library.loans.checkouts: utlånade exemplar (rate() ger utlåningar per sekund)
+ * - library.loans.returns: återlämnade exemplar
+ * - library.loans.rejected: nekade lån per orsak (reason) och var de nekades (source)
+ *
+ * Utlåningar och återlämningar räknas först efter commit, så en transaktion som rullas
+ * tillbaka räknas inte. Lån som tillgänglighetsindexet nekar räknas i MetricsConfig.
+ */
+@Component
+public class LoanMetrics {
+
+    public static final String NOT_AVAILABLE = "not_available";
+    public static final String BORROWING_LIMIT = "borrowing_limit";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public void checkedOutAfterCommit(int count) {
+        incrementAfterCommit(Counter.builder("library.loans.checkouts")
+                .description("Utlånade exemplar")
+                .register(meterRegistry), count);
+    }
+
+    public void returnedAfterCommit(int count) {
+        incrementAfterCommit(Counter.builder("library.loans.returns")
+                .description("Återlämnade exemplar")
+                .register(meterRegistry), count);
+    }
+
+    // Lån som databasen nekade i utlåningens transaktion (räknas även om transaktionen rullas tillbaka)
+    public void rejected(String reason, int count) {
+        if (count > 0) {
+            Counter.builder("library.loans.rejected")
+                    .description("Nekade lån")
+                    .tags("reason", reason, "source", "database")
+                    .register(meterRegistry)
+                    .increment(count);
+        }
+    }
+
+    private static void incrementAfterCommit(Counter counter, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter.increment(count);
+                }
+            });
+        } else {
+            counter.increment(count);
+        }
+    }
+}
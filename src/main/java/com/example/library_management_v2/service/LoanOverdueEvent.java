@@ -0,0 +1,11 @@
+package com.example.library_management_v2.service;
+
+import java.time.LocalDate;
+
+/**
+ * Publiceras en gång per lån när sökningen efter försenade lån (OverdueLoanService.sweep)
+ * hittar ett lån som har blivit försenat sedan förra körningen.
+ * Lyssnare kan t.ex. skicka påminnelser; ett lån som förlängs och blir försenat igen publiceras på nytt.
+ */
+public record LoanOverdueEvent(Long loanId, Long userId, Long bookId, LocalDate dueDate) {
+}
@@ -0,0 +1,246 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.dto.LoanStateDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * En segmentfil i lånearkivet (LoanArchive): återlämnade lån i kolumnform, skrivs en gång och ändras aldrig.
+ *
+ * Filen läses via en minnesmappning, värdena hämtas direkt ur sidcachen utan att kopieras till heapen.
+ * Lånen är sorterade på användare och lån-ID, så en användares lån ligger i följd. Användarindexet
+ * (användar-ID:n sorterade, med första raden per användare) är kolumnen user_id i komprimerad form.
+ *
+ *   huvud (32 byte)     magic, version, antal rader, antal användare, CRC32C för resten av filen
+ *   user_ids            long[users]
+ *   user_starts         int[users + 1], användare u har raderna user_starts[u] .. user_starts[u + 1] - 1
+ *   (utfyllnad till 8 byte)
+ *   loan_ids            long[rows]
+ *   book_ids            long[rows]
+ *   borrowed_days       int[rows], datumen som antal dagar sedan 1970-01-01
+ *   due_days            int[rows]
+ *   returned_days       int[rows]
+ */
+final class LoanSegment {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x4745534C;   // "LSEG" i little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    // En minnesmappning kan vara högst 2 GB, 28 byte per lån
+    static final int MAX_ROWS = 50_000_000;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final int users;
+    private final int userStarts;
+    private final int loanIds;
+    private final int bookIds;
+    private final int borrowedDays;
+    private final int dueDays;
+    private final int returnedDays;
+
+    private LoanSegment(Path file, ByteBuffer buffer, int rows, int users) {
+        this.file = file;
+        this.buffer = buffer;
+        this.rows = rows;
+        this.users = users;
+        this.userStarts = HEADER_BYTES + 8 * users;
+        this.loanIds = align8(userStarts + 4 * (users + 1));
+        this.bookIds = loanIds + 8 * rows;
+        this.borrowedDays = bookIds + 8 * rows;
+        this.dueDays = borrowedDays + 4 * rows;
+        this.returnedDays = dueDays + 4 * rows;
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static long size(int rows, int users) {
+        return align8(HEADER_BYTES + 8 * users + 4 * (users + 1)) + 28L * rows;
+    }
+
+    /**
+     * Skriver lånen till en ny fil och tvingar ut den till disken.
+     * Lånen måste vara återlämnade och sorterade på användare och lån-ID.
+     */
+    static void write(Path file, List<LoanStateDTO> loans) throws IOException {
+        if (loans.size() > MAX_ROWS) {
+            throw new IllegalArgumentException("Högst " + MAX_ROWS + " lån per segment, inte " + loans.size());
+        }
+        int rows = loans.size();
+        int users = 0;
+        for (int i = 0; i < rows; i++) {
+            LoanStateDTO loan = loans.get(i);
+            if (loan.getReturnedDate() == null) {
+                throw new IllegalArgumentException("Bara återlämnade lån kan arkiveras: " + loan);
+            }
+            if (i > 0) {
+                LoanStateDTO previous = loans.get(i - 1);
+                int order = Long.compare(previous.getUserId(), loan.getUserId());
+                if (order > 0 || order == 0 && previous.getLoanId() >= loan.getLoanId()) {
+                    throw new IllegalArgumentException("Lånen är inte sorterade på användare och lån-ID: " + loan);
+                }
+            }
+            if (i == 0 || !loans.get(i - 1).getUserId().equals(loan.getUserId())) {
+                users++;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(Math.toIntExact(size(rows, users))).order(ByteOrder.LITTLE_ENDIAN);
+        LoanSegment layout = new LoanSegment(file, out, rows, users);
+        int user = -1;
+        for (int i = 0; i < rows; i++) {
+            LoanStateDTO loan = loans.get(i);
+            if (i == 0 || !loans.get(i - 1).getUserId().equals(loan.getUserId())) {
+                user++;
+                out.putLong(HEADER_BYTES + 8 * user, loan.getUserId());
+                out.putInt(layout.userStarts + 4 * user, i);
+            }
+            out.putLong(layout.loanIds + 8 * i, loan.getLoanId());
+            out.putLong(layout.bookIds + 8 * i, loan.getBookId());
+            out.putInt(layout.borrowedDays + 4 * i, Math.toIntExact(loan.getBorrowedDate().toEpochDay()));
+            out.putInt(layout.dueDays + 4 * i, Math.toIntExact(loan.getDueDate().toEpochDay()));
+            out.putInt(layout.returnedDays + 4 * i, Math.toIntExact(loan.getReturnedDate().toEpochDay()));
+        }
+        out.putInt(layout.userStarts + 4 * users, rows);
+
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), HEADER_BYTES, out.capacity() - HEADER_BYTES);
+        out.putInt(0, MAGIC);
+        out.putInt(4, VERSION);
+        out.putInt(8, rows);
+        out.putInt(12, users);
+        out.putLong(16, crc.getValue());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.rewind();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+    }
+
+    // Ett namnbyte är bara beständigt när katalogen har tvingats ut (fungerar inte på alla system)
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // T.ex. Windows, där en katalog inte kan öppnas
+        }
+    }
+
+    /**
+     * Mappar en segmentfil och kontrollerar huvudet, storleken och checksumman
+     * Kasta IOException om filen inte är en komplett segmentfil
+     */
+    static LoanSegment open(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segmentfilen " + file + " har fel storlek: " + channel.size());
+            }
+            // Mappningen gäller även efter att kanalen har stängts
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Segmentfilen " + file + " har fel format");
+        }
+        int rows = buffer.getInt(8);
+        int users = buffer.getInt(12);
+        if (rows < 0 || users < 0 || users > rows || size(rows, users) != buffer.capacity()) {
+            throw new IOException("Segmentfilen " + file + " är ofullständig");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+        if (crc.getValue() != buffer.getLong(16)) {
+            throw new IOException("Segmentfilen " + file + " har fel checksumma");
+        }
+        return new LoanSegment(file, buffer, rows, users);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int users() {
+        return users;
+    }
+
+    long bytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Användarens position i användarindexet (binärsökning), -1 om användaren saknar lån i segmentet
+     */
+    int findUser(long userId) {
+        int low = 0;
+        int high = users - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = buffer.getLong(HEADER_BYTES + 8 * middle);
+            if (value < userId) {
+                low = middle + 1;
+            } else if (value > userId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    long userId(int user) {
+        return buffer.getLong(HEADER_BYTES + 8 * user);
+    }
+
+    // Användarens första rad
+    int start(int user) {
+        return buffer.getInt(userStarts + 4 * user);
+    }
+
+    // Raden efter användarens sista rad
+    int end(int user) {
+        return buffer.getInt(userStarts + 4 * (user + 1));
+    }
+
+    long loanId(int row) {
+        return buffer.getLong(loanIds + 8 * row);
+    }
+
+    long bookId(int row) {
+        return buffer.getLong(bookIds + 8 * row);
+    }
+
+    LocalDate borrowedDate(int row) {
+        return LocalDate.ofEpochDay(buffer.getInt(borrowedDays + 4 * row));
+    }
+
+    LocalDate dueDate(int row) {
+        return LocalDate.ofEpochDay(buffer.getInt(dueDays + 4 * row));
+    }
+
+    LocalDate returnedDate(int row) {
+        return LocalDate.ofEpochDay(buffer.getInt(returnedDays + 4 * row));
+    }
+}
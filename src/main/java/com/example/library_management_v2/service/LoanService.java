@@ -3,8 +3,11 @@ package com.example.library_management_v2.service;
 
 // Vi skapar vi en service-klass för att hantera lånerelaterade operationer
 
+import com.example.library_management_v2.dto.BatchLoanResultDTO;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
 import com.example.library_management_v2.dto.CreateLoanDTO;
 import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
 import com.example.library_management_v2.entity.Book;
 import com.example.library_management_v2.entity.Loan;
 import com.example.library_management_v2.entity.User;
@@ -14,15 +17,27 @@ import com.example.library_management_v2.exception.UserNotFoundException;
 import com.example.library_management_v2.repository.BookRepository;
 import com.example.library_management_v2.repository.LoanRepository;
 import com.example.library_management_v2.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 
 @Service
+@Timed("library.service")
 public class LoanService {
 
     @Autowired
@@ -34,21 +49,47 @@ public class LoanService {
     @Autowired
     private BookRepository bookRepository;
 
-    // Hämta alla lån för en specifik user
-    public List<LoanDTO> getUserLoans (Long userId) {
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+
+    @Autowired
+    private BorrowingPolicyService borrowingPolicyService;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private LoanMetrics loanMetrics;
+
+    @Autowired
+    private LoanEventLog loanEventLog;
+
+    @Autowired
+    private LoanArchiveService loanArchiveService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-        // Vi kontrollerar om användaren finns:
-        User user = userRepository.findById(userId).
-                orElseThrow(() -> new UserNotFoundException ("Användare med ID: " + userId + " hittades inte"));
+    // Max antal böcker eller lån i en batch-förfrågan
+    @Value("${library.loans.max-batch-size:50}")
+    private int maxBatchSize;
 
-        // Hämta användarens lån
-        List<Loan> loans = loanRepository.findByUserId(userId);
+    // Hämta alla lån för en specifik user
+    // Kontrollen och listan läses i samma lästransaktion, med en och samma anslutning från läspoolen
+    @Transactional(readOnly = true)
+    public List<LoanDTO> getUserLoans (Long userId) {
 
+        // Vi kontrollerar bara att användaren finns, själva entiteten behövs inte
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException ("Användare med ID: " + userId + " hittades inte");
+        }
 
-        // Konvertera och returnera lån som DTO:
-        return loans.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        // Lånen hämtas direkt som LoanDTO med bok och författare i en enda SQL-sats
+        // Gamla återlämnade lån som har flyttats till lånearkivet läggs till från segmentfilerna
+        return loanArchiveService.withHistory(userId, loanRepository.findDtosByUserId(userId, LocalDate.now()));
     }
 
 
@@ -97,27 +138,37 @@ public class LoanService {
      * Kasta UserNotFoundException om användaren inte hittas
      * Kasta BookNotFoundException om boken inte hittas
      * Kasta BookNotAvailableException om boken inte är tillgänglig
+     * Kasta BorrowingLimitException om lånet bryter mot lånereglerna
      */
 
+    @Transactional
     public LoanDTO createLoan(CreateLoanDTO createLoanDTO) {
-        // Hämta användare och bok
+        // Hämta användare
         User user = userRepository.findById(createLoanDTO.getUserId())
                 .orElseThrow(() -> new UserNotFoundException
                         ("Användare med ID: " + createLoanDTO.getUserId() + " hittades inte"));
 
-        Book book = bookRepository.findById(createLoanDTO.getBookId())
+        // Ett exemplar som är reserverat åt användaren från kön (HoldService) lånas ut först,
+        // annars reserveras ett ledigt exemplar direkt i databasen (UPDATE ... WHERE available_copies > 0)
+        // Två samtidiga lån kan därför aldrig ta samma sista exemplar
+        boolean reserved = holdService.claimReservedCopy(user.getId(), createLoanDTO.getBookId())
+                || bookRepository.reserveCopy(createLoanDTO.getBookId()) == 1;
+
+        // Hämta boken (med författare, till svaret) efter reservationen så att antalet exemplar är aktuellt
+        Book book = bookRepository.findWithAuthorById(createLoanDTO.getBookId())
                 .orElseThrow(() -> new BookNotFoundException
                         ("Bok med ID: " + createLoanDTO.getBookId() + " hittades inte"));
 
-        // Kontrollera om boken är tillgänglig
-        if (book.getAvailableCopies() <= 0) {
+        // Ingen rad uppdaterades trots att boken finns, alltså fanns inga lediga exemplar
+        if (!reserved) {
+            loanMetrics.rejected(LoanMetrics.NOT_AVAILABLE, 1);
             throw new BookNotAvailableException
                     ("Boken \"" + book.getTitle() + "\" är inte tillgänglig för närvarande");
         }
 
-        // Minska antalet tillgängliga exemplar
-        book.setAvailableCopies(book.getAvailableCopies() - 1);
-        bookRepository.save(book);
+        // Lånereglerna kontrolleras och lånesammanställningen räknas upp i samma transaktion,
+        // bryts en regel rullas även reservationen tillbaka
+        borrowingPolicyService.checkOut(user.getId(), List.of(book));
 
         // Skapa nytt lån
         Loan loan = new Loan();
@@ -138,6 +189,13 @@ public class LoanService {
         // Spara lånet
         Loan savedLoan = loanRepository.save(loan);
 
+        // Antalet tillgängliga exemplar har ändrats, cachade boklistor töms och
+        // tillgänglighetsindexet räknas ner efter commit
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+        availabilityIndex.adjustAfterCommit(List.of(book.getId()), -1);
+        loanMetrics.checkedOutAfterCommit(1);
+        loanEventLog.appendAfterCommit(List.of(LoanEvent.checkedOut(savedLoan)));
+
         // Returnera det skapade lånet som DTO
         return convertToDTO(savedLoan);
     }
@@ -150,10 +208,11 @@ public class LoanService {
      * Kasta en EntityNotFoundException om lånet inte hittas
      * Kasta en IllegalStateException om lånet redan är återlämnat
      */
+    @Transactional
     public LoanDTO returnBook(Long loanId) {
 
-        // Hämta lånet
-        Loan loan = loanRepository.findById(loanId)
+        // Hämta lånet med bok och författare (till svaret)
+        Loan loan = loanRepository.findWithBookById(loanId)
                 .orElseThrow(() -> new EntityNotFoundException("Lån med ID: " + loanId + " hittades inte"));
 
 
@@ -163,22 +222,222 @@ public class LoanService {
         }
 
 
-        // Markera lånet som återlämnat
-        loan.setReturnedDate(LocalDate.now());
+        // Markera lånet som återlämnat, villkorat så att två samtidiga återlämningar inte båda lyckas
+        LocalDate today = LocalDate.now();
+        if (loanRepository.markReturned(loanId, today) == 0) {
+            throw new IllegalStateException("Boken är redan återlämnad");
+        }
 
 
-        // Öka antalet tillgängliga exemplar av boken
-        Book book = loan.getBook();
-        book.setAvailableCopies(book.getAvailableCopies() + 1);
-        bookRepository.save(book);
+        // Öka antalet tillgängliga exemplar av boken direkt i databasen
+        // Står någon i kön reserveras exemplaret direkt åt den första i kön (HoldService)
+        bookRepository.releaseCopy(loan.getBook().getId());
+        holdService.copyReturned(loan.getBook().getId());
+        userLoanSummaryService.loanReturned(loan);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+        // Exemplaret står på hyllan igen, ledigt eller reserverat åt kön
+        availabilityIndex.adjustAfterCommit(List.of(loan.getBook().getId()), 1);
+        loanMetrics.returnedAfterCommit(1);
 
 
-        // Spara det uppdaterade lånet
-        Loan savedLoan = loanRepository.save(loan);
+        // Lånet uppdaterades direkt i databasen (och är nu frikopplat), så vi sätter datumet
+        // på entiteten i stället för att hämta lånet en gång till
+        loan.setReturnedDate(today);
+        loanEventLog.appendAfterCommit(List.of(LoanEvent.returned(loan, today)));
+        return convertToDTO(loan);
+    }
 
 
-        // Returnera det uppdaterade lånet som DTO
-        return convertToDTO(savedLoan);
+    /**
+     * Lånar ut flera böcker till samma användare i en och samma transaktion
+     * Exemplaren reserveras i en JDBC-batch och alla böcker hämtas sedan i en SQL-sats
+     * createBatchLoanDTO Användar-ID och listan med bok-ID:n
+     * Returnera ett resultat per bok-ID (lyckat lån eller felmeddelande), i samma ordning som förfrågan
+     * Kasta UserNotFoundException om användaren inte hittas
+     * Kasta IllegalArgumentException om batchen är för stor
+     * Kasta BorrowingLimitException om de reserverade lånen tillsammans bryter mot lånereglerna
+     * (då lånas ingen av böckerna ut)
+     */
+    @Transactional
+    public BatchLoanResultDTO createLoans(CreateBatchLoanDTO createBatchLoanDTO) {
+        List<Long> bookIds = createBatchLoanDTO.getBookIds();
+        checkBatchSize(bookIds.size());
+
+        // Hämta användaren en gång för hela batchen
+        User user = userRepository.findById(createBatchLoanDTO.getUserId())
+                .orElseThrow(() -> new UserNotFoundException
+                        ("Användare med ID: " + createBatchLoanDTO.getUserId() + " hittades inte"));
+
+        // Samma bok kan bara lånas en gång per förfrågan
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(bookIds));
+
+        // Exemplar som är reserverade åt användaren från kön lånas ut först (en JDBC-batch),
+        // övriga reserveras med villkorade uppdateringar i en JDBC-batch (0 = inte reserverad)
+        boolean[] claimed = holdService.claimReservedCopies(user.getId(), distinctIds);
+        List<Long> unclaimedIds = new ArrayList<>();
+        for (int i = 0; i < distinctIds.size(); i++) {
+            if (!claimed[i]) {
+                unclaimedIds.add(distinctIds.get(i));
+            }
+        }
+        int[] reservedUnclaimed = bookRepository.reserveCopies(unclaimedIds);
+        int[] reserved = new int[distinctIds.size()];
+        for (int i = 0, u = 0; i < distinctIds.size(); i++) {
+            reserved[i] = claimed[i] ? 1 : reservedUnclaimed[u++];
+        }
+
+        // Hämta böckerna (med författare) efter reservationen så att antalet exemplar är aktuellt
+        Map<Long, Book> books = bookRepository.findAllWithAuthorByIdIn(distinctIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+        Map<Long, Loan> loansByBookId = new HashMap<>();
+        for (int i = 0; i < distinctIds.size(); i++) {
+            if (reserved[i] == 0) {
+                continue;
+            }
+            Loan loan = new Loan();
+            loan.setUser(user);
+            loan.setBook(books.get(distinctIds.get(i)));
+            loan.setBorrowedDate(LocalDate.now());
+            loan.setDueDate(LocalDate.now().plusDays(14));
+            loan.setReturnedDate(null);
+            loansByBookId.put(distinctIds.get(i), loan);
+        }
+
+        // Lånereglerna gäller alla reserverade böcker tillsammans
+        if (!loansByBookId.isEmpty()) {
+            borrowingPolicyService.checkOut(user.getId(),
+                    loansByBookId.values().stream().map(Loan::getBook).toList());
+        }
+
+        // Spara alla nya lån på en gång
+        loanRepository.saveAll(loansByBookId.values());
+        if (!loansByBookId.isEmpty()) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+        }
+        availabilityIndex.adjustAfterCommit(new ArrayList<>(loansByBookId.keySet()), -1);
+        loanMetrics.checkedOutAfterCommit(loansByBookId.size());
+        loanEventLog.appendAfterCommit(loansByBookId.values().stream().map(LoanEvent::checkedOut).toList());
+
+        List<BatchLoanResultDTO.Item> items = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        int notAvailable = 0;
+        for (Long bookId : bookIds) {
+            Book book = books.get(bookId);
+            Loan loan = loansByBookId.get(bookId);
+
+            if (book == null) {
+                items.add(BatchLoanResultDTO.Item.failure(bookId, "Bok med ID: " + bookId + " hittades inte"));
+            } else if (!seen.add(bookId)) {
+                items.add(BatchLoanResultDTO.Item.failure(bookId,
+                        "Boken \"" + book.getTitle() + "\" finns redan i samma förfrågan"));
+            } else if (loan == null) {
+                notAvailable++;
+                items.add(BatchLoanResultDTO.Item.failure(bookId,
+                        "Boken \"" + book.getTitle() + "\" är inte tillgänglig för närvarande"));
+            } else {
+                items.add(BatchLoanResultDTO.Item.success(bookId, convertToDTO(loan)));
+            }
+        }
+        loanMetrics.rejected(LoanMetrics.NOT_AVAILABLE, notAvailable);
+        return new BatchLoanResultDTO(items);
+    }
+
+
+    /**
+     * Återlämnar flera lån i en och samma transaktion
+     * Alla lån hämtas i en SQL-sats, markeras som återlämnade i en JDBC-batch och exemplaren
+     * lämnas tillbaka i en JDBC-batch
+     * returnBatchLoanDTO Listan med lån-ID:n
+     * Returnera ett resultat per lån-ID (uppdaterat lån eller felmeddelande)
+     * Kasta IllegalArgumentException om batchen är för stor
+     */
+    @Transactional
+    public BatchLoanResultDTO returnBooks(ReturnBatchLoanDTO returnBatchLoanDTO) {
+        List<Long> loanIds = returnBatchLoanDTO.getLoanIds();
+        checkBatchSize(loanIds.size());
+
+        // Hämta alla lån med bok och författare i en SQL-sats
+        Map<Long, Loan> loans = loanRepository.findAllWithBookByIdIn(new HashSet<>(loanIds)).stream()
+                .collect(Collectors.toMap(Loan::getId, Function.identity()));
+
+        Map<Integer, String> errors = new HashMap<>();
+        List<Long> candidates = new ArrayList<>();
+        List<Integer> candidatePositions = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+
+        for (int i = 0; i < loanIds.size(); i++) {
+            Long loanId = loanIds.get(i);
+            Loan loan = loans.get(loanId);
+
+            if (loan == null) {
+                errors.put(i, "Lån med ID: " + loanId + " hittades inte");
+            } else if (!seen.add(loanId)) {
+                errors.put(i, "Lånet finns redan i samma förfrågan");
+            } else if (loan.getReturnedDate() != null) {
+                errors.put(i, "Boken är redan återlämnad (datum: " + loan.getReturnedDate() + ")");
+            } else {
+                candidates.add(loanId);
+                candidatePositions.add(i);
+            }
+        }
+
+        // Markera lånen som återlämnade, villkorat på att de fortfarande är aktiva
+        LocalDate today = LocalDate.now();
+        int[] marked = loanRepository.markReturnedBatch(candidates, today);
+
+        List<Long> releasedBookIds = new ArrayList<>();
+        List<Loan> returnedLoans = new ArrayList<>();
+        Map<Integer, LoanDTO> returnedByPosition = new HashMap<>();
+        for (int c = 0; c < candidates.size(); c++) {
+            Loan loan = loans.get(candidates.get(c));
+
+            if (marked[c] == 0) {
+                errors.put(candidatePositions.get(c), "Boken är redan återlämnad");
+                continue;
+            }
+
+            releasedBookIds.add(loan.getBook().getId());
+            returnedLoans.add(loan);
+
+            // Entiteten uppdaterades via JDBC, så vi sätter de nya värdena direkt på DTO:n
+            LoanDTO dto = convertToDTO(loan);
+            dto.setReturnedDate(today);
+            dto.setActive(false);
+            dto.setOverdue(false);
+            returnedByPosition.put(candidatePositions.get(c), dto);
+        }
+
+        // Lämna tillbaka exemplaren i en enda JDBC-batch, och reservera dem åt köerna
+        bookRepository.releaseCopies(releasedBookIds);
+        holdService.copiesReturned(releasedBookIds);
+        userLoanSummaryService.loansReturned(returnedLoans);
+        if (!releasedBookIds.isEmpty()) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Scope.BOOKS));
+        }
+        availabilityIndex.adjustAfterCommit(releasedBookIds, 1);
+        loanMetrics.returnedAfterCommit(releasedBookIds.size());
+        loanEventLog.appendAfterCommit(returnedLoans.stream().map(loan -> LoanEvent.returned(loan, today)).toList());
+
+        List<BatchLoanResultDTO.Item> items = new ArrayList<>();
+        for (int i = 0; i < loanIds.size(); i++) {
+            LoanDTO dto = returnedByPosition.get(i);
+            items.add(dto != null
+                    ? BatchLoanResultDTO.Item.success(loanIds.get(i), dto)
+                    : BatchLoanResultDTO.Item.failure(loanIds.get(i), errors.get(i)));
+        }
+        return new BatchLoanResultDTO(items);
+    }
+
+
+    /**
+     * Kontrollera att batchen inte är större än tillåtet (library.loans.max-batch-size)
+     * Kasta IllegalArgumentException om den är det
+     */
+    public void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new IllegalArgumentException("En batch får innehålla högst " + maxBatchSize + " rader");
+        }
     }
 
 
@@ -189,9 +448,10 @@ public class LoanService {
      * Kasta EntityNotFoundException om lånet inte hittas
      * Kasta IllegalStateException om lånet redan är återlämnat eller förlängt
      */
+    @Transactional
     public LoanDTO extendLoan(Long loanId) {
-        // Hämta lånet
-        Loan loan = loanRepository.findById(loanId)
+        // Hämta lånet med bok och författare (till svaret)
+        Loan loan = loanRepository.findWithBookById(loanId)
                 .orElseThrow(() -> new EntityNotFoundException("Lån med ID: " + loanId + " hittades inte"));
 
         // Kontrollera om lånet redan är återlämnat
@@ -205,10 +465,13 @@ public class LoanService {
         }
 
         // Förläng förfallodatumet med 14 dagar
-        loan.setDueDate(loan.getDueDate().plusDays(14));
+        LocalDate previousDueDate = loan.getDueDate();
+        loan.setDueDate(previousDueDate.plusDays(14));
 
         // Spara det uppdaterade lånet
         Loan savedLoan = loanRepository.save(loan);
+        userLoanSummaryService.loanExtended(savedLoan, previousDueDate);
+        loanEventLog.appendAfterCommit(List.of(LoanEvent.extended(savedLoan)));
 
         // Returnera det uppdaterade lånet som DTO
         return convertToDTO(savedLoan);
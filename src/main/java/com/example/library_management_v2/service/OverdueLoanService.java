@@ -0,0 +1,198 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.dto.CursorPageDTO;
+import com.example.library_management_v2.dto.OverdueLoanDTO;
+import com.example.library_management_v2.dto.OverdueSweepResultDTO;
+import com.example.library_management_v2.entity.JobWatermark;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.repository.JobWatermarkRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Försenade lån: listan för /loans/overdue och den schemalagda sökningen efter nya försenade lån.
+ *
+ * Båda läser aktiva lån i ordning efter förfallodatum via det partiella indexet idx_loans_active_due_date,
+ * så bara försenade lån läses, aldrig alla lån. Sökningen sparar dessutom en vattenstämpel
+ * (senaste förfallodatum som behandlats) och läser nästa gång bara lån som har förfallit sedan dess.
+ */
+@Service
+public class OverdueLoanService {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueLoanService.class);
+
+    static final String SWEEP_JOB = "overdue-sweep";
+    private static final String CURSOR_SCOPE = "overdue";
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private JobWatermarkRepository jobWatermarkRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${library.pagination.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${library.pagination.max-size:500}")
+    private int maxPageSize;
+
+    // Antal lån som sökningen läser per SQL-sats
+    @Value("${library.overdue.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    // Den schemalagda körningen och POST /loans/overdue/sweep får inte köra samtidigt
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    /**
+     * Hämtar en sida med försenade lån, de som förföll först kommer först
+     * @param minDaysOverdue Minst så många dagar försenat (null ger 1, dvs. alla försenade lån)
+     * @param maxDaysOverdue Högst så många dagar försenat (null ger ingen övre gräns)
+     * @param cursor Token från föregående sida (null för första sidan)
+     * @param size Önskad sidstorlek (null ger standardstorleken)
+     * @return En sida med försenade lån och en cursor till nästa sida
+     * Kasta IllegalArgumentException om intervallet eller cursorn är ogiltig
+     */
+    public CursorPageDTO<OverdueLoanDTO> getOverdueLoans(Integer minDaysOverdue, Integer maxDaysOverdue,
+                                                         String cursor, Integer size) {
+        int minDays = minDaysOverdue != null ? minDaysOverdue : 1;
+        if (minDays < 1) {
+            throw new IllegalArgumentException("minDaysOverdue måste vara minst 1");
+        }
+        if (maxDaysOverdue != null && maxDaysOverdue < minDays) {
+            throw new IllegalArgumentException("maxDaysOverdue får inte vara mindre än minDaysOverdue");
+        }
+        int pageSize = PageCursor.pageSize(size, defaultPageSize, maxPageSize);
+
+        // Ett lån är försenat dagen efter förfallodatumet (samma regel som Loan.isOverdue)
+        LocalDate today = LocalDate.now();
+        LocalDate dueTo = today.minusDays(minDays);
+        LocalDate dueFrom = maxDaysOverdue != null ? today.minusDays(maxDaysOverdue) : LocalDate.EPOCH;
+
+        // Hämta en rad extra för att veta om det finns en nästa sida
+        List<Loan> loans = findPage(dueFrom, dueTo, PageCursor.decodePair(CURSOR_SCOPE, cursor), pageSize + 1);
+
+        String nextCursor = null;
+        if (loans.size() > pageSize) {
+            loans = loans.subList(0, pageSize);
+            Loan last = loans.get(pageSize - 1);
+            nextCursor = PageCursor.encode(CURSOR_SCOPE, last.getDueDate().toEpochDay(), last.getId());
+        }
+
+        return new CursorPageDTO<>(loans.stream().map(loan -> convertToDTO(loan, today)).toList(), nextCursor);
+    }
+
+    // Körs varje natt (library.overdue.sweep-cron, "-" stänger av den)
+    @Scheduled(cron = "${library.overdue.sweep-cron:0 15 2 * * *}")
+    public void scheduledSweep() {
+        sweep();
+    }
+
+    /**
+     * Letar upp lån som har blivit försenade sedan förra körningen och publicerar ett LoanOverdueEvent per lån
+     * @return Vilka förfallodatum som behandlades och hur många lån som hittades
+     * Kasta IllegalStateException om en annan körning redan pågår
+     */
+    public OverdueSweepResultDTO sweep() {
+        return sweep(LocalDate.now());
+    }
+
+    OverdueSweepResultDTO sweep(LocalDate today) {
+        if (!sweepLock.tryLock()) {
+            throw new IllegalStateException("Sökningen efter försenade lån körs redan");
+        }
+
+        try {
+            // Lån med förfallodatum till och med i går är försenade i dag
+            LocalDate dueTo = today.minusDays(1);
+            JobWatermark watermark = jobWatermarkRepository.findById(SWEEP_JOB).orElse(null);
+            LocalDate dueFrom = watermark != null ? watermark.getWatermark().plusDays(1) : LocalDate.EPOCH;
+
+            // Redan körd i dag
+            if (dueFrom.isAfter(dueTo)) {
+                return new OverdueSweepResultDTO(dueFrom, dueTo, 0);
+            }
+
+            // Varje sida läses i en egen kort läsning, så skrivanslutningen är aldrig upptagen av sökningen
+            int processed = 0;
+            long[] after = null;
+            List<Loan> loans;
+            do {
+                loans = findPage(dueFrom, dueTo, after, sweepBatchSize);
+                for (Loan loan : loans) {
+                    eventPublisher.publishEvent(new LoanOverdueEvent(
+                            loan.getId(), loan.getUser().getId(), loan.getBook().getId(), loan.getDueDate()));
+                }
+                processed += loans.size();
+
+                if (!loans.isEmpty()) {
+                    Loan last = loans.get(loans.size() - 1);
+                    after = new long[] {last.getDueDate().toEpochDay(), last.getId()};
+                }
+            } while (loans.size() == sweepBatchSize);
+
+            // Vattenstämpeln sparas först när alla sidor är behandlade,
+            // avbryts körningen görs hela intervallet om nästa gång
+            if (watermark == null) {
+                watermark = new JobWatermark(SWEEP_JOB, dueTo);
+            } else {
+                watermark.setWatermark(dueTo);
+                watermark.setUpdatedAt(LocalDateTime.now());
+            }
+            jobWatermarkRepository.save(watermark);
+
+            log.info("Sökning efter försenade lån: {} nya försenade lån med förfallodatum {} till {}",
+                    processed, dueFrom, dueTo);
+            return new OverdueSweepResultDTO(dueFrom, dueTo, processed);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    // Första sidan börjar vid dueFrom, senare sidor vid cursorns förfallodatum,
+    // så att indexet aldrig läser om rader från tidigare sidor
+    private List<Loan> findPage(LocalDate dueFrom, LocalDate dueTo, long[] after, int limit) {
+        if (after == null) {
+            return loanRepository.findActivePageByDueDate(dueFrom, dueTo, dueFrom.minusDays(1), 0L, Limit.of(limit));
+        }
+
+        LocalDate afterDueDate = LocalDate.ofEpochDay(after[0]);
+        LocalDate from = afterDueDate.isAfter(dueFrom) ? afterDueDate : dueFrom;
+        return loanRepository.findActivePageByDueDate(from, dueTo, afterDueDate, after[1], Limit.of(limit));
+    }
+
+    private OverdueLoanDTO convertToDTO(Loan loan, LocalDate today) {
+        OverdueLoanDTO dto = new OverdueLoanDTO();
+        dto.setId(loan.getId());
+        dto.setUserId(loan.getUser().getId());
+        dto.setUserName(loan.getUser().getFirstName() + " " + loan.getUser().getLastName());
+        dto.setUserEmail(loan.getUser().getEmail());
+        dto.setBookId(loan.getBook().getId());
+        dto.setBookTitle(loan.getBook().getTitle());
+
+        if (loan.getBook().getAuthor() != null) {
+            dto.setAuthorName(loan.getBook().getAuthor().getFirstName() + " " +
+                    loan.getBook().getAuthor().getLastName());
+        }
+
+        dto.setBorrowedDate(loan.getBorrowedDate());
+        dto.setDueDate(loan.getDueDate());
+        dto.setDaysOverdue(ChronoUnit.DAYS.between(loan.getDueDate(), today));
+        return dto;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.library_management_v2.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Hjälpklass för keyset-paginering
+// Cursorn innehåller senaste ID:t på föregående sida, kodat som Base64 så att klienten inte tolkar det
+final class PageCursor {
+
+    private PageCursor() {}
+
+    /**
+     * Skapar en cursor för nästa sida
+     * scope Vilken lista cursorn gäller (t.ex. "books"), så att den inte kan återanvändas för en annan lista
+     * lastId ID för sista raden på aktuell sida
+     */
+    static String encode(String scope, Long lastId) {
+        String raw = scope + ":" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Läser ut ID:t ur en cursor
+     * Returnera 0 om ingen cursor angavs (första sidan)
+     * Kasta IllegalArgumentException om cursorn är ogiltig
+     */
+    static long decode(String scope, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String prefix = scope + ":";
+            if (!raw.startsWith(prefix)) {
+                throw new IllegalArgumentException("Ogiltig cursor");
+            }
+            return Long.parseLong(raw.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException och Base64-fel är också IllegalArgumentException
+            throw new IllegalArgumentException("Ogiltig cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Skapar en cursor för listor som sorteras på två kolumner (t.ex. förfallodatum och ID)
+     * sortKey Sorteringsvärdet för sista raden på aktuell sida (t.ex. LocalDate.toEpochDay())
+     * lastId ID för sista raden på aktuell sida
+     */
+    static String encode(String scope, long sortKey, Long lastId) {
+        return encode(scope + ":" + sortKey, lastId);
+    }
+
+    /**
+     * Läser ut sorteringsvärdet och ID:t ur en cursor från encode(scope, sortKey, lastId)
+     * Returnera null om ingen cursor angavs (första sidan)
+     * Kasta IllegalArgumentException om cursorn är ogiltig
+     */
+    static long[] decodePair(String scope, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || !parts[0].equals(scope)) {
+                throw new IllegalArgumentException("Ogiltig cursor");
+            }
+            return new long[] {Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Ogiltig cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Bestämmer sidstorleken utifrån vad klienten bad om
+     * Kasta IllegalArgumentException om storleken är mindre än 1
+     */
+    static int pageSize(Integer requested, int defaultSize, int maxSize) {
+        if (requested == null) {
+            return defaultSize;
+        }
+        if (requested < 1) {
+            throw new IllegalArgumentException("Sidstorleken måste vara minst 1");
+        }
+        return Math.min(requested, maxSize);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.dto.LoanSummaryDTO;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.UserLoanSummary;
+import com.example.library_management_v2.exception.UserNotFoundException;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sammanställningen av varje användares lån (aktiva, försenade, förlängda och totalt).
+ *
+ * LoanService anropar metoderna nedan i sin egen transaktion, så sammanställningen ändras
+ * i samma commit som lånen. Ändringarna räknar upp och ner direkt i databasen och läser aldrig lånen,
+ * och GET /users/{id}/loan-summary läser bara en rad.
+ *
+ * Ett lån blir försenat när dagen byts, utan att något lån ändras. Därför gäller antalet försenade lån
+ * för en viss dag (overdueAsOf), och den nattliga omräkningen räknar om aktiva och försenade lån för
+ * alla användare och flyttar fram dagen. Ett återlämnat eller förlängt lån ändrar bara antalet försenade
+ * om lånet var räknat som försenat (förfallodatum före overdueAsOf), så räknaren stämmer även mellan
+ * omräkningarna.
+ */
+@Service
+public class UserLoanSummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserLoanSummaryService.class);
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanArchive loanArchive;
+
+    /**
+     * Hämtar sammanställningen av en användares lån
+     * @param userId Användarens ID
+     * @return Antal aktiva, försenade, förlängda och totalt
+     * Kasta UserNotFoundException om användaren inte finns
+     */
+    @Transactional(readOnly = true)
+    public LoanSummaryDTO getLoanSummary(Long userId) {
+        LocalDate today = LocalDate.now();
+        UserLoanSummary summary = userLoanSummaryRepository.findById(userId).orElse(null);
+
+        // Användaren har inte lånat något sedan sammanställningen infördes (t.ex. skapad direkt i databasen)
+        if (summary == null) {
+            if (!userRepository.existsById(userId)) {
+                throw new UserNotFoundException("Användare med ID: " + userId + " hittades inte");
+            }
+            summary = calculate(userId, today);
+            return convertToDTO(summary, summary.getOverdueLoans());
+        }
+
+        // Omräkningen har inte körts i dag (t.ex. om applikationen var nere vid midnatt),
+        // så de försenade lånen räknas via det partiella indexet för aktiva lån
+        int overdueLoans = summary.getOverdueAsOf().isBefore(today)
+                ? (int) loanRepository.countByUserIdAndReturnedDateIsNullAndDueDateBefore(userId, today)
+                : summary.getOverdueLoans();
+        return convertToDTO(summary, overdueLoans);
+    }
+
+    // En ny användare (UserService.createUser) får en tom rad direkt, så att två samtidiga första lån
+    // inte båda försöker skapa den
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void userCreated(Long userId) {
+        userLoanSummaryRepository.save(new UserLoanSummary(userId, LocalDate.now()));
+    }
+
+    /**
+     * Räknar upp aktiva och totala lån för nya lån (createLoan, createLoans), om lånereglerna tillåter det
+     * Villkoret och uppräkningen är en och samma UPDATE, så två samtidiga utlåningar till samma användare
+     * kan aldrig båda passera gränsen. Raden är sedan låst av transaktionen tills den committas.
+     * @param userId Låntagaren
+     * @param count Antal nya lån
+     * @param maxActiveLoans Högst så många aktiva lån efter de nya lånen
+     * @param overdueBefore Inga lån tillåts om användaren har ett aktivt lån med förfallodatum före den dagen
+     * @return false om reglerna inte tillåter lånen (inget har ändrats)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryAddLoans(Long userId, int count, int maxActiveLoans, LocalDate overdueBefore) {
+        if (userLoanSummaryRepository.addLoansWithinLimits(userId, count, maxActiveLoans, overdueBefore,
+                LocalDateTime.now()) == 1) {
+            return true;
+        }
+        if (userLoanSummaryRepository.existsById(userId)) {
+            return false;
+        }
+
+        // Användaren saknar rad, räkna fram den från lånen och försök igen
+        createSummary(userId);
+        return userLoanSummaryRepository.addLoansWithinLimits(userId, count, maxActiveLoans, overdueBefore,
+                LocalDateTime.now()) == 1;
+    }
+
+    // Ett återlämnat lån (returnBook), lånet har dueDate och förlängning som före återlämningen
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void loanReturned(Loan loan) {
+        Long userId = loan.getUser().getId();
+        if (userLoanSummaryRepository.removeLoan(userId, loan.getDueDate(), loan.isExtended() ? 1 : 0,
+                LocalDateTime.now()) == 0) {
+            createSummary(userId);
+        }
+    }
+
+    // Flera återlämnade lån (returnBooks), i en JDBC-batch
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void loansReturned(List<Loan> loans) {
+        int[] updated = userLoanSummaryRepository.removeLoansBatch(loans);
+
+        Set<Long> missing = new HashSet<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(loans.get(i).getUser().getId());
+            }
+        }
+        missing.forEach(this::createSummary);
+    }
+
+    // Ett förlängt lån (extendLoan), lånet har redan det nya förfallodatumet
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void loanExtended(Loan loan, LocalDate previousDueDate) {
+        Long userId = loan.getUser().getId();
+        if (userLoanSummaryRepository.extendLoan(userId, previousDueDate, loan.getDueDate(),
+                LocalDateTime.now()) == 0) {
+            createSummary(userId);
+        }
+    }
+
+    /**
+     * Räknar om aktiva och försenade lån för alla användare, så att lån som har förfallit räknas som försenade
+     * Körs strax efter midnatt (library.loans.summary-cron, "-" stänger av den)
+     * @return Antal uppdaterade sammanställningar
+     */
+    @Scheduled(cron = "${library.loans.summary-cron:0 5 0 * * *}")
+    @Transactional
+    public int recalculate() {
+        return recalculate(LocalDate.now());
+    }
+
+    int recalculate(LocalDate today) {
+        int updated = userLoanSummaryRepository.recalculateActiveAndOverdue(today, LocalDateTime.now());
+        log.info("Lånesammanställningar omräknade per {}: {} användare", today, updated);
+        return updated;
+    }
+
+    /**
+     * Räknar fram hela sammanställningen (även totalt och förlängda lån) från lånen för några användare,
+     * t.ex. efter att lån har skrivits direkt i tabellen (LoanEventReplay.rebuild)
+     * @return Antal omräknade sammanställningar
+     */
+    @Transactional
+    public int recalculate(Collection<Long> userIds) {
+        LocalDate today = LocalDate.now();
+        for (Long userId : userIds) {
+            userLoanSummaryRepository.save(calculate(userId, today));
+        }
+        return userIds.size();
+    }
+
+    // Användaren saknar rad: räkna fram den från lånen en gång (lånets egen ändring är redan skriven,
+    // utom för nya lån som räknas upp efteråt i tryAddLoans)
+    private void createSummary(Long userId) {
+        userLoanSummaryRepository.save(calculate(userId, LocalDate.now()));
+    }
+
+    private UserLoanSummary calculate(Long userId, LocalDate today) {
+        UserLoanSummary summary = new UserLoanSummary(userId, today);
+        // Lån som har flyttats till lånearkivet räknas också. Lån i ett segment som håller på att flyttas
+        // kan finnas kvar i SQLite och räknas bara om de redan är borttagna där
+        List<Long> pending = loanArchive.findPendingUserLoanIds(userId);
+        int archived = loanArchive.countUserLoans(userId)
+                + (pending.isEmpty() ? 0 : pending.size() - (int) loanRepository.countByIdIn(pending));
+        summary.setTotalLoans((int) loanRepository.countByUserId(userId) + archived);
+
+        // Samma regler som Loan.isOverdue och Loan.isExtended
+        for (Loan loan : loanRepository.findByUserIdAndReturnedDateIsNull(userId)) {
+            summary.setActiveLoans(summary.getActiveLoans() + 1);
+            if (today.isAfter(loan.getDueDate())) {
+                summary.setOverdueLoans(summary.getOverdueLoans() + 1);
+            }
+            if (loan.isExtended()) {
+                summary.setExtendedLoans(summary.getExtendedLoans() + 1);
+            }
+        }
+        return summary;
+    }
+
+    private LoanSummaryDTO convertToDTO(UserLoanSummary summary, int overdueLoans) {
+        return new LoanSummaryDTO(summary.getUserId(), summary.getActiveLoans(), overdueLoans,
+                summary.getExtendedLoans(), summary.getTotalLoans());
+    }
+}
@@ -6,17 +6,23 @@ import com.example.library_management_v2.entity.User;
 import com.example.library_management_v2.exception.DuplicateUserException;
 import com.example.library_management_v2.exception.UserNotFoundException;
 import com.example.library_management_v2.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 
 @Service
+@Timed("library.service")
 public class UserService {
 
     @Autowired
     public UserRepository userRepository;
 
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+
 
     public UserDTO getUserByEmail (String email) {
         User user = userRepository.findByEmail(email)
@@ -43,7 +49,8 @@ public class UserService {
     }
 
 
-    // Skapa en ny användare
+    // Skapa en ny användare, kontrollen av e-postadressen och insert i samma transaktion
+    @Transactional
     public UserDTO createUser(CreateUserDTO createUserDTO) {
 
         // Kontroll om användaren redan finns
@@ -68,6 +75,7 @@ public class UserService {
 
         // Spara användaren
         User savedUser = userRepository.save(user);
+        userLoanSummaryService.userCreated(savedUser.getId());
 
         // Returnera den skapade användaren som DTO (utan lösenord)
         return convertToDTO(savedUser);
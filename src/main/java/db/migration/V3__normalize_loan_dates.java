@@ -0,0 +1,55 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gör om datumen i loans till samma format som Hibernate skriver.
+ *
+ * De ursprungliga raderna i MySimpleLibrary.db har datum som text ('2024-01-29 10:00:00'),
+ * medan Hibernate sparar LocalDate som millisekunder (heltal). SQLite jämför alltid heltal som
+ * mindre än text, så t.ex. "due_date < ?" missar alla textrader. Migreringen är skriven i Java
+ * för att datumen ska kodas exakt som Hibernate gör det (java.sql.Date i JVM:ens tidszon).
+ */
+public class V3__normalize_loan_dates extends BaseJavaMigration {
+
+    private static final String[] COLUMNS = {"borrowed_date", "due_date", "returned_date"};
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        for (String column : COLUMNS) {
+            // Läs först alla textrader, SQLite ska inte uppdatera tabellen medan den läses
+            List<Long> ids = new ArrayList<>();
+            List<LocalDate> dates = new ArrayList<>();
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT loan_id, " + column + " FROM loans WHERE typeof(" + column + ") = 'text'");
+                 ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                    // Bara datumdelen används, entiteten har LocalDate
+                    dates.add(LocalDate.parse(resultSet.getString(2).substring(0, 10)));
+                }
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE loans SET " + column + " = ? WHERE loan_id = ?")) {
+                for (int i = 0; i < ids.size(); i++) {
+                    update.setDate(1, Date.valueOf(dates.get(i)));
+                    update.setLong(2, ids.get(i));
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+        }
+    }
+}
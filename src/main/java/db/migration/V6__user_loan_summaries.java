@@ -0,0 +1,90 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sammanställning av varje användares lån (UserLoanSummary): aktiva, försenade, förlängda och totalt.
+ *
+ * LoanService håller raderna uppdaterade i samma transaktion som lånen, så GET /users/{id}/loan-summary
+ * läser en enda rad. Befintliga användare får sin rad här. Migreringen är skriven i Java (som V3)
+ * eftersom "förlängt" och "försenat" räknas på samma sätt som i Loan, med datumen som LocalDate.
+ */
+public class V6__user_loan_summaries extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        LocalDate today = LocalDate.now();
+
+        try (Statement statement = connection.createStatement()) {
+            // overdue_as_of: dagen som overdue_loans gäller för, lån med förfallodatum före den dagen är räknade
+            statement.execute("""
+                    CREATE TABLE user_loan_summaries (
+                        user_id INTEGER PRIMARY KEY,
+                        active_loans INTEGER NOT NULL DEFAULT 0,
+                        overdue_loans INTEGER NOT NULL DEFAULT 0,
+                        extended_loans INTEGER NOT NULL DEFAULT 0,
+                        total_loans INTEGER NOT NULL DEFAULT 0,
+                        overdue_as_of DATETIME NOT NULL,
+                        updated_at DATETIME NOT NULL,
+                        FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE ON UPDATE CASCADE
+                    )""");
+        }
+
+        // En rad per användare med antal lån totalt (via idx_loans_user_id)
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO user_loan_summaries (user_id, total_loans, overdue_as_of, updated_at) " +
+                        "SELECT u.user_id, (SELECT COUNT(*) FROM loans l WHERE l.user_id = u.user_id), ?, ? " +
+                        "FROM users u")) {
+            insert.setDate(1, Date.valueOf(today));
+            insert.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            insert.executeUpdate();
+        }
+
+        // Räkna de aktiva lånen per användare, först när alla är lästa uppdateras tabellen
+        Map<Long, int[]> counts = new HashMap<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT user_id, borrowed_date, due_date FROM loans WHERE returned_date IS NULL");
+             ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                int[] userCounts = counts.computeIfAbsent(resultSet.getLong(1), userId -> new int[3]);
+                LocalDate borrowedDate = resultSet.getDate(2).toLocalDate();
+                LocalDate dueDate = resultSet.getDate(3).toLocalDate();
+
+                userCounts[0]++;
+                // Samma regler som Loan.isOverdue och Loan.isExtended
+                if (today.isAfter(dueDate)) {
+                    userCounts[1]++;
+                }
+                if (dueDate.isAfter(borrowedDate.plusDays(14))) {
+                    userCounts[2]++;
+                }
+            }
+        }
+
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE user_loan_summaries SET active_loans = ?, overdue_loans = ?, extended_loans = ? " +
+                        "WHERE user_id = ?")) {
+            for (Map.Entry<Long, int[]> entry : counts.entrySet()) {
+                update.setInt(1, entry.getValue()[0]);
+                update.setInt(2, entry.getValue()[1]);
+                update.setInt(3, entry.getValue()[2]);
+                update.setLong(4, entry.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+}
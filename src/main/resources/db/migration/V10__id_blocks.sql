@@ -0,0 +1,24 @@
+-- Nästa lediga ID per tabell. Applikationen (BlockIdGenerator) räknar upp next_id ett block i taget
+-- i samma transaktion som raderna med de nya ID:na skrivs, så ett ID delas aldrig ut två gånger,
+-- inte heller av en annan process eller efter att raden flyttats till lånearkivet.
+
+CREATE TABLE id_blocks (
+    name VARCHAR(50) PRIMARY KEY,
+    next_id INTEGER NOT NULL
+);
+
+-- Börja efter de ID:n som finns, och för tabellerna med AUTOINCREMENT även efter de som någon gång funnits
+INSERT INTO id_blocks (name, next_id)
+SELECT 'authors', max(COALESCE((SELECT MAX(author_id) FROM authors), 0),
+                      COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'authors'), 0)) + 1;
+INSERT INTO id_blocks (name, next_id)
+SELECT 'books', max(COALESCE((SELECT MAX(book_id) FROM books), 0),
+                    COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'books'), 0)) + 1;
+INSERT INTO id_blocks (name, next_id)
+SELECT 'users', max(COALESCE((SELECT MAX(user_id) FROM users), 0),
+                    COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'users'), 0)) + 1;
+INSERT INTO id_blocks (name, next_id)
+SELECT 'loans', max(COALESCE((SELECT MAX(loan_id) FROM loans), 0),
+                    COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'loans'), 0)) + 1;
+INSERT INTO id_blocks (name, next_id)
+SELECT 'holds', COALESCE((SELECT MAX(hold_id) FROM holds), 0) + 1;
@@ -0,0 +1,41 @@
+-- Ursprungligt schema, samma som i MySimpleLibrary.db.
+-- Befintliga databaser utan historiktabell baslinjeras på version 1 (spring.flyway.baseline-on-migrate),
+-- så den här filen körs bara när en ny, tom databas skapas.
+
+CREATE TABLE authors (
+    author_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    first_name VARCHAR(100) NOT NULL,
+    last_name VARCHAR(100) NOT NULL,
+    birth_year INTEGER,
+    nationality VARCHAR(100)
+);
+
+CREATE TABLE books (
+    book_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    title VARCHAR(200) NOT NULL,
+    publication_year INTEGER,
+    available_copies INTEGER DEFAULT 1,
+    total_copies INTEGER DEFAULT 1,
+    author_id INTEGER,
+    FOREIGN KEY (author_id) REFERENCES authors(author_id) ON DELETE SET NULL ON UPDATE CASCADE
+);
+
+CREATE TABLE users (
+    user_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    first_name VARCHAR(100) NOT NULL,
+    last_name VARCHAR(100) NOT NULL,
+    email VARCHAR(150) UNIQUE NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    registration_date DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE loans (
+    loan_id INTEGER PRIMARY KEY AUTOINCREMENT,
+    user_id INTEGER NOT NULL,
+    book_id INTEGER NOT NULL,
+    borrowed_date DATETIME NOT NULL,
+    due_date DATETIME NOT NULL,
+    returned_date DATETIME,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE RESTRICT ON UPDATE CASCADE,
+    FOREIGN KEY (book_id) REFERENCES books(book_id) ON DELETE RESTRICT ON UPDATE CASCADE
+);
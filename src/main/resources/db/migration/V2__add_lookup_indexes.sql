@@ -0,0 +1,20 @@
+-- Index för repository-metoderna och främmande nycklar.
+-- users.email har redan ett index via UNIQUE (sqlite_autoindex_users_1).
+
+-- LoanRepository.findByUserId (en användares lån)
+CREATE INDEX idx_loans_user_id ON loans (user_id);
+
+-- Främmande nyckel: utan index måste hela loans läsas när en bok tas bort (ON DELETE RESTRICT)
+CREATE INDEX idx_loans_book_id ON loans (book_id);
+
+-- Partiella index med bara aktiva lån (returned_date IS NULL), de är små eftersom de flesta lån är avslutade
+-- LoanRepository.findByUserIdAndReturnedDateIsNull (en användares aktiva lån)
+CREATE INDEX idx_loans_active_user_id ON loans (user_id) WHERE returned_date IS NULL;
+-- Försenade lån: aktiva lån sorterade på förfallodatum
+CREATE INDEX idx_loans_active_due_date ON loans (due_date) WHERE returned_date IS NULL;
+
+-- Främmande nyckel från books till authors (ON DELETE SET NULL och en författares böcker)
+CREATE INDEX idx_books_author_id ON books (author_id);
+
+-- AuthorRepository.findByLastName och findByFirstNameAndLastNameAndBirthYear (dubblettkontrollen)
+CREATE INDEX idx_authors_name ON authors (last_name, first_name, birth_year);
@@ -0,0 +1,9 @@
+-- Vattenstämplar för schemalagda jobb: hur långt jobbet har kommit sedan förra körningen.
+-- Används av sökningen efter försenade lån (OverdueLoanService), som bara behandlar lån
+-- med förfallodatum efter vattenstämpeln.
+
+CREATE TABLE job_watermarks (
+    job_name VARCHAR(100) PRIMARY KEY,
+    watermark DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL
+);
@@ -0,0 +1,18 @@
+-- Katalogimporter (CatalogImportService): hur många poster som är importerade och committade.
+-- Raden uppdateras i samma transaktion som varje omgång böcker, så en avbruten import
+-- kan fortsätta med samma job_id från första posten som inte kom in.
+
+CREATE TABLE import_jobs (
+    job_id VARCHAR(100) PRIMARY KEY,
+    source VARCHAR(255),
+    format VARCHAR(10) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    records_processed INTEGER NOT NULL DEFAULT 0,
+    records_rejected INTEGER NOT NULL DEFAULT 0,
+    books_created INTEGER NOT NULL DEFAULT 0,
+    authors_created INTEGER NOT NULL DEFAULT 0,
+    resumed_from INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    started_at DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL
+);
@@ -0,0 +1,4 @@
+-- Bokkategorier (t.ex. "deckare", alltid gemener) för kategorigränserna vid utlåning
+-- (library.loans.policy.category-limits). Befintliga böcker har ingen kategori och räknas inte mot någon gräns.
+
+ALTER TABLE books ADD COLUMN category VARCHAR(100);
@@ -0,0 +1,23 @@
+-- Köer till böcker som inte har några lediga exemplar (HoldService).
+-- En kö är först-in-först-ut i hold_id-ordning.
+
+CREATE TABLE holds (
+    hold_id INTEGER PRIMARY KEY,
+    book_id INTEGER NOT NULL,
+    user_id INTEGER NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at DATETIME NOT NULL,
+    ready_at DATETIME,
+    fulfilled_at DATETIME,
+    FOREIGN KEY (book_id) REFERENCES books(book_id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+);
+
+-- Köordning per bok: första i kön (MIN(hold_id) för status WAITING) och en ny plats sist i kön
+-- är ett uppslag i B-trädet, och en plats i kön räknas från indexet utan att läsa tabellen.
+-- Indexet börjar med book_id och täcker därför även främmande nyckeln till books.
+CREATE INDEX idx_holds_queue ON holds (book_id, status, hold_id);
+
+-- En användares köplatser för en bok (dubblettkontrollen och lån av ett reserverat exemplar)
+-- och främmande nyckeln till users
+CREATE INDEX idx_holds_user_book ON holds (user_id, book_id);
@@ -0,0 +1,3 @@
+-- Reserverade exemplar som inte har hämtats i tid (HoldService.expireReadyHolds):
+-- status = 'READY' AND ready_at < ? läser bara de reserverade köplatserna, äldst först.
+CREATE INDEX idx_holds_ready ON holds (status, ready_at);
@@ -1,11 +1,27 @@
 package com.example.library_management_v2;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 
+import java.nio.file.Path;
+
+// Startar med standardprofilen (SQLite och Flyway), men mot en ny databasfil och en ny
+// händelselogg i en tillfällig katalog, så att MySimpleLibrary.db i repot inte migreras
 @SpringBootTest
 class LibraryManagementV2ApplicationTests {
 
+	@TempDir
+	static Path dir;
+
+	@DynamicPropertySource
+	static void files(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("library.db"));
+		registry.add("library.loans.event-log.file", () -> dir.resolve("loan-events.log").toString());
+	}
+
 	@Test
 	void contextLoads() {
 	}
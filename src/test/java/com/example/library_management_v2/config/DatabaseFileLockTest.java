@@ -0,0 +1,49 @@
+package com.example.library_management_v2.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för låset på databasfilen, utan Spring
+public class DatabaseFileLockTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Bara en i taget ska få låset, och det ska gå att ta igen när det släppts")
+    public void testAcquire() throws Exception {
+        String url = "jdbc:sqlite:" + dir.resolve("library.db");
+
+        try (DatabaseFileLock lock = DatabaseFileLock.acquire(url)) {
+            assertTrue(Files.exists(lock.getFile()));
+
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    () -> DatabaseFileLock.acquire(url));
+            assertTrue(exception.getMessage().contains("används redan"), exception.getMessage());
+        }
+
+        DatabaseFileLock.acquire(url).close();
+    }
+
+    @Test
+    @DisplayName("Databasfilen ska läsas ur SQLite-URL:en, databaser i minnet ska inte låsas")
+    public void testDatabaseFile() throws Exception {
+        Path expected = Path.of("MySimpleLibrary.db").toAbsolutePath();
+        assertEquals(expected, DatabaseFileLock.databaseFile("jdbc:sqlite:MySimpleLibrary.db"));
+        assertEquals(expected, DatabaseFileLock.databaseFile("jdbc:sqlite:file:MySimpleLibrary.db?cache=shared"));
+
+        assertNull(DatabaseFileLock.databaseFile("jdbc:sqlite::memory:"));
+        assertNull(DatabaseFileLock.databaseFile("jdbc:sqlite:file:test?mode=memory"));
+        assertNull(DatabaseFileLock.databaseFile("jdbc:h2:mem:testdb"));
+
+        try (DatabaseFileLock lock = DatabaseFileLock.acquire("jdbc:sqlite::memory:")) {
+            assertNull(lock.getFile());
+        }
+    }
+}
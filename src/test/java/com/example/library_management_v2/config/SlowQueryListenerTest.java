@@ -0,0 +1,89 @@
+package com.example.library_management_v2.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för loggraderna över långsamma SQL-satser, utan databas
+public class SlowQueryListenerTest {
+
+    @Test
+    @DisplayName("Parametern för users.password ska hittas i insert, update och where")
+    public void testPasswordParameters() {
+        assertEquals(Set.of(4), SlowQueryListener.passwordParameters(
+                "insert into users (email,first_name,last_name,password,registration_date,user_id) " +
+                        "values (?,?,?,?,?,?)"));
+        assertEquals(Set.of(2), SlowQueryListener.passwordParameters(
+                "update users set email=?, password = ? where user_id=?"));
+        assertEquals(Set.of(), SlowQueryListener.passwordParameters(
+                "select u1_0.user_id,u1_0.password from users u1_0 where u1_0.email=?"));
+        // Okänd position: alla parametrar döljs
+        assertNull(SlowQueryListener.passwordParameters("select * from users where password like ?"));
+    }
+
+    @Test
+    @DisplayName("Loggraden ska innehålla tid, anropare och parametrar men aldrig lösenordet")
+    public void testMessage_RedactsPassword() throws Exception {
+        QueryInfo insert = new QueryInfo("insert into users (email,first_name,last_name,password,registration_date,user_id)\n" +
+                "    values (?,?,?,?,?,?)");
+        insert.getParametersList().add(List.of(
+                setString(1, "astrid@test.com"), setString(2, "Astrid"), setString(3, "Lindgren"),
+                setString(4, "hemligt123"), setString(5, "2024-01-01"), setLong(6, 7)));
+
+        String message = SlowQueryListener.message("slow", execution(312, false, 0), List.of(insert),
+                "UserService.createUser");
+
+        assertTrue(message.startsWith("[slow 312 ms] UserService.createUser: insert into users ("), message);
+        assertTrue(message.contains("1=astrid@test.com"), message);
+        assertTrue(message.contains("4=" + SlowQueryListener.REDACTED), message);
+        assertTrue(message.contains("6=7"), message);
+        assertFalse(message.contains("hemligt123"), message);
+        assertFalse(message.contains("\n"), message);
+    }
+
+    @Test
+    @DisplayName("En batch ska bara skriva ut de första raderna")
+    public void testMessage_Batch() throws Exception {
+        QueryInfo update = new QueryInfo("update books set available_copies=available_copies-1 where book_id=?");
+        List<List<ParameterSetOperation>> rows = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            rows.add(List.of(setLong(1, id)));
+        }
+        update.setParametersList(rows);
+
+        String message = SlowQueryListener.message("sampled", execution(3, true, 8), List.of(update),
+                "LoanService.createLoans");
+
+        assertTrue(message.startsWith("[sampled 3 ms, batch 8]"), message);
+        assertTrue(message.contains("[1=5] ... (3 rader till)"), message);
+        assertFalse(message.contains("[1=6]"), message);
+    }
+
+    private static ExecutionInfo execution(long elapsed, boolean batch, int batchSize) {
+        ExecutionInfo execInfo = new ExecutionInfo();
+        execInfo.setElapsedTime(elapsed);
+        execInfo.setSuccess(true);
+        execInfo.setBatch(batch);
+        execInfo.setBatchSize(batchSize);
+        return execInfo;
+    }
+
+    private static ParameterSetOperation setString(int index, String value) throws Exception {
+        return new ParameterSetOperation(PreparedStatement.class.getMethod("setString", int.class, String.class),
+                new Object[]{index, value});
+    }
+
+    private static ParameterSetOperation setLong(int index, long value) throws Exception {
+        return new ParameterSetOperation(PreparedStatement.class.getMethod("setLong", int.class, long.class),
+                new Object[]{index, value});
+    }
+}
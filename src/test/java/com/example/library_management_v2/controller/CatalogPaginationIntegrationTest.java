@@ -0,0 +1,191 @@
+package com.example.library_management_v2.controller;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Integrationstest för sidindelade och strömmade listor (GET /books/page, /authors/page och /books/stream)
+// Testet är INTE @Transactional: strömningen läser i en egen tråd och ser bara committad data
+// Maxstorleken är satt lågt så att begränsningen syns utan att skapa hundratals böcker
+@SpringBootTest(properties = "library.pagination.max-size=5")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class CatalogPaginationIntegrationTest {
+
+    private static final int BOOKS = 7;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    // ID:n i den ordning de skapades, alltså stigande
+    private List<Long> bookIds;
+    private List<Long> authorIds;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+
+        // En författare per bok, så att båda listorna har lika många rader
+        bookIds = new ArrayList<>();
+        authorIds = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Author author = new Author();
+            author.setFirstName("Sida");
+            author.setLastName("Författare" + i);
+            author.setBirthYear(1950 + i);
+            author = authorRepository.save(author);
+            authorIds.add(author.getId());
+
+            Book book = new Book();
+            book.setTitle("Sidbok " + i);
+            book.setPublicationYear(2000 + i);
+            book.setAvailableCopies(1);
+            book.setTotalCopies(1);
+            book.setAuthor(author);
+            bookIds.add(bookRepository.save(book).getId());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cleanDatabase();
+    }
+
+    @Test
+    @DisplayName("GET /books/page ska gå igenom alla böcker via nextCursor utan dubbletter eller luckor")
+    public void testBooksPage_FollowCursor() throws Exception {
+        assertEquals(bookIds, collectIds("/books/page", 3, List.of(3, 3, 1)));
+    }
+
+    @Test
+    @DisplayName("GET /authors/page ska gå igenom alla författare via nextCursor utan dubbletter eller luckor")
+    public void testAuthorsPage_FollowCursor() throws Exception {
+        assertEquals(authorIds, collectIds("/authors/page", 4, List.of(4, 3)));
+    }
+
+    @Test
+    @DisplayName("En för stor sida ska begränsas till library.pagination.max-size")
+    public void testPage_SizeCapped() throws Exception {
+        mockMvc.perform(get("/books/page").param("size", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size", equalTo(5)))
+                .andExpect(jsonPath("$.items", hasSize(5)))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()));
+    }
+
+    @Test
+    @DisplayName("En cursor från /books, en trasig cursor eller size=0 ska ge 400 Bad Request")
+    public void testPage_InvalidRequest() throws Exception {
+        String booksCursor = page("/books/page", 2, null).get("nextCursor").asText();
+
+        mockMvc.perform(get("/authors/page").param("cursor", booksCursor))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", containsString("Ogiltig cursor")));
+
+        mockMvc.perform(get("/books/page").param("cursor", "inte-en-cursor!"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", containsString("Ogiltig cursor")));
+
+        mockMvc.perform(get("/books/page").param("size", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", containsString("Sidstorleken")));
+
+        mockMvc.perform(get("/authors/page").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /books/stream ska svara med NDJSON, en bok per rad")
+    public void testStreamBooks() throws Exception {
+        // StreamingResponseBody körs asynkront, så svaret hämtas med asyncDispatch
+        MvcResult started = mockMvc.perform(get("/books/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        List<Long> ids = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            ids.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        assertEquals(bookIds, ids);
+    }
+
+    // Följer nextCursor tills den är null och kontrollerar storleken på varje sida
+    private List<Long> collectIds(String path, int size, List<Integer> expectedSizes) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            JsonNode page = page(path, size, cursor);
+            sizes.add(page.get("size").asInt());
+            page.get("items").forEach(item -> ids.add(item.get("id").asLong()));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+        } while (cursor != null);
+
+        assertEquals(expectedSizes, sizes);
+        return ids;
+    }
+
+    private JsonNode page(String path, int size, String cursor) throws Exception {
+        MockHttpServletRequestBuilder request = get(path).param("size", String.valueOf(size));
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        String json = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(json);
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        authorRepository.deleteAll();
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.library_management_v2.controller;
 
 import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
 import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
 import com.example.library_management_v2.entity.Author;
 import com.example.library_management_v2.entity.Book;
 import com.example.library_management_v2.entity.User;
@@ -9,6 +11,7 @@ import com.example.library_management_v2.repository.AuthorRepository;
 import com.example.library_management_v2.repository.BookRepository;
 import com.example.library_management_v2.repository.LoanRepository;
 import com.example.library_management_v2.repository.UserRepository;
+import com.example.library_management_v2.service.AvailabilityIndex;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -23,10 +26,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 // Starta hela Spring Boot-applikationen för testet
@@ -65,6 +70,9 @@ public class LoanControllerIntegrationTest {
     @Autowired
     private LoanRepository loanRepository;
 
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
     // Testdata som vi kommer att skapa i databasen före varje test
     private User testUser;
     private Book testBook;
@@ -268,4 +276,125 @@ public class LoanControllerIntegrationTest {
         assertEquals(0, updatedBook.getAvailableCopies(),
                 "Boken ska nu ha 0 tillgängliga exemplar");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("POST /loans/batch ska låna tillgängliga böcker och redovisa fel per bok")
+    public void testCreateLoans_Batch() throws Exception {
+        // Arrangera: En bok utan lediga exemplar, och ett bok-ID som inte finns
+        Book unavailableBook = new Book();
+        unavailableBook.setTitle("Utlånad bok");
+        unavailableBook.setPublicationYear(2020);
+        unavailableBook.setAvailableCopies(0);
+        unavailableBook.setTotalCopies(1);
+        unavailableBook.setAuthor(testAuthor);
+        unavailableBook = bookRepository.save(unavailableBook);
+
+        // En bok som tillgänglighetsindexet vet är utlånad nekas utan att gå till databasen
+        Book indexedBook = new Book();
+        indexedBook.setTitle("Utlånad enligt indexet");
+        indexedBook.setPublicationYear(2021);
+        indexedBook.setAvailableCopies(0);
+        indexedBook.setTotalCopies(1);
+        indexedBook.setAuthor(testAuthor);
+        indexedBook = bookRepository.save(indexedBook);
+
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(testUser.getId());
+        createBatchLoanDTO.setBookIds(List.of(testBook.getId(), unavailableBook.getId(), indexedBook.getId(), 999L));
+
+        availabilityIndex.put(indexedBook.getId(), 0, 1);
+        try {
+            // Agera och bekräfta: Resultatet kommer i samma ordning som förfrågan
+            mockMvc.perform(post("/loans/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(createBatchLoanDTO)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.succeeded", equalTo(1)))
+                    .andExpect(jsonPath("$.failed", equalTo(3)))
+                    .andExpect(jsonPath("$.items[0].success", equalTo(true)))
+                    .andExpect(jsonPath("$.items[0].loan.bookTitle", equalTo("Integration Test Book")))
+                    .andExpect(jsonPath("$.items[0].loan.authorName", equalTo("Integration TestAuthor")))
+                    .andExpect(jsonPath("$.items[1].success", equalTo(false)))
+                    .andExpect(jsonPath("$.items[1].error", containsString("inte tillgänglig")))
+                    .andExpect(jsonPath("$.items[2].id", equalTo(indexedBook.getId().intValue())))
+                    .andExpect(jsonPath("$.items[2].error", containsString("alla exemplar är utlånade")))
+                    .andExpect(jsonPath("$.items[3].error", containsString("Bok med ID: 999 hittades inte")));
+        } finally {
+            availabilityIndex.remove(indexedBook.getId());
+        }
+
+        assertEquals(1, loanRepository.count(), "Endast den tillgängliga boken ska ha lånats ut");
+        assertEquals(4, bookRepository.findById(testBook.getId()).orElseThrow().getAvailableCopies());
+        assertEquals(0, bookRepository.findById(unavailableBook.getId()).orElseThrow().getAvailableCopies());
+    }
+
+    @Test
+    @DisplayName("POST /loans/batch ska neka alla böcker från tillgänglighetsindexet när inga exemplar finns")
+    public void testCreateLoans_BatchAllUnavailable() throws Exception {
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        // Användaren finns inte: ingen transaktion öppnas, så den slås aldrig upp
+        createBatchLoanDTO.setUserId(999L);
+        createBatchLoanDTO.setBookIds(List.of(testBook.getId(), testBook.getId()));
+
+        availabilityIndex.put(testBook.getId(), 0, 10);
+        try {
+            mockMvc.perform(post("/loans/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(createBatchLoanDTO)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.succeeded", equalTo(0)))
+                    .andExpect(jsonPath("$.failed", equalTo(2)))
+                    .andExpect(jsonPath("$.items[0].error", containsString("alla exemplar är utlånade")));
+        } finally {
+            availabilityIndex.remove(testBook.getId());
+        }
+
+        assertEquals(0, loanRepository.count());
+    }
+
+    @Test
+    @DisplayName("PUT /loans/return/batch ska återlämna lånen och neka redan återlämnade")
+    public void testReturnBooks_Batch() throws Exception {
+        // Arrangera: Låna boken via batch-endpointen
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(testUser.getId());
+        createBatchLoanDTO.setBookIds(List.of(testBook.getId()));
+        mockMvc.perform(post("/loans/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createBatchLoanDTO)))
+                .andExpect(status().isOk());
+        Long loanId = loanRepository.findAll().get(0).getId();
+
+        // Samma lån två gånger i förfrågan: bara det första får lyckas
+        ReturnBatchLoanDTO returnBatchLoanDTO = new ReturnBatchLoanDTO();
+        returnBatchLoanDTO.setLoanIds(List.of(loanId, loanId, 999L));
+
+        mockMvc.perform(put("/loans/return/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(returnBatchLoanDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded", equalTo(1)))
+                .andExpect(jsonPath("$.items[0].loan.returnedDate", equalTo(LocalDate.now().toString())))
+                .andExpect(jsonPath("$.items[0].loan.active", equalTo(false)))
+                .andExpect(jsonPath("$.items[1].success", equalTo(false)))
+                .andExpect(jsonPath("$.items[2].error", containsString("Lån med ID: 999 hittades inte")));
+
+        assertEquals(LocalDate.now(), loanRepository.findById(loanId).orElseThrow().getReturnedDate());
+        assertEquals(5, bookRepository.findById(testBook.getId()).orElseThrow().getAvailableCopies(),
+                "Exemplaret ska ha lämnats tillbaka");
+    }
+
+    @Test
+    @DisplayName("POST /loans/batch ska returnera 400 när listan med böcker är tom")
+    public void testCreateLoans_EmptyBatch() throws Exception {
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(testUser.getId());
+        createBatchLoanDTO.setBookIds(List.of());
+
+        mockMvc.perform(post("/loans/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createBatchLoanDTO)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.bookIds", notNullValue()));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.library_management_v2.entity;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.repository.AuthorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tester för ID:n i block från id_blocks
+// Testet är INTE @Transactional, blocken följer de riktiga transaktionerna (commit och rollback)
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class BlockIdGeneratorTest {
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM authors WHERE last_name = 'Blocksson'");
+    }
+
+    @Test
+    @DisplayName("Ett block från en transaktion som rullas tillbaka ska inte delas ut")
+    public void testRollbackDiscardsBlock() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        for (int round = 0; round < 3; round++) {
+            // Fler än ett block, så att transaktionen själv hämtar ett nytt block som sedan rullas tillbaka
+            transaction.executeWithoutResult(status -> {
+                for (int n = 0; n < 60; n++) {
+                    authorRepository.save(author("Tillbakarullad"));
+                }
+                status.setRollbackOnly();
+            });
+
+            // Uppräkningen rullades tillbaka, så nästa block i databasen är samma ID:n igen:
+            // fanns resten av blocket kvar i minnet skulle samma ID delas ut två gånger
+            transaction.executeWithoutResult(status -> {
+                for (int n = 0; n < 60; n++) {
+                    authorRepository.save(author("Committad"));
+                }
+            });
+        }
+
+        assertEquals(180, jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT author_id) FROM authors WHERE first_name = 'Committad'", Integer.class));
+        assertTrue(nextId() > maxAuthorId(), "next_id ska ligga efter alla utdelade ID:n");
+    }
+
+    @Test
+    @DisplayName("Samtidiga transaktioner där hälften rullas tillbaka ska få unika ID:n under next_id")
+    public void testConcurrentCommitAndRollback() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            boolean rollback = i % 2 == 1;
+            futures.add(executor.submit(() -> transaction.executeWithoutResult(status -> {
+                // Tre författare per transaktion, så att blocken tar slut mitt i transaktioner
+                for (int n = 0; n < 3; n++) {
+                    authorRepository.save(author("Samtidig"));
+                }
+                if (rollback) {
+                    status.setRollbackOnly();
+                }
+            })));
+        }
+        for (Future<?> future : futures) {
+            // Ett dubblerat ID ger ett fel på primärnyckeln här
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(60, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM authors WHERE first_name = 'Samtidig'", Integer.class),
+                "Bara de committade transaktionernas författare ska finnas");
+        assertTrue(nextId() > maxAuthorId(), "next_id ska ligga efter alla utdelade ID:n");
+    }
+
+    @Test
+    @DisplayName("Ett block som en annan process har tagit ska inte delas ut här")
+    public void testBlockTakenByAnotherProcess() {
+        authorRepository.save(author("Före"));
+
+        // Som om en annan process (t.ex. en import) hade räknat upp id_blocks
+        long taken = nextId();
+        jdbcTemplate.update("UPDATE id_blocks SET next_id = next_id + 1000 WHERE name = 'authors'");
+
+        // Mer än ett block, så att det nuvarande tar slut och ett nytt hämtas
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            ids.add(authorRepository.save(author("Efter")).getId());
+        }
+
+        for (long id : ids) {
+            assertFalse(id >= taken && id < taken + 1000, "ID " + id + " tillhör den andra processens block");
+        }
+        assertTrue(ids.get(ids.size() - 1) >= taken + 1000);
+    }
+
+    private long nextId() {
+        return jdbcTemplate.queryForObject("SELECT next_id FROM id_blocks WHERE name = 'authors'", Long.class);
+    }
+
+    private long maxAuthorId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(author_id) FROM authors", Long.class);
+    }
+
+    private static Author author(String firstName) {
+        Author author = new Author();
+        author.setFirstName(firstName);
+        author.setLastName("Blocksson");
+        author.setBirthYear(1970);
+        return author;
+    }
+}
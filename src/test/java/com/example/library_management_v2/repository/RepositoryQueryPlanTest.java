@@ -0,0 +1,212 @@
+package com.example.library_management_v2.repository;
+
+import com.example.library_management_v2.entity.Hold;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Kör mot en ny SQLite-fil som byggs av Flyway-migreringarna (inte H2), eftersom det är SQLites
+// frågeplanerare vi vill kontrollera. Varje finder anropas och dess SQL körs med EXPLAIN QUERY PLAN.
+// Sökningar med LIKE '%text%' (findBy...ContainingIgnoreCase) kan aldrig använda ett B-trädindex
+// och är därför inte med; fritextsökningen går via BookSearchIndex i stället.
+@SpringBootTest
+public class RepositoryQueryPlanTest {
+
+    // "SCAN l1_0" utan "USING ... INDEX" betyder att hela tabellen läses
+    private static final Pattern FULL_TABLE_SCAN = Pattern.compile("^SCAN \\S+$");
+
+    private static Path databaseFile;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @DynamicPropertySource
+    static void sqliteDatabase(DynamicPropertyRegistry registry) throws IOException {
+        databaseFile = Files.createTempFile("query-plan-", ".db");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + databaseFile);
+        registry.add("library.loans.event-log.enabled", () -> "false");
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                RecordingStatementInspector.class::getName);
+    }
+
+    @AfterAll
+    static void deleteDatabase() throws IOException {
+        Files.deleteIfExists(databaseFile);
+        Files.deleteIfExists(Path.of(databaseFile + "-wal"));
+        Files.deleteIfExists(Path.of(databaseFile + "-shm"));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    @DisplayName("Flyway ska ha skapat alla index")
+    public void testMigrations_CreateIndexes() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT name FROM sqlite_master WHERE type = 'index'", String.class);
+
+        assertTrue(indexes.containsAll(List.of(
+                "idx_loans_user_id", "idx_loans_book_id", "idx_loans_active_user_id", "idx_loans_active_due_date",
+                "idx_books_author_id", "idx_authors_name", "idx_holds_queue", "idx_holds_user_book", "idx_holds_ready",
+                "sqlite_autoindex_users_1")), "Index saknas: " + indexes);
+    }
+
+    @Test
+    @DisplayName("UserRepository.findByEmail ska använda indexet på email")
+    public void testFindByEmail_UsesIndex() {
+        userRepository.findByEmail("astrid@test.com");
+        assertUsesIndex("sqlite_autoindex_users_1");
+    }
+
+    @Test
+    @DisplayName("AuthorRepository.findByLastName ska använda indexet på namn")
+    public void testFindByLastName_UsesIndex() {
+        authorRepository.findByLastName("Lindgren");
+        assertUsesIndex("idx_authors_name");
+    }
+
+    @Test
+    @DisplayName("AuthorRepository.findByFirstNameAndLastNameAndBirthYear ska använda indexet på namn")
+    public void testFindByFullName_UsesIndex() {
+        authorRepository.findByFirstNameAndLastNameAndBirthYear("Astrid", "Lindgren", 1907);
+        assertUsesIndex("idx_authors_name");
+    }
+
+    @Test
+    @DisplayName("LoanRepository.findByUserId, findDtosByUserId och countByUserId ska använda indexet på user_id")
+    public void testFindByUserId_UsesIndex() {
+        loanRepository.findByUserId(1L);
+        loanRepository.findDtosByUserId(1L, LocalDate.now());
+        loanRepository.countByUserId(1L);
+        assertUsesIndex("idx_loans_user_id");
+    }
+
+    @Test
+    @DisplayName("LoanRepository.findByUserIdAndReturnedDateIsNull ska använda det partiella indexet för aktiva lån")
+    public void testFindActiveLoans_UsesPartialIndex() {
+        loanRepository.findByUserIdAndReturnedDateIsNull(1L);
+        assertUsesIndex("idx_loans_active_user_id");
+    }
+
+    @Test
+    @DisplayName("LoanRepository.countByUserIdAndReturnedDateIsNullAndDueDateBefore ska bara läsa aktiva lån")
+    public void testCountOverdueLoans_UsesPartialIndex() {
+        loanRepository.countByUserIdAndReturnedDateIsNullAndDueDateBefore(1L, LocalDate.now());
+        assertUsesIndex("idx_loans_active_");
+    }
+
+    @Test
+    @DisplayName("LoanRepository.countActiveByUserIdAndCategory ska bara läsa användarens aktiva lån")
+    public void testCountActiveByCategory_UsesPartialIndex() {
+        loanRepository.countActiveByUserIdAndCategory(1L, "deckare");
+        assertUsesIndex("idx_loans_active_user_id");
+    }
+
+    @Test
+    @DisplayName("LoanRepository.findActivePageByDueDate ska använda det partiella indexet på förfallodatum")
+    public void testFindOverdueLoans_UsesPartialIndex() {
+        LocalDate today = LocalDate.now();
+        loanRepository.findActivePageByDueDate(LocalDate.EPOCH, today, today.minusDays(30), 0L, Limit.of(10));
+        assertUsesIndex("idx_loans_active_due_date");
+    }
+
+    @Test
+    @DisplayName("HoldRepository.countWaitingBefore och assignNext ska gå via köindexet")
+    @Transactional
+    public void testHoldQueue_UsesQueueIndex() {
+        holdRepository.countWaitingBefore(1L, 10L, Hold.Status.WAITING);
+        holdRepository.assignNext(1L, LocalDateTime.now(), Hold.Status.WAITING, Hold.Status.READY);
+        assertUsesIndex("idx_holds_queue");
+    }
+
+    @Test
+    @DisplayName("HoldRepository.existsByUserIdAndBookIdAndStatusIn och fulfil ska använda indexet på user_id och book_id")
+    @Transactional
+    public void testHoldsByUser_UsesIndex() {
+        holdRepository.existsByUserIdAndBookIdAndStatusIn(1L, 1L, List.of(Hold.Status.WAITING, Hold.Status.READY));
+        holdRepository.fulfil(1L, 1L, LocalDateTime.now(), Hold.Status.READY, Hold.Status.FULFILLED);
+        assertUsesIndex("idx_holds_user_book");
+    }
+
+    @Test
+    @DisplayName("HoldRepository.findReadyBefore ska använda indexet på status och ready_at")
+    public void testFindReadyBefore_UsesIndex() {
+        holdRepository.findReadyBefore(Hold.Status.READY, LocalDateTime.now(), Limit.of(10));
+        assertUsesIndex("idx_holds_ready");
+    }
+
+    @Test
+    @DisplayName("Uppslag på ID-listor ska använda primärnyckeln")
+    public void testFindByIdIn_UsesPrimaryKey() {
+        bookRepository.findWithDetailsByIdIn(List.of(1L, 2L));
+        bookRepository.findAllWithAuthorByIdIn(List.of(1L, 2L));
+        loanRepository.findAllWithBookByIdIn(List.of(1L, 2L));
+        assertUsesIndex("PRIMARY KEY");
+    }
+
+    // Kör EXPLAIN QUERY PLAN på alla satser som finder-anropet skickade
+    private void assertUsesIndex(String expectedIndex) {
+        List<String> statements = new ArrayList<>(RecordingStatementInspector.STATEMENTS);
+        assertFalse(statements.isEmpty(), "Ingen SQL spelades in");
+
+        List<String> plan = new ArrayList<>();
+        for (String sql : statements) {
+            List<String> details = explain(sql);
+            for (String detail : details) {
+                assertFalse(FULL_TABLE_SCAN.matcher(detail).matches(),
+                        "Hela tabellen läses (" + detail + ") i: " + sql);
+            }
+            plan.addAll(details);
+        }
+
+        assertTrue(plan.stream().anyMatch(detail -> detail.contains(expectedIndex)),
+                "Förväntade " + expectedIndex + " i frågeplanen: " + plan);
+    }
+
+    private List<String> explain(String sql) {
+        int parameters = (int) sql.chars().filter(c -> c == '?').count();
+        return jdbcTemplate.query("EXPLAIN QUERY PLAN " + sql,
+                statement -> {
+                    for (int i = 1; i <= parameters; i++) {
+                        statement.setLong(i, 1);
+                    }
+                },
+                (resultSet, rowNum) -> resultSet.getString("detail"));
+    }
+}
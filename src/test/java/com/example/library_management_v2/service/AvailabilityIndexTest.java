@@ -0,0 +1,96 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.exception.BookNotAvailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för tillgänglighetsindexet, utan Spring och utan databas
+// (utan transaktion görs ...AfterCommit-ändringarna direkt)
+public class AvailabilityIndexTest {
+
+    private AvailabilityIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new AvailabilityIndex();
+        index.startBuilding();
+        index.load(1L, 2, 3);
+        index.load(2L, 0, 1);
+        index.markReady();
+    }
+
+    @Test
+    @DisplayName("Utlåning och återlämning ska räkna antalet exemplar på hyllan upp och ner")
+    public void testAdjust() {
+        assertEquals(2, index.onShelf(1L));
+        assertEquals(3, index.total(1L));
+
+        index.adjustAfterCommit(List.of(1L, 1L), -1);
+        assertEquals(0, index.onShelf(1L));
+        assertEquals(Boolean.FALSE, index.isAvailable(1L));
+        assertThrows(BookNotAvailableException.class, () -> index.checkAvailable(1L));
+
+        index.adjustAfterCommit(List.of(1L), 1);
+        assertEquals(Boolean.TRUE, index.isAvailable(1L));
+        assertDoesNotThrow(() -> index.checkAvailable(1L));
+        assertEquals(1L, index.snapshot().get("rejectedLoans"));
+    }
+
+    @Test
+    @DisplayName("Okända böcker ska aldrig nekas, och ett orimligt antal ska göra boken okänd")
+    public void testUnknownBooks() {
+        assertEquals(AvailabilityIndex.UNKNOWN, index.onShelf(999L));
+        assertNull(index.isAvailable(999L));
+        assertDoesNotThrow(() -> index.checkAvailable(999L));
+        assertDoesNotThrow(() -> index.checkAvailable(AvailabilityIndex.MAX_BOOK_ID));
+
+        // Ingen ändring för en okänd bok lägger till den
+        index.adjust(999L, 1);
+        assertNull(index.isAvailable(999L));
+
+        // Fler exemplar på hyllan än totalt: indexet stämmer inte med databasen
+        index.adjust(1L, 2);
+        assertNull(index.isAvailable(1L));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @DisplayName("Arrayen ska växa med bok-ID:t och behålla alla böcker")
+    public void testGrowth() {
+        for (long id = 3; id <= 100_000; id++) {
+            index.put(id, (int) (id % 4), 3);
+        }
+        assertEquals(100_000, index.size());
+        assertEquals(Boolean.FALSE, index.isAvailable(2L));
+        assertEquals(3, index.onShelf(99_999L));
+
+        // 8 byte per position, och arrayen växer med högst 50 % över det största ID:t
+        double bytesPerBook = (double) index.memoryBytes() / index.size();
+        assertTrue(bytesPerBook >= 8 && bytesPerBook <= 12.5, "Byte per bok: " + bytesPerBook);
+    }
+
+    @Test
+    @DisplayName("Ändringar medan indexet byggs ska inte skrivas över av bygget")
+    public void testChangesWhileBuilding() {
+        index.startBuilding();
+        assertFalse(index.isReady());
+
+        // Ett lån av bok 1 committades efter att bygget läste den från databasen
+        index.adjust(1L, -1);
+        // En ny bok sparades under bygget
+        index.put(3L, 1, 1);
+        index.load(1L, 2, 3);
+        index.load(2L, 0, 1);
+        index.load(3L, 0, 1);
+        index.markReady();
+
+        assertNull(index.isAvailable(1L), "Bygget kan ha läst ett gammalt värde");
+        assertEquals(Boolean.FALSE, index.isAvailable(2L));
+        assertEquals(1, index.onShelf(3L));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.library_management_v2.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för sökindexet, utan Spring och utan databas
+public class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new BookSearchIndex();
+        index.put(1L, "Pippi Långstrump", "Astrid", "Lindgren");
+        index.put(2L, "Isprinsessan", "Camilla", "Läckberg");
+        index.put(3L, "Mördare utan ansikte", "Henning", "Mankell");
+        index.put(4L, "Bröderna Lejonhjärta", "Astrid", "Lindgren");
+        index.put(5L, "Lindgrens värld", "Kalle", "Svensson");
+    }
+
+    @Test
+    @DisplayName("Sökning ska ignorera å/ä/ö och skiftläge")
+    public void testSearch_DiacriticFolding() {
+        assertEquals(List.of(2L), index.search(null, "lackberg", null, 10));
+        assertEquals(List.of(1L), index.search("LANGSTRUMP", null, null, 10));
+        assertEquals(List.of(3L), index.search("mördare", null, null, 10));
+    }
+
+    @Test
+    @DisplayName("Sökning ska matcha på prefix")
+    public void testSearch_Prefix() {
+        assertEquals(List.of(1L, 4L), index.search(null, "lind", null, 10));
+        assertEquals(List.of(4L), index.search("bröd lejon", null, null, 10));
+    }
+
+    @Test
+    @DisplayName("Fritext ska matcha titel och författare i samma sökning")
+    public void testSearch_CombinedQuery() {
+        // "astrid" finns i författarnamnet och "pippi" i titeln, båda måste matcha
+        assertEquals(List.of(1L), index.search(null, null, "astrid pippi", 10));
+    }
+
+    @Test
+    @DisplayName("Författarsökningen ska bara matcha efternamnet, förnamnet hittas via fritext")
+    public void testSearch_AuthorLastNameOnly() {
+        assertTrue(index.search(null, "astrid", null, 10).isEmpty());
+        assertEquals(List.of(1L, 4L), index.search(null, "lindgren", null, 10));
+        assertEquals(List.of(1L, 4L), index.search(null, null, "astrid", 10));
+    }
+
+    @Test
+    @DisplayName("Träffar i titeln ska rankas högre än träffar i författarnamnet")
+    public void testSearch_Ranking() {
+        List<Long> result = index.search(null, null, "lindgren", 10);
+
+        assertEquals(3, result.size());
+        assertEquals(5L, result.get(0), "Boken med ordet i titeln ska komma först");
+    }
+
+    @Test
+    @DisplayName("Uppdaterade och borttagna böcker ska inte längre hittas på gamla ord")
+    public void testPutAndRemove() {
+        index.put(2L, "Predikanten", "Camilla", "Läckberg");
+        assertTrue(index.search("isprinsessan", null, null, 10).isEmpty());
+        assertEquals(List.of(2L), index.search("predikanten", null, null, 10));
+
+        index.remove(2L);
+        assertTrue(index.search(null, "läckberg", null, 10).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    @DisplayName("En ändrad titel med samma hashkod som den gamla ska ändå indexeras om")
+    public void testPut_HashCollision() {
+        // "Aa" och "BB" har samma String.hashCode
+        index.put(6L, "Aa", "Kalle", "Svensson");
+        index.put(6L, "BB", "Kalle", "Svensson");
+        assertTrue(index.search("aa", null, null, 10).isEmpty());
+        assertEquals(List.of(6L), index.search("bb", null, null, 10));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.dto.CursorPageDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Vi räknar SQL-satser med Hibernate Statistics för att bevisa att BookService inte gör N+1
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+public class BookServiceQueryCountTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        bookRepository.deleteAll();
+        authorRepository.deleteAll();
+
+        // Tio författare med tre böcker var, så att en N+1 skulle synas tydligt
+        for (int i = 0; i < 10; i++) {
+            Author author = new Author();
+            author.setFirstName("Förnamn" + i);
+            author.setLastName("Efternamn" + i);
+            author.setBirthYear(1950 + i);
+            author = authorRepository.save(author);
+
+            for (int j = 0; j < 3; j++) {
+                Book book = new Book();
+                book.setTitle("Titel" + i + "x" + j);
+                book.setPublicationYear(2000 + j);
+                book.setAvailableCopies(2);
+                book.setTotalCopies(2);
+                book.setAuthor(author);
+                bookRepository.save(book);
+            }
+        }
+
+        // Töm persistence context så att inga entiteter kommer från första nivåns cache
+        entityManager.flush();
+        entityManager.clear();
+
+        // Testdatan skrivs direkt via repositories, så katalogcachen måste tömmas för hand
+        catalogCache.clearAll();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("getAllBooks ska hämta alla böcker med författare i en enda SQL-sats")
+    public void testGetAllBooks_SingleStatement() {
+        List<BookWithDetailsDTO> books = bookService.getAllBooks();
+
+        assertEquals(30, books.size());
+        assertNotNull(books.get(0).getAuthorLastName(), "Författarnamnet ska finnas med i DTO:n");
+        assertEquals(1, statistics.getPrepareStatementCount(), "Endast en SQL-sats ska köras");
+    }
+
+    @Test
+    @DisplayName("searchBooks ska söka på titel och författare i en enda SQL-sats")
+    public void testSearchBooks_SingleStatement() {
+        // "titel1" matchar tre titlar, "efternamn2" matchar tre böcker av en annan författare
+        List<BookWithDetailsDTO> books = bookService.searchBooks("titel1", "efternamn2");
+
+        assertEquals(6, books.size(), "Träffar på titel och författare ska slås ihop utan dubbletter");
+        assertEquals(1, statistics.getPrepareStatementCount(), "Endast en SQL-sats ska köras");
+    }
+
+    @Test
+    @DisplayName("getBooksPage ska hämta en sida med böcker och författare i en enda SQL-sats")
+    public void testGetBooksPage_SingleStatement() {
+        CursorPageDTO<BookWithDetailsDTO> page = bookService.getBooksPage(null, 10);
+
+        assertEquals(10, page.getSize());
+        assertNotNull(page.getItems().get(0).getAuthorLastName());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Endast en SQL-sats ska köras");
+    }
+
+    @Test
+    @DisplayName("streamBooks ska strömma alla böcker med författare i en enda SQL-sats")
+    public void testStreamBooks_SingleStatement() {
+        List<BookWithDetailsDTO> books = new ArrayList<>();
+        bookService.streamBooks(books::add);
+
+        assertEquals(30, books.size());
+        assertTrue(books.stream().allMatch(book -> book.getAuthorLastName() != null));
+        assertEquals(1, statistics.getPrepareStatementCount(), "Författarna ska hämtas i samma SQL-sats");
+    }
+
+    @Test
+    @DisplayName("createBook ska bara läsa författaren och spara boken")
+    public void testCreateBook_TwoStatements() {
+        Long authorId = authorRepository.findAll().get(0).getId();
+        entityManager.clear();
+        statistics.clear();
+
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setTitle("Ny bok");
+        bookDTO.setPublicationYear(2024);
+        bookDTO.setAvailableCopies(1);
+        bookDTO.setTotalCopies(1);
+        bookDTO.setAuthorId(authorId);
+
+        BookDTO created = bookService.createBook(bookDTO);
+        entityManager.flush();
+
+        assertEquals(authorId, created.getAuthorId());
+        // Författaren och den nya boken
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("searchBooks utan söktext ska returnera alla böcker i en enda SQL-sats")
+    public void testSearchBooks_NoCriteria() {
+        List<BookWithDetailsDTO> books = bookService.searchBooks(null, "");
+
+        assertEquals(30, books.size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "Endast en SQL-sats ska köras");
+    }
+}
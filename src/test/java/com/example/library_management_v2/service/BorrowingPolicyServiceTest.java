@@ -0,0 +1,225 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.BorrowingPolicyProperties;
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.CreateUserDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.exception.BorrowingLimitException;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Testet är INTE @Transactional: en nekad utlåning ska rullas tillbaka på riktigt,
+// och samtidiga utlåningar till samma användare måste committas var för sig
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class BorrowingPolicyServiceTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BorrowingPolicyProperties policy;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+
+        CreateUserDTO createUserDTO = new CreateUserDTO();
+        createUserDTO.setFirstName("Astrid");
+        createUserDTO.setLastName("Lindgren");
+        createUserDTO.setEmail("astrid@test.com");
+        createUserDTO.setPassword("password123");
+        userId = userService.createUser(createUserDTO).getId();
+
+        policy.setMaxActiveLoans(3);
+        policy.setBlockWhenOverdue(true);
+        policy.setCategoryLimits(new HashMap<>(Map.of("deckare", 2)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // Samma inställningar som i application-test.properties
+        policy.setMaxActiveLoans(0);
+        policy.setBlockWhenOverdue(false);
+        policy.setCategoryLimits(new HashMap<>());
+        cleanDatabase();
+    }
+
+    @Test
+    @DisplayName("Ett lån över max antal aktiva lån ska nekas och exemplaret ska inte reserveras")
+    public void testCheckOut_MaxActiveLoans() {
+        for (int i = 0; i < 3; i++) {
+            loanService.createLoan(createLoanDTO(createBook("Bok " + i, null)));
+        }
+        Long fourth = createBook("Bok 3", null);
+
+        BorrowingLimitException exception = assertThrows(BorrowingLimitException.class,
+                () -> loanService.createLoan(createLoanDTO(fourth)));
+        assertTrue(exception.getMessage().contains("högst 3"), exception.getMessage());
+        assertEquals(1, bookRepository.findById(fourth).orElseThrow().getAvailableCopies(),
+                "Reservationen ska ha rullats tillbaka");
+        assertEquals(3, userLoanSummaryRepository.findById(userId).orElseThrow().getActiveLoans());
+
+        // Ett återlämnat lån ger plats för ett nytt
+        loanService.returnBook(loanRepository.findByUserIdAndReturnedDateIsNull(userId).get(0).getId());
+        assertNotNull(loanService.createLoan(createLoanDTO(fourth)));
+    }
+
+    @Test
+    @DisplayName("En användare med ett försenat lån ska inte få låna förrän lånet är återlämnat")
+    public void testCheckOut_BlockedWhileOverdue() {
+        Long book = createBook("Ny bok", null);
+        Loan overdue = new Loan();
+        overdue.setUser(userRepository.getReferenceById(userId));
+        overdue.setBook(bookRepository.getReferenceById(createBook("Gammal bok", null)));
+        overdue.setBorrowedDate(LocalDate.now().minusDays(20));
+        overdue.setDueDate(LocalDate.now().minusDays(6));
+        overdue = loanRepository.save(overdue);
+
+        BorrowingLimitException exception = assertThrows(BorrowingLimitException.class,
+                () -> loanService.createLoan(createLoanDTO(book)));
+        assertTrue(exception.getMessage().contains("1 försenade lån"), exception.getMessage());
+
+        loanService.returnBook(overdue.getId());
+        assertNotNull(loanService.createLoan(createLoanDTO(book)));
+    }
+
+    @Test
+    @DisplayName("Kategorigränsen ska gälla både enstaka lån och batchar, utan skillnad på skiftläge")
+    public void testCheckOut_CategoryLimit() {
+        LoanDTO first = loanService.createLoan(createLoanDTO(createBook("Mördaren", "Deckare")));
+        Long second = createBook("Isprinsessan", "deckare");
+        Long third = createBook("Hundarna i Riga", "DECKARE");
+        Long other = createBook("Pippi Långstrump", "barn");
+
+        // Två nya deckare på en gång blir tre, då lånas ingen av böckerna ut
+        CreateBatchLoanDTO batch = new CreateBatchLoanDTO();
+        batch.setUserId(userId);
+        batch.setBookIds(List.of(second, third));
+        BorrowingLimitException exception = assertThrows(BorrowingLimitException.class,
+                () -> loanService.createLoans(batch));
+        assertTrue(exception.getMessage().contains("\"deckare\""), exception.getMessage());
+        assertEquals(1, loanRepository.count());
+
+        // En deckare till och en bok i en annan kategori går bra
+        batch.setBookIds(List.of(second, other));
+        assertEquals(2, loanService.createLoans(batch).getSucceeded());
+        assertThrows(BorrowingLimitException.class, () -> loanService.createLoan(createLoanDTO(third)));
+
+        loanService.returnBook(first.getId());
+        assertNotNull(loanService.createLoan(createLoanDTO(third)));
+    }
+
+    @Test
+    @DisplayName("Samtidiga lån till samma användare från flera terminaler ska aldrig passera gränsen")
+    public void testCheckOut_ConcurrentSameUser() throws Exception {
+        int threads = 16;
+        List<Long> books = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            books.add(createBook("Bok " + i, null));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Long book : books) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    loanService.createLoan(createLoanDTO(book));
+                    succeeded.incrementAndGet();
+                } catch (BorrowingLimitException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(3, succeeded.get(), "Exakt max antal lån ska lyckas");
+        assertEquals(threads - 3, rejected.get());
+        assertEquals(3, loanRepository.findByUserIdAndReturnedDateIsNull(userId).size());
+        assertEquals(3, userLoanSummaryRepository.findById(userId).orElseThrow().getActiveLoans());
+    }
+
+    private Long createBook(String title, String category) {
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setTitle(title);
+        bookDTO.setPublicationYear(2000);
+        bookDTO.setAvailableCopies(1);
+        bookDTO.setTotalCopies(1);
+        bookDTO.setCategory(category);
+        return bookService.createBook(bookDTO).getId();
+    }
+
+    private CreateLoanDTO createLoanDTO(Long bookId) {
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(userId);
+        createLoanDTO.setBookId(bookId);
+        return createLoanDTO;
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        userLoanSummaryRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
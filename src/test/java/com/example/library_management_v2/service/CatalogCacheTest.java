@@ -0,0 +1,148 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.BookWithDetailsDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Testet är INTE @Transactional, cachen töms först när lånet har committats
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class CatalogCacheTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Book testBook;
+    private User testUser;
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+
+        Author author = new Author();
+        author.setFirstName("Cache");
+        author.setLastName("Författare");
+        author = authorRepository.save(author);
+
+        testBook = new Book();
+        testBook.setTitle("Cachad bok");
+        testBook.setPublicationYear(2024);
+        testBook.setAvailableCopies(3);
+        testBook.setTotalCopies(3);
+        testBook.setAuthor(author);
+        testBook = bookRepository.save(testBook);
+
+        testUser = new User();
+        testUser.setFirstName("Cache");
+        testUser.setLastName("Låntagare");
+        testUser.setEmail("cache@test.com");
+        testUser.setPassword("password123");
+        testUser.setRegistrationDate(LocalDate.now());
+        testUser = userRepository.save(testUser);
+
+        // Testdatan skrevs direkt via repositories, börja med tomma cachar
+        catalogCache.clearAll();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cleanDatabase();
+        catalogCache.clearAll();
+    }
+
+    @Test
+    @DisplayName("getAllBooks ska bara fråga databasen första gången")
+    public void testGetAllBooks_Cached() {
+        bookService.getAllBooks();
+        bookService.getAllBooks();
+        bookService.getAllBooks();
+
+        assertEquals(1, statistics.getPrepareStatementCount(), "Andra och tredje anropet ska komma från cachen");
+    }
+
+    @Test
+    @DisplayName("Ett lån och en återlämning ska direkt synas i cachade boklistor och sökningar")
+    public void testLoanAndReturn_InvalidateCache() {
+        assertEquals(3, availableCopies(bookService.getAllBooks()));
+        assertEquals(3, availableCopies(bookService.searchBooks("cachad", null, null)));
+
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(testUser.getId());
+        createLoanDTO.setBookId(testBook.getId());
+        LoanDTO loan = loanService.createLoan(createLoanDTO);
+
+        assertEquals(2, availableCopies(bookService.getAllBooks()), "Lånet ska synas direkt");
+        assertEquals(2, availableCopies(bookService.searchBooks("cachad", null, null)), "Lånet ska synas direkt");
+
+        loanService.returnBook(loan.getId());
+
+        assertEquals(3, availableCopies(bookService.getAllBooks()), "Återlämningen ska synas direkt");
+        assertEquals(3, availableCopies(bookService.searchBooks("cachad", null, null)),
+                "Återlämningen ska synas direkt");
+    }
+
+    private int availableCopies(List<BookWithDetailsDTO> books) {
+        return books.stream()
+                .filter(book -> book.getId().equals(testBook.getId()))
+                .findFirst()
+                .orElseThrow()
+                .getAvailableCopies();
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        authorRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.ImportJobDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.ImportJobRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Testet är INTE @Transactional, importen committar en transaktion per omgång
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@RecordApplicationEvents
+public class CatalogImportServiceTest {
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    private Author lindgren;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+
+        lindgren = new Author();
+        lindgren.setFirstName("Astrid");
+        lindgren.setLastName("Lindgren");
+        lindgren.setBirthYear(1907);
+        lindgren = authorRepository.save(lindgren);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cleanDatabase();
+    }
+
+    @Test
+    @DisplayName("CSV ska importeras i omgångar med befintliga och nya författare, citattecken och avvisade rader")
+    public void testImportCsv() {
+        String csv = """
+                title,publicationYear,totalCopies,availableCopies,authorFirstName,authorLastName,authorBirthYear
+                Bröderna Lejonhjärta,1973,3,2,Astrid,Lindgren,1907
+                "Mio, min Mio",1954,2,,Astrid,Lindgren,1907
+                "Boken om ""citat""\",2000,,,Ny,Författare,1980
+                ,1999,1,1,,,
+                "Två
+                rader",2001,1,1,Ny,Författare,1980
+                Utan författare,2002,1,1,,,
+                """;
+
+        ImportJobDTO job = catalogImportService.importBooks(stream(csv), "text/csv", "csv-test", "test", 2);
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(6, job.getRecordsProcessed());
+        assertEquals(1, job.getRecordsRejected());
+        assertTrue(job.getLastError().startsWith("Post 4:"), job.getLastError());
+        assertEquals(5, job.getBooksCreated());
+        assertEquals(1, job.getAuthorsCreated(), "Lindgren finns redan, Ny Författare skapas en gång");
+
+        Map<String, Book> books = bookRepository.findAll().stream()
+                .collect(Collectors.toMap(Book::getTitle, Function.identity()));
+        assertEquals(lindgren.getId(), books.get("Mio, min Mio").getAuthor().getId());
+        assertEquals(2, books.get("Mio, min Mio").getAvailableCopies(), "Tillgängliga ska vara alla exemplar");
+        assertTrue(books.containsKey("Boken om \"citat\""));
+        assertTrue(books.containsKey("Två\nrader"));
+        assertNull(books.get("Utan författare").getAuthor());
+        assertEquals(2, authorRepository.count());
+
+        // Sökindexet och cacharna ska känna till de nya böckerna
+        assertEquals(List.of(books.get("Bröderna Lejonhjärta").getId()),
+                bookSearchIndex.search(null, null, "lejonhjärta", 10));
+        assertTrue(events.stream(CatalogChangedEvent.class)
+                .anyMatch(event -> event.scope() == CatalogChangedEvent.Scope.BOOKS));
+        assertTrue(events.stream(CatalogChangedEvent.class)
+                .anyMatch(event -> event.scope() == CatalogChangedEvent.Scope.AUTHORS));
+    }
+
+    @Test
+    @DisplayName("JSONL ska importeras en rad i taget och trasiga rader avvisas")
+    public void testImportJsonLines() {
+        String jsonl = """
+                {"title": "Pippi Långstrump", "publicationYear": 1945, "totalCopies": 4, \
+                "authorFirstName": "Astrid", "authorLastName": "Lindgren", "authorBirthYear": 1907}
+                {"title": "Trasig
+                {"title": "Okänd", "publicationYear": "inte ett år"}
+
+                {"title": "Anonym"}
+                """;
+
+        ImportJobDTO job = catalogImportService.importBooks(stream(jsonl), "application/x-ndjson", null, "test");
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(4, job.getRecordsProcessed());
+        assertEquals(2, job.getRecordsRejected());
+        assertEquals(2, job.getBooksCreated());
+        assertEquals(0, job.getAuthorsCreated());
+        assertEquals(job.getJobId(), catalogImportService.getImportJob(job.getJobId()).getJobId());
+    }
+
+    @Test
+    @DisplayName("En avbruten import ska kunna fortsätta med samma jobId utan dubbletter")
+    public void testImport_ResumeAfterFailure() {
+        StringBuilder csv = new StringBuilder("title,publicationYear\n");
+        for (int i = 1; i <= 5; i++) {
+            csv.append("Bok ").append(i).append(",2000\n");
+        }
+        byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Anslutningen bryts mitt i den fjärde boken, efter att första omgången (två böcker) är committad
+        int failAt = csv.indexOf("Bok 4") + 3;
+        assertThrows(UncheckedIOException.class, () -> catalogImportService.importBooks(
+                failingAfter(data, failAt), "csv", "resume-test", "test", 2));
+
+        ImportJobDTO failed = catalogImportService.getImportJob("resume-test");
+        assertEquals("FAILED", failed.getStatus());
+        assertEquals(2, failed.getRecordsProcessed());
+        assertEquals(2, bookRepository.count());
+
+        ImportJobDTO resumed = catalogImportService.importBooks(
+                new ByteArrayInputStream(data), "csv", "resume-test", "test", 2);
+
+        assertEquals("COMPLETED", resumed.getStatus());
+        assertEquals(5, resumed.getRecordsProcessed());
+        assertEquals(5, resumed.getBooksCreated());
+        assertEquals(List.of("Bok 1", "Bok 2", "Bok 3", "Bok 4", "Bok 5"), bookRepository.findAll().stream()
+                .map(Book::getTitle).sorted(Comparator.naturalOrder()).toList());
+    }
+
+    private InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Ger de första limit byten och kastar sedan IOException
+    private InputStream failingAfter(byte[] data, int limit) {
+        return new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position >= limit) {
+                    throw new IOException("Anslutningen bröts");
+                }
+                return data[position++] & 0xff;
+            }
+        };
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        authorRepository.deleteAll();
+        importJobRepository.deleteAll();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"library.export.max-concurrent=1", "library.export.wait-timeout=200"})
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+public class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LocalDate today = LocalDate.now();
+
+    private Book pippi;
+    private Book anonymous;
+    private User astrid;
+    private User karl;
+
+    @BeforeEach
+    public void setUp() {
+        // Exporten läser med JDBC, så inga andra böcker eller lån får finnas i tabellerna
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        Author author = new Author();
+        author.setFirstName("Astrid");
+        author.setLastName("Lindgren");
+        author = authorRepository.save(author);
+
+        pippi = saveBook("Pippi Långstrump", author);
+        anonymous = saveBook("Dikter, \"samlade\"", null);
+
+        astrid = saveUser("astrid@test.com");
+        karl = saveUser("karl@test.com");
+
+        Loan returned = new Loan();
+        returned.setUser(astrid);
+        returned.setBook(pippi);
+        returned.setBorrowedDate(today.minusDays(20));
+        returned.setDueDate(today.minusDays(6));
+        returned.setReturnedDate(today.minusDays(10));
+        loanRepository.save(returned);
+
+        Loan active = new Loan();
+        active.setUser(karl);
+        active.setBook(anonymous);
+        active.setBorrowedDate(today);
+        active.setDueDate(today.plusDays(14));
+        loanRepository.save(active);
+
+        // JDBC ser bara det som är skrivet till databasen
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Böckerna ska exporteras som CSV med rubrikrad och citattecken där det behövs")
+    public void testExportBooks_Csv() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long rows = exportService.exportBooks(ExportService.CSV, output);
+
+        assertEquals(2, rows);
+        assertEquals("""
+                id,title,publicationYear,availableCopies,totalCopies,authorId,authorFirstName,authorLastName
+                %d,Pippi Långstrump,1945,2,3,%d,Astrid,Lindgren
+                %d,"Dikter, ""samlade""\",1945,2,3,,,
+                """.formatted(pippi.getId(), pippi.getAuthor().getId(), anonymous.getId()),
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Lånen ska exporteras som NDJSON, alla eller en användares")
+    public void testExportLoans_Ndjson() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(2, exportService.exportLoans(null, ExportService.NDJSON, output));
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(astrid.getId(), first.get("userId").asLong());
+        assertEquals("Pippi Långstrump", first.get("bookTitle").asText());
+        assertEquals(today.minusDays(20).toString(), first.get("borrowedDate").asText());
+        assertEquals(today.minusDays(10).toString(), first.get("returnedDate").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("returnedDate").isNull());
+
+        ByteArrayOutputStream karlsLoans = new ByteArrayOutputStream();
+        assertEquals(1, exportService.exportLoans(karl.getId(), ExportService.NDJSON, karlsLoans));
+        assertEquals(anonymous.getId(),
+                objectMapper.readTree(karlsLoans.toString(StandardCharsets.UTF_8)).get("bookId").asLong());
+
+        assertThrows(IllegalArgumentException.class, () -> ExportService.normalizeFormat("xml"));
+    }
+
+    @Test
+    @DisplayName("En export ska vänta på en plats och ge upp när max-concurrent exporter redan pågår")
+    public void testMaxConcurrentExports() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // En klient som inte läser svaret: exporten blir stående i write
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+
+        Thread slowExport = new Thread(() -> {
+            try {
+                exportService.exportBooks(ExportService.CSV, slowClient);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        slowExport.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        try {
+            assertThrows(IllegalStateException.class,
+                    () -> exportService.exportLoans(null, ExportService.CSV, new ByteArrayOutputStream()));
+        } finally {
+            release.countDown();
+            slowExport.join(10_000);
+        }
+
+        // Platsen är ledig igen när den första exporten är klar
+        assertEquals(2, exportService.exportBooks(ExportService.CSV, new ByteArrayOutputStream()));
+    }
+
+    private Book saveBook(String title, Author author) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setPublicationYear(1945);
+        book.setAvailableCopies(2);
+        book.setTotalCopies(3);
+        book.setAuthor(author);
+        return bookRepository.save(book);
+    }
+
+    private User saveUser(String email) {
+        User user = new User();
+        user.setFirstName("Förnamn");
+        user.setLastName("Efternamn");
+        user.setEmail(email);
+        user.setPassword("password123");
+        user.setRegistrationDate(today.minusYears(1));
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
+import com.example.library_management_v2.dto.CreateHoldDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.HoldDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.exception.BookNotAvailableException;
+import com.example.library_management_v2.exception.BookNotFoundException;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+public class HoldServiceTest {
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User lender;
+    private User first;
+    private User second;
+    private User third;
+
+    @BeforeEach
+    public void setUp() {
+        lender = createUser("lender");
+        first = createUser("first");
+        second = createUser("second");
+        third = createUser("third");
+    }
+
+    @Test
+    @DisplayName("Ett återlämnat exemplar ska reserveras åt den första i kön och bara kunna lånas av den")
+    public void testHoldQueue_FirstInLineGetsReturnedCopy() {
+        Book book = createBook("Bröderna Lejonhjärta", 1);
+        LoanDTO loan = loanService.createLoan(createLoanDTO(lender, book));
+
+        HoldDTO firstHold = holdService.placeHold(book.getId(), createHoldDTO(first));
+        HoldDTO secondHold = holdService.placeHold(book.getId(), createHoldDTO(second));
+        HoldDTO thirdHold = holdService.placeHold(book.getId(), createHoldDTO(third));
+        assertEquals(List.of(1L, 2L, 3L),
+                List.of(firstHold.getPosition(), secondHold.getPosition(), thirdHold.getPosition()));
+
+        loanService.returnBook(loan.getId());
+        flushAndClear();
+
+        // Exemplaret blev aldrig ledigt, det är reserverat åt den första i kön
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+        HoldDTO ready = holdService.getHold(book.getId(), firstHold.getId());
+        assertEquals("READY", ready.getStatus());
+        assertNull(ready.getPosition());
+        assertNotNull(ready.getReadyAt());
+        assertEquals(1L, holdService.getHold(book.getId(), secondHold.getId()).getPosition());
+        assertEquals(2L, holdService.getHold(book.getId(), thirdHold.getId()).getPosition());
+
+        // Den andra i kön kan inte ta exemplaret, den första kan
+        assertThrows(BookNotAvailableException.class, () -> loanService.createLoan(createLoanDTO(second, book)));
+        assertNotNull(loanService.createLoan(createLoanDTO(first, book)));
+        flushAndClear();
+        assertEquals("FULFILLED", holdService.getHold(book.getId(), firstHold.getId()).getStatus());
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+    }
+
+    @Test
+    @DisplayName("Batch-återlämning och batch-lån ska gå via kön på samma sätt")
+    public void testHoldQueue_BatchReturnAndLoan() {
+        Book book = createBook("Mio, min Mio", 2);
+        Book other = createBook("Ronja Rövardotter", 1);
+        LoanDTO loan1 = loanService.createLoan(createLoanDTO(lender, book));
+        LoanDTO loan2 = loanService.createLoan(createLoanDTO(third, book));
+
+        HoldDTO firstHold = holdService.placeHold(book.getId(), createHoldDTO(first));
+        HoldDTO secondHold = holdService.placeHold(book.getId(), createHoldDTO(second));
+
+        // Båda exemplaren av samma bok lämnas tillbaka i samma batch, ett till var i kön
+        ReturnBatchLoanDTO returnBatchLoanDTO = new ReturnBatchLoanDTO();
+        returnBatchLoanDTO.setLoanIds(List.of(loan1.getId(), loan2.getId()));
+        assertEquals(2, loanService.returnBooks(returnBatchLoanDTO).getSucceeded());
+        flushAndClear();
+        assertEquals("READY", holdService.getHold(book.getId(), firstHold.getId()).getStatus());
+        assertEquals("READY", holdService.getHold(book.getId(), secondHold.getId()).getStatus());
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+
+        // Det reserverade exemplaret och en ledig bok i samma batch
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(first.getId());
+        createBatchLoanDTO.setBookIds(List.of(book.getId(), other.getId()));
+        assertEquals(2, loanService.createLoans(createBatchLoanDTO).getSucceeded());
+        flushAndClear();
+        assertEquals("FULFILLED", holdService.getHold(book.getId(), firstHold.getId()).getStatus());
+        assertEquals(0, bookRepository.findById(other.getId()).orElseThrow().getAvailableCopies());
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+    }
+
+    @Test
+    @DisplayName("En bok med lediga exemplar och dubbla köplatser ska inte gå att köa till")
+    public void testPlaceHold_Rejected() {
+        Book available = createBook("Emil i Lönneberga", 1);
+        assertThrows(IllegalStateException.class,
+                () -> holdService.placeHold(available.getId(), createHoldDTO(first)));
+        assertThrows(BookNotFoundException.class, () -> holdService.placeHold(999_999L, createHoldDTO(first)));
+
+        loanService.createLoan(createLoanDTO(lender, available));
+        holdService.placeHold(available.getId(), createHoldDTO(first));
+        assertThrows(IllegalStateException.class,
+                () -> holdService.placeHold(available.getId(), createHoldDTO(first)));
+    }
+
+    @Test
+    @DisplayName("Ett reserverat exemplar som inte hämtas, eller vars köplats tas bort, ska gå vidare i kön och sedan till hyllan")
+    public void testHoldQueue_ExpireAndCancel() {
+        Book book = createBook("Ronja Rövardotter", 1);
+        LoanDTO loan = loanService.createLoan(createLoanDTO(lender, book));
+        HoldDTO firstHold = holdService.placeHold(book.getId(), createHoldDTO(first));
+        HoldDTO secondHold = holdService.placeHold(book.getId(), createHoldDTO(second));
+        HoldDTO thirdHold = holdService.placeHold(book.getId(), createHoldDTO(third));
+        loanService.returnBook(loan.getId());
+
+        // Den andra lämnar kön innan exemplaret når fram
+        assertEquals("CANCELLED", holdService.cancelHold(book.getId(), secondHold.getId()).getStatus());
+        assertThrows(IllegalStateException.class, () -> holdService.cancelHold(book.getId(), secondHold.getId()));
+        assertThrows(EntityNotFoundException.class, () -> holdService.cancelHold(999_999L, firstHold.getId()));
+
+        // Ingen reservation är gammal nog, sedan går den första ut och exemplaret går till den tredje
+        assertEquals(0, holdService.expireReadyHolds(LocalDateTime.now()));
+        assertEquals(1, holdService.expireReadyHolds(LocalDateTime.now().plusDays(8)));
+        flushAndClear();
+        assertEquals("EXPIRED", holdService.getHold(book.getId(), firstHold.getId()).getStatus());
+        assertEquals("READY", holdService.getHold(book.getId(), thirdHold.getId()).getStatus());
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+        assertThrows(BookNotAvailableException.class, () -> loanService.createLoan(createLoanDTO(first, book)));
+
+        // Ingen kvar i kön, exemplaret blir ledigt
+        holdService.cancelHold(book.getId(), thirdHold.getId());
+        flushAndClear();
+        assertEquals(1, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+        assertNotNull(loanService.createLoan(createLoanDTO(first, book)));
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private User createUser(String name) {
+        User user = new User();
+        user.setFirstName(name);
+        user.setLastName("Testsson");
+        user.setEmail(name + "@test.com");
+        user.setPassword("password123");
+        user.setRegistrationDate(LocalDate.now());
+        return userRepository.save(user);
+    }
+
+    private Book createBook(String title, int copies) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setPublicationYear(1960);
+        book.setAvailableCopies(copies);
+        book.setTotalCopies(copies);
+        return bookRepository.save(book);
+    }
+
+    private CreateLoanDTO createLoanDTO(User user, Book book) {
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(user.getId());
+        createLoanDTO.setBookId(book.getId());
+        return createLoanDTO;
+    }
+
+    private CreateHoldDTO createHoldDTO(User user) {
+        CreateHoldDTO createHoldDTO = new CreateHoldDTO();
+        createHoldDTO.setUserId(user.getId());
+        return createHoldDTO;
+    }
+}
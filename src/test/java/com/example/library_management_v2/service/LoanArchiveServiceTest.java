@@ -0,0 +1,151 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.LoanArchiveResultDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Flytten till lånearkivet och getUserLoans med historik från segmentfilerna
+// Segmentfilerna finns kvar när transaktionen rullas tillbaka, därför bara ett test i klassen
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+public class LoanArchiveServiceTest {
+
+    @TempDir
+    static Path archiveDirectory;
+
+    @Autowired
+    private LoanArchiveService loanArchiveService;
+
+    @Autowired
+    private LoanArchive loanArchive;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final LocalDate today = LocalDate.now();
+
+    @DynamicPropertySource
+    static void archive(DynamicPropertyRegistry registry) {
+        registry.add("library.loans.archive.enabled", () -> "true");
+        registry.add("library.loans.archive.directory", () -> archiveDirectory.toString());
+        registry.add("library.loans.archive.min-age", () -> "365d");
+    }
+
+    @Test
+    @DisplayName("Gamla återlämnade lån ska flyttas till arkivet och ändå visas av getUserLoans, med titel och författare")
+    public void testCompactAndMergeHistory() {
+        User reader = createUser("arkiv.reader");
+        User other = createUser("arkiv.other");
+        Book book = createBook("Mio, min Mio");
+
+        Loan oldest = createLoan(reader, book, today.minusDays(800), today.minusDays(790));
+        Loan old = createLoan(reader, book, today.minusDays(700), today.minusDays(690));
+        Loan recent = createLoan(reader, book, today.minusDays(30), today.minusDays(20));
+        Loan otherOld = createLoan(other, book, today.minusDays(600), today.minusDays(595));
+        Loan active = createLoan(reader, book, today.minusDays(5), null);
+        entityManager.flush();
+        entityManager.clear();
+
+        LoanArchiveResultDTO result = loanArchiveService.compact(today);
+        assertEquals(3, result.getArchived());
+        assertEquals(1, result.getSegments());
+        assertEquals(today.minusDays(365), result.getReturnedBefore());
+
+        // Lånen finns bara i arkivet, det nya återlämnade och det aktiva ligger kvar i SQLite
+        assertTrue(loanRepository.findById(oldest.getId()).isEmpty());
+        assertTrue(loanRepository.findById(otherOld.getId()).isEmpty());
+        assertTrue(loanRepository.findById(recent.getId()).isPresent());
+        assertEquals(2, loanArchive.countUserLoans(reader.getId()));
+        assertEquals(1, loanArchive.countUserLoans(other.getId()));
+
+        List<LoanDTO> loans = loanService.getUserLoans(reader.getId());
+        assertEquals(List.of(oldest.getId(), old.getId(), recent.getId(), active.getId()),
+                loans.stream().map(LoanDTO::getId).toList());
+        LoanDTO archived = loans.get(0);
+        assertEquals("Mio, min Mio", archived.getBookTitle());
+        assertEquals("Astrid Lindgren", archived.getAuthorName());
+        assertEquals(today.minusDays(790), archived.getReturnedDate());
+        assertFalse(archived.isActive());
+        assertTrue(loans.get(3).isActive());
+
+        // Inget kvar att flytta
+        assertEquals(0, loanArchiveService.compact(today).getArchived());
+    }
+
+    private Loan createLoan(User user, Book book, LocalDate borrowed, LocalDate returned) {
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setBorrowedDate(borrowed);
+        loan.setDueDate(borrowed.plusDays(14));
+        loan.setReturnedDate(returned);
+        return loanRepository.save(loan);
+    }
+
+    private User createUser(String name) {
+        User user = new User();
+        user.setFirstName(name);
+        user.setLastName("Testsson");
+        user.setEmail(name + "@test.com");
+        user.setPassword("password123");
+        user.setRegistrationDate(LocalDate.now());
+        return userRepository.save(user);
+    }
+
+    private Book createBook(String title) {
+        Author author = new Author();
+        author.setFirstName("Astrid");
+        author.setLastName("Lindgren");
+        author.setBirthYear(1907);
+        author.setNationality("Swedish");
+        Book book = new Book();
+        book.setTitle(title);
+        book.setPublicationYear(1954);
+        book.setAvailableCopies(1);
+        book.setTotalCopies(1);
+        book.setAuthor(authorRepository.save(author));
+        return bookRepository.save(book);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.LoanArchiveProperties;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.LoanStateDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för segmentfilerna i lånearkivet, utan Spring och utan databas
+public class LoanArchiveTest {
+
+    private static final LocalDate BORROWED = LocalDate.of(2023, 5, 2);
+
+    @TempDir
+    private Path dir;
+
+    private LoanArchiveProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new LoanArchiveProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(dir);
+    }
+
+    @Test
+    @DisplayName("Ett publicerat segment ska ge varje användares lån via användarindexet, även efter omstart")
+    public void testPublishAndRead() {
+        LoanArchive archive = start();
+        archive.publish(archive.writePending(List.of(
+                loan(1L, 10L, 100L), loan(4L, 10L, 101L), loan(2L, 20L, 100L), loan(3L, 30L, 102L))));
+        archive.publish(archive.writePending(List.of(loan(7L, 10L, 103L))));
+
+        // Nyaste segmentet först
+        List<LoanDTO> loans = archive.findUserLoans(10L);
+        assertEquals(List.of(7L, 1L, 4L), loans.stream().map(LoanDTO::getId).toList());
+        LoanDTO first = loans.get(1);
+        assertEquals(100L, first.getBookId());
+        assertEquals(BORROWED, first.getBorrowedDate());
+        assertEquals(BORROWED.plusDays(14), first.getDueDate());
+        assertEquals(BORROWED.plusDays(10), first.getReturnedDate());
+        assertFalse(first.isActive());
+        assertFalse(first.isOverdue());
+
+        assertEquals(3, archive.countUserLoans(10L));
+        assertEquals(0, archive.countUserLoans(15L));
+        assertTrue(archive.findUserLoans(99L).isEmpty());
+        assertEquals(102L, archive.findState(30L, 3L).getBookId());
+        assertNull(archive.findState(30L, 1L));
+
+        LoanArchive restarted = start();
+        assertEquals(2, restarted.segments());
+        assertEquals(5, restarted.loans());
+        assertEquals(3, restarted.countUserLoans(10L));
+        assertTrue(restarted.pending().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ett opublicerat segment ska kunna läsas direkt och vid start, ett halvskrivet ska tas bort")
+    public void testPendingSegments() throws Exception {
+        LoanArchive archive = start();
+        Path complete = archive.writePending(List.of(loan(1L, 10L, 100L)));
+        // Syns innan lånen tas bort ur SQLite, men räknas inte som arkiverat förrän det är publicerat
+        assertEquals(List.of(1L), archive.findUserLoans(10L).stream().map(LoanDTO::getId).toList());
+        assertEquals(0, archive.countUserLoans(10L));
+        assertEquals(List.of(1L), archive.findPendingUserLoanIds(10L));
+
+        Path discarded = archive.writePending(List.of(loan(4L, 40L, 100L)));
+        archive.discard(discarded);
+        assertTrue(archive.findUserLoans(40L).isEmpty());
+        assertFalse(Files.exists(discarded));
+
+        Path torn = archive.writePending(List.of(loan(2L, 20L, 100L), loan(3L, 20L, 101L)));
+        try (RandomAccessFile file = new RandomAccessFile(torn.toFile(), "rw")) {
+            file.setLength(file.length() - 4);
+        }
+
+        LoanArchive restarted = start();
+        assertEquals(List.of(complete), restarted.pending().stream().map(LoanSegment::file).toList());
+        assertEquals(List.of(1L), restarted.findPendingUserLoanIds(10L));
+        assertFalse(Files.exists(torn));
+
+        restarted.publish(complete);
+        assertTrue(restarted.pending().isEmpty());
+        assertEquals(1, restarted.countUserLoans(10L));
+        assertTrue(restarted.findPendingUserLoanIds(10L).isEmpty());
+        assertTrue(Files.exists(dir.resolve("loans-000001.seg")));
+    }
+
+    @Test
+    @DisplayName("Ett skadat publicerat segment ska stoppa starten, och osorterade eller aktiva lån ska inte skrivas")
+    public void testRejectsInvalidData() throws Exception {
+        LoanArchive archive = start();
+        Path pending = archive.writePending(List.of(loan(1L, 10L, 100L)));
+        archive.publish(pending);
+        assertThrows(IllegalArgumentException.class,
+                () -> archive.writePending(List.of(loan(2L, 20L, 100L), loan(1L, 10L, 100L))));
+        LoanStateDTO active = loan(3L, 30L, 100L);
+        active.setReturnedDate(null);
+        assertThrows(IllegalArgumentException.class, () -> archive.writePending(List.of(active)));
+
+        Path file = dir.resolve("loans-000001.seg");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IllegalStateException.class, this::start);
+    }
+
+    private LoanArchive start() {
+        LoanArchive archive = new LoanArchive(properties);
+        archive.start();
+        return archive;
+    }
+
+    private static LoanStateDTO loan(Long loanId, Long userId, Long bookId) {
+        return new LoanStateDTO(loanId, userId, bookId, BORROWED, BORROWED.plusDays(14), BORROWED.plusDays(10));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.LoanEventLogProperties;
+import com.example.library_management_v2.dto.LoanStateDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för händelseloggen och uppspelningen av den, utan Spring och utan databas
+// (utan transaktion läggs händelserna i kön direkt)
+public class LoanEventLogTest {
+
+    private static final LocalDate BORROWED = LocalDate.of(2025, 3, 1);
+
+    @TempDir
+    private Path dir;
+
+    private LoanEventLogProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new LoanEventLogProperties();
+        properties.setFile(dir.resolve("loan-events.log"));
+        properties.setFlushInterval(Duration.ofMillis(10));
+    }
+
+    @Test
+    @DisplayName("Händelserna ska skrivas i ordning och bygga upp lånen när loggen spelas upp")
+    public void testWriteAndReplay() throws Exception {
+        LoanEventLog eventLog = new LoanEventLog(properties);
+        eventLog.start();
+        eventLog.appendAfterCommit(List.of(
+                event(LoanEvent.Type.CHECKED_OUT, 1L, BORROWED.plusDays(14), null),
+                event(LoanEvent.Type.CHECKED_OUT, 2L, BORROWED.plusDays(14), null)));
+        eventLog.appendAfterCommit(List.of(event(LoanEvent.Type.EXTENDED, 1L, BORROWED.plusDays(28), null)));
+        eventLog.appendAfterCommit(List.of(
+                event(LoanEvent.Type.RETURNED, 1L, BORROWED.plusDays(28), BORROWED.plusDays(20))));
+        eventLog.stop();
+
+        assertEquals(4, eventLog.written());
+        assertEquals(0, eventLog.dropped());
+        assertEquals(4, Files.readAllLines(properties.getFile()).size());
+
+        LoanEventReplay.Log replayed = LoanEventReplay.read(properties.getFile());
+        assertEquals(4, replayed.events());
+        assertEquals(4, replayed.lastSeq());
+        assertEquals(0, replayed.dropped());
+
+        LoanStateDTO returned = replayed.loans().get(1L);
+        assertEquals(BORROWED.plusDays(28), returned.getDueDate());
+        assertEquals(BORROWED.plusDays(20), returned.getReturnedDate());
+        assertTrue(returned.isComplete());
+
+        LoanStateDTO active = replayed.loans().get(2L);
+        assertEquals(20L, active.getUserId());
+        assertNull(active.getReturnedDate());
+    }
+
+    @Test
+    @DisplayName("Kastade händelser ska räknas och skrivas som en GAP-rad")
+    public void testDroppedEventsWriteGap() throws Exception {
+        LoanEventLog eventLog = new LoanEventLog(properties);
+
+        // Loggen är inte startad, händelserna kastas i stället för att vänta
+        eventLog.appendAfterCommit(List.of(
+                event(LoanEvent.Type.CHECKED_OUT, 1L, BORROWED.plusDays(14), null),
+                event(LoanEvent.Type.CHECKED_OUT, 2L, BORROWED.plusDays(14), null)));
+        assertEquals(2, eventLog.dropped());
+
+        eventLog.start();
+        eventLog.appendAfterCommit(List.of(event(LoanEvent.Type.CHECKED_OUT, 3L, BORROWED.plusDays(14), null)));
+        eventLog.stop();
+
+        String content = Files.readString(properties.getFile());
+        assertTrue(content.contains("\"type\":\"GAP\",\"dropped\":2"), content);
+
+        LoanEventReplay.Log replayed = LoanEventReplay.read(properties.getFile());
+        assertEquals(2, replayed.dropped());
+        assertEquals(1, replayed.events());
+        assertEquals(List.of(3L), List.copyOf(replayed.loans().keySet()));
+    }
+
+    @Test
+    @DisplayName("En halvskriven sista rad ska hoppas över och nästa händelse hamna på en egen rad")
+    public void testTornTail() throws Exception {
+        Files.writeString(properties.getFile(),
+                "{\"seq\":1,\"at\":\"2025-03-01T10:00:00Z\",\"type\":\"CHECKED_OUT\",\"loanId\":1,\"userId\":10," +
+                        "\"bookId\":100,\"borrowedDate\":\"2025-03-01\",\"dueDate\":\"2025-03-15\"}\n" +
+                        "{\"seq\":2,\"at\":\"2025-03-0", StandardCharsets.UTF_8);
+
+        LoanEventReplay.Log torn = LoanEventReplay.read(properties.getFile());
+        assertEquals(1, torn.events());
+        assertEquals(1, torn.unreadable());
+
+        LoanEventLog eventLog = new LoanEventLog(properties);
+        eventLog.start();
+        eventLog.appendAfterCommit(List.of(
+                event(LoanEvent.Type.RETURNED, 1L, LocalDate.of(2025, 3, 15), LocalDate.of(2025, 3, 10))));
+        eventLog.stop();
+
+        LoanEventReplay.Log replayed = LoanEventReplay.read(properties.getFile());
+        assertEquals(2, replayed.events());
+        assertEquals(1, replayed.unreadable());
+        // Numreringen fortsätter efter den sista hela raden
+        assertEquals(2, replayed.lastSeq());
+        assertEquals(LocalDate.of(2025, 3, 10), replayed.loans().get(1L).getReturnedDate());
+    }
+
+    @Test
+    @DisplayName("rebuild ska vägra en ofullständig logg och aldrig flytta ett lån bakåt")
+    public void testRebuildNeverMovesBackwards() throws Exception {
+        // Utan force avbryts rebuild innan databasen rörs
+        Files.writeString(properties.getFile(), "{\"seq\":1,\"type\":\"GAP\",\"dropped\":3}\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalStateException.class, () -> new LoanEventReplay().rebuild(properties.getFile(), false));
+
+        // Loggen tappade återlämningen och en förlängning, databasen har båda
+        LoanStateDTO logged = new LoanStateDTO(1L, 10L, 100L, BORROWED, BORROWED.plusDays(14), null);
+        LoanStateDTO current = new LoanStateDTO(1L, 10L, 100L, BORROWED, BORROWED.plusDays(28), BORROWED.plusDays(20));
+        LoanStateDTO target = LoanEventReplay.forward(logged, current);
+        assertEquals(BORROWED.plusDays(20), target.getReturnedDate());
+        assertEquals(BORROWED.plusDays(28), target.getDueDate());
+        assertTrue(target.matches(current));
+
+        // Loggen ligger före databasen, dess värden används
+        LoanStateDTO extended = LoanEventReplay.forward(
+                new LoanStateDTO(1L, null, null, null, BORROWED.plusDays(42), BORROWED.plusDays(30)), current);
+        assertEquals(BORROWED.plusDays(42), extended.getDueDate());
+        assertEquals(BORROWED.plusDays(30), extended.getReturnedDate());
+    }
+
+    private static LoanEvent event(LoanEvent.Type type, Long loanId, LocalDate dueDate, LocalDate returnedDate) {
+        return new LoanEvent(type, Instant.now(), loanId, loanId * 10, loanId * 100, BORROWED, dueDate,
+                returnedDate);
+    }
+}
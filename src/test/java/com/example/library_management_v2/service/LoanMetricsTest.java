@@ -0,0 +1,122 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.CreateUserDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.exception.BookNotAvailableException;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Testet är INTE @Transactional: utlåningar och återlämningar räknas först efter commit
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class LoanMetricsTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    private CreateLoanDTO createLoanDTO;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+
+        CreateUserDTO createUserDTO = new CreateUserDTO();
+        createUserDTO.setFirstName("Astrid");
+        createUserDTO.setLastName("Lindgren");
+        createUserDTO.setEmail("astrid@test.com");
+        createUserDTO.setPassword("password123");
+
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setTitle("Mio, min Mio");
+        bookDTO.setPublicationYear(1954);
+        bookDTO.setAvailableCopies(1);
+        bookDTO.setTotalCopies(1);
+
+        createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(userService.createUser(createUserDTO).getId());
+        createLoanDTO.setBookId(bookService.createBook(bookDTO).getId());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cleanDatabase();
+    }
+
+    @Test
+    @DisplayName("Utlåningar, återlämningar och nekade lån ska räknas, och servicemetoderna ska tidmätas")
+    public void testLoanCounters() {
+        double checkouts = count("library.loans.checkouts");
+        double returns = count("library.loans.returns");
+        double rejected = count("library.loans.rejected", "reason", LoanMetrics.NOT_AVAILABLE, "source", "database");
+
+        LoanDTO loan = loanService.createLoan(createLoanDTO);
+        assertThrows(BookNotAvailableException.class, () -> loanService.createLoan(createLoanDTO));
+        loanService.returnBook(loan.getId());
+
+        assertEquals(checkouts + 1, count("library.loans.checkouts"));
+        assertEquals(returns + 1, count("library.loans.returns"));
+        assertEquals(rejected + 1,
+                count("library.loans.rejected", "reason", LoanMetrics.NOT_AVAILABLE, "source", "database"));
+
+        // En timer per metod och utfall (exception-taggen)
+        Timer failed = meterRegistry.find("library.service")
+                .tags("class", LoanService.class.getName(), "method", "createLoan",
+                        "exception", BookNotAvailableException.class.getSimpleName())
+                .timer();
+        assertNotNull(failed);
+        assertTrue(failed.count() >= 1);
+        assertNotNull(meterRegistry.find("library.service").tags("method", "returnBook").timer());
+    }
+
+    private double count(String name, String... tags) {
+        Counter counter = meterRegistry.find(name).tags(tags).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        userLoanSummaryRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
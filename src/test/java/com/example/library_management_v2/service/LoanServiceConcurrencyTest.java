@@ -0,0 +1,144 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.exception.BookNotAvailableException;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stresstest för utlåning: många trådar försöker låna samma bok samtidigt
+// Testet är INTE @Transactional, varje lån måste committas på riktigt för att samtidigheten ska testas
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class LoanServiceConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int COPIES = 10;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    private Book testBook;
+    private List<User> testUsers;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+
+        testBook = new Book();
+        testBook.setTitle("Populär bok");
+        testBook.setPublicationYear(2024);
+        testBook.setAvailableCopies(COPIES);
+        testBook.setTotalCopies(COPIES);
+        testBook = bookRepository.save(testBook);
+
+        // En användare per tråd, som olika låntagare vid olika terminaler
+        testUsers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            User user = new User();
+            user.setFirstName("Låntagare");
+            user.setLastName("Nummer" + i);
+            user.setEmail("lantagare" + i + "@test.com");
+            user.setPassword("password123");
+            user.setRegistrationDate(LocalDate.now());
+            testUsers.add(userRepository.save(user));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cleanDatabase();
+    }
+
+    @Test
+    @DisplayName("64 samtidiga lån av samma bok ska aldrig låna ut fler exemplar än som finns")
+    public void testCreateLoan_NoOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (User user : testUsers) {
+            futures.add(executor.submit(() -> {
+                CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+                createLoanDTO.setUserId(user.getId());
+                createLoanDTO.setBookId(testBook.getId());
+
+                // Alla trådar väntar här så att de startar samtidigt
+                start.await();
+                try {
+                    loanService.createLoan(createLoanDTO);
+                    succeeded.incrementAndGet();
+                } catch (BookNotAvailableException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            // get() kastar vidare oväntade fel från trådarna så att testet fallerar
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Book updatedBook = bookRepository.findById(testBook.getId()).orElseThrow();
+
+        assertEquals(COPIES, succeeded.get(), "Exakt lika många lån som exemplar ska lyckas");
+        assertEquals(THREADS - COPIES, rejected.get(), "Resten ska nekas med BookNotAvailableException");
+        assertEquals(COPIES, loanRepository.count(), "Antalet lån i databasen ska matcha antalet exemplar");
+        assertEquals(0, updatedBook.getAvailableCopies(), "Tillgängliga exemplar får aldrig bli negativt");
+        // Boken kom in i tillgänglighetsindexet när den sparades, och bara de lyckade lånen räknades ner
+        assertEquals(0, availabilityIndex.onShelf(testBook.getId()), "Indexet ska stämma med databasen");
+        assertEquals(Boolean.FALSE, availabilityIndex.isAvailable(testBook.getId()));
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        authorRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.BatchLoanResultDTO;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
+import com.example.library_management_v2.entity.Author;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.entity.UserLoanSummary;
+import com.example.library_management_v2.exception.UserNotFoundException;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Vi räknar SQL-satser med Hibernate Statistics för att bevisa att LoanService inte gör N+1
+// och att varje operation bara hämtar de associationer den behöver (entity graphs, LAZY i övrigt)
+// Statistiken ser bara Hibernates satser, JDBC-batcharna i createLoans och returnBooks räknas inte
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+public class LoanServiceQueryCountTest {
+
+    private static final int LOANS = 30;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+    private final List<Book> books = new ArrayList<>();
+    private final List<Loan> loans = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        user = new User();
+        user.setFirstName("Flitig");
+        user.setLastName("Låntagare");
+        user.setEmail("flitig@test.com");
+        user.setPassword("password123");
+        user.setRegistrationDate(LocalDate.now().minusYears(2));
+        user = userRepository.save(user);
+
+        // Ett lån per bok, varje bok med en egen författare, så att en N+1 skulle synas tydligt
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < LOANS; i++) {
+            Book book = new Book();
+            book.setTitle("Titel" + i);
+            book.setPublicationYear(2000);
+            book.setAvailableCopies(1);
+            book.setTotalCopies(2);
+
+            // Den första boken saknar författare
+            if (i > 0) {
+                Author author = new Author();
+                author.setFirstName("Förnamn" + i);
+                author.setLastName("Efternamn" + i);
+                book.setAuthor(authorRepository.save(author));
+            }
+            books.add(bookRepository.save(book));
+
+            Loan loan = new Loan();
+            loan.setUser(user);
+            loan.setBook(books.get(i));
+            loan.setBorrowedDate(today.minusDays(i));
+            loan.setDueDate(today.minusDays(i).plusDays(14));
+            loans.add(loanRepository.save(loan));
+        }
+
+        // Användaren har redan en lånesammanställning, så lånemetoderna räknar bara upp och ner den
+        UserLoanSummary summary = new UserLoanSummary(user.getId(), today);
+        summary.setActiveLoans(LOANS);
+        summary.setTotalLoans(LOANS);
+        userLoanSummaryRepository.save(summary);
+
+        // Töm persistence context så att inga entiteter kommer från första nivåns cache
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("getUserLoans ska kontrollera användaren och hämta alla lån med bok och författare i två SQL-satser")
+    public void testGetUserLoans_TwoStatements() {
+        List<LoanDTO> userLoans = loanService.getUserLoans(user.getId());
+
+        assertEquals(LOANS, userLoans.size());
+        assertEquals(2, statistics.getPrepareStatementCount(),
+                "En sats för att kontrollera användaren och en för lånen");
+        assertEquals(0, statistics.getEntityLoadCount(), "Inga entiteter ska laddas");
+
+        // Lånen kommer i ID-ordning, lån i lånades i dag minus i dagar
+        assertNull(userLoans.get(0).getAuthorName(), "Boken utan författare ska inte ha något författarnamn");
+        assertEquals("Förnamn1 Efternamn1", userLoans.get(1).getAuthorName());
+        assertFalse(userLoans.get(14).isOverdue(), "Förfaller i dag, alltså inte försenat");
+        assertTrue(userLoans.get(15).isOverdue(), "Förföll i går");
+        assertTrue(userLoans.get(15).isActive());
+        assertFalse(userLoans.get(15).getExtended());
+    }
+
+    @Test
+    @DisplayName("createLoan ska klara sig med sex SQL-satser")
+    public void testCreateLoan_SixStatements() {
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(user.getId());
+        createLoanDTO.setBookId(books.get(1).getId());
+
+        LoanDTO loan = loanService.createLoan(createLoanDTO);
+        entityManager.flush();
+
+        assertEquals("Förnamn1 Efternamn1", loan.getAuthorName());
+        // Användaren, ett reserverat exemplar från kön (inget), reservationen, boken med författare,
+        // det nya lånet och lånesammanställningen
+        assertEquals(6, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("returnBook ska hämta lånet med bok och författare i en SQL-sats, utan låntagaren")
+    public void testReturnBook_FiveStatements() {
+        LoanDTO loan = loanService.returnBook(loans.get(1).getId());
+        entityManager.flush();
+
+        assertEquals(LocalDate.now(), loan.getReturnedDate());
+        assertEquals("Förnamn1 Efternamn1", loan.getAuthorName());
+        assertEquals(user.getId(), loan.getUserId());
+        // Lånet med bok och författare, markeringen som återlämnat, exemplaret tillbaka,
+        // kön (ingen står i kön) och lånesammanställningen
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(3, statistics.getEntityLoadCount(), "Lån, bok och författare, men inte användaren");
+    }
+
+    @Test
+    @DisplayName("extendLoan ska bara läsa lånet med bok och författare och uppdatera förfallodatumet")
+    public void testExtendLoan_ThreeStatements() {
+        LoanDTO loan = loanService.extendLoan(loans.get(1).getId());
+        entityManager.flush();
+
+        assertTrue(loan.getExtended());
+        // Lånet med bok och författare, uppdateringen av due_date och lånesammanställningen
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(3, statistics.getEntityLoadCount(), "Lån, bok och författare, men inte användaren");
+    }
+
+    @Test
+    @DisplayName("createLoans ska hämta alla böcker i en SQL-sats och batcha alla inserts")
+    public void testCreateLoans_BooksInOneStatement() {
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(user.getId());
+        createBatchLoanDTO.setBookIds(List.of(books.get(1).getId(), books.get(2).getId(), books.get(3).getId()));
+
+        BatchLoanResultDTO result = loanService.createLoans(createBatchLoanDTO);
+        entityManager.flush();
+
+        assertEquals(3, result.getSucceeded());
+        // Användaren, böckerna med författare, en insert-sats som batchas för alla tre lånen
+        // och en uppdatering av lånesammanställningen för alla tre
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("returnBooks ska hämta alla lån med bok och författare i en SQL-sats")
+    public void testReturnBooks_LoansInOneStatement() {
+        ReturnBatchLoanDTO returnBatchLoanDTO = new ReturnBatchLoanDTO();
+        returnBatchLoanDTO.setLoanIds(List.of(loans.get(1).getId(), loans.get(2).getId(), loans.get(3).getId()));
+
+        BatchLoanResultDTO result = loanService.returnBooks(returnBatchLoanDTO);
+
+        assertEquals(3, result.getSucceeded());
+        assertEquals("Förnamn2 Efternamn2", result.getItems().get(1).getLoan().getAuthorName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("getUserLoans ska kasta UserNotFoundException om användaren inte finns")
+    public void testGetUserLoans_UserNotFound() {
+        assertThrows(UserNotFoundException.class, () -> loanService.getUserLoans(999_999L));
+        assertEquals(1, statistics.getPrepareStatementCount(), "Endast kontrollen av användaren ska köras");
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.CursorPageDTO;
+import com.example.library_management_v2.dto.OverdueLoanDTO;
+import com.example.library_management_v2.dto.OverdueSweepResultDTO;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+@RecordApplicationEvents
+public class OverdueLoanServiceTest {
+
+    @Autowired
+    private OverdueLoanService overdueLoanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    private final LocalDate today = LocalDate.now();
+
+    private Loan tenDaysOverdue;
+    private Loan threeDaysOverdue;
+    private Loan oneDayOverdue;
+    private Loan dueInFiveDays;
+
+    @BeforeEach
+    public void setUp() {
+        User user = new User();
+        user.setFirstName("Astrid");
+        user.setLastName("Lindgren");
+        user.setEmail("astrid@test.com");
+        user.setPassword("password123");
+        user.setRegistrationDate(today.minusYears(1));
+        user = userRepository.save(user);
+
+        Book book = new Book();
+        book.setTitle("Pippi Långstrump");
+        book.setPublicationYear(1945);
+        book.setAvailableCopies(10);
+        book.setTotalCopies(10);
+        book = bookRepository.save(book);
+
+        tenDaysOverdue = saveLoan(user, book, today.minusDays(10), null);
+        threeDaysOverdue = saveLoan(user, book, today.minusDays(3), null);
+        oneDayOverdue = saveLoan(user, book, today.minusDays(1), null);
+        dueInFiveDays = saveLoan(user, book, today.plusDays(5), null);
+
+        // Återlämnade lån är aldrig försenade, oavsett förfallodatum
+        saveLoan(user, book, today.minusDays(5), today.minusDays(6));
+    }
+
+    @Test
+    @DisplayName("Försenade lån ska listas med det äldsta förfallodatumet först")
+    public void testGetOverdueLoans_OrderedByDueDate() {
+        CursorPageDTO<OverdueLoanDTO> page = overdueLoanService.getOverdueLoans(null, null, null, null);
+
+        assertEquals(List.of(tenDaysOverdue.getId(), threeDaysOverdue.getId(), oneDayOverdue.getId()),
+                page.getItems().stream().map(OverdueLoanDTO::getId).toList());
+        assertEquals(List.of(10L, 3L, 1L),
+                page.getItems().stream().map(OverdueLoanDTO::getDaysOverdue).toList());
+        assertEquals("astrid@test.com", page.getItems().get(0).getUserEmail());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Listan ska kunna filtreras på antal dagar och bläddras med cursor")
+    public void testGetOverdueLoans_FilterAndCursor() {
+        assertEquals(List.of(tenDaysOverdue.getId(), threeDaysOverdue.getId()),
+                ids(overdueLoanService.getOverdueLoans(3, null, null, null)));
+        assertEquals(List.of(threeDaysOverdue.getId()),
+                ids(overdueLoanService.getOverdueLoans(2, 5, null, null)));
+
+        List<Long> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<OverdueLoanDTO> page = overdueLoanService.getOverdueLoans(null, null, cursor, 1);
+            all.addAll(ids(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of(tenDaysOverdue.getId(), threeDaysOverdue.getId(), oneDayOverdue.getId()), all);
+        assertThrows(IllegalArgumentException.class, () -> overdueLoanService.getOverdueLoans(0, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> overdueLoanService.getOverdueLoans(5, 2, null, null));
+    }
+
+    @Test
+    @DisplayName("Sökningen ska bara behandla lån som har förfallit sedan förra körningen")
+    public void testSweep_OnlyNewOverdueLoans() {
+        OverdueSweepResultDTO first = overdueLoanService.sweep(today);
+        assertEquals(3, first.getProcessed());
+        assertEquals(today.minusDays(1), first.getDueTo());
+
+        // Samma dag igen: vattenstämpeln är redan i går
+        assertEquals(0, overdueLoanService.sweep(today).getProcessed());
+
+        // En vecka senare har bara lånet som förföll om fem dagar tillkommit
+        OverdueSweepResultDTO later = overdueLoanService.sweep(today.plusDays(7));
+        assertEquals(1, later.getProcessed());
+        assertEquals(today, later.getDueFrom());
+
+        List<Long> overdueIds = events.stream(LoanOverdueEvent.class).map(LoanOverdueEvent::loanId).toList();
+        assertEquals(List.of(tenDaysOverdue.getId(), threeDaysOverdue.getId(), oneDayOverdue.getId(),
+                dueInFiveDays.getId()), overdueIds);
+    }
+
+    private Loan saveLoan(User user, Book book, LocalDate dueDate, LocalDate returnedDate) {
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setBorrowedDate(dueDate.minusDays(14));
+        loan.setDueDate(dueDate);
+        loan.setReturnedDate(returnedDate);
+        return loanRepository.save(loan);
+    }
+
+    private List<Long> ids(CursorPageDTO<OverdueLoanDTO> page) {
+        return page.getItems().stream().map(OverdueLoanDTO::getId).toList();
+    }
+}
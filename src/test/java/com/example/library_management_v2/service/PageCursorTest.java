@@ -0,0 +1,52 @@
+package com.example.library_management_v2.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Enhetstester för cursorn vid keyset-paginering, utan Spring och utan databas
+public class PageCursorTest {
+
+    @Test
+    @DisplayName("En cursor ska avkodas till samma ID, och ingen cursor betyder första sidan")
+    public void testEncodeDecode() {
+        assertEquals(0L, PageCursor.decode("books", null));
+        assertEquals(0L, PageCursor.decode("books", ""));
+
+        String cursor = PageCursor.encode("books", 42L);
+        assertEquals(42L, PageCursor.decode("books", cursor));
+        assertFalse(cursor.contains("42"), "ID:t ska inte synas i klartext");
+
+        String pair = PageCursor.encode("overdue", 20000L, 7L);
+        assertArrayEquals(new long[] {20000L, 7L}, PageCursor.decodePair("overdue", pair));
+        assertNull(PageCursor.decodePair("overdue", null));
+    }
+
+    @Test
+    @DisplayName("En cursor från en annan lista eller en trasig cursor ska ge IllegalArgumentException")
+    public void testDecode_Invalid() {
+        String books = PageCursor.encode("books", 42L);
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("authors", books));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("books", "inte-base64!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("books",
+                PageCursor.encode("books:1", 2L)));
+
+        // En enkel cursor duger inte där det krävs ett par, och tvärtom
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decodePair("books", books));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decodePair("authors",
+                PageCursor.encode("books", 1L, 2L)));
+    }
+
+    @Test
+    @DisplayName("Sidstorleken ska få standardvärdet, begränsas uppåt och vara minst 1")
+    public void testPageSize() {
+        assertEquals(50, PageCursor.pageSize(null, 50, 500));
+        assertEquals(10, PageCursor.pageSize(10, 50, 500));
+        assertEquals(500, PageCursor.pageSize(10_000, 50, 500));
+        assertEquals(1, PageCursor.pageSize(1, 50, 500));
+
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.pageSize(0, 50, 500));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.pageSize(-1, 50, 500));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.SecondLevelCacheStats;
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.AuthorDTO;
+import com.example.library_management_v2.dto.BookDTO;
+import com.example.library_management_v2.dto.CreateAuthorDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.CreateUserDTO;
+import com.example.library_management_v2.dto.UserDTO;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.repository.AuthorRepository;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Testet är INTE @Transactional: andranivåcachen fylls och töms först när transaktionerna är klara
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private AuthorService authorService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SecondLevelCacheStats secondLevelCacheStats;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        cleanDatabase();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cleanDatabase();
+    }
+
+    @Test
+    @DisplayName("createBook ska läsa författaren från andranivåcachen")
+    public void testCreateBook_AuthorFromCache() {
+        CreateAuthorDTO createAuthorDTO = new CreateAuthorDTO();
+        createAuthorDTO.setFirstName("Astrid");
+        createAuthorDTO.setLastName("Lindgren");
+        createAuthorDTO.setBirthYear(1907);
+        AuthorDTO author = authorService.createAuthor(createAuthorDTO);
+
+        statistics.clear();
+        bookService.createBook(book("Mio, min Mio", author.getId()));
+        bookService.createBook(book("Bröderna Lejonhjärta", author.getId()));
+
+        // Författaren lades i cachen när den skapades, ingen av böckerna behöver läsa den från databasen
+        assertEquals(2, statistics.getDomainDataRegionStatistics("author").getHitCount());
+        assertEquals(0, statistics.getDomainDataRegionStatistics("author").getMissCount());
+
+        // Samma värden i GET /test/second-level-cache
+        Map<?, ?> regions = (Map<?, ?>) secondLevelCacheStats.snapshot().get("regions");
+        assertEquals(2L, ((Map<?, ?>) regions.get("author")).get("hits"));
+        assertEquals(1.0, ((Map<?, ?>) regions.get("author")).get("hit_rate"));
+    }
+
+    @Test
+    @DisplayName("Användare ska inte cachas, lösenordet ska läsas och sparas som vanligt")
+    public void testUser_NotCached() {
+        UserDTO user = userService.createUser(user("astrid@test.com"));
+        userService.getUserByEmail("astrid@test.com");
+        assertFalse(List.of(statistics.getSecondLevelCacheRegionNames()).contains("user"));
+
+        User loaded = userRepository.findById(user.getId()).orElseThrow();
+        assertEquals("password123", loaded.getPassword());
+        loaded.setPassword("nytt-losenord");
+        userRepository.save(loaded);
+        assertEquals("nytt-losenord",
+                jdbcTemplate.queryForObject("SELECT password FROM users WHERE user_id = ?", String.class, user.getId()));
+    }
+
+    @Test
+    @DisplayName("En utlåning ska tömma bokens post i andranivåcachen")
+    public void testLoan_EvictsBook() {
+        BookDTO book = bookService.createBook(book("Mio, min Mio", null));
+        UserDTO user = userService.createUser(user("astrid@test.com"));
+        assertEquals(1, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(user.getId());
+        createLoanDTO.setBookId(book.getId());
+        loanService.createLoan(createLoanDTO);
+
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+    }
+
+    private static BookDTO book(String title, Long authorId) {
+        BookDTO bookDTO = new BookDTO();
+        bookDTO.setTitle(title);
+        bookDTO.setPublicationYear(1954);
+        bookDTO.setAvailableCopies(1);
+        bookDTO.setTotalCopies(1);
+        bookDTO.setAuthorId(authorId);
+        return bookDTO;
+    }
+
+    private static CreateUserDTO user(String email) {
+        CreateUserDTO createUserDTO = new CreateUserDTO();
+        createUserDTO.setFirstName("Astrid");
+        createUserDTO.setLastName("Lindgren");
+        createUserDTO.setEmail(email);
+        createUserDTO.setPassword("password123");
+        return createUserDTO;
+    }
+
+    private void cleanDatabase() {
+        loanRepository.deleteAll();
+        userLoanSummaryRepository.deleteAll();
+        bookRepository.deleteAll();
+        authorRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
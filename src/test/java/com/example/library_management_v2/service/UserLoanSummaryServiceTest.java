@@ -0,0 +1,212 @@
+package com.example.library_management_v2.service;
+
+import com.example.library_management_v2.config.TestDatabaseConfig;
+import com.example.library_management_v2.dto.CreateBatchLoanDTO;
+import com.example.library_management_v2.dto.CreateLoanDTO;
+import com.example.library_management_v2.dto.LoanDTO;
+import com.example.library_management_v2.dto.LoanSummaryDTO;
+import com.example.library_management_v2.dto.ReturnBatchLoanDTO;
+import com.example.library_management_v2.entity.Book;
+import com.example.library_management_v2.entity.Loan;
+import com.example.library_management_v2.entity.User;
+import com.example.library_management_v2.exception.UserNotFoundException;
+import com.example.library_management_v2.repository.BookRepository;
+import com.example.library_management_v2.repository.LoanRepository;
+import com.example.library_management_v2.repository.UserLoanSummaryRepository;
+import com.example.library_management_v2.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestDatabaseConfig.class)
+@Transactional
+public class UserLoanSummaryServiceTest {
+
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserLoanSummaryRepository userLoanSummaryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final LocalDate today = LocalDate.now();
+
+    private User user;
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+        user = new User();
+        user.setFirstName("Astrid");
+        user.setLastName("Lindgren");
+        user.setEmail("astrid@test.com");
+        user.setPassword("password123");
+        user.setRegistrationDate(today.minusYears(1));
+        user = userRepository.save(user);
+
+        book = new Book();
+        book.setTitle("Pippi Långstrump");
+        book.setPublicationYear(1945);
+        book.setAvailableCopies(10);
+        book.setTotalCopies(10);
+        book = bookRepository.save(book);
+    }
+
+    @Test
+    @DisplayName("Sammanställningen ska följa med utlåning, förlängning och återlämning")
+    public void testSummary_MaintainedByLoanService() {
+        // Ett gammalt återlämnat lån från innan sammanställningen fanns
+        saveLoan(today.minusDays(30), today.minusDays(20));
+        assertSummary(0, 0, 0, 1);
+        assertFalse(userLoanSummaryRepository.existsById(user.getId()), "Läsningen ska inte skapa någon rad");
+
+        // Första lånet skapar raden från lånen, sedan räknas den upp och ner
+        LoanDTO first = loanService.createLoan(createLoanDTO());
+        loanService.createLoans(createBatchLoanDTO(2));
+        assertSummary(3, 0, 0, 4);
+
+        loanService.extendLoan(first.getId());
+        assertSummary(3, 0, 1, 4);
+
+        loanService.returnBook(first.getId());
+        assertSummary(2, 0, 0, 4);
+    }
+
+    @Test
+    @DisplayName("Återlämnade och förlängda lån ska bara räknas bort som försenade om de var räknade som försenade")
+    public void testSummary_OverdueLoans() {
+        Loan overdue = saveLoan(today.minusDays(3), null);
+        Loan dueYesterday = saveLoan(today.minusDays(1), null);
+        Loan overdueToo = saveLoan(today.minusDays(5), null);
+        saveLoan(today.plusDays(3), null);
+
+        // Omräkningen i går: lånet som förföll i går var inte försenat än
+        loanService.createLoan(createLoanDTO());
+        assertEquals(1, userLoanSummaryService.recalculate(today.minusDays(1)));
+        flushAndClear();
+        assertEquals(2, userLoanSummaryRepository.findById(user.getId()).orElseThrow().getOverdueLoans());
+
+        // I dag räknas de försenade lånen direkt tills omräkningen har körts
+        assertSummary(5, 3, 0, 5);
+
+        // Lånet som förföll i går räknades inte som försenat, så antalet i raden ändras inte
+        loanService.returnBook(dueYesterday.getId());
+        flushAndClear();
+        assertEquals(2, userLoanSummaryRepository.findById(user.getId()).orElseThrow().getOverdueLoans());
+
+        userLoanSummaryService.recalculate(today);
+        assertSummary(4, 2, 0, 5);
+
+        // Förlängningen flyttar förfallodatumet till om elva dagar, lånet är inte längre försenat
+        loanService.extendLoan(overdue.getId());
+        assertSummary(4, 1, 1, 5);
+
+        ReturnBatchLoanDTO returnBatchLoanDTO = new ReturnBatchLoanDTO();
+        returnBatchLoanDTO.setLoanIds(List.of(overdue.getId(), overdueToo.getId()));
+        loanService.returnBooks(returnBatchLoanDTO);
+        assertSummary(2, 0, 0, 5);
+    }
+
+    @Test
+    @DisplayName("Omräkningen för utvalda användare ska även räkna om totalt och förlängda lån")
+    public void testRecalculate_Users() {
+        loanService.createLoan(createLoanDTO());
+        assertSummary(1, 0, 0, 1);
+
+        // Lån som skrivs direkt i tabellen (som LoanEventReplay.rebuild gör) ändrar inte raden
+        saveLoan(today.minusDays(30), today.minusDays(20));
+        Loan extended = saveLoan(today.plusDays(3), null);
+        extended.setBorrowedDate(today.minusDays(20));
+        loanRepository.save(extended);
+        flushAndClear();
+
+        // Den nattliga omräkningen rättar bara aktiva och försenade
+        userLoanSummaryService.recalculate(today);
+        assertSummary(2, 0, 0, 1);
+
+        assertEquals(1, userLoanSummaryService.recalculate(List.of(user.getId())));
+        assertSummary(2, 0, 1, 3);
+    }
+
+    @Test
+    @DisplayName("Sammanställningen för en användare som inte finns ska ge UserNotFoundException")
+    public void testGetLoanSummary_UserNotFound() {
+        assertThrows(UserNotFoundException.class, () -> userLoanSummaryService.getLoanSummary(999_999L));
+    }
+
+    // Läser sammanställningen som en ny förfrågan skulle göra
+    private void assertSummary(int active, int overdue, int extended, int total) {
+        flushAndClear();
+        LoanSummaryDTO summary = userLoanSummaryService.getLoanSummary(user.getId());
+        assertEquals(List.of(active, overdue, extended, total), List.of(summary.getActiveLoans(),
+                summary.getOverdueLoans(), summary.getExtendedLoans(), summary.getTotalLoans()),
+                "Aktiva, försenade, förlängda och totalt");
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private Loan saveLoan(LocalDate dueDate, LocalDate returnedDate) {
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setBorrowedDate(dueDate.minusDays(14));
+        loan.setDueDate(dueDate);
+        loan.setReturnedDate(returnedDate);
+        return loanRepository.save(loan);
+    }
+
+    private CreateLoanDTO createLoanDTO() {
+        CreateLoanDTO createLoanDTO = new CreateLoanDTO();
+        createLoanDTO.setUserId(user.getId());
+        createLoanDTO.setBookId(book.getId());
+        return createLoanDTO;
+    }
+
+    // Batchen lånar nya böcker, samma bok kan bara lånas en gång per förfrågan
+    private CreateBatchLoanDTO createBatchLoanDTO(int books) {
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            Book other = new Book();
+            other.setTitle("Bok " + i);
+            other.setPublicationYear(2000);
+            other.setAvailableCopies(1);
+            other.setTotalCopies(1);
+            bookIds.add(bookRepository.save(other).getId());
+        }
+        CreateBatchLoanDTO createBatchLoanDTO = new CreateBatchLoanDTO();
+        createBatchLoanDTO.setUserId(user.getId());
+        createBatchLoanDTO.setBookIds(bookIds);
+        return createBatchLoanDTO;
+    }
+}